@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,15 +25,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.stream.Collectors;
 
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import org.springframework.core.ResolvableType;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
-import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.LimitedDataBufferList;
 import org.springframework.core.io.buffer.PooledDataBuffer;
 import org.springframework.core.log.LogFormatUtils;
 import org.springframework.lang.Nullable;
@@ -47,6 +47,10 @@ import org.springframework.util.MimeTypeUtils;
  * This is to make sure that multibyte characters are decoded properly, and do not cross buffer
  * boundaries. The default delimiters ({@code \n}, {@code \r\n})can be customized.
  *
+ * <p>Delimiters are located with a {@link DataBufferUtils.Matcher}, which also
+ * finds delimiters that are split over several buffers. Lines contained in a
+ * single buffer are passed on as slices of it, without copying.
+ *
  * <p>Partially inspired by Netty's {@code DelimiterBasedFrameDecoder}.
  *
  * @author Sebastien Deleuze
@@ -58,8 +62,6 @@ import org.springframework.util.MimeTypeUtils;
  */
 public final class StringDecoder extends AbstractDataBufferDecoder<String> {
 
-	private static final DataBuffer END_FRAME = new DefaultDataBufferFactory().wrap(new byte[0]);
-
 	/** The default charset to use, i.e. "UTF-8". */
 	public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
 
@@ -71,7 +73,7 @@ public final class StringDecoder extends AbstractDataBufferDecoder<String> {
 
 	private final boolean stripDelimiter;
 
-	private final ConcurrentMap<Charset, List<byte[]>> delimitersCache = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Charset, byte[][]> delimitersCache = new ConcurrentHashMap<>();
 
 
 	private StringDecoder(List<String> delimiters, boolean stripDelimiter, MimeType... mimeTypes) {
@@ -91,112 +93,101 @@ public final class StringDecoder extends AbstractDataBufferDecoder<String> {
 	public Flux<String> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType,
 			@Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
 
-		List<byte[]> delimiterBytes = getDelimiterBytes(mimeType);
+		byte[][] delimiterBytes = getDelimiterBytes(mimeType);
 
-		Flux<DataBuffer> inputFlux = Flux.from(inputStream)
-				.flatMapIterable(dataBuffer -> splitOnDelimiter(dataBuffer, delimiterBytes))
-				.bufferUntil(StringDecoder::isEndFrame)
-				.map(StringDecoder::joinUntilEndFrame)
-				.doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
+		Flux<DataBuffer> inputFlux = Flux.defer(() -> {
+			DataBufferUtils.Matcher matcher = DataBufferUtils.matcher(delimiterBytes);
+			LimitedDataBufferList chunks = new LimitedDataBufferList(getMaxInMemorySize());
+			return Flux.from(inputStream)
+					.concatMapIterable(buffer -> splitOnDelimiter(buffer, matcher, chunks))
+					.concatWith(Mono.defer(() -> joinRemainingChunks(chunks)))
+					.doFinally(signalType -> chunks.releaseAndClear());
+		}).doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
 
 		return super.decode(inputFlux, elementType, mimeType, hints);
 	}
 
-	private List<byte[]> getDelimiterBytes(@Nullable MimeType mimeType) {
+	private byte[][] getDelimiterBytes(@Nullable MimeType mimeType) {
 		return this.delimitersCache.computeIfAbsent(getCharset(mimeType),
 				charset -> this.delimiters.stream()
 						.map(s -> s.getBytes(charset))
-						.collect(Collectors.toList()));
+						.toArray(byte[][]::new));
 	}
 
 	/**
-	 * Split the given data buffer on delimiter boundaries.
-	 * The returned Flux contains an {@link #END_FRAME} buffer after each delimiter.
+	 * Split the given data buffer on delimiter boundaries, returning a frame
+	 * for each delimiter found. Frames within the buffer are slices of it;
+	 * the bytes after the last delimiter are added to the given chunks, to be
+	 * joined with the start of the frame in the next buffer(s).
 	 */
-	private List<DataBuffer> splitOnDelimiter(DataBuffer dataBuffer, List<byte[]> delimiterBytes) {
+	private List<DataBuffer> splitOnDelimiter(
+			DataBuffer dataBuffer, DataBufferUtils.Matcher matcher, LimitedDataBufferList chunks) {
+
 		List<DataBuffer> frames = new ArrayList<>();
-		do {
-			int length = Integer.MAX_VALUE;
-			byte[] matchingDelimiter = null;
-			for (byte[] delimiter : delimiterBytes) {
-				int index = indexOf(dataBuffer, delimiter);
-				if (index >= 0 && index < length) {
-					length = index;
-					matchingDelimiter = delimiter;
-				}
-			}
-			DataBuffer frame;
-			int readPosition = dataBuffer.readPosition();
-			if (matchingDelimiter != null) {
-				if (this.stripDelimiter) {
-					frame = dataBuffer.slice(readPosition, length);
-				}
-				else {
-					frame = dataBuffer.slice(readPosition, length + matchingDelimiter.length);
+		try {
+			do {
+				int readPosition = dataBuffer.readPosition();
+				int endIndex = matcher.match(dataBuffer);
+				if (endIndex == -1) {
+					addChunk(chunks, dataBuffer.slice(readPosition, dataBuffer.readableByteCount()));
+					break;
 				}
-				dataBuffer.readPosition(readPosition + length + matchingDelimiter.length);
-
-				frames.add(DataBufferUtils.retain(frame));
-				frames.add(END_FRAME);
-			}
-			else {
-				frame = dataBuffer.slice(readPosition, dataBuffer.readableByteCount());
-				dataBuffer.readPosition(readPosition + dataBuffer.readableByteCount());
-				frames.add(DataBufferUtils.retain(frame));
+				DataBuffer slice = dataBuffer.slice(readPosition, endIndex + 1 - readPosition);
+				dataBuffer.readPosition(endIndex + 1);
+				frames.add(createFrame(slice, matcher.delimiter(), chunks));
 			}
+			while (dataBuffer.readableByteCount() > 0);
+			return frames;
+		}
+		catch (RuntimeException ex) {
+			frames.forEach(DataBufferUtils::release);
+			throw ex;
+		}
+		finally {
+			DataBufferUtils.release(dataBuffer);
 		}
-		while (dataBuffer.readableByteCount() > 0);
-
-		DataBufferUtils.release(dataBuffer);
-		return frames;
 	}
 
 	/**
-	 * Find the given delimiter in the given data buffer.
-	 * @return the index of the delimiter, or -1 if not found.
+	 * Create a frame from the given slice, ending with a delimiter, and the
+	 * chunks preceding it. The delimiter itself may be split over the slice
+	 * and the chunks, and is therefore stripped after joining.
 	 */
-	private static int indexOf(DataBuffer dataBuffer, byte[] delimiter) {
-		for (int i = dataBuffer.readPosition(); i < dataBuffer.writePosition(); i++) {
-			int dataBufferPos = i;
-			int delimiterPos = 0;
-			while (delimiterPos < delimiter.length) {
-				if (dataBuffer.getByte(dataBufferPos) != delimiter[delimiterPos]) {
-					break;
-				}
-				else {
-					dataBufferPos++;
-					if (dataBufferPos == dataBuffer.writePosition() &&
-							delimiterPos != delimiter.length - 1) {
-						return -1;
-					}
-				}
-				delimiterPos++;
-			}
-			if (delimiterPos == delimiter.length) {
-				return i - dataBuffer.readPosition();
-			}
+	private DataBuffer createFrame(DataBuffer slice, byte[] delimiter, LimitedDataBufferList chunks) {
+		DataBuffer frame;
+		if (chunks.isEmpty()) {
+			frame = DataBufferUtils.retain(slice);
 		}
-		return -1;
+		else {
+			addChunk(chunks, slice);
+			frame = slice.factory().join(chunks);
+			chunks.clear();
+		}
+		if (this.stripDelimiter) {
+			frame.writePosition(frame.writePosition() - delimiter.length);
+		}
+		return frame;
 	}
 
 	/**
-	 * Check whether the given buffer is {@link #END_FRAME}.
+	 * Join the chunks after the last delimiter into the final frame.
 	 */
-	private static boolean isEndFrame(DataBuffer dataBuffer) {
-		return dataBuffer == END_FRAME;
+	private static Mono<DataBuffer> joinRemainingChunks(List<DataBuffer> chunks) {
+		if (chunks.isEmpty()) {
+			return Mono.empty();
+		}
+		DataBuffer frame = chunks.get(0).factory().join(chunks);
+		chunks.clear();
+		return Mono.just(frame);
 	}
 
 	/**
-	 * Join the given list of buffers into a single buffer.
+	 * Add the given slice to the chunks, retaining it, unless that exceeds the
+	 * {@link #setMaxInMemorySize max in-memory size}.
 	 */
-	private static DataBuffer joinUntilEndFrame(List<DataBuffer> dataBuffers) {
-		if (!dataBuffers.isEmpty()) {
-			int lastIdx = dataBuffers.size() - 1;
-			if (isEndFrame(dataBuffers.get(lastIdx))) {
-				dataBuffers.remove(lastIdx);
-			}
-		}
-		return dataBuffers.get(0).factory().join(dataBuffers);
+	private static void addChunk(LimitedDataBufferList chunks, DataBuffer slice) {
+		chunks.add(slice);
+		DataBufferUtils.retain(slice);
 	}
 
 	@Override
@@ -0,0 +1,631 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.io.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * {@link DataBuffer} that presents the readable bytes of several component
+ * buffers as a single buffer, without copying them. Returned from
+ * {@link DefaultDataBufferFactory#compose(List)}, as a counterpart of Netty's
+ * {@code CompositeByteBuf}.
+ *
+ * <p>Reading from a composite, through {@link #read(byte[])},
+ * {@link #getByte(int)} or {@link #asInputStream()}, reads directly from the
+ * components, and {@linkplain #slice(int, int) slices} are composites of
+ * slices of the components. Bytes are copied only when required to present
+ * them contiguously, i.e. when {@link #asByteBuffer(int, int)} is invoked
+ * with a range that spans more than one component, in which case the
+ * returned {@code ByteBuffer} is a copy that does not share data with this
+ * buffer. Writing beyond the capacity of a composite adds a component
+ * allocated by its {@linkplain #factory() factory}.
+ *
+ * <p>A composite takes over the components given to it, and
+ * {@linkplain DataBufferUtils#release(DataBuffer) releases} them when it is
+ * released itself. Slices of a composite share its reference count.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @see DefaultDataBufferFactory#compose(List)
+ */
+public class CompositeDataBuffer implements PooledDataBuffer {
+
+	private static final int MIN_COMPONENT_CAPACITY = 256;
+
+
+	private final DataBufferFactory dataBufferFactory;
+
+	private final List<Component> components = new ArrayList<>();
+
+	/** The composite whose reference count is shared, or {@code null} if this is the root. */
+	@Nullable
+	private final CompositeDataBuffer parent;
+
+	private final AtomicInteger refCount = new AtomicInteger(1);
+
+	private int capacity;
+
+	private int readPosition;
+
+	private int writePosition;
+
+	private int lastComponentIndex;
+
+
+	/**
+	 * Create a new {@code CompositeDataBuffer} of the readable bytes of the
+	 * given buffers. The buffers are released when this composite is released.
+	 * @param dataBufferFactory the factory to allocate additional components
+	 * with, if the composite is written to beyond its capacity
+	 * @param dataBuffers the component buffers
+	 */
+	public CompositeDataBuffer(DataBufferFactory dataBufferFactory, List<? extends DataBuffer> dataBuffers) {
+		this(dataBufferFactory, dataBuffers, null);
+	}
+
+	private CompositeDataBuffer(DataBufferFactory dataBufferFactory, List<? extends DataBuffer> dataBuffers,
+			@Nullable CompositeDataBuffer parent) {
+
+		Assert.notNull(dataBufferFactory, "DataBufferFactory must not be null");
+		Assert.notNull(dataBuffers, "DataBuffer List must not be null");
+		this.dataBufferFactory = dataBufferFactory;
+		this.parent = parent;
+		for (DataBuffer dataBuffer : dataBuffers) {
+			addComponent(dataBuffer, dataBuffer.readPosition(), dataBuffer.readableByteCount());
+		}
+		this.writePosition = this.capacity;
+	}
+
+
+	/**
+	 * Return the number of components of this buffer.
+	 */
+	public int getComponentCount() {
+		return this.components.size();
+	}
+
+	private void addComponent(DataBuffer dataBuffer, int index, int length) {
+		this.components.add(new Component(dataBuffer, index, length, this.capacity));
+		this.capacity += length;
+	}
+
+	/**
+	 * Return the index of the component that contains the given index,
+	 * which must be lower than the capacity.
+	 */
+	private int componentIndex(int index) {
+		int last = this.lastComponentIndex;
+		if (last < this.components.size() && this.components.get(last).contains(index)) {
+			return last;
+		}
+		int low = 0;
+		int high = this.components.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			Component component = this.components.get(mid);
+			if (index < component.offset) {
+				high = mid - 1;
+			}
+			else if (index >= component.offset + component.length) {
+				low = mid + 1;
+			}
+			else {
+				this.lastComponentIndex = mid;
+				return mid;
+			}
+		}
+		throw new IndexOutOfBoundsException("index " + index + " must be < " + this.capacity);
+	}
+
+
+	@Override
+	public DataBufferFactory factory() {
+		return this.dataBufferFactory;
+	}
+
+	@Override
+	public int indexOf(IntPredicate predicate, int fromIndex) {
+		Assert.notNull(predicate, "IntPredicate must not be null");
+		if (fromIndex < 0) {
+			fromIndex = 0;
+		}
+		else if (fromIndex >= this.writePosition) {
+			return -1;
+		}
+		for (int i = componentIndex(fromIndex); i < this.components.size(); i++) {
+			Component component = this.components.get(i);
+			int end = Math.min(component.offset + component.length, this.writePosition);
+			for (int index = Math.max(fromIndex, component.offset); index < end; index++) {
+				if (predicate.test(component.getByte(index))) {
+					return index;
+				}
+			}
+			if (end == this.writePosition) {
+				break;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int lastIndexOf(IntPredicate predicate, int fromIndex) {
+		Assert.notNull(predicate, "IntPredicate must not be null");
+		int index = Math.min(fromIndex, this.writePosition - 1);
+		if (index < 0) {
+			return -1;
+		}
+		for (int i = componentIndex(index); i >= 0; i--) {
+			Component component = this.components.get(i);
+			for (; index >= component.offset; index--) {
+				if (predicate.test(component.getByte(index))) {
+					return index;
+				}
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int readableByteCount() {
+		return this.writePosition - this.readPosition;
+	}
+
+	@Override
+	public int writableByteCount() {
+		return this.capacity - this.writePosition;
+	}
+
+	@Override
+	public int capacity() {
+		return this.capacity;
+	}
+
+	@Override
+	public CompositeDataBuffer capacity(int newCapacity) {
+		if (newCapacity <= 0) {
+			throw new IllegalArgumentException(String.format("'newCapacity' %d must be higher than 0", newCapacity));
+		}
+		if (this.parent != null) {
+			throw new UnsupportedOperationException("Changing the capacity of a sliced buffer is not supported");
+		}
+		if (newCapacity > this.capacity) {
+			DataBuffer dataBuffer = this.dataBufferFactory.allocateBuffer(newCapacity - this.capacity);
+			dataBuffer.writePosition(dataBuffer.capacity());
+			addComponent(dataBuffer, 0, dataBuffer.capacity());
+		}
+		else if (newCapacity < this.capacity) {
+			while (this.capacity > newCapacity) {
+				Component last = this.components.get(this.components.size() - 1);
+				if (last.offset >= newCapacity) {
+					this.components.remove(this.components.size() - 1);
+					this.capacity -= last.length;
+					DataBufferUtils.release(last.dataBuffer);
+				}
+				else {
+					last.length = newCapacity - last.offset;
+					this.capacity = newCapacity;
+				}
+			}
+			this.lastComponentIndex = 0;
+			if (this.readPosition > newCapacity) {
+				this.readPosition = newCapacity;
+			}
+			if (this.writePosition > newCapacity) {
+				this.writePosition = newCapacity;
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public CompositeDataBuffer ensureCapacity(int length) {
+		int writable = writableByteCount();
+		if (length > writable) {
+			capacity(this.capacity + Math.max(length - writable, MIN_COMPONENT_CAPACITY));
+		}
+		return this;
+	}
+
+	@Override
+	public int readPosition() {
+		return this.readPosition;
+	}
+
+	@Override
+	public CompositeDataBuffer readPosition(int readPosition) {
+		assertIndex(readPosition >= 0, "'readPosition' %d must be >= 0", readPosition);
+		assertIndex(readPosition <= this.writePosition, "'readPosition' %d must be <= %d",
+				readPosition, this.writePosition);
+		this.readPosition = readPosition;
+		return this;
+	}
+
+	@Override
+	public int writePosition() {
+		return this.writePosition;
+	}
+
+	@Override
+	public CompositeDataBuffer writePosition(int writePosition) {
+		assertIndex(writePosition >= this.readPosition, "'writePosition' %d must be >= %d",
+				writePosition, this.readPosition);
+		assertIndex(writePosition <= this.capacity, "'writePosition' %d must be <= %d",
+				writePosition, this.capacity);
+		this.writePosition = writePosition;
+		return this;
+	}
+
+	@Override
+	public byte getByte(int index) {
+		assertIndex(index >= 0, "index %d must be >= 0", index);
+		assertIndex(index <= this.writePosition - 1, "index %d must be <= %d", index, this.writePosition - 1);
+		return this.components.get(componentIndex(index)).getByte(index);
+	}
+
+	@Override
+	public byte read() {
+		assertIndex(this.readPosition <= this.writePosition - 1, "readPosition %d must be <= %d",
+				this.readPosition, this.writePosition - 1);
+		byte b = this.components.get(componentIndex(this.readPosition)).getByte(this.readPosition);
+		this.readPosition++;
+		return b;
+	}
+
+	@Override
+	public CompositeDataBuffer read(byte[] destination) {
+		Assert.notNull(destination, "Byte array must not be null");
+		return read(destination, 0, destination.length);
+	}
+
+	@Override
+	public CompositeDataBuffer read(byte[] destination, int offset, int length) {
+		Assert.notNull(destination, "Byte array must not be null");
+		assertIndex(this.readPosition <= this.writePosition - length,
+				"readPosition %d and length %d should be smaller than writePosition %d",
+				this.readPosition, length, this.writePosition);
+		int index = this.readPosition;
+		int end = index + length;
+		while (index < end) {
+			Component component = this.components.get(componentIndex(index));
+			int count = Math.min(end, component.offset + component.length) - index;
+			component.byteBuffer(index, count).get(destination, offset, count);
+			index += count;
+			offset += count;
+		}
+		this.readPosition = end;
+		return this;
+	}
+
+	@Override
+	public CompositeDataBuffer write(byte b) {
+		ensureCapacity(1);
+		int index = this.writePosition;
+		Component component = this.components.get(componentIndex(index));
+		component.byteBuffer(index, 1).put(b);
+		this.writePosition = index + 1;
+		return this;
+	}
+
+	@Override
+	public CompositeDataBuffer write(byte[] source) {
+		Assert.notNull(source, "Byte array must not be null");
+		return write(source, 0, source.length);
+	}
+
+	@Override
+	public CompositeDataBuffer write(byte[] source, int offset, int length) {
+		Assert.notNull(source, "Byte array must not be null");
+		return write(ByteBuffer.wrap(source, offset, length));
+	}
+
+	@Override
+	public CompositeDataBuffer write(DataBuffer... buffers) {
+		if (!ObjectUtils.isEmpty(buffers)) {
+			ByteBuffer[] byteBuffers = new ByteBuffer[buffers.length];
+			for (int i = 0; i < buffers.length; i++) {
+				byteBuffers[i] = buffers[i].asByteBuffer();
+			}
+			write(byteBuffers);
+		}
+		return this;
+	}
+
+	@Override
+	public CompositeDataBuffer write(ByteBuffer... buffers) {
+		if (!ObjectUtils.isEmpty(buffers)) {
+			int length = 0;
+			for (ByteBuffer buffer : buffers) {
+				length += buffer.remaining();
+			}
+			ensureCapacity(length);
+			for (ByteBuffer buffer : buffers) {
+				write(buffer);
+			}
+		}
+		return this;
+	}
+
+	private CompositeDataBuffer write(ByteBuffer source) {
+		ensureCapacity(source.remaining());
+		ByteBuffer tmp = source.duplicate();
+		int index = this.writePosition;
+		while (tmp.hasRemaining()) {
+			Component component = this.components.get(componentIndex(index));
+			int count = Math.min(tmp.remaining(), component.offset + component.length - index);
+			((Buffer) tmp).limit(tmp.position() + count);
+			component.byteBuffer(index, count).put(tmp);
+			((Buffer) tmp).limit(source.limit());
+			index += count;
+		}
+		this.writePosition = index;
+		return this;
+	}
+
+	@Override
+	public CompositeDataBuffer write(CharSequence charSequence, Charset charset) {
+		Assert.notNull(charSequence, "CharSequence must not be null");
+		Assert.notNull(charset, "Charset must not be null");
+		return write(charSequence.toString().getBytes(charset));
+	}
+
+	@Override
+	public CompositeDataBuffer slice(int index, int length) {
+		checkIndex(index, length);
+		List<DataBuffer> slices = new ArrayList<>();
+		int end = index + length;
+		while (index < end) {
+			Component component = this.components.get(componentIndex(index));
+			int count = Math.min(end, component.offset + component.length) - index;
+			slices.add(component.dataBuffer.slice(component.toComponentIndex(index), count));
+			index += count;
+		}
+		return new CompositeDataBuffer(this.dataBufferFactory, slices, (this.parent != null ? this.parent : this));
+	}
+
+	@Override
+	public ByteBuffer asByteBuffer() {
+		return asByteBuffer(this.readPosition, readableByteCount());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>If the given range spans more than one component, the bytes are
+	 * copied, and the returned buffer does not share data with this buffer.
+	 */
+	@Override
+	public ByteBuffer asByteBuffer(int index, int length) {
+		checkIndex(index, length);
+		if (length == 0) {
+			return ByteBuffer.allocate(0);
+		}
+		Component first = this.components.get(componentIndex(index));
+		if (index + length <= first.offset + first.length) {
+			return first.byteBuffer(index, length);
+		}
+		ByteBuffer copy = ByteBuffer.allocate(length);
+		int end = index + length;
+		while (index < end) {
+			Component component = this.components.get(componentIndex(index));
+			int count = Math.min(end, component.offset + component.length) - index;
+			copy.put(component.byteBuffer(index, count));
+			index += count;
+		}
+		((Buffer) copy).flip();
+		return copy;
+	}
+
+	@Override
+	public InputStream asInputStream() {
+		return new CompositeDataBufferInputStream(false);
+	}
+
+	@Override
+	public InputStream asInputStream(boolean releaseOnClose) {
+		return new CompositeDataBufferInputStream(releaseOnClose);
+	}
+
+	@Override
+	public OutputStream asOutputStream() {
+		return new CompositeDataBufferOutputStream();
+	}
+
+
+	@Override
+	public boolean isAllocated() {
+		return (this.parent != null ? this.parent.isAllocated() : this.refCount.get() > 0);
+	}
+
+	@Override
+	public PooledDataBuffer retain() {
+		if (this.parent != null) {
+			this.parent.retain();
+			return this;
+		}
+		while (true) {
+			int count = this.refCount.get();
+			if (count <= 0) {
+				throw new IllegalStateException("DataBuffer has already been released");
+			}
+			if (this.refCount.compareAndSet(count, count + 1)) {
+				return this;
+			}
+		}
+	}
+
+	@Override
+	public boolean release() {
+		if (this.parent != null) {
+			return this.parent.release();
+		}
+		while (true) {
+			int count = this.refCount.get();
+			if (count <= 0) {
+				throw new IllegalStateException("DataBuffer has already been released");
+			}
+			if (this.refCount.compareAndSet(count, count - 1)) {
+				if (count == 1) {
+					deallocate();
+					return true;
+				}
+				return false;
+			}
+		}
+	}
+
+	private void deallocate() {
+		for (Component component : this.components) {
+			DataBufferUtils.release(component.dataBuffer);
+		}
+		this.components.clear();
+		this.capacity = 0;
+		this.readPosition = 0;
+		this.writePosition = 0;
+		this.lastComponentIndex = 0;
+	}
+
+
+	@Override
+	public String toString() {
+		return String.format("CompositeDataBuffer (r: %d, w: %d, c: %d, components: %d)",
+				this.readPosition, this.writePosition, this.capacity, this.components.size());
+	}
+
+
+	private void checkIndex(int index, int length) {
+		assertIndex(index >= 0, "index %d must be >= 0", index);
+		assertIndex(length >= 0, "length %d must be >= 0", length);
+		assertIndex(index + length <= this.capacity, "index %d and length %d must be <= %d",
+				index, length, this.capacity);
+	}
+
+	private void assertIndex(boolean expression, String format, Object... args) {
+		if (!expression) {
+			String message = String.format(format, args);
+			throw new IndexOutOfBoundsException(message);
+		}
+	}
+
+
+	/**
+	 * A component buffer, of which the bytes between {@code index} and
+	 * {@code index + length} appear at {@code offset} in the composite.
+	 */
+	private static final class Component {
+
+		final DataBuffer dataBuffer;
+
+		final int index;
+
+		int length;
+
+		final int offset;
+
+		Component(DataBuffer dataBuffer, int index, int length, int offset) {
+			this.dataBuffer = dataBuffer;
+			this.index = index;
+			this.length = length;
+			this.offset = offset;
+		}
+
+		boolean contains(int compositeIndex) {
+			return (compositeIndex >= this.offset && compositeIndex < this.offset + this.length);
+		}
+
+		int toComponentIndex(int compositeIndex) {
+			return this.index + compositeIndex - this.offset;
+		}
+
+		byte getByte(int compositeIndex) {
+			return this.dataBuffer.getByte(toComponentIndex(compositeIndex));
+		}
+
+		ByteBuffer byteBuffer(int compositeIndex, int length) {
+			return this.dataBuffer.asByteBuffer(toComponentIndex(compositeIndex), length);
+		}
+	}
+
+
+	private class CompositeDataBufferInputStream extends InputStream {
+
+		private final boolean releaseOnClose;
+
+		private boolean closed;
+
+		CompositeDataBufferInputStream(boolean releaseOnClose) {
+			this.releaseOnClose = releaseOnClose;
+		}
+
+		@Override
+		public int available() {
+			return readableByteCount();
+		}
+
+		@Override
+		public int read() {
+			return (available() > 0 ? CompositeDataBuffer.this.read() & 0xFF : -1);
+		}
+
+		@Override
+		public int read(byte[] bytes, int off, int len) {
+			int available = available();
+			if (available > 0) {
+				len = Math.min(len, available);
+				CompositeDataBuffer.this.read(bytes, off, len);
+				return len;
+			}
+			else {
+				return -1;
+			}
+		}
+
+		@Override
+		public void close() {
+			if (this.releaseOnClose && !this.closed) {
+				this.closed = true;
+				release();
+			}
+		}
+	}
+
+
+	private class CompositeDataBufferOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			CompositeDataBuffer.this.write((byte) b);
+		}
+
+		@Override
+		public void write(byte[] bytes, int off, int len) throws IOException {
+			CompositeDataBuffer.this.write(bytes, off, len);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,7 @@ import java.nio.channels.CompletionHandler;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -432,14 +433,258 @@ public abstract class DataBufferUtils {
 	 * @since 5.0.3
 	 */
 	public static Mono<DataBuffer> join(Publisher<DataBuffer> dataBuffers) {
+		return join(dataBuffers, -1);
+	}
+
+	/**
+	 * Variant of {@link #join(Publisher)} that behaves the same way up until
+	 * the specified max number of bytes to buffer. Once the limit is exceeded,
+	 * {@link DataBufferLimitException} is raised, without waiting for the
+	 * rest of the input.
+	 * @param dataBuffers the data buffers that are to be composed
+	 * @param maxByteCount the max number of bytes to buffer, or -1 for unlimited
+	 * @return a buffer with the aggregated content, possibly an empty Mono if
+	 * the max number of bytes to buffer is exceeded.
+	 * @throws DataBufferLimitException if maxByteCount is exceeded
+	 * @since 5.2
+	 */
+	public static Mono<DataBuffer> join(Publisher<DataBuffer> dataBuffers, int maxByteCount) {
+		return collect(dataBuffers, maxByteCount).map(list -> list.get(0).factory().join(list));
+	}
+
+	/**
+	 * Variant of {@link #join(Publisher, int)} that does not copy the given
+	 * buffers when they come from a {@link DefaultDataBufferFactory}, but
+	 * returns a {@link CompositeDataBuffer} over them instead.
+	 * <p>This is meant for callers that consume the aggregate right away,
+	 * and that {@linkplain #release(DataBuffer) release} it once done.
+	 * @param dataBuffers the data buffers that are to be composed
+	 * @param maxByteCount the max number of bytes to buffer, or -1 for unlimited
+	 * @return a buffer with the aggregated content, possibly an empty Mono if
+	 * the max number of bytes to buffer is exceeded.
+	 * @throws DataBufferLimitException if maxByteCount is exceeded
+	 * @since 5.2
+	 * @see DefaultDataBufferFactory#compose(List)
+	 */
+	public static Mono<DataBuffer> compose(Publisher<DataBuffer> dataBuffers, int maxByteCount) {
+		return collect(dataBuffers, maxByteCount).map(list -> {
+			DataBufferFactory factory = list.get(0).factory();
+			return (factory instanceof DefaultDataBufferFactory ?
+					((DefaultDataBufferFactory) factory).compose(list) : factory.join(list));
+		});
+	}
+
+	private static Mono<List<DataBuffer>> collect(Publisher<DataBuffer> dataBuffers, int maxByteCount) {
 		Assert.notNull(dataBuffers, "'dataBuffers' must not be null");
 
-		return Flux.from(dataBuffers)
+		Flux<DataBuffer> source = Flux.from(dataBuffers);
+		if (maxByteCount >= 0) {
+			source = Flux.defer(() -> {
+				AtomicLong byteCount = new AtomicLong();
+				return Flux.from(dataBuffers).doOnNext(buffer -> {
+					if (byteCount.addAndGet(buffer.readableByteCount()) > maxByteCount) {
+						release(buffer);
+						throw new DataBufferLimitException("Exceeded limit on max bytes to buffer : " + maxByteCount);
+					}
+				});
+			});
+		}
+
+		return source
 				.collectList()
 				.filter(list -> !list.isEmpty())
-				.map(list -> list.get(0).factory().join(list))
 				.doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
+	}
+
+	/**
+	 * Return a {@link Matcher} for the given delimiter. The matcher can be
+	 * used to find the delimiter in a stream of data buffers, including
+	 * occurrences that are split over several buffers.
+	 * @param delimiter the delimiter bytes to find
+	 * @return the matcher
+	 * @since 5.2
+	 */
+	public static Matcher matcher(byte[] delimiter) {
+		Assert.isTrue(delimiter.length > 0, "Delimiter must not be empty");
+		return new KnuthMorrisPrattMatcher(delimiter);
+	}
+
+	/**
+	 * Return a {@link Matcher} for the given delimiters. The matcher can be
+	 * used to find the first of the delimiters in a stream of data buffers,
+	 * including occurrences that are split over several buffers. If several
+	 * delimiters end at the same byte, e.g. {@code \r\n} and {@code \n},
+	 * the longest one is matched.
+	 * @param delimiters the delimiters bytes to find
+	 * @return the matcher
+	 * @since 5.2
+	 */
+	public static Matcher matcher(byte[]... delimiters) {
+		Assert.isTrue(delimiters.length > 0, "Delimiters must not be empty");
+		if (delimiters.length == 1) {
+			return matcher(delimiters[0]);
+		}
+		KnuthMorrisPrattMatcher[] matchers = new KnuthMorrisPrattMatcher[delimiters.length];
+		for (int i = 0; i < delimiters.length; i++) {
+			Assert.isTrue(delimiters[i].length > 0, "Delimiter must not be empty");
+			matchers[i] = new KnuthMorrisPrattMatcher(delimiters[i]);
+		}
+		return new CompositeMatcher(matchers);
+	}
+
+
+	/**
+	 * Contract to find delimiter(s) against one or more data buffers that can
+	 * be passed one at a time to the {@link #match(DataBuffer)} method.
+	 * <p>A matcher is stateful: a partial match at the end of one buffer is
+	 * continued with the next buffer. Matchers are not thread-safe, and should
+	 * be used for a single stream of buffers only.
+	 * @since 5.2
+	 * @see #matcher(byte[])
+	 * @see #matcher(byte[]...)
+	 */
+	public interface Matcher {
+
+		/**
+		 * Find the first matching delimiter, starting at the
+		 * {@linkplain DataBuffer#readPosition() read position} of the given
+		 * buffer. The read position of the buffer is not changed.
+		 * @param dataBuffer the buffer in which to search for the delimiter
+		 * @return the index of the last byte of the matching delimiter,
+		 * or {@code -1} if not found
+		 */
+		int match(DataBuffer dataBuffer);
+
+		/**
+		 * Return the delimiter that was matched most recently.
+		 * @throws IllegalStateException if no delimiter has been matched yet
+		 */
+		byte[] delimiter();
+
+		/**
+		 * Reset the state of this matcher, discarding any partial match.
+		 */
+		void reset();
+	}
+
+
+	/**
+	 * Implementation of {@link Matcher} that uses the Knuth-Morris-Pratt
+	 * algorithm, so that every byte is inspected only once.
+	 */
+	private static class KnuthMorrisPrattMatcher implements Matcher {
+
+		private final byte[] delimiter;
+
+		private final int[] table;
+
+		private int matches = 0;
+
+		public KnuthMorrisPrattMatcher(byte[] delimiter) {
+			this.delimiter = delimiter;
+			this.table = longestSuffixPrefixTable(delimiter);
+		}
+
+		private static int[] longestSuffixPrefixTable(byte[] delimiter) {
+			int[] result = new int[delimiter.length];
+			for (int i = 1, j = 0; i < delimiter.length; i++) {
+				while (j > 0 && delimiter[i] != delimiter[j]) {
+					j = result[j - 1];
+				}
+				if (delimiter[i] == delimiter[j]) {
+					j++;
+				}
+				result[i] = j;
+			}
+			return result;
+		}
+
+		@Override
+		public int match(DataBuffer dataBuffer) {
+			for (int i = dataBuffer.readPosition(); i < dataBuffer.writePosition(); i++) {
+				if (match(dataBuffer.getByte(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Match the given byte, returning {@code true} if it completes the
+		 * delimiter, in which case the state is reset.
+		 */
+		boolean match(byte b) {
+			while (this.matches > 0 && b != this.delimiter[this.matches]) {
+				this.matches = this.table[this.matches - 1];
+			}
+			if (b == this.delimiter[this.matches]) {
+				this.matches++;
+				if (this.matches == this.delimiter.length) {
+					this.matches = 0;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public byte[] delimiter() {
+			return this.delimiter;
+		}
+
+		@Override
+		public void reset() {
+			this.matches = 0;
+		}
+	}
 
+
+	/**
+	 * Implementation of {@link Matcher} that matches several delimiters
+	 * at once, by feeding each byte to a matcher per delimiter.
+	 */
+	private static class CompositeMatcher implements Matcher {
+
+		private final KnuthMorrisPrattMatcher[] matchers;
+
+		@Nullable
+		private byte[] delimiter;
+
+		public CompositeMatcher(KnuthMorrisPrattMatcher[] matchers) {
+			this.matchers = matchers;
+		}
+
+		@Override
+		public int match(DataBuffer dataBuffer) {
+			for (int i = dataBuffer.readPosition(); i < dataBuffer.writePosition(); i++) {
+				byte b = dataBuffer.getByte(i);
+				byte[] longest = null;
+				for (KnuthMorrisPrattMatcher matcher : this.matchers) {
+					if (matcher.match(b) && (longest == null || matcher.delimiter().length > longest.length)) {
+						longest = matcher.delimiter();
+					}
+				}
+				if (longest != null) {
+					reset();
+					this.delimiter = longest;
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public byte[] delimiter() {
+			Assert.state(this.delimiter != null, "No delimiter matched yet");
+			return this.delimiter;
+		}
+
+		@Override
+		public void reset() {
+			for (KnuthMorrisPrattMatcher matcher : this.matchers) {
+				matcher.reset();
+			}
+		}
 	}
 
 
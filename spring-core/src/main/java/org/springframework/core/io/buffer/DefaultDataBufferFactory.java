@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -104,6 +104,7 @@ public class DefaultDataBufferFactory implements DataBufferFactory {
 	 * {@inheritDoc}
 	 * <p>This implementation creates a single {@link DefaultDataBuffer}
 	 * to contain the data in {@code dataBuffers}.
+	 * @see #compose(List)
 	 */
 	@Override
 	public DefaultDataBuffer join(List<? extends DataBuffer> dataBuffers) {
@@ -115,6 +116,19 @@ public class DefaultDataBufferFactory implements DataBufferFactory {
 		return result;
 	}
 
+	/**
+	 * Return a {@link CompositeDataBuffer} over the given buffers, as an
+	 * alternative to {@link #join(List)} that does not copy their content.
+	 * <p>The composite takes over the given buffers, and the caller must
+	 * {@linkplain DataBufferUtils#release(DataBuffer) release} it once done.
+	 * @param dataBuffers the buffers to compose
+	 * @return the composite buffer
+	 * @since 5.2
+	 */
+	public CompositeDataBuffer compose(List<? extends DataBuffer> dataBuffers) {
+		Assert.notEmpty(dataBuffers, "DataBuffer List must not be empty");
+		return new CompositeDataBuffer(this, dataBuffers);
+	}
 
 	@Override
 	public String toString() {
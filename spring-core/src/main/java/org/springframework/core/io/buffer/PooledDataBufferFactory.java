@@ -0,0 +1,648 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.io.buffer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * Pooling variant of {@link DefaultDataBufferFactory}, for use in runtimes
+ * without Netty, such as Servlet containers and Undertow, in order to reduce
+ * the allocation of new {@link ByteBuffer ByteBuffers} for every read and write.
+ *
+ * <p>Allocated buffers implement {@link PooledDataBuffer}, and must be
+ * {@linkplain DataBufferUtils#release(DataBuffer) released} once consumed, at
+ * which point their memory is returned to the pool. Memory is pooled in
+ * power-of-two size classes up to a {@linkplain #PooledDataBufferFactory(boolean, int)
+ * maximum pooled capacity}, beyond which buffers are allocated and freed as
+ * with {@link DefaultDataBufferFactory}. Each thread keeps a small cache of
+ * recently released memory per size class, in front of a shared pool that is
+ * limited by {@link #setMaxPooledMemory(long)}. Buffers that outgrow their
+ * initial capacity use the remainder of their size class first, before
+ * moving to memory of a larger size class. The memory they move away from is
+ * not returned to the pool, since slices of the buffer may still refer to it.
+ *
+ * <p>A buffer and its {@linkplain DataBuffer#slice(int, int) slices} share
+ * the same reference count, and must not be used after they have been
+ * released. Buffers that are garbage collected without being released can be
+ * reported through a {@linkplain #setLeakHandler(Consumer) leak handler}, and
+ * usage can be monitored through {@link #getActiveBufferCount()},
+ * {@link #getPooledMemory()} and related methods.
+ *
+ * <p>This factory can be passed to the {@code setDataBufferFactory} method of
+ * the reactive server adapters for Servlet containers and Undertow, and to the
+ * {@code JettyClientHttpConnector}.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class PooledDataBufferFactory extends DefaultDataBufferFactory {
+
+	/**
+	 * The default maximum capacity of pooled memory.
+	 * @see #PooledDataBufferFactory(boolean, int)
+	 */
+	public static final int DEFAULT_MAX_POOLED_CAPACITY = 64 * 1024;
+
+	/**
+	 * The default maximum amount of memory in the shared pool.
+	 * @see #setMaxPooledMemory(long)
+	 */
+	public static final long DEFAULT_MAX_POOLED_MEMORY = 32 * 1024 * 1024;
+
+	/**
+	 * The default number of buffers cached per thread and per size class.
+	 * @see #setThreadCacheSize(int)
+	 */
+	public static final int DEFAULT_THREAD_CACHE_SIZE = 4;
+
+	private static final int MIN_POOLED_CAPACITY = 64;
+
+	private static final int MIN_POOLED_CAPACITY_SHIFT = Integer.numberOfTrailingZeros(MIN_POOLED_CAPACITY);
+
+	private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+
+	private final boolean preferDirect;
+
+	private final int maxPooledCapacity;
+
+	private final Queue<ByteBuffer>[] sharedPool;
+
+	private final ThreadLocal<ThreadCache> threadCaches;
+
+	private volatile int threadCacheSize = DEFAULT_THREAD_CACHE_SIZE;
+
+	private volatile long maxPooledMemory = DEFAULT_MAX_POOLED_MEMORY;
+
+	@Nullable
+	private volatile Consumer<Throwable> leakHandler;
+
+	private final ReferenceQueue<PooledDefaultDataBuffer> leakQueue = new ReferenceQueue<>();
+
+	private final Set<LeakTracker> leakTrackers = ConcurrentHashMap.newKeySet();
+
+	private final LongAdder allocationCount = new LongAdder();
+
+	private final LongAdder reuseCount = new LongAdder();
+
+	private final LongAdder leakCount = new LongAdder();
+
+	private final AtomicInteger activeBufferCount = new AtomicInteger();
+
+	private final AtomicLong activeMemory = new AtomicLong();
+
+	private final AtomicLong pooledMemory = new AtomicLong();
+
+
+	/**
+	 * Create a new {@code PooledDataBufferFactory} for direct buffers.
+	 */
+	public PooledDataBufferFactory() {
+		this(true);
+	}
+
+	/**
+	 * Create a new {@code PooledDataBufferFactory}, indicating whether direct
+	 * buffers should be created.
+	 * @param preferDirect {@code true} if direct buffers are to be preferred;
+	 * {@code false} otherwise
+	 */
+	public PooledDataBufferFactory(boolean preferDirect) {
+		this(preferDirect, DEFAULT_MAX_POOLED_CAPACITY);
+	}
+
+	/**
+	 * Create a new {@code PooledDataBufferFactory}, indicating whether direct
+	 * buffers should be created, and up to which capacity memory is pooled.
+	 * @param preferDirect {@code true} if direct buffers are to be preferred;
+	 * {@code false} otherwise
+	 * @param maxPooledCapacity the largest capacity for which memory is pooled,
+	 * which must be a power of two of at least 64
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	public PooledDataBufferFactory(boolean preferDirect, int maxPooledCapacity) {
+		super(preferDirect);
+		Assert.isTrue(maxPooledCapacity >= MIN_POOLED_CAPACITY && Integer.bitCount(maxPooledCapacity) == 1,
+				"'maxPooledCapacity' must be a power of two of at least " + MIN_POOLED_CAPACITY);
+		this.preferDirect = preferDirect;
+		this.maxPooledCapacity = maxPooledCapacity;
+		int sizeClassCount = sizeClass(maxPooledCapacity) + 1;
+		this.sharedPool = new Queue[sizeClassCount];
+		for (int i = 0; i < sizeClassCount; i++) {
+			this.sharedPool[i] = new ConcurrentLinkedQueue<>();
+		}
+		this.threadCaches = ThreadLocal.withInitial(() -> new ThreadCache(sizeClassCount));
+	}
+
+
+	/**
+	 * Set the number of buffers to cache per thread for each size class, in
+	 * front of the shared pool. Set this to 0 in order to use the shared pool
+	 * only, e.g. when buffers are typically released by a different thread
+	 * than the one that allocated them.
+	 * <p>By default this is set to {@value #DEFAULT_THREAD_CACHE_SIZE}.
+	 * @param threadCacheSize the number of buffers to cache per size class
+	 */
+	public void setThreadCacheSize(int threadCacheSize) {
+		Assert.isTrue(threadCacheSize >= 0, "'threadCacheSize' must be >= 0");
+		this.threadCacheSize = threadCacheSize;
+	}
+
+	/**
+	 * Return the configured number of buffers to cache per thread and size class.
+	 */
+	public int getThreadCacheSize() {
+		return this.threadCacheSize;
+	}
+
+	/**
+	 * Set the maximum amount of released memory to keep in the shared pool.
+	 * Memory that is released beyond this limit is left to the garbage collector.
+	 * <p>By default this is set to 32M.
+	 * @param maxPooledMemory the maximum number of bytes to pool
+	 */
+	public void setMaxPooledMemory(long maxPooledMemory) {
+		Assert.isTrue(maxPooledMemory >= 0, "'maxPooledMemory' must be >= 0");
+		this.maxPooledMemory = maxPooledMemory;
+	}
+
+	/**
+	 * Return the configured maximum amount of memory in the shared pool.
+	 */
+	public long getMaxPooledMemory() {
+		return this.maxPooledMemory;
+	}
+
+	/**
+	 * Set a handler to be notified of buffers that were garbage collected
+	 * without having been released. The handler receives an exception whose
+	 * cause records the stack trace of the allocation of the leaked buffer.
+	 * <p>Setting a handler enables leak detection, which involves recording a
+	 * stack trace for each allocation, and is therefore meant for development
+	 * and testing. By default no handler is set, and leaks are not detected.
+	 * @param leakHandler the handler to notify, or {@code null} to disable
+	 * leak detection
+	 */
+	public void setLeakHandler(@Nullable Consumer<Throwable> leakHandler) {
+		this.leakHandler = leakHandler;
+	}
+
+
+	/**
+	 * Return the number of buffers allocated by this factory so far.
+	 */
+	public long getAllocationCount() {
+		return this.allocationCount.sum();
+	}
+
+	/**
+	 * Return the number of times memory was taken from the pool rather than
+	 * newly allocated, for the allocation or the growth of a buffer.
+	 */
+	public long getReuseCount() {
+		return this.reuseCount.sum();
+	}
+
+	/**
+	 * Return the number of buffers that have been allocated and not released yet.
+	 */
+	public int getActiveBufferCount() {
+		return this.activeBufferCount.get();
+	}
+
+	/**
+	 * Return the amount of memory held by buffers that have not been released yet.
+	 */
+	public long getActiveMemory() {
+		return this.activeMemory.get();
+	}
+
+	/**
+	 * Return the amount of released memory held in the shared pool,
+	 * not including the memory cached per thread.
+	 */
+	public long getPooledMemory() {
+		return this.pooledMemory.get();
+	}
+
+	/**
+	 * Return the number of leaked buffers detected so far.
+	 * @see #setLeakHandler(Consumer)
+	 */
+	public long getLeakCount() {
+		return this.leakCount.sum();
+	}
+
+
+	@Override
+	public DefaultDataBuffer allocateBuffer(int initialCapacity) {
+		Assert.isTrue(initialCapacity >= 0, "'initialCapacity' must be >= 0");
+		Consumer<Throwable> leakHandler = this.leakHandler;
+		if (leakHandler != null) {
+			reportLeaks(leakHandler);
+		}
+		ByteBuffer chunk = allocateChunk(initialCapacity);
+		PooledDefaultDataBuffer buffer = new PooledDefaultDataBuffer(this, chunk, initialCapacity);
+		this.allocationCount.increment();
+		this.activeBufferCount.incrementAndGet();
+		if (leakHandler != null) {
+			LeakTracker tracker = new LeakTracker(buffer, this.leakQueue, chunk.capacity());
+			this.leakTrackers.add(tracker);
+			buffer.leakTracker = tracker;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Return memory with at least the given capacity, taken from the
+	 * cache of the current thread or from the shared pool if possible.
+	 */
+	ByteBuffer allocateChunk(int capacity) {
+		ByteBuffer chunk = null;
+		int sizeClass = sizeClass(capacity);
+		if (sizeClass != -1) {
+			if (this.threadCacheSize > 0) {
+				chunk = this.threadCaches.get().poll(sizeClass);
+			}
+			if (chunk == null) {
+				chunk = this.sharedPool[sizeClass].poll();
+				if (chunk != null) {
+					this.pooledMemory.addAndGet(-chunk.capacity());
+				}
+			}
+			if (chunk != null) {
+				this.reuseCount.increment();
+				((Buffer) chunk).clear();
+			}
+			else {
+				chunk = allocateNative(MIN_POOLED_CAPACITY << sizeClass);
+			}
+		}
+		else {
+			chunk = allocateNative(capacity);
+		}
+		this.activeMemory.addAndGet(chunk.capacity());
+		return chunk;
+	}
+
+	/**
+	 * Return memory obtained from {@link #allocateChunk(int)} to the cache
+	 * of the current thread or to the shared pool, if it is poolable and there
+	 * is room for it.
+	 */
+	void releaseChunk(ByteBuffer chunk) {
+		int capacity = chunk.capacity();
+		this.activeMemory.addAndGet(-capacity);
+		int sizeClass = sizeClass(capacity);
+		if (sizeClass == -1 || (MIN_POOLED_CAPACITY << sizeClass) != capacity) {
+			return;
+		}
+		int threadCacheSize = this.threadCacheSize;
+		if (threadCacheSize > 0 && this.threadCaches.get().offer(sizeClass, chunk, threadCacheSize)) {
+			return;
+		}
+		if (this.pooledMemory.addAndGet(capacity) <= this.maxPooledMemory) {
+			this.sharedPool[sizeClass].offer(chunk);
+		}
+		else {
+			this.pooledMemory.addAndGet(-capacity);
+		}
+	}
+
+	/**
+	 * Stop accounting for memory obtained from {@link #allocateChunk(int)}
+	 * without making it available for reuse.
+	 */
+	void discardChunk(ByteBuffer chunk) {
+		this.activeMemory.addAndGet(-chunk.capacity());
+	}
+
+	private ByteBuffer allocateNative(int capacity) {
+		return (this.preferDirect ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity));
+	}
+
+	/**
+	 * Return the index of the smallest size class that fits the given
+	 * capacity, or -1 if the capacity exceeds the largest size class.
+	 */
+	private int sizeClass(int capacity) {
+		if (capacity > this.maxPooledCapacity) {
+			return -1;
+		}
+		int size = Math.max(capacity, MIN_POOLED_CAPACITY);
+		return (Integer.SIZE - Integer.numberOfLeadingZeros(size - 1)) - MIN_POOLED_CAPACITY_SHIFT;
+	}
+
+	private void deallocated(PooledDefaultDataBuffer buffer, ByteBuffer chunk) {
+		LeakTracker tracker = buffer.leakTracker;
+		if (tracker != null) {
+			tracker.clear();
+			this.leakTrackers.remove(tracker);
+		}
+		this.activeBufferCount.decrementAndGet();
+		releaseChunk(chunk);
+	}
+
+	private void reportLeaks(Consumer<Throwable> leakHandler) {
+		Reference<? extends PooledDefaultDataBuffer> reference;
+		while ((reference = this.leakQueue.poll()) != null) {
+			LeakTracker tracker = (LeakTracker) reference;
+			if (this.leakTrackers.remove(tracker)) {
+				// The memory of a leaked buffer cannot be safely reused,
+				// since views of it may still be referenced elsewhere
+				this.leakCount.increment();
+				this.activeBufferCount.decrementAndGet();
+				this.activeMemory.addAndGet(-tracker.chunkCapacity);
+				leakHandler.accept(new IllegalStateException("DataBuffer was garbage collected " +
+						"without having been released", tracker.allocationSite));
+			}
+		}
+	}
+
+
+	@Override
+	public String toString() {
+		return "PooledDataBufferFactory (preferDirect=" + this.preferDirect +
+				", maxPooledCapacity=" + this.maxPooledCapacity + ")";
+	}
+
+
+	/**
+	 * Return a view of the given chunk with the given capacity.
+	 */
+	private static ByteBuffer view(ByteBuffer chunk, int capacity) {
+		ByteBuffer duplicate = chunk.duplicate();
+		((Buffer) duplicate).clear().limit(capacity);
+		return duplicate.slice();
+	}
+
+
+	/**
+	 * Pooled {@link DefaultDataBuffer}, backed by a view of a chunk of memory
+	 * that may be larger than the capacity of the buffer.
+	 */
+	private static class PooledDefaultDataBuffer extends DefaultDataBuffer implements PooledDataBuffer {
+
+		private final PooledDataBufferFactory factory;
+
+		private final AtomicInteger refCount = new AtomicInteger(1);
+
+		private ByteBuffer chunk;
+
+		@Nullable
+		private LeakTracker leakTracker;
+
+		PooledDefaultDataBuffer(PooledDataBufferFactory factory, ByteBuffer chunk, int capacity) {
+			super(factory, view(chunk, capacity));
+			this.factory = factory;
+			this.chunk = chunk;
+		}
+
+		@Override
+		public boolean isAllocated() {
+			return this.refCount.get() > 0;
+		}
+
+		@Override
+		public PooledDataBuffer retain() {
+			while (true) {
+				int count = this.refCount.get();
+				if (count <= 0) {
+					throw new IllegalStateException("DataBuffer has already been released");
+				}
+				if (this.refCount.compareAndSet(count, count + 1)) {
+					return this;
+				}
+			}
+		}
+
+		@Override
+		public boolean release() {
+			while (true) {
+				int count = this.refCount.get();
+				if (count <= 0) {
+					throw new IllegalStateException("DataBuffer has already been released");
+				}
+				if (this.refCount.compareAndSet(count, count - 1)) {
+					if (count == 1) {
+						deallocate();
+						return true;
+					}
+					return false;
+				}
+			}
+		}
+
+		private void deallocate() {
+			ByteBuffer chunk = this.chunk;
+			this.chunk = EMPTY_BUFFER;
+			setNativeBuffer(EMPTY_BUFFER);
+			readPosition(0);
+			writePosition(0);
+			this.factory.deallocated(this, chunk);
+		}
+
+		@Override
+		public DefaultDataBuffer capacity(int newCapacity) {
+			Assert.state(isAllocated(), "DataBuffer has already been released");
+			ByteBuffer oldChunk = this.chunk;
+			if (newCapacity > 0 && newCapacity <= oldChunk.capacity()) {
+				// Resize within the current chunk, without copying
+				int readPosition = readPosition();
+				int writePosition = writePosition();
+				setNativeBuffer(view(oldChunk, newCapacity));
+				if (readPosition >= newCapacity) {
+					readPosition(newCapacity);
+					writePosition(newCapacity);
+				}
+				else if (writePosition > newCapacity) {
+					writePosition(newCapacity);
+				}
+				return this;
+			}
+			super.capacity(newCapacity);
+			if (this.chunk != oldChunk) {
+				LeakTracker tracker = this.leakTracker;
+				if (tracker != null) {
+					tracker.chunkCapacity = this.chunk.capacity();
+				}
+				// Slices and ByteBuffer views may still refer to the old chunk,
+				// so leave it to the garbage collector rather than the pool
+				this.factory.discardChunk(oldChunk);
+			}
+			return this;
+		}
+
+		@Override
+		ByteBuffer allocate(int capacity, boolean direct) {
+			ByteBuffer chunk = this.factory.allocateChunk(capacity);
+			this.chunk = chunk;
+			return view(chunk, capacity);
+		}
+
+		@Override
+		public DefaultDataBuffer slice(int index, int length) {
+			return new PooledSlice(this, asByteBuffer(index, length));
+		}
+
+		@Override
+		public InputStream asInputStream(boolean releaseOnClose) {
+			return (releaseOnClose ? new ReleasingInputStream(asInputStream(), this) : asInputStream());
+		}
+	}
+
+
+	/**
+	 * Slice of a {@link PooledDefaultDataBuffer}, sharing its reference count.
+	 */
+	private static final class PooledSlice extends DefaultDataBuffer implements PooledDataBuffer {
+
+		private final PooledDefaultDataBuffer parent;
+
+		PooledSlice(PooledDefaultDataBuffer parent, ByteBuffer slice) {
+			super(parent.factory, slice);
+			writePosition(slice.remaining());
+			this.parent = parent;
+		}
+
+		@Override
+		public boolean isAllocated() {
+			return this.parent.isAllocated();
+		}
+
+		@Override
+		public PooledDataBuffer retain() {
+			this.parent.retain();
+			return this;
+		}
+
+		@Override
+		public boolean release() {
+			return this.parent.release();
+		}
+
+		@Override
+		public DefaultDataBuffer capacity(int newCapacity) {
+			throw new UnsupportedOperationException("Changing the capacity of a sliced buffer is not supported");
+		}
+
+		@Override
+		public DefaultDataBuffer slice(int index, int length) {
+			return new PooledSlice(this.parent, asByteBuffer(index, length));
+		}
+
+		@Override
+		public InputStream asInputStream(boolean releaseOnClose) {
+			return (releaseOnClose ? new ReleasingInputStream(asInputStream(), this) : asInputStream());
+		}
+	}
+
+
+	/**
+	 * {@code InputStream} that releases a buffer when closed.
+	 */
+	private static final class ReleasingInputStream extends FilterInputStream {
+
+		private final PooledDataBuffer buffer;
+
+		private boolean closed;
+
+		ReleasingInputStream(InputStream inputStream, PooledDataBuffer buffer) {
+			super(inputStream);
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!this.closed) {
+				this.closed = true;
+				this.buffer.release();
+			}
+		}
+	}
+
+
+	/**
+	 * Per-thread cache of released memory, by size class.
+	 */
+	private static final class ThreadCache {
+
+		private final ArrayDeque<ByteBuffer>[] chunks;
+
+		@SuppressWarnings({"rawtypes", "unchecked"})
+		ThreadCache(int sizeClassCount) {
+			this.chunks = new ArrayDeque[sizeClassCount];
+		}
+
+		@Nullable
+		ByteBuffer poll(int sizeClass) {
+			ArrayDeque<ByteBuffer> chunks = this.chunks[sizeClass];
+			return (chunks != null ? chunks.pollFirst() : null);
+		}
+
+		boolean offer(int sizeClass, ByteBuffer chunk, int maxSize) {
+			ArrayDeque<ByteBuffer> chunks = this.chunks[sizeClass];
+			if (chunks == null) {
+				chunks = new ArrayDeque<>(maxSize);
+				this.chunks[sizeClass] = chunks;
+			}
+			if (chunks.size() >= maxSize) {
+				return false;
+			}
+			chunks.offerFirst(chunk);
+			return true;
+		}
+	}
+
+
+	/**
+	 * Weak reference to an allocated buffer, recording where it was allocated.
+	 */
+	private static final class LeakTracker extends WeakReference<PooledDefaultDataBuffer> {
+
+		private final Throwable allocationSite = new Throwable("DataBuffer allocation site");
+
+		private volatile int chunkCapacity;
+
+		LeakTracker(PooledDefaultDataBuffer buffer, ReferenceQueue<PooledDefaultDataBuffer> queue,
+				int chunkCapacity) {
+
+			super(buffer, queue);
+			this.chunkCapacity = chunkCapacity;
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.core.codec;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,7 @@ import reactor.test.StepVerifier;
 
 import org.springframework.core.ResolvableType;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.lang.Nullable;
 import org.springframework.util.MimeType;
 import org.springframework.util.MimeTypeUtils;
@@ -174,6 +176,59 @@ public class StringDecoderTests extends AbstractDecoderTestCase<StringDecoder> {
 				.verify());
 	}
 
+	@Test
+	public void decodeDelimiterSplitOverBuffers() {
+		Flux<DataBuffer> input = Flux.just(
+				stringBuffer("abc\r"),
+				stringBuffer("\ndef\r"),
+				stringBuffer("\n\r"),
+				stringBuffer("\nghi"));
+
+		testDecode(input, String.class, step -> step
+				.expectNext("abc")
+				.expectNext("def")
+				.expectNext("")
+				.expectNext("ghi")
+				.verifyComplete());
+	}
+
+	@Test
+	public void decodeCustomDelimiters() {
+		this.decoder = StringDecoder.allMimeTypes(Arrays.asList("||", "##"), true);
+		Flux<DataBuffer> input = Flux.just(
+				stringBuffer("abc|"),
+				stringBuffer("|def#"),
+				stringBuffer("#ghi|"),
+				stringBuffer("#jkl"));
+
+		testDecode(input, String.class, step -> step
+				.expectNext("abc")
+				.expectNext("def")
+				.expectNext("ghi|#jkl")
+				.verifyComplete());
+	}
+
+	@Test
+	public void maxInMemoryLimit() {
+		Flux<DataBuffer> input = Flux.just(
+				stringBuffer("abc\n"), stringBuffer("defg\n"),
+				stringBuffer("hi"), stringBuffer("jkl"), stringBuffer("mnop"));
+
+		this.decoder.setMaxInMemorySize(5);
+		testDecode(input, String.class, step -> step
+				.expectNext("abc", "defg")
+				.verifyError(DataBufferLimitException.class));
+	}
+
+	@Test
+	public void maxInMemoryLimitDecodeToMono() {
+		Flux<DataBuffer> input = Flux.just(stringBuffer("abc"), stringBuffer("def"));
+
+		this.decoder.setMaxInMemorySize(5);
+		testDecodeToMono(input, String.class, step -> step
+				.verifyError(DataBufferLimitException.class));
+	}
+
 	@Test
 	public void decodeEmptyFlux() {
 		Flux<DataBuffer> input = Flux.empty();
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.io.buffer;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.util.StreamUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CompositeDataBuffer}.
+ *
+ * @author agent (agent@local)
+ */
+public class CompositeDataBufferTests {
+
+	private final PooledDataBufferFactory bufferFactory = new PooledDataBufferFactory();
+
+
+	@After
+	public void checkForLeaks() {
+		assertEquals(0, this.bufferFactory.getActiveBufferCount());
+	}
+
+
+	@Test
+	public void read() {
+		CompositeDataBuffer buffer = composite("foo", "bar", "baz");
+		assertEquals(3, buffer.getComponentCount());
+		assertEquals(9, buffer.readableByteCount());
+		assertEquals('b', buffer.getByte(3));
+		assertEquals('z', buffer.getByte(8));
+
+		byte[] bytes = new byte[5];
+		buffer.read(bytes);
+		assertEquals("fooba", new String(bytes, StandardCharsets.UTF_8));
+		assertEquals('r', buffer.read());
+		assertEquals(3, buffer.readableByteCount());
+
+		release(buffer);
+	}
+
+	@Test
+	public void componentsUseReadableBytes() {
+		DataBuffer foo = stringBuffer("xfoo");
+		foo.read();
+		CompositeDataBuffer buffer = new CompositeDataBuffer(this.bufferFactory, Arrays.asList(foo, stringBuffer("bar")));
+		assertEquals("foobar", toString(buffer));
+
+		release(buffer);
+	}
+
+	@Test
+	public void indexOf() {
+		CompositeDataBuffer buffer = composite("foo", "bar", "baz");
+		assertEquals(3, buffer.indexOf(b -> b == 'b', 0));
+		assertEquals(6, buffer.indexOf(b -> b == 'b', 4));
+		assertEquals(-1, buffer.indexOf(b -> b == 'x', 0));
+		assertEquals(6, buffer.lastIndexOf(b -> b == 'b', 8));
+		assertEquals(3, buffer.lastIndexOf(b -> b == 'b', 5));
+		assertEquals(-1, buffer.lastIndexOf(b -> b == 'z', 7));
+
+		release(buffer);
+	}
+
+	@Test
+	public void asByteBufferWithinComponentSharesData() {
+		CompositeDataBuffer buffer = composite("foo", "bar");
+		ByteBuffer byteBuffer = buffer.asByteBuffer(3, 3);
+		byteBuffer.put(0, (byte) 'c');
+		assertEquals("foocar", toString(buffer));
+
+		release(buffer);
+	}
+
+	@Test
+	public void asByteBufferAcrossComponentsCopies() {
+		CompositeDataBuffer buffer = composite("foo", "bar", "baz");
+		ByteBuffer byteBuffer = buffer.asByteBuffer(2, 5);
+		assertEquals(5, byteBuffer.remaining());
+		byte[] bytes = new byte[5];
+		byteBuffer.get(bytes);
+		assertEquals("obarb", new String(bytes, StandardCharsets.UTF_8));
+
+		release(buffer);
+	}
+
+	@Test
+	public void asInputStream() throws Exception {
+		CompositeDataBuffer buffer = composite("foo", "bar", "baz");
+		try (InputStream inputStream = buffer.asInputStream(true)) {
+			assertEquals('f', inputStream.read());
+			assertEquals("oobarbaz", StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8));
+			assertEquals(-1, inputStream.read());
+		}
+		assertFalse(buffer.isAllocated());
+	}
+
+	@Test
+	public void writeAddsComponent() {
+		CompositeDataBuffer buffer = composite("foo", "bar");
+		assertEquals(0, buffer.writableByteCount());
+		buffer.write(" baz".getBytes(StandardCharsets.UTF_8));
+		buffer.write(" qux", StandardCharsets.UTF_8);
+		assertEquals(3, buffer.getComponentCount());
+		assertEquals("foobar baz qux", toString(buffer));
+
+		release(buffer);
+	}
+
+	@Test
+	public void decreaseCapacity() {
+		CompositeDataBuffer buffer = composite("foo", "bar", "baz");
+		buffer.capacity(4);
+		assertEquals(2, buffer.getComponentCount());
+		assertEquals(4, buffer.capacity());
+		assertEquals("foob", toString(buffer));
+
+		release(buffer);
+	}
+
+	@Test
+	public void sliceSharesReferenceCount() {
+		CompositeDataBuffer buffer = composite("foo", "bar", "baz");
+		DataBuffer slice = buffer.slice(2, 5);
+		assertEquals("obarb", toString(slice));
+
+		DataBufferUtils.retain(slice);
+		assertFalse(DataBufferUtils.release(buffer));
+		assertTrue(buffer.isAllocated());
+		assertTrue(DataBufferUtils.release(slice));
+		assertFalse(buffer.isAllocated());
+	}
+
+	@Test
+	public void releaseReleasesComponents() {
+		CompositeDataBuffer buffer = composite("foo", "bar");
+		assertEquals(2, this.bufferFactory.getActiveBufferCount());
+		DataBufferUtils.retain(buffer);
+		assertFalse(DataBufferUtils.release(buffer));
+		assertEquals(2, this.bufferFactory.getActiveBufferCount());
+		assertTrue(DataBufferUtils.release(buffer));
+	}
+
+
+	private CompositeDataBuffer composite(String... values) {
+		DataBuffer[] buffers = new DataBuffer[values.length];
+		for (int i = 0; i < values.length; i++) {
+			buffers[i] = stringBuffer(values[i]);
+		}
+		return new CompositeDataBuffer(this.bufferFactory, Arrays.asList(buffers));
+	}
+
+	private DataBuffer stringBuffer(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		DataBuffer buffer = this.bufferFactory.allocateBuffer(bytes.length);
+		buffer.write(bytes);
+		return buffer;
+	}
+
+	private static String toString(DataBuffer buffer) {
+		byte[] bytes = new byte[buffer.readableByteCount()];
+		buffer.slice(buffer.readPosition(), bytes.length).read(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void release(DataBuffer buffer) {
+		assertTrue(DataBufferUtils.release(buffer));
+	}
+
+}
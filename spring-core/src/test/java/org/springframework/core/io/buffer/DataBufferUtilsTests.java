@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -708,6 +708,64 @@ public class DataBufferUtilsTests extends AbstractDataBufferAllocatingTestCase {
 				.verifyComplete();
 	}
 
+	@Test
+	public void joinWithLimit() {
+		DataBuffer foo = stringBuffer("foo");
+		DataBuffer bar = stringBuffer("bar");
+		DataBuffer baz = stringBuffer("baz");
+		Flux<DataBuffer> flux = Flux.just(foo, bar, baz);
+		Mono<DataBuffer> result = DataBufferUtils.join(flux, 8);
+
+		StepVerifier.create(result)
+				.verifyError(DataBufferLimitException.class);
+	}
+
+	@Test
+	public void joinWithinLimit() {
+		DataBuffer foo = stringBuffer("foo");
+		DataBuffer bar = stringBuffer("bar");
+		Flux<DataBuffer> flux = Flux.just(foo, bar);
+		Mono<DataBuffer> result = DataBufferUtils.join(flux, 6);
+
+		StepVerifier.create(result)
+				.consumeNextWith(dataBuffer -> {
+					assertEquals("foobar", DataBufferTestUtils.dumpString(dataBuffer, StandardCharsets.UTF_8));
+					release(dataBuffer);
+				})
+				.verifyComplete();
+	}
+
+	@Test
+	public void compose() {
+		DataBuffer foo = stringBuffer("foo");
+		DataBuffer bar = stringBuffer("bar");
+		DataBuffer baz = stringBuffer("baz");
+		Flux<DataBuffer> flux = Flux.just(foo, bar, baz);
+		Mono<DataBuffer> result = DataBufferUtils.compose(flux, -1);
+
+		StepVerifier.create(result)
+				.consumeNextWith(dataBuffer -> {
+					assertEquals(this.bufferFactory instanceof DefaultDataBufferFactory,
+							dataBuffer instanceof CompositeDataBuffer);
+					assertEquals("foobarbaz",
+							DataBufferTestUtils.dumpString(dataBuffer, StandardCharsets.UTF_8));
+					release(dataBuffer);
+				})
+				.verifyComplete();
+	}
+
+	@Test
+	public void composeWithLimit() {
+		DataBuffer foo = stringBuffer("foo");
+		DataBuffer bar = stringBuffer("bar");
+		DataBuffer baz = stringBuffer("baz");
+		Flux<DataBuffer> flux = Flux.just(foo, bar, baz);
+		Mono<DataBuffer> result = DataBufferUtils.compose(flux, 8);
+
+		StepVerifier.create(result)
+				.verifyError(DataBufferLimitException.class);
+	}
+
 	@Test
 	public void joinErrors() {
 		DataBuffer foo = stringBuffer("foo");
@@ -734,6 +792,86 @@ public class DataBufferUtilsTests extends AbstractDataBufferAllocatingTestCase {
 				.verify();
 	}
 
+	@Test
+	public void matcher() {
+		DataBuffer foo = stringBuffer("foo");
+		DataBuffer bar = stringBuffer("bar");
 
+		byte[] delims = "ooba".getBytes(StandardCharsets.UTF_8);
+		DataBufferUtils.Matcher matcher = DataBufferUtils.matcher(delims);
+		int result = matcher.match(foo);
+		assertEquals(-1, result);
+		result = matcher.match(bar);
+		assertEquals(1, result);
+		assertArrayEquals(delims, matcher.delimiter());
+
+		release(foo, bar);
+	}
+
+	@Test
+	public void matcherRepeatedPrefix() {
+		DataBuffer buffer = stringBuffer("aaab aab");
+
+		DataBufferUtils.Matcher matcher = DataBufferUtils.matcher("aab".getBytes(StandardCharsets.UTF_8));
+		assertEquals(3, matcher.match(buffer));
+		buffer.readPosition(4);
+		assertEquals(7, matcher.match(buffer));
+		buffer.readPosition(8);
+		assertEquals(-1, matcher.match(buffer));
+
+		release(buffer);
+	}
+
+	@Test
+	public void matcherSingleByteBuffers() {
+		byte[] bytes = "xxabcabcabd".getBytes(StandardCharsets.UTF_8);
+		DataBufferUtils.Matcher matcher = DataBufferUtils.matcher("abcabd".getBytes(StandardCharsets.UTF_8));
+		for (int i = 0; i < bytes.length; i++) {
+			DataBuffer buffer = this.bufferFactory.allocateBuffer(1);
+			buffer.write(bytes[i]);
+			assertEquals(i == bytes.length - 1 ? 0 : -1, matcher.match(buffer));
+			release(buffer);
+		}
+	}
+
+	@Test
+	public void matcherReset() {
+		DataBuffer foo = stringBuffer("foo");
+		DataBuffer bar = stringBuffer("bar");
+
+		DataBufferUtils.Matcher matcher = DataBufferUtils.matcher("ooba".getBytes(StandardCharsets.UTF_8));
+		assertEquals(-1, matcher.match(foo));
+		matcher.reset();
+		assertEquals(-1, matcher.match(bar));
+
+		release(foo, bar);
+	}
+
+	@Test
+	public void multipleDelimitersMatcher() {
+		DataBuffer foo = stringBuffer("foo\r");
+		DataBuffer bar = stringBuffer("\nbar\nbaz");
+
+		byte[] crlf = "\r\n".getBytes(StandardCharsets.UTF_8);
+		byte[] lf = "\n".getBytes(StandardCharsets.UTF_8);
+		DataBufferUtils.Matcher matcher = DataBufferUtils.matcher(lf, crlf);
+		assertEquals(-1, matcher.match(foo));
+		assertEquals(0, matcher.match(bar));
+		assertArrayEquals(crlf, matcher.delimiter());
+
+		bar.readPosition(1);
+		assertEquals(4, matcher.match(bar));
+		assertArrayEquals(lf, matcher.delimiter());
+
+		bar.readPosition(5);
+		assertEquals(-1, matcher.match(bar));
+
+		release(foo, bar);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void multipleDelimitersMatcherNoMatchYet() {
+		DataBufferUtils.matcher(new byte[] {'a'}, new byte[] {'b'}).delimiter();
+	}
 
 }
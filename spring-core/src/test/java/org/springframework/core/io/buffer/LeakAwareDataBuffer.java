@@ -79,7 +79,11 @@ class LeakAwareDataBuffer implements PooledDataBuffer {
 	@Override
 	public boolean release() {
 		this.refCount--;
-		return this.refCount == 0;
+		if (this.refCount == 0) {
+			DataBufferUtils.release(this.delegate);
+			return true;
+		}
+		return false;
 	}
 
 	// delegation
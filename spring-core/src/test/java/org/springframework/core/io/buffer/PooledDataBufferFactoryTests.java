@@ -0,0 +1,234 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.io.buffer;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PooledDataBufferFactory}.
+ *
+ * @author agent (agent@local)
+ */
+public class PooledDataBufferFactoryTests {
+
+	private final PooledDataBufferFactory factory = new PooledDataBufferFactory(false, 1024);
+
+
+	@Test
+	public void allocatedBuffersArePooled() {
+		DataBuffer buffer = this.factory.allocateBuffer(100);
+		assertTrue(buffer instanceof PooledDataBuffer);
+		assertEquals(100, buffer.capacity());
+		assertEquals(1, this.factory.getActiveBufferCount());
+		assertEquals(128, this.factory.getActiveMemory());
+
+		assertTrue(DataBufferUtils.release(buffer));
+		assertFalse(((PooledDataBuffer) buffer).isAllocated());
+		assertEquals(0, this.factory.getActiveBufferCount());
+		assertEquals(0, this.factory.getActiveMemory());
+	}
+
+	@Test
+	public void memoryIsReused() {
+		DataBuffer buffer = this.factory.allocateBuffer(100);
+		ByteBuffer memory = ((DefaultDataBuffer) buffer).getNativeBuffer();
+		memory.put(0, (byte) 'a');
+		DataBufferUtils.release(buffer);
+
+		buffer = this.factory.allocateBuffer(120);
+		assertEquals(1, this.factory.getReuseCount());
+		assertEquals(2, this.factory.getAllocationCount());
+		assertEquals('a', ((DefaultDataBuffer) buffer).getNativeBuffer().get(0));
+		DataBufferUtils.release(buffer);
+
+		buffer = this.factory.allocateBuffer(200);
+		assertEquals(1, this.factory.getReuseCount());
+		DataBufferUtils.release(buffer);
+	}
+
+	@Test
+	public void sharedPool() {
+		this.factory.setThreadCacheSize(0);
+		DataBuffer buffer1 = this.factory.allocateBuffer(100);
+		DataBuffer buffer2 = this.factory.allocateBuffer(100);
+		DataBufferUtils.release(buffer1);
+		DataBufferUtils.release(buffer2);
+		assertEquals(256, this.factory.getPooledMemory());
+
+		DataBufferUtils.release(this.factory.allocateBuffer(64));
+		assertEquals(0, this.factory.getReuseCount());
+
+		DataBuffer buffer3 = this.factory.allocateBuffer(128);
+		assertEquals(1, this.factory.getReuseCount());
+		assertEquals(192, this.factory.getPooledMemory());
+		DataBufferUtils.release(buffer3);
+	}
+
+	@Test
+	public void maxPooledMemory() {
+		this.factory.setThreadCacheSize(0);
+		this.factory.setMaxPooledMemory(128);
+		DataBuffer buffer1 = this.factory.allocateBuffer(100);
+		DataBuffer buffer2 = this.factory.allocateBuffer(100);
+		DataBufferUtils.release(buffer1);
+		DataBufferUtils.release(buffer2);
+		assertEquals(128, this.factory.getPooledMemory());
+	}
+
+	@Test
+	public void largeBuffersAreNotPooled() {
+		this.factory.setThreadCacheSize(0);
+		DataBuffer buffer = this.factory.allocateBuffer(2000);
+		assertTrue(buffer instanceof PooledDataBuffer);
+		assertEquals(2000, this.factory.getActiveMemory());
+		DataBufferUtils.release(buffer);
+		assertEquals(0, this.factory.getPooledMemory());
+		assertEquals(0, this.factory.getActiveMemory());
+	}
+
+	@Test
+	public void growWithinSizeClass() {
+		DataBuffer buffer = this.factory.allocateBuffer(10);
+		buffer.write(new byte[10]);
+		buffer.write((byte) 'a');
+		assertTrue(buffer.capacity() > 10);
+		assertEquals(64, this.factory.getActiveMemory());
+		assertEquals(0, this.factory.getReuseCount());
+		assertEquals('a', buffer.getByte(10));
+		DataBufferUtils.release(buffer);
+	}
+
+	@Test
+	public void growBeyondSizeClass() {
+		this.factory.setThreadCacheSize(0);
+		DataBuffer buffer = this.factory.allocateBuffer(10);
+		buffer.write("foo".getBytes(StandardCharsets.UTF_8));
+		buffer.write(new byte[100]);
+		assertEquals(128, this.factory.getActiveMemory());
+		assertEquals(0, this.factory.getPooledMemory());
+		byte[] bytes = new byte[3];
+		buffer.read(bytes);
+		assertEquals("foo", new String(bytes, StandardCharsets.UTF_8));
+		DataBufferUtils.release(buffer);
+		assertEquals(0, this.factory.getActiveMemory());
+	}
+
+	@Test
+	public void sliceSurvivesGrowBeyondSizeClass() {
+		this.factory.setThreadCacheSize(0);
+		DataBuffer buffer = this.factory.allocateBuffer(10);
+		buffer.write("foo".getBytes(StandardCharsets.UTF_8));
+		DataBuffer slice = buffer.slice(0, 3);
+		ByteBuffer view = buffer.asByteBuffer(0, 3);
+		buffer.write(new byte[100]);
+
+		DataBuffer other = this.factory.allocateBuffer(10);
+		other.write("bar".getBytes(StandardCharsets.UTF_8));
+		byte[] bytes = new byte[3];
+		slice.read(bytes);
+		assertEquals("foo", new String(bytes, StandardCharsets.UTF_8));
+		assertEquals('f', view.get(0));
+
+		DataBufferUtils.release(other);
+		DataBufferUtils.release(buffer);
+	}
+
+	@Test
+	public void sliceSharesReferenceCount() {
+		DataBuffer buffer = this.factory.allocateBuffer(10);
+		buffer.write("foobar".getBytes(StandardCharsets.UTF_8));
+		DataBuffer slice = buffer.slice(3, 3);
+		assertTrue(slice instanceof PooledDataBuffer);
+		assertEquals('b', slice.getByte(0));
+
+		DataBufferUtils.retain(slice);
+		assertFalse(DataBufferUtils.release(buffer));
+		assertTrue(((PooledDataBuffer) slice).isAllocated());
+		assertTrue(DataBufferUtils.release(slice));
+		assertFalse(((PooledDataBuffer) buffer).isAllocated());
+		assertEquals(0, this.factory.getActiveBufferCount());
+	}
+
+	@Test
+	public void inputStreamReleasesOnClose() throws Exception {
+		DataBuffer buffer = this.factory.allocateBuffer(10);
+		buffer.write((byte) 'a');
+		try (InputStream inputStream = buffer.asInputStream(true)) {
+			assertEquals('a', inputStream.read());
+		}
+		assertFalse(((PooledDataBuffer) buffer).isAllocated());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void capacityAfterRelease() {
+		DataBuffer buffer = this.factory.allocateBuffer(10);
+		DataBufferUtils.release(buffer);
+		buffer.capacity(20);
+	}
+
+	@Test
+	public void joinReleasesComponents() {
+		DataBuffer buffer1 = this.factory.allocateBuffer(3).write("foo".getBytes(StandardCharsets.UTF_8));
+		DataBuffer buffer2 = this.factory.allocateBuffer(3).write("bar".getBytes(StandardCharsets.UTF_8));
+		DataBuffer result = this.factory.join(Arrays.asList(buffer1, buffer2));
+		assertEquals(1, this.factory.getActiveBufferCount());
+		DataBufferUtils.release(result);
+		assertEquals(0, this.factory.getActiveBufferCount());
+	}
+
+	@Test
+	public void composeReleasesComponents() {
+		DataBuffer buffer1 = this.factory.allocateBuffer(3).write("foo".getBytes(StandardCharsets.UTF_8));
+		DataBuffer buffer2 = this.factory.allocateBuffer(3).write("bar".getBytes(StandardCharsets.UTF_8));
+		CompositeDataBuffer result = this.factory.compose(Arrays.asList(buffer1, buffer2));
+		assertEquals(2, this.factory.getActiveBufferCount());
+		DataBufferUtils.release(result);
+		assertEquals(0, this.factory.getActiveBufferCount());
+	}
+
+	@Test
+	public void leakDetection() throws Exception {
+		List<Throwable> leaks = new CopyOnWriteArrayList<>();
+		this.factory.setLeakHandler(leaks::add);
+
+		allocateWithoutRelease();
+		for (int i = 0; i < 50 && leaks.isEmpty(); i++) {
+			System.gc();
+			Thread.sleep(20);
+			DataBufferUtils.release(this.factory.allocateBuffer(10));
+		}
+
+		assertEquals(1, leaks.size());
+		assertEquals(1, this.factory.getLeakCount());
+		assertEquals(0, this.factory.getActiveBufferCount());
+		assertNotNull(leaks.get(0).getCause());
+	}
+
+	private void allocateWithoutRelease() {
+		this.factory.allocateBuffer(10).write((byte) 'a');
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -41,7 +41,9 @@ public class PooledDataBufferTests {
 				{new NettyDataBufferFactory(new UnpooledByteBufAllocator(true))},
 				{new NettyDataBufferFactory(new UnpooledByteBufAllocator(false))},
 				{new NettyDataBufferFactory(new PooledByteBufAllocator(true))},
-				{new NettyDataBufferFactory(new PooledByteBufAllocator(false))}};
+				{new NettyDataBufferFactory(new PooledByteBufAllocator(false))},
+				{new PooledDataBufferFactory(true)},
+				{new PooledDataBufferFactory(false)}};
 	}
 
 	private PooledDataBuffer createDataBuffer(int capacity) {
@@ -0,0 +1,725 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Case-insensitive {@link MultiValueMap} for HTTP header names, used as the
+ * default storage of {@link HttpHeaders}.
+ *
+ * <p>Compared to a {@link org.springframework.util.LinkedCaseInsensitiveMap}
+ * adapted to a {@code MultiValueMap}, this implementation keeps a single
+ * open-addressing table with linear probing instead of two hash maps, does
+ * not create lower-case copies of header names, and uses hashes precomputed
+ * for the header names declared in {@link HttpHeaders}. Header values are
+ * held as a plain {@code String} as long as a header has a single value;
+ * a {@code List} is only created once a second value is added or once the
+ * values of a header are requested as a list.
+ *
+ * <p>Iteration order follows the order of insertion. The original case of
+ * header names is retained for iteration, with {@link #put} and {@link #set}
+ * updating it to the case of the most recently given name.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+@SuppressWarnings("serial")
+final class CompactHeaderMap implements MultiValueMap<String, String>, Serializable {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private static final String[] KNOWN_NAMES = {
+			HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_CHARSET, HttpHeaders.ACCEPT_ENCODING,
+			HttpHeaders.ACCEPT_LANGUAGE, HttpHeaders.ACCEPT_RANGES,
+			HttpHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, HttpHeaders.ACCESS_CONTROL_ALLOW_HEADERS,
+			HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS, HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN,
+			HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.ACCESS_CONTROL_MAX_AGE,
+			HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS, HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD,
+			HttpHeaders.AGE, HttpHeaders.ALLOW, HttpHeaders.AUTHORIZATION, HttpHeaders.CACHE_CONTROL,
+			HttpHeaders.CONNECTION, HttpHeaders.CONTENT_ENCODING, HttpHeaders.CONTENT_DISPOSITION,
+			HttpHeaders.CONTENT_LANGUAGE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_LOCATION,
+			HttpHeaders.CONTENT_RANGE, HttpHeaders.CONTENT_TYPE, HttpHeaders.COOKIE, HttpHeaders.DATE,
+			HttpHeaders.ETAG, HttpHeaders.EXPECT, HttpHeaders.EXPIRES, HttpHeaders.FROM, HttpHeaders.HOST,
+			HttpHeaders.IF_MATCH, HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.IF_NONE_MATCH,
+			HttpHeaders.IF_RANGE, HttpHeaders.IF_UNMODIFIED_SINCE, HttpHeaders.LAST_MODIFIED,
+			HttpHeaders.LINK, HttpHeaders.LOCATION, HttpHeaders.MAX_FORWARDS, HttpHeaders.ORIGIN,
+			HttpHeaders.PRAGMA, HttpHeaders.PROXY_AUTHENTICATE, HttpHeaders.PROXY_AUTHORIZATION,
+			HttpHeaders.RANGE, HttpHeaders.REFERER, HttpHeaders.RETRY_AFTER, HttpHeaders.SERVER,
+			HttpHeaders.SET_COOKIE, HttpHeaders.SET_COOKIE2, HttpHeaders.TE, HttpHeaders.TRAILER,
+			HttpHeaders.TRANSFER_ENCODING, HttpHeaders.UPGRADE, HttpHeaders.USER_AGENT, HttpHeaders.VARY,
+			HttpHeaders.VIA, HttpHeaders.WARNING, HttpHeaders.WWW_AUTHENTICATE,
+			"Keep-Alive", "X-Forwarded-For", "X-Forwarded-Host", "X-Forwarded-Port", "X-Forwarded-Proto",
+			"X-Forwarded-Prefix", "X-Requested-With", "Forwarded"};
+
+	/** Known header names, indexed by their {@code String#hashCode()}. */
+	private static final String[] knownNameTable;
+
+	/** Case-insensitive hashes of the header names in {@link #knownNameTable}. */
+	private static final int[] knownHashTable;
+
+	static {
+		int capacity = Integer.highestOneBit(KNOWN_NAMES.length * 4);
+		knownNameTable = new String[capacity];
+		knownHashTable = new int[capacity];
+		for (String name : KNOWN_NAMES) {
+			int index = name.hashCode() & (capacity - 1);
+			while (knownNameTable[index] != null) {
+				index = (index + 1) & (capacity - 1);
+			}
+			knownNameTable[index] = name;
+			knownHashTable[index] = computeHash(name);
+		}
+	}
+
+
+	private Entry[] table;
+
+	private int size;
+
+	@Nullable
+	private Entry head;
+
+	@Nullable
+	private Entry tail;
+
+	private transient int modCount;
+
+	@Nullable
+	private transient Set<String> keySet;
+
+	@Nullable
+	private transient Collection<List<String>> values;
+
+	@Nullable
+	private transient Set<Map.Entry<String, List<String>>> entrySet;
+
+
+	/**
+	 * Create a new map with the default initial capacity.
+	 */
+	CompactHeaderMap() {
+		this(DEFAULT_CAPACITY / 2);
+	}
+
+	/**
+	 * Create a new map able to hold the given number of headers without resizing.
+	 * @param expectedSize the expected number of header names
+	 */
+	CompactHeaderMap(int expectedSize) {
+		int capacity = Math.max(4, Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1);
+		this.table = new Entry[capacity];
+	}
+
+
+	// MultiValueMap implementation
+
+	@Override
+	@Nullable
+	public String getFirst(String key) {
+		Entry entry = getEntry(key);
+		return (entry != null ? entry.getFirstValue() : null);
+	}
+
+	@Override
+	public void add(String key, @Nullable String value) {
+		Entry entry = getEntry(key);
+		if (entry != null) {
+			entry.addValue(value);
+		}
+		else {
+			addEntry(key, value);
+		}
+	}
+
+	@Override
+	public void addAll(String key, List<? extends String> values) {
+		Entry entry = getEntry(key);
+		if (entry == null) {
+			entry = addEntry(key, new ArrayList<String>(values.size()));
+		}
+		for (String value : values) {
+			entry.addValue(value);
+		}
+	}
+
+	@Override
+	public void addAll(MultiValueMap<String, String> values) {
+		values.forEach(this::addAll);
+	}
+
+	@Override
+	public void set(String key, @Nullable String value) {
+		Entry entry = getEntry(key);
+		if (entry != null) {
+			entry.name = key;
+			entry.values = value;
+		}
+		else {
+			addEntry(key, value);
+		}
+	}
+
+	@Override
+	public void setAll(Map<String, String> values) {
+		values.forEach(this::set);
+	}
+
+	@Override
+	public Map<String, String> toSingleValueMap() {
+		Map<String, String> singleValueMap = new LinkedHashMap<>(this.size * 2);
+		for (Entry entry = this.head; entry != null; entry = entry.after) {
+			singleValueMap.put(entry.name, entry.getFirstValue());
+		}
+		return singleValueMap;
+	}
+
+
+	// Map implementation
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (this.size == 0);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return (key instanceof String && getEntry((String) key) != null);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		for (Entry entry = this.head; entry != null; entry = entry.after) {
+			if (entry.valuesEqual(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	@Nullable
+	public List<String> get(Object key) {
+		if (key instanceof String) {
+			Entry entry = getEntry((String) key);
+			if (entry != null) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	@Nullable
+	public List<String> put(String key, List<String> value) {
+		Entry entry = getEntry(key);
+		if (entry != null) {
+			List<String> oldValue = entry.getValue();
+			entry.name = key;
+			entry.values = value;
+			return oldValue;
+		}
+		addEntry(key, value);
+		return null;
+	}
+
+	@Override
+	@Nullable
+	public List<String> remove(Object key) {
+		if (key instanceof String) {
+			int index = indexOf((String) key, hash((String) key));
+			if (index >= 0) {
+				Entry entry = this.table[index];
+				removeAt(index);
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void putAll(Map<? extends String, ? extends List<String>> map) {
+		map.forEach(this::put);
+	}
+
+	@Override
+	public void clear() {
+		if (this.size > 0) {
+			for (int i = 0; i < this.table.length; i++) {
+				this.table[i] = null;
+			}
+			this.head = null;
+			this.tail = null;
+			this.size = 0;
+			this.modCount++;
+		}
+	}
+
+	@Override
+	public Set<String> keySet() {
+		Set<String> keySet = this.keySet;
+		if (keySet == null) {
+			keySet = new KeySet();
+			this.keySet = keySet;
+		}
+		return keySet;
+	}
+
+	@Override
+	public Collection<List<String>> values() {
+		Collection<List<String>> values = this.values;
+		if (values == null) {
+			values = new Values();
+			this.values = values;
+		}
+		return values;
+	}
+
+	@Override
+	public Set<Map.Entry<String, List<String>>> entrySet() {
+		Set<Map.Entry<String, List<String>>> entrySet = this.entrySet;
+		if (entrySet == null) {
+			entrySet = new EntrySet();
+			this.entrySet = entrySet;
+		}
+		return entrySet;
+	}
+
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof Map)) {
+			return false;
+		}
+		Map<?, ?> otherMap = (Map<?, ?>) other;
+		if (otherMap.size() != this.size) {
+			return false;
+		}
+		try {
+			for (Entry entry = this.head; entry != null; entry = entry.after) {
+				Object otherValue = otherMap.get(entry.name);
+				if (otherValue == null || !entry.valuesEqual(otherValue)) {
+					return false;
+				}
+			}
+		}
+		catch (ClassCastException | NullPointerException ex) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hashCode = 0;
+		for (Entry entry = this.head; entry != null; entry = entry.after) {
+			hashCode += entry.hashCode();
+		}
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		return HttpHeaders.formatHeaders(this);
+	}
+
+
+	// Open addressing table
+
+	@Nullable
+	private Entry getEntry(String key) {
+		int index = indexOf(key, hash(key));
+		return (index >= 0 ? this.table[index] : null);
+	}
+
+	private int indexOf(String key, int hash) {
+		Entry[] table = this.table;
+		int mask = table.length - 1;
+		int index = hash & mask;
+		Entry entry;
+		while ((entry = table[index]) != null) {
+			if (entry.hash == hash && (entry.name == key || entry.name.equalsIgnoreCase(key))) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+	private Entry addEntry(String key, @Nullable Object values) {
+		if ((this.size + 1) * 2 > this.table.length) {
+			resize(this.table.length * 2);
+		}
+		int hash = hash(key);
+		Entry entry = new Entry(key, hash, values);
+		int mask = this.table.length - 1;
+		int index = hash & mask;
+		while (this.table[index] != null) {
+			index = (index + 1) & mask;
+		}
+		this.table[index] = entry;
+		if (this.tail == null) {
+			this.head = entry;
+		}
+		else {
+			this.tail.after = entry;
+			entry.before = this.tail;
+		}
+		this.tail = entry;
+		this.size++;
+		this.modCount++;
+		return entry;
+	}
+
+	private void removeAt(int index) {
+		Entry[] table = this.table;
+		Entry entry = table[index];
+		table[index] = null;
+
+		// Shift back subsequent entries of the same probe sequence
+		int mask = table.length - 1;
+		int hole = index;
+		int next = (index + 1) & mask;
+		while (table[next] != null) {
+			int ideal = table[next].hash & mask;
+			boolean movable = (hole <= next ? (ideal <= hole || ideal > next) : (ideal <= hole && ideal > next));
+			if (movable) {
+				table[hole] = table[next];
+				table[next] = null;
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+
+		if (entry.before != null) {
+			entry.before.after = entry.after;
+		}
+		else {
+			this.head = entry.after;
+		}
+		if (entry.after != null) {
+			entry.after.before = entry.before;
+		}
+		else {
+			this.tail = entry.before;
+		}
+		entry.before = null;
+		entry.after = null;
+		this.size--;
+		this.modCount++;
+	}
+
+	private void resize(int capacity) {
+		Entry[] newTable = new Entry[capacity];
+		int mask = capacity - 1;
+		for (Entry entry = this.head; entry != null; entry = entry.after) {
+			int index = entry.hash & mask;
+			while (newTable[index] != null) {
+				index = (index + 1) & mask;
+			}
+			newTable[index] = entry;
+		}
+		this.table = newTable;
+	}
+
+	private static int hash(String key) {
+		int stringHash = key.hashCode();
+		int mask = knownNameTable.length - 1;
+		int index = stringHash & mask;
+		String known;
+		while ((known = knownNameTable[index]) != null) {
+			if (known == key || (known.hashCode() == stringHash && known.equals(key))) {
+				return knownHashTable[index];
+			}
+			index = (index + 1) & mask;
+		}
+		return computeHash(key);
+	}
+
+	/**
+	 * Compute a hash that is consistent with {@link String#equalsIgnoreCase}.
+	 */
+	private static int computeHash(String key) {
+		int hash = 0;
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c < 128) {
+				if (c >= 'A' && c <= 'Z') {
+					c += ('a' - 'A');
+				}
+			}
+			else {
+				c = Character.toLowerCase(Character.toUpperCase(c));
+			}
+			hash = 31 * hash + c;
+		}
+		// Spread higher bits, since the table index is based on the lower bits
+		return hash ^ (hash >>> 16);
+	}
+
+
+	/**
+	 * A header with its values, held either as a single {@code String}
+	 * or as a {@code List} of values.
+	 */
+	private static final class Entry implements Map.Entry<String, List<String>>, Serializable {
+
+		String name;
+
+		final int hash;
+
+		@Nullable
+		Object values;
+
+		@Nullable
+		Entry before;
+
+		@Nullable
+		Entry after;
+
+		Entry(String name, int hash, @Nullable Object values) {
+			this.name = name;
+			this.hash = hash;
+			this.values = values;
+		}
+
+		@Override
+		public String getKey() {
+			return this.name;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public List<String> getValue() {
+			Object values = this.values;
+			if (values instanceof List) {
+				return (List<String>) values;
+			}
+			List<String> list = new ArrayList<>(2);
+			list.add((String) values);
+			this.values = list;
+			return list;
+		}
+
+		@Override
+		public List<String> setValue(List<String> value) {
+			List<String> oldValue = getValue();
+			this.values = value;
+			return oldValue;
+		}
+
+		@Nullable
+		@SuppressWarnings("unchecked")
+		String getFirstValue() {
+			Object values = this.values;
+			if (values instanceof List) {
+				List<String> list = (List<String>) values;
+				return (!list.isEmpty() ? list.get(0) : null);
+			}
+			return (String) values;
+		}
+
+		void addValue(@Nullable String value) {
+			getValue().add(value);
+		}
+
+		boolean valuesEqual(Object other) {
+			Object values = this.values;
+			if (values instanceof List) {
+				return values.equals(other);
+			}
+			if (!(other instanceof List)) {
+				return false;
+			}
+			List<?> otherList = (List<?>) other;
+			return (otherList.size() == 1 && ObjectUtils.nullSafeEquals(values, otherList.get(0)));
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> otherEntry = (Map.Entry<?, ?>) other;
+			return (this.name.equals(otherEntry.getKey()) && valuesEqual(otherEntry.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			Object values = this.values;
+			int valuesHash = (values instanceof List ? values.hashCode() : 31 + ObjectUtils.nullSafeHashCode(values));
+			return this.name.hashCode() ^ valuesHash;
+		}
+
+		@Override
+		public String toString() {
+			return this.name + "=" + getValue();
+		}
+	}
+
+
+	private abstract class EntryIterator<T> implements Iterator<T> {
+
+		@Nullable
+		private Entry next = head;
+
+		@Nullable
+		private Entry last;
+
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			return (this.next != null);
+		}
+
+		Entry nextEntry() {
+			if (modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			Entry entry = this.next;
+			if (entry == null) {
+				throw new NoSuchElementException();
+			}
+			this.next = entry.after;
+			this.last = entry;
+			return entry;
+		}
+
+		@Override
+		public void remove() {
+			if (this.last == null) {
+				throw new IllegalStateException();
+			}
+			if (modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			CompactHeaderMap.this.remove(this.last.name);
+			this.last = null;
+			this.expectedModCount = modCount;
+		}
+	}
+
+
+	private class KeySet extends AbstractSet<String> {
+
+		@Override
+		public Iterator<String> iterator() {
+			return new EntryIterator<String>() {
+				@Override
+				public String next() {
+					return nextEntry().name;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return containsKey(o);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return (CompactHeaderMap.this.remove(o) != null);
+		}
+
+		@Override
+		public void clear() {
+			CompactHeaderMap.this.clear();
+		}
+	}
+
+
+	private class Values extends AbstractCollection<List<String>> {
+
+		@Override
+		public Iterator<List<String>> iterator() {
+			return new EntryIterator<List<String>>() {
+				@Override
+				public List<String> next() {
+					return nextEntry().getValue();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public void clear() {
+			CompactHeaderMap.this.clear();
+		}
+	}
+
+
+	private class EntrySet extends AbstractSet<Map.Entry<String, List<String>>> {
+
+		@Override
+		public Iterator<Map.Entry<String, List<String>>> iterator() {
+			return new EntryIterator<Map.Entry<String, List<String>>>() {
+				@Override
+				public Map.Entry<String, List<String>> next() {
+					return nextEntry();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public void clear() {
+			CompactHeaderMap.this.clear();
+		}
+	}
+
+}
@@ -45,8 +45,6 @@ import java.util.stream.Collectors;
 
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
-import org.springframework.util.CollectionUtils;
-import org.springframework.util.LinkedCaseInsensitiveMap;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
@@ -410,7 +408,7 @@ public class HttpHeaders implements MultiValueMap<String, String>, Serializable
 	 * 构造一个新的空的{@code HttpHeaders}对象实例。
 	 */
 	public HttpHeaders() {
-		this(CollectionUtils.toMultiValueMap(new LinkedCaseInsensitiveMap<>(8, Locale.ENGLISH)));
+		this(new CompactHeaderMap());
 	}
 
 	/**
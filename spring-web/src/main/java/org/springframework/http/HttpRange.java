@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -202,6 +203,39 @@ public abstract class HttpRange {
 		return regions;
 	}
 
+	/**
+	 * Coalesce regions of the same {@code Resource} that overlap or are
+	 * adjacent, as permitted by RFC 7233, so that they can be transferred
+	 * as a single region.
+	 * @param regions the regions to coalesce
+	 * @return the coalesced regions in order of position, or the given list
+	 * if there were no regions to coalesce
+	 * @since 5.2
+	 */
+	public static List<ResourceRegion> coalesceResourceRegions(List<ResourceRegion> regions) {
+		if (regions.size() < 2) {
+			return regions;
+		}
+		List<ResourceRegion> sorted = new ArrayList<>(regions);
+		sorted.sort(Comparator.comparingLong(ResourceRegion::getPosition));
+		List<ResourceRegion> result = new ArrayList<>(sorted.size());
+		ResourceRegion current = sorted.get(0);
+		for (int i = 1; i < sorted.size(); i++) {
+			ResourceRegion next = sorted.get(i);
+			long currentEnd = current.getPosition() + current.getCount();
+			if (next.getResource().equals(current.getResource()) && next.getPosition() <= currentEnd) {
+				long end = Math.max(currentEnd, next.getPosition() + next.getCount());
+				current = new ResourceRegion(current.getResource(), current.getPosition(), end - current.getPosition());
+			}
+			else {
+				result.add(current);
+				current = next;
+			}
+		}
+		result.add(current);
+		return (result.size() < regions.size() ? result : regions);
+	}
+
 	/**
 	 * Return a string representation of the given list of {@code HttpRange} objects.
 	 * <p>This method can be used to for an {@code Range} header.
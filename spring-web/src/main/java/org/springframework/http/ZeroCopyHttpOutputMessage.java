@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,9 +18,17 @@ package org.springframework.http;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.List;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+
 /**
  * Sub-interface of {@code ReactiveOutputMessage} that has support for "zero-copy"
  * file transfers.
@@ -55,4 +63,32 @@ public interface ZeroCopyHttpOutputMessage extends ReactiveHttpOutputMessage {
 	 */
 	Mono<Void> writeWith(Path file, long position, long count);
 
+	/**
+	 * Write the given regions of file-based resources, each preceded by the
+	 * buffer at the same index in {@code delimiters}, and followed by the last
+	 * of the {@code delimiters}, e.g. for a "multipart/byteranges" body.
+	 * <p>The default implementation reads the regions into data buffers and
+	 * writes them through {@link #writeWith(org.reactivestreams.Publisher)}.
+	 * Implementations that can transfer a file region directly should
+	 * override this method.
+	 * @param regions the regions to transfer
+	 * @param delimiters the buffers to write before each region and after
+	 * the last one, i.e. one more than the number of regions
+	 * @return a publisher that indicates completion or error.
+	 * @since 5.2
+	 */
+	default Mono<Void> writeWith(List<ResourceRegion> regions, List<DataBuffer> delimiters) {
+		Assert.isTrue(delimiters.size() == regions.size() + 1, "Expected one delimiter more than regions");
+		Flux<DataBuffer> body = Flux.range(0, regions.size())
+				.concatMap(i -> {
+					ResourceRegion region = regions.get(i);
+					Flux<DataBuffer> content = DataBufferUtils.read(region.getResource(),
+							region.getPosition(), bufferFactory(), StreamUtils.BUFFER_SIZE);
+					return Flux.concat(Mono.just(delimiters.get(i)),
+							DataBufferUtils.takeUntilByteCount(content, region.getCount()));
+				})
+				.concatWith(Mono.just(delimiters.get(regions.size())));
+		return writeWith(body);
+	}
+
 }
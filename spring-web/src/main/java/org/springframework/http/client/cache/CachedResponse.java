@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * A response held in an {@link HttpCache}, with its body fully buffered.
+ *
+ * <p>Besides the response itself, an entry records the values of the request
+ * headers nominated by the "Vary" response header, and the times needed to
+ * calculate the age of the response.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public final class CachedResponse {
+
+	private final int statusCode;
+
+	private final HttpHeaders headers;
+
+	private final byte[] body;
+
+	private final Map<String, List<String>> varyHeaders;
+
+	private final long responseTime;
+
+	private final long initialAge;
+
+	private final long size;
+
+
+	CachedResponse(int statusCode, HttpHeaders headers, byte[] body, Map<String, List<String>> varyHeaders,
+			long responseTime, long initialAge) {
+
+		this.statusCode = statusCode;
+		this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+		this.body = body;
+		this.varyHeaders = varyHeaders;
+		this.responseTime = responseTime;
+		this.initialAge = initialAge;
+		this.size = calculateSize(headers, body);
+	}
+
+	private static long calculateSize(HttpHeaders headers, byte[] body) {
+		long size = body.length;
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			for (String value : entry.getValue()) {
+				size += entry.getKey().length() + value.length();
+			}
+		}
+		return size;
+	}
+
+
+	/**
+	 * Return the raw status code of the response.
+	 */
+	public int getStatusCode() {
+		return this.statusCode;
+	}
+
+	/**
+	 * Return the read-only headers of the response.
+	 */
+	public HttpHeaders getHeaders() {
+		return this.headers;
+	}
+
+	/**
+	 * Return the body of the response. The returned array must not be modified.
+	 */
+	public byte[] getBody() {
+		return this.body;
+	}
+
+	/**
+	 * Return the approximate number of bytes held by this entry, i.e. the
+	 * size of the body plus the characters of the response headers.
+	 */
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Return the values of the request headers nominated by the "Vary"
+	 * response header, keyed by header name.
+	 */
+	Map<String, List<String>> getVaryHeaders() {
+		return this.varyHeaders;
+	}
+
+	/**
+	 * Return the time at which the response was received, in milliseconds.
+	 */
+	long getResponseTime() {
+		return this.responseTime;
+	}
+
+	/**
+	 * Return the age of the response when it was received, in milliseconds.
+	 */
+	long getInitialAge() {
+		return this.initialAge;
+	}
+
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+
+/**
+ * {@link ClientHttpRequestInterceptor} that serves responses from an
+ * {@link HttpCache}, and stores cacheable responses in it.
+ *
+ * <p>Stale responses are revalidated with a conditional request, and updated
+ * on "304 Not Modified". Responses that may be used while they are revalidated
+ * ("stale-while-revalidate") are revalidated in the background if an
+ * {@link #setAsyncExecutor async executor} is configured, or else before they
+ * are returned. Concurrent identical {@code GET} requests that miss the cache
+ * are coalesced into a single request, the result of which is shared.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class CachingClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	private static final Log logger = LogFactory.getLog(CachingClientHttpRequestInterceptor.class);
+
+
+	private final HttpCache cache;
+
+	@Nullable
+	private Executor asyncExecutor;
+
+	private final ConcurrentMap<String, CompletableFuture<CachedResponse>> inFlightRequests =
+			new ConcurrentHashMap<>();
+
+
+	/**
+	 * Create a new instance with a default {@link HttpCache}.
+	 */
+	public CachingClientHttpRequestInterceptor() {
+		this(new HttpCache());
+	}
+
+	/**
+	 * Create a new instance with the given cache.
+	 * @param cache the cache to use
+	 */
+	public CachingClientHttpRequestInterceptor(HttpCache cache) {
+		Assert.notNull(cache, "HttpCache is required");
+		this.cache = cache;
+	}
+
+
+	/**
+	 * Return the cache used by this interceptor.
+	 */
+	public HttpCache getCache() {
+		return this.cache;
+	}
+
+	/**
+	 * Configure the executor to revalidate responses with in the background,
+	 * while the stale response is returned ("stale-while-revalidate").
+	 * <p>By default this is not set, and such responses are revalidated
+	 * before they are returned.
+	 */
+	public void setAsyncExecutor(@Nullable Executor asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	/**
+	 * Return the configured async executor, if any.
+	 */
+	@Nullable
+	public Executor getAsyncExecutor() {
+		return this.asyncExecutor;
+	}
+
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+
+		HttpMethod method = request.getMethod();
+		HttpHeaders requestHeaders = request.getHeaders();
+		if (method == null || !this.cache.isCacheableRequest(method, requestHeaders)) {
+			ClientHttpResponse response = execution.execute(request, body);
+			if (method != null) {
+				this.cache.invalidate(method, request.getURI(), response.getRawStatusCode(), response.getHeaders());
+			}
+			return response;
+		}
+
+		CachedResponse cached = this.cache.lookup(request.getURI(), requestHeaders);
+		if (cached != null) {
+			HttpCache.Freshness freshness = this.cache.getFreshness(cached, requestHeaders);
+			if (freshness == HttpCache.Freshness.FRESH) {
+				return createResponse(cached);
+			}
+			if (freshness == HttpCache.Freshness.STALE_WHILE_REVALIDATE && this.asyncExecutor != null) {
+				revalidateAsync(this.asyncExecutor, request, body, execution, cached);
+				return createResponse(cached);
+			}
+		}
+		if (this.cache.isOnlyIfCached(requestHeaders)) {
+			return new CachedClientHttpResponse(HttpStatus.GATEWAY_TIMEOUT.value(), new HttpHeaders(), new byte[0]);
+		}
+
+		String key = getKey(request);
+		CompletableFuture<CachedResponse> future = new CompletableFuture<>();
+		CompletableFuture<CachedResponse> existing = this.inFlightRequests.putIfAbsent(key, future);
+		if (existing != null) {
+			CachedResponse shared = existing.join();
+			return (shared != null ? createResponse(shared) : exchange(request, body, execution, cached));
+		}
+		CachedResponse result = null;
+		try {
+			ClientHttpResponse response = exchange(request, body, execution, cached);
+			if (response instanceof CachedClientHttpResponse) {
+				result = ((CachedClientHttpResponse) response).cachedResponse;
+			}
+			return response;
+		}
+		finally {
+			this.inFlightRequests.remove(key, future);
+			future.complete(result);
+		}
+	}
+
+	private void revalidateAsync(Executor executor, HttpRequest request, byte[] body,
+			ClientHttpRequestExecution execution, CachedResponse cached) {
+
+		String key = getKey(request);
+		CompletableFuture<CachedResponse> future = new CompletableFuture<>();
+		if (this.inFlightRequests.putIfAbsent(key, future) != null) {
+			return;
+		}
+		try {
+			executor.execute(() -> {
+				CachedResponse result = null;
+				try {
+					ClientHttpResponse response = exchange(request, body, execution, cached);
+					if (response instanceof CachedClientHttpResponse) {
+						result = ((CachedClientHttpResponse) response).cachedResponse;
+					}
+					response.close();
+				}
+				catch (Throwable ex) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Failed to revalidate cached response for " + request.getURI(), ex);
+					}
+				}
+				finally {
+					this.inFlightRequests.remove(key, future);
+					future.complete(result);
+				}
+			});
+		}
+		catch (RuntimeException ex) {
+			this.inFlightRequests.remove(key, future);
+			future.complete(null);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to schedule revalidation of cached response for " + request.getURI(), ex);
+			}
+		}
+	}
+
+	private ClientHttpResponse exchange(HttpRequest request, byte[] body, ClientHttpRequestExecution execution,
+			@Nullable CachedResponse cached) throws IOException {
+
+		URI uri = request.getURI();
+		HttpRequest requestToUse = request;
+		if (cached != null) {
+			HttpHeaders headers = new HttpHeaders();
+			headers.putAll(request.getHeaders());
+			this.cache.addConditionalHeaders(cached, headers);
+			requestToUse = new HttpRequestWrapper(request) {
+				@Override
+				public HttpHeaders getHeaders() {
+					return headers;
+				}
+			};
+		}
+
+		long requestTime = this.cache.currentTimeMillis();
+		ClientHttpResponse response = execution.execute(requestToUse, body);
+		int statusCode = response.getRawStatusCode();
+		HttpHeaders responseHeaders = response.getHeaders();
+		if (cached != null && statusCode == HttpStatus.NOT_MODIFIED.value()) {
+			response.close();
+			return createResponse(this.cache.update(uri, request.getHeaders(), cached, responseHeaders, requestTime));
+		}
+		if (!this.cache.isStorable(request.getHeaders(), statusCode, responseHeaders) ||
+				!this.cache.isBufferable(responseHeaders)) {
+			return response;
+		}
+		int maxSize = this.cache.getMaxEntrySize();
+		InputStream responseBody;
+		byte[] bytes;
+		try {
+			responseBody = response.getBody();
+			bytes = readBody(responseBody, (maxSize < Integer.MAX_VALUE ? maxSize + 1 : maxSize));
+		}
+		catch (IOException | RuntimeException ex) {
+			response.close();
+			throw ex;
+		}
+		if (bytes.length > maxSize) {
+			return new PassThroughClientHttpResponse(response, bytes, responseBody);
+		}
+		response.close();
+		return createResponse(this.cache.store(uri, request.getHeaders(), statusCode, responseHeaders,
+				bytes, requestTime));
+	}
+
+	/**
+	 * Read the given stream up to the given number of bytes.
+	 */
+	private static byte[] readBody(InputStream in, int maxBytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(maxBytes, StreamUtils.BUFFER_SIZE));
+		byte[] buffer = new byte[StreamUtils.BUFFER_SIZE];
+		int bytesRead;
+		while (out.size() < maxBytes &&
+				(bytesRead = in.read(buffer, 0, Math.min(buffer.length, maxBytes - out.size()))) != -1) {
+			out.write(buffer, 0, bytesRead);
+		}
+		return out.toByteArray();
+	}
+
+	private ClientHttpResponse createResponse(CachedResponse cached) {
+		return new CachedClientHttpResponse(cached, this.cache.getResponseHeaders(cached));
+	}
+
+	private static String getKey(HttpRequest request) {
+		return request.getURI() + " " + request.getHeaders();
+	}
+
+
+	/**
+	 * {@link ClientHttpResponse} that passes through a response too large to
+	 * cache, the first bytes of which have already been read.
+	 */
+	private static class PassThroughClientHttpResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse delegate;
+
+		private final InputStream body;
+
+		PassThroughClientHttpResponse(ClientHttpResponse delegate, byte[] bytesRead, InputStream remainder) {
+			this.delegate = delegate;
+			this.body = new SequenceInputStream(new ByteArrayInputStream(bytesRead), remainder);
+		}
+
+		@Override
+		public HttpStatus getStatusCode() throws IOException {
+			return this.delegate.getStatusCode();
+		}
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return this.delegate.getRawStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return this.delegate.getStatusText();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.delegate.getHeaders();
+		}
+
+		@Override
+		public InputStream getBody() {
+			return this.body;
+		}
+
+		@Override
+		public void close() {
+			this.delegate.close();
+		}
+	}
+
+
+	/**
+	 * {@link ClientHttpResponse} for a cached response.
+	 */
+	private static class CachedClientHttpResponse extends AbstractClientHttpResponse {
+
+		@Nullable
+		private final CachedResponse cachedResponse;
+
+		private final int statusCode;
+
+		private final HttpHeaders headers;
+
+		private final byte[] body;
+
+		CachedClientHttpResponse(CachedResponse cachedResponse, HttpHeaders headers) {
+			this.cachedResponse = cachedResponse;
+			this.statusCode = cachedResponse.getStatusCode();
+			this.headers = headers;
+			this.body = cachedResponse.getBody();
+		}
+
+		CachedClientHttpResponse(int statusCode, HttpHeaders headers, byte[] body) {
+			this.cachedResponse = null;
+			this.statusCode = statusCode;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		@Override
+		public int getRawStatusCode() {
+			return this.statusCode;
+		}
+
+		@Override
+		public String getStatusText() {
+			HttpStatus status = HttpStatus.resolve(this.statusCode);
+			return (status != null ? status.getReasonPhrase() : "");
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(this.body);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
@@ -0,0 +1,532 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.net.URI;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Private HTTP cache that follows the caching semantics of RFC 7234, shared by
+ * the {@link CachingClientHttpRequestInterceptor} for the {@code RestTemplate}
+ * and the {@code CachingExchangeFilterFunction} for the {@code WebClient}.
+ *
+ * <p>This class decides whether responses may be stored, and whether a stored
+ * response may be used for a request, is stale but may be used while it is
+ * revalidated in the background ("stale-while-revalidate"), or must be
+ * revalidated with a conditional request first. Entries are kept in an
+ * {@link HttpCacheStore}.
+ *
+ * <p>Only responses to {@code GET} requests are stored, with one entry per
+ * request URI, and selected according to the "Vary" response header. Requests
+ * with other methods invalidate the entries for their URI, and for the URIs in
+ * the "Location" and "Content-Location" headers of the response. Requests that
+ * are conditional already, or ask for a range, are not served from the cache.
+ *
+ * <p>Since a single client instance is commonly shared by all users of an
+ * application, responses to requests with an "Authorization" header are
+ * only stored and served if they are explicitly marked as shareable with a
+ * "public" or "s-maxage" directive, as required of shared caches.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class HttpCache {
+
+	private static final Set<Integer> HEURISTICALLY_CACHEABLE_STATUS_CODES =
+			new HashSet<>(Arrays.asList(200, 203, 204, 300, 301, 404, 405, 410, 414, 501));
+
+	private static final Set<HttpMethod> SAFE_METHODS =
+			new HashSet<>(Arrays.asList(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.TRACE));
+
+	private static final long MAX_HEURISTIC_LIFETIME = TimeUnit.DAYS.toMillis(1);
+
+
+	private final HttpCacheStore store;
+
+	private int maxEntrySize = 1024 * 1024;
+
+	private Clock clock = Clock.systemUTC();
+
+
+	/**
+	 * Create a new instance with an {@link InMemoryHttpCacheStore} of 10 MB.
+	 */
+	public HttpCache() {
+		this(new InMemoryHttpCacheStore());
+	}
+
+	/**
+	 * Create a new instance with the given store.
+	 * @param store the store to keep cached responses in
+	 */
+	public HttpCache(HttpCacheStore store) {
+		Assert.notNull(store, "HttpCacheStore is required");
+		this.store = store;
+	}
+
+
+	/**
+	 * Return the store of this cache.
+	 */
+	public HttpCacheStore getStore() {
+		return this.store;
+	}
+
+	/**
+	 * Set the maximum size of a response body to cache. Larger responses are
+	 * passed through without being buffered, or, if their content length is
+	 * not known up front, once more than this many bytes have been read.
+	 * <p>By default this is set to 1 MB.
+	 */
+	public void setMaxEntrySize(int maxEntrySize) {
+		Assert.isTrue(maxEntrySize >= 0, "Max entry size must not be negative");
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	/**
+	 * Return the configured maximum size of a response body to cache.
+	 */
+	public int getMaxEntrySize() {
+		return this.maxEntrySize;
+	}
+
+	/**
+	 * Configure the {@link Clock} to use to calculate the age of responses.
+	 * <p>By default this is {@link Clock#systemUTC()}.
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "Clock is required");
+		this.clock = clock;
+	}
+
+	/**
+	 * Return the configured clock.
+	 */
+	public Clock getClock() {
+		return this.clock;
+	}
+
+
+	/**
+	 * Whether a request with the given method and headers may be served from,
+	 * or stored in the cache, i.e. it is a {@code GET} request that is neither
+	 * conditional nor a range request.
+	 */
+	public boolean isCacheableRequest(HttpMethod method, HttpHeaders requestHeaders) {
+		return (method == HttpMethod.GET && !requestHeaders.containsKey(HttpHeaders.IF_NONE_MATCH) &&
+				!requestHeaders.containsKey(HttpHeaders.IF_MODIFIED_SINCE) &&
+				!requestHeaders.containsKey(HttpHeaders.IF_MATCH) &&
+				!requestHeaders.containsKey(HttpHeaders.IF_UNMODIFIED_SINCE) &&
+				!requestHeaders.containsKey(HttpHeaders.RANGE));
+	}
+
+	/**
+	 * Whether the request demands to be served from the cache only, through
+	 * the "only-if-cached" directive, in which case a "504 Gateway Timeout"
+	 * response should be returned if there is no suitable cached response.
+	 */
+	public boolean isOnlyIfCached(HttpHeaders requestHeaders) {
+		return parseCacheControl(requestHeaders).containsKey("only-if-cached");
+	}
+
+	/**
+	 * Whether a response may possibly be stored, based on its status and
+	 * headers, before reading its body.
+	 */
+	public boolean isStorable(HttpHeaders requestHeaders, int statusCode, HttpHeaders responseHeaders) {
+		if (parseCacheControl(requestHeaders).containsKey("no-store")) {
+			return false;
+		}
+		Map<String, String> directives = parseCacheControl(responseHeaders);
+		if (directives.containsKey("no-store") || responseHeaders.getVary().contains("*") ||
+				statusCode < 200 || statusCode == 206 || statusCode == 304) {
+			return false;
+		}
+		if (requestHeaders.containsKey(HttpHeaders.AUTHORIZATION) && !isShareable(directives)) {
+			return false;
+		}
+		if (directives.containsKey("max-age") || responseHeaders.containsKey(HttpHeaders.EXPIRES)) {
+			return true;
+		}
+		return (HEURISTICALLY_CACHEABLE_STATUS_CODES.contains(statusCode) &&
+				(responseHeaders.getLastModified() != -1 || responseHeaders.getETag() != null));
+	}
+
+	/**
+	 * Whether a response with the given headers may be buffered, i.e. its
+	 * content length is either unknown or within the
+	 * {@link #setMaxEntrySize max entry size}.
+	 */
+	public boolean isBufferable(HttpHeaders responseHeaders) {
+		return (responseHeaders.getContentLength() <= this.maxEntrySize);
+	}
+
+
+	/**
+	 * Return the cached response for the given request, provided that it
+	 * matches the request headers nominated by its "Vary" header.
+	 * @param uri the URI of the request
+	 * @param requestHeaders the headers of the request
+	 * @return the cached response, or {@code null} if none
+	 */
+	@Nullable
+	public CachedResponse lookup(URI uri, HttpHeaders requestHeaders) {
+		CachedResponse response = this.store.get(uri.toString());
+		if (response == null) {
+			return null;
+		}
+		if (requestHeaders.containsKey(HttpHeaders.AUTHORIZATION) &&
+				!isShareable(parseCacheControl(response.getHeaders()))) {
+			return null;
+		}
+		for (Map.Entry<String, List<String>> entry : response.getVaryHeaders().entrySet()) {
+			if (!entry.getValue().equals(getValues(requestHeaders, entry.getKey()))) {
+				return null;
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Determine whether the given cached response may be used for a request.
+	 * @param response the cached response
+	 * @param requestHeaders the headers of the request
+	 * @return the freshness of the response
+	 */
+	public Freshness getFreshness(CachedResponse response, HttpHeaders requestHeaders) {
+		Map<String, String> requestDirectives = parseCacheControl(requestHeaders);
+		Map<String, String> responseDirectives = parseCacheControl(response.getHeaders());
+		if (requestDirectives.containsKey("no-cache") || responseDirectives.containsKey("no-cache") ||
+				(requestDirectives.isEmpty() && "no-cache".equalsIgnoreCase(requestHeaders.getPragma()))) {
+			return Freshness.STALE;
+		}
+		long age = getAge(response);
+		long maxAge = getSeconds(requestDirectives, "max-age");
+		if (maxAge != -1 && age > TimeUnit.SECONDS.toMillis(maxAge)) {
+			return Freshness.STALE;
+		}
+		long lifetime = getFreshnessLifetime(response, responseDirectives);
+		long minFresh = getSeconds(requestDirectives, "min-fresh");
+		if (minFresh != -1) {
+			lifetime -= TimeUnit.SECONDS.toMillis(minFresh);
+		}
+		if (age < lifetime) {
+			return Freshness.FRESH;
+		}
+		long staleness = age - lifetime;
+		if (responseDirectives.containsKey("must-revalidate")) {
+			return Freshness.STALE;
+		}
+		if (requestDirectives.containsKey("max-stale")) {
+			long maxStale = getSeconds(requestDirectives, "max-stale");
+			if (maxStale == -1 || staleness <= TimeUnit.SECONDS.toMillis(maxStale)) {
+				return Freshness.FRESH;
+			}
+		}
+		long staleWhileRevalidate = getSeconds(responseDirectives, "stale-while-revalidate");
+		if (staleWhileRevalidate != -1 && staleness <= TimeUnit.SECONDS.toMillis(staleWhileRevalidate)) {
+			return Freshness.STALE_WHILE_REVALIDATE;
+		}
+		return Freshness.STALE;
+	}
+
+	/**
+	 * Return the headers to respond with for the given cached response, i.e.
+	 * its stored headers with an "Age" header for its current age.
+	 */
+	public HttpHeaders getResponseHeaders(CachedResponse response) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.putAll(response.getHeaders());
+		headers.set("Age", Long.toString(TimeUnit.MILLISECONDS.toSeconds(getAge(response))));
+		return headers;
+	}
+
+	/**
+	 * Add the headers for a conditional request to revalidate the given
+	 * cached response, based on its "ETag" and "Last-Modified" headers.
+	 * @param response the cached response to revalidate
+	 * @param requestHeaders the headers of the request to add to
+	 */
+	public void addConditionalHeaders(CachedResponse response, HttpHeaders requestHeaders) {
+		String etag = response.getHeaders().getETag();
+		if (etag != null) {
+			requestHeaders.setIfNoneMatch(etag);
+		}
+		long lastModified = response.getHeaders().getLastModified();
+		if (lastModified != -1) {
+			requestHeaders.setIfModifiedSince(lastModified);
+		}
+	}
+
+	/**
+	 * Return the current time of the {@link #setClock clock}, to be passed
+	 * as request time to {@link #store} and {@link #update}.
+	 */
+	public long currentTimeMillis() {
+		return this.clock.millis();
+	}
+
+
+	/**
+	 * Create a {@link CachedResponse} for a received response, and store it
+	 * if the response is {@link #isStorable storable}, and its body is within
+	 * the {@link #setMaxEntrySize max entry size}.
+	 * @param uri the URI of the request
+	 * @param requestHeaders the headers of the request
+	 * @param statusCode the status code of the response
+	 * @param responseHeaders the headers of the response
+	 * @param body the body of the response
+	 * @param requestTime the time at which the request was sent
+	 * @return the response, whether it was stored or not
+	 */
+	public CachedResponse store(URI uri, HttpHeaders requestHeaders, int statusCode, HttpHeaders responseHeaders,
+			byte[] body, long requestTime) {
+
+		Map<String, List<String>> varyHeaders = new LinkedHashMap<>();
+		for (String name : responseHeaders.getVary()) {
+			varyHeaders.put(name.toLowerCase(Locale.ENGLISH), getValues(requestHeaders, name));
+		}
+		CachedResponse response = createResponse(statusCode, responseHeaders, body, varyHeaders, requestTime);
+		if (body.length <= this.maxEntrySize && isStorable(requestHeaders, statusCode, responseHeaders)) {
+			this.store.put(uri.toString(), response);
+		}
+		return response;
+	}
+
+	/**
+	 * Update a cached response with the headers of a "304 Not Modified"
+	 * response to a conditional request that revalidated it.
+	 * @param uri the URI of the request
+	 * @param requestHeaders the headers of the request
+	 * @param response the cached response that was revalidated
+	 * @param notModifiedHeaders the headers of the "304 Not Modified" response
+	 * @param requestTime the time at which the conditional request was sent
+	 * @return the updated response
+	 */
+	public CachedResponse update(URI uri, HttpHeaders requestHeaders, CachedResponse response,
+			HttpHeaders notModifiedHeaders, long requestTime) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.putAll(response.getHeaders());
+		notModifiedHeaders.forEach((name, values) -> {
+			if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) &&
+					!HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)) {
+				headers.put(name, values);
+			}
+		});
+		CachedResponse updated = createResponse(response.getStatusCode(), headers, response.getBody(),
+				response.getVaryHeaders(), requestTime);
+		if (isStorable(requestHeaders, updated.getStatusCode(), headers)) {
+			this.store.put(uri.toString(), updated);
+		}
+		else {
+			this.store.remove(uri.toString());
+		}
+		return updated;
+	}
+
+	/**
+	 * Invalidate cached responses after a successful request with an unsafe
+	 * method, such as {@code POST} or {@code DELETE}.
+	 * @param method the method of the request
+	 * @param uri the URI of the request
+	 * @param statusCode the status code of the response
+	 * @param responseHeaders the headers of the response
+	 */
+	public void invalidate(HttpMethod method, URI uri, int statusCode, HttpHeaders responseHeaders) {
+		if (SAFE_METHODS.contains(method) || statusCode < 200 || statusCode >= 400) {
+			return;
+		}
+		this.store.remove(uri.toString());
+		invalidate(uri, responseHeaders.getFirst(HttpHeaders.LOCATION));
+		invalidate(uri, responseHeaders.getFirst(HttpHeaders.CONTENT_LOCATION));
+	}
+
+	private void invalidate(URI uri, @Nullable String location) {
+		if (location == null) {
+			return;
+		}
+		try {
+			URI resolved = uri.resolve(location);
+			if (uri.getHost() != null && uri.getHost().equalsIgnoreCase(resolved.getHost())) {
+				this.store.remove(resolved.toString());
+			}
+		}
+		catch (IllegalArgumentException ex) {
+			// Ignore invalid location
+		}
+	}
+
+
+	private CachedResponse createResponse(int statusCode, HttpHeaders headers, byte[] body,
+			Map<String, List<String>> varyHeaders, long requestTime) {
+
+		long responseTime = this.clock.millis();
+		long date = getDate(headers);
+		long apparentAge = (date != -1 ? Math.max(0, responseTime - date) : 0);
+		long ageValue = Math.max(0, parseSeconds(headers.getFirst("Age")));
+		long correctedAge = TimeUnit.SECONDS.toMillis(ageValue) + (responseTime - requestTime);
+		return new CachedResponse(statusCode, headers, body, varyHeaders, responseTime,
+				Math.max(apparentAge, correctedAge));
+	}
+
+	/**
+	 * Whether a response may be shared between users, even if the request
+	 * was authenticated, according to RFC 7234, section 3.2.
+	 */
+	private static boolean isShareable(Map<String, String> directives) {
+		return (directives.containsKey("public") || directives.containsKey("s-maxage"));
+	}
+
+	private long getAge(CachedResponse response) {
+		return response.getInitialAge() + Math.max(0, this.clock.millis() - response.getResponseTime());
+	}
+
+	private long getFreshnessLifetime(CachedResponse response, Map<String, String> directives) {
+		long maxAge = getSeconds(directives, "max-age");
+		if (maxAge != -1) {
+			return TimeUnit.SECONDS.toMillis(maxAge);
+		}
+		HttpHeaders headers = response.getHeaders();
+		long date = getDate(headers);
+		if (date == -1) {
+			date = response.getResponseTime();
+		}
+		if (headers.containsKey(HttpHeaders.EXPIRES)) {
+			return Math.max(0, headers.getExpires() - date);
+		}
+		long lastModified = headers.getLastModified();
+		if (lastModified != -1 && HEURISTICALLY_CACHEABLE_STATUS_CODES.contains(response.getStatusCode())) {
+			return Math.min(Math.max(0, (date - lastModified) / 10), MAX_HEURISTIC_LIFETIME);
+		}
+		return 0;
+	}
+
+	private static List<String> getValues(HttpHeaders headers, String name) {
+		List<String> values = headers.get(name);
+		return (values != null ? values : Collections.emptyList());
+	}
+
+	private static long getDate(HttpHeaders headers) {
+		try {
+			return headers.getDate();
+		}
+		catch (IllegalArgumentException ex) {
+			return -1;
+		}
+	}
+
+	private static long getSeconds(Map<String, String> directives, String name) {
+		String value = directives.get(name);
+		return (value != null ? parseSeconds(value) : -1);
+	}
+
+	private static long parseSeconds(@Nullable String value) {
+		if (!StringUtils.hasLength(value)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException ex) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Parse the "Cache-Control" headers into a map of lower-case directive
+	 * names to values, or to empty strings for directives without value.
+	 */
+	static Map<String, String> parseCacheControl(HttpHeaders headers) {
+		List<String> values = headers.get(HttpHeaders.CACHE_CONTROL);
+		if (values == null) {
+			return Collections.emptyMap();
+		}
+		Map<String, String> directives = new LinkedHashMap<>();
+		for (String value : values) {
+			boolean quoted = false;
+			int start = 0;
+			for (int i = 0; i <= value.length(); i++) {
+				char c = (i < value.length() ? value.charAt(i) : ',');
+				if (c == '"') {
+					quoted = !quoted;
+				}
+				else if (c == ',' && !quoted) {
+					addDirective(value.substring(start, i), directives);
+					start = i + 1;
+				}
+			}
+		}
+		return directives;
+	}
+
+	private static void addDirective(String directive, Map<String, String> directives) {
+		directive = directive.trim();
+		if (directive.isEmpty()) {
+			return;
+		}
+		int index = directive.indexOf('=');
+		if (index == -1) {
+			directives.put(directive.toLowerCase(Locale.ENGLISH), "");
+		}
+		else {
+			String name = directive.substring(0, index).trim().toLowerCase(Locale.ENGLISH);
+			String value = StringUtils.trimTrailingCharacter(
+					StringUtils.trimLeadingCharacter(directive.substring(index + 1).trim(), '"'), '"');
+			directives.put(name, value);
+		}
+	}
+
+
+	/**
+	 * Whether a cached response may be used for a request.
+	 */
+	public enum Freshness {
+
+		/**
+		 * The response is fresh, and may be used as is.
+		 */
+		FRESH,
+
+		/**
+		 * The response is stale, but may be used while it is revalidated
+		 * in the background.
+		 */
+		STALE_WHILE_REVALIDATE,
+
+		/**
+		 * The response must be revalidated before it may be used.
+		 */
+		STALE
+	}
+
+}
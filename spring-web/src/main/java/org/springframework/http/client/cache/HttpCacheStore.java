@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Storage for the entries of an {@link HttpCache}, keyed by request URI.
+ *
+ * <p>Implementations decide how many entries to keep, and which ones to evict,
+ * e.g. based on the {@link CachedResponse#getSize() size} of the entries.
+ * Implementations must be thread-safe.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @see InMemoryHttpCacheStore
+ */
+public interface HttpCacheStore {
+
+	/**
+	 * Return the entry for the given key, or {@code null} if none.
+	 * @param key the cache key
+	 */
+	@Nullable
+	CachedResponse get(String key);
+
+	/**
+	 * Store the given entry, replacing any existing entry for the same key.
+	 * @param key the cache key
+	 * @param response the entry to store
+	 */
+	void put(String key, CachedResponse response);
+
+	/**
+	 * Remove the entry for the given key, if any.
+	 * @param key the cache key
+	 */
+	void remove(String key);
+
+}
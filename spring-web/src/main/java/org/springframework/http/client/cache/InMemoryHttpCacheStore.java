@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * {@link HttpCacheStore} that keeps entries in memory, up to a maximum total
+ * {@link CachedResponse#getSize() size}, evicting the least recently used
+ * entries first.
+ *
+ * <p>For other eviction policies, e.g. frequency-based, implement
+ * {@link HttpCacheStore} on top of a cache library that provides them.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class InMemoryHttpCacheStore implements HttpCacheStore {
+
+	private final long maxSize;
+
+	private final Map<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long size;
+
+
+	/**
+	 * Create a new instance with a maximum size of 10 MB.
+	 */
+	public InMemoryHttpCacheStore() {
+		this(10 * 1024 * 1024);
+	}
+
+	/**
+	 * Create a new instance with the given maximum size.
+	 * @param maxSize the maximum total size of the entries, in bytes
+	 */
+	public InMemoryHttpCacheStore(long maxSize) {
+		Assert.isTrue(maxSize > 0, "Max size must be greater than 0");
+		this.maxSize = maxSize;
+	}
+
+
+	/**
+	 * Return the configured maximum total size of the entries, in bytes.
+	 */
+	public long getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * Return the current total size of the entries, in bytes.
+	 */
+	public synchronized long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Return the current number of entries.
+	 */
+	public synchronized int getEntryCount() {
+		return this.entries.size();
+	}
+
+
+	@Override
+	@Nullable
+	public synchronized CachedResponse get(String key) {
+		return this.entries.get(key);
+	}
+
+	@Override
+	public synchronized void put(String key, CachedResponse response) {
+		if (response.getSize() > this.maxSize) {
+			remove(key);
+			return;
+		}
+		CachedResponse previous = this.entries.put(key, response);
+		if (previous != null) {
+			this.size -= previous.getSize();
+		}
+		this.size += response.getSize();
+		Iterator<CachedResponse> iterator = this.entries.values().iterator();
+		while (this.size > this.maxSize && iterator.hasNext()) {
+			CachedResponse eldest = iterator.next();
+			if (eldest != response) {
+				iterator.remove();
+				this.size -= eldest.getSize();
+			}
+		}
+	}
+
+	@Override
+	public synchronized void remove(String key) {
+		CachedResponse previous = this.entries.remove(key);
+		if (previous != null) {
+			this.size -= previous.getSize();
+		}
+	}
+
+}
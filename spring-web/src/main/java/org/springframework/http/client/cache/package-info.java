@@ -0,0 +1,10 @@
+/**
+ * Private HTTP response cache for client-side use, following the
+ * caching semantics of RFC 7234, with a {@code RestTemplate} interceptor.
+ */
+@NonNullApi
+@NonNullFields
+package org.springframework.http.client.cache;
+
+import org.springframework.lang.NonNullApi;
+import org.springframework.lang.NonNullFields;
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.reactive;
+
+import java.net.URI;
+import java.time.Duration;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
+
+/**
+ * Timings and sizes of a single exchange performed through a
+ * {@link MetricsRecordingClientHttpConnector}.
+ *
+ * <p>All durations are measured from the moment the exchange was started,
+ * i.e. when the response was subscribed to, and therefore include the time
+ * spent waiting for a connection.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @see ClientHttpMetricsRecorder
+ */
+public final class ClientHttpExchangeMetrics {
+
+	private final HttpMethod method;
+
+	private final URI uri;
+
+	private final int statusCode;
+
+	@Nullable
+	private final Duration timeToFirstByte;
+
+	private final Duration duration;
+
+	private final long bytesSent;
+
+	private final long bytesReceived;
+
+	@Nullable
+	private final Throwable error;
+
+	private final boolean cancelled;
+
+
+	ClientHttpExchangeMetrics(HttpMethod method, URI uri, int statusCode, @Nullable Duration timeToFirstByte,
+			Duration duration, long bytesSent, long bytesReceived, @Nullable Throwable error, boolean cancelled) {
+
+		this.method = method;
+		this.uri = uri;
+		this.statusCode = statusCode;
+		this.timeToFirstByte = timeToFirstByte;
+		this.duration = duration;
+		this.bytesSent = bytesSent;
+		this.bytesReceived = bytesReceived;
+		this.error = error;
+		this.cancelled = cancelled;
+	}
+
+
+	/**
+	 * Return the HTTP method of the request.
+	 */
+	public HttpMethod getMethod() {
+		return this.method;
+	}
+
+	/**
+	 * Return the URI of the request.
+	 */
+	public URI getUri() {
+		return this.uri;
+	}
+
+	/**
+	 * Return the raw status code of the response, or -1 if no response
+	 * was received.
+	 */
+	public int getStatusCode() {
+		return this.statusCode;
+	}
+
+	/**
+	 * Return the time until the status and headers of the response were
+	 * received, or {@code null} if no response was received.
+	 */
+	@Nullable
+	public Duration getTimeToFirstByte() {
+		return this.timeToFirstByte;
+	}
+
+	/**
+	 * Return the time until the response body was fully received, or until
+	 * the exchange failed or was cancelled.
+	 */
+	public Duration getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * Return the number of request body bytes written.
+	 */
+	public long getBytesSent() {
+		return this.bytesSent;
+	}
+
+	/**
+	 * Return the number of response body bytes received.
+	 */
+	public long getBytesReceived() {
+		return this.bytesReceived;
+	}
+
+	/**
+	 * Return the error that terminated the exchange, if any.
+	 */
+	@Nullable
+	public Throwable getError() {
+		return this.error;
+	}
+
+	/**
+	 * Whether the exchange was cancelled before the response was fully received.
+	 */
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+
+	@Override
+	public String toString() {
+		return "ClientHttpExchangeMetrics[" + this.method + " " + this.uri + ", status=" + this.statusCode +
+				", timeToFirstByte=" + this.timeToFirstByte + ", duration=" + this.duration +
+				", bytesSent=" + this.bytesSent + ", bytesReceived=" + this.bytesReceived +
+				(this.error != null ? ", error=" + this.error : "") +
+				(this.cancelled ? ", cancelled" : "") + "]";
+	}
+
+}
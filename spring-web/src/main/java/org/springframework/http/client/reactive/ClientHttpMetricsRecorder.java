@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.reactive;
+
+/**
+ * Callback that receives the {@link ClientHttpExchangeMetrics} of each exchange
+ * performed through a {@link MetricsRecordingClientHttpConnector}.
+ *
+ * <p>Implementations are invoked on the thread that completes the exchange,
+ * typically an I/O thread of the underlying HTTP client, and must therefore
+ * not block. A typical implementation updates timers and counters, tagged
+ * with the {@link ClientHttpExchangeMetrics#getUri() host} and the
+ * {@link ClientHttpExchangeMetrics#getStatusCode() status} of the exchange.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+@FunctionalInterface
+public interface ClientHttpMetricsRecorder {
+
+	/**
+	 * Record the metrics of a completed exchange.
+	 * @param metrics the metrics of the exchange
+	 */
+	void record(ClientHttpExchangeMetrics metrics);
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.reactive;
+
+/**
+ * Live view of the state of the connection pool used by a
+ * {@link ClientHttpConnector}, aggregated over all hosts.
+ *
+ * <p>Each method returns the current value when invoked, so an instance may be
+ * registered once, e.g. as the source of gauges in a metrics library, and
+ * polled at any rate.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @see ReactorClientHttpConnector#getConnectionPoolMetrics()
+ * @see JettyClientHttpConnector#getConnectionPoolMetrics()
+ */
+public interface ConnectionPoolMetrics {
+
+	/**
+	 * Return the number of connections currently in use by a request.
+	 */
+	int getActiveConnections();
+
+	/**
+	 * Return the number of open connections currently available for reuse.
+	 */
+	int getIdleConnections();
+
+	/**
+	 * Return the number of requests currently waiting for a connection,
+	 * including requests for which a new connection is being established.
+	 */
+	int getPendingAcquisitions();
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,7 +20,12 @@ import java.net.URI;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.ConnectionPool;
+import org.eclipse.jetty.client.DuplexConnectionPool;
 import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.api.Destination;
 import org.eclipse.jetty.reactive.client.ContentChunk;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -43,6 +48,8 @@ public class JettyClientHttpConnector implements ClientHttpConnector {
 
 	private final HttpClient httpClient;
 
+	private final ConnectionPoolMetrics connectionPoolMetrics;
+
 	private DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
 
 
@@ -69,6 +76,7 @@ public class JettyClientHttpConnector implements ClientHttpConnector {
 			customizer.accept(httpClient);
 		}
 		this.httpClient = httpClient;
+		this.connectionPoolMetrics = new JettyConnectionPoolMetrics(httpClient);
 	}
 
 	/**
@@ -77,6 +85,7 @@ public class JettyClientHttpConnector implements ClientHttpConnector {
 	public JettyClientHttpConnector(HttpClient httpClient) {
 		Assert.notNull(httpClient, "HttpClient is required");
 		this.httpClient = httpClient;
+		this.connectionPoolMetrics = new JettyConnectionPoolMetrics(httpClient);
 	}
 
 
@@ -84,6 +93,18 @@ public class JettyClientHttpConnector implements ClientHttpConnector {
 		this.bufferFactory = bufferFactory;
 	}
 
+	/**
+	 * Return a live view of the connection pools of the {@link HttpClient},
+	 * aggregated over all destinations.
+	 * <p>Idle connections are reported for a {@link DuplexConnectionPool},
+	 * the default for HTTP/1.1, while for other pools all connections are
+	 * reported as active.
+	 * @since 5.2
+	 */
+	public ConnectionPoolMetrics getConnectionPoolMetrics() {
+		return this.connectionPoolMetrics;
+	}
+
 
 	@Override
 	public Mono<ClientHttpResponse> connect(HttpMethod method, URI uri,
@@ -127,4 +148,55 @@ public class JettyClientHttpConnector implements ClientHttpConnector {
 		return buffer;
 	}
 
+
+
+	/**
+	 * {@link ConnectionPoolMetrics} that sums up the counts of the connection
+	 * pools of all {@link HttpDestination HttpDestinations} of an HttpClient.
+	 */
+	private static class JettyConnectionPoolMetrics implements ConnectionPoolMetrics {
+
+		private final HttpClient httpClient;
+
+		JettyConnectionPoolMetrics(HttpClient httpClient) {
+			this.httpClient = httpClient;
+		}
+
+		@Override
+		public int getActiveConnections() {
+			int count = 0;
+			for (Destination destination : this.httpClient.getDestinations()) {
+				ConnectionPool pool = ((HttpDestination) destination).getConnectionPool();
+				if (pool instanceof DuplexConnectionPool) {
+					count += ((DuplexConnectionPool) pool).getActiveConnectionCount();
+				}
+				else if (pool instanceof AbstractConnectionPool) {
+					count += ((AbstractConnectionPool) pool).getConnectionCount();
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public int getIdleConnections() {
+			int count = 0;
+			for (Destination destination : this.httpClient.getDestinations()) {
+				ConnectionPool pool = ((HttpDestination) destination).getConnectionPool();
+				if (pool instanceof DuplexConnectionPool) {
+					count += ((DuplexConnectionPool) pool).getIdleConnectionCount();
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public int getPendingAcquisitions() {
+			int count = 0;
+			for (Destination destination : this.httpClient.getDestinations()) {
+				count += ((HttpDestination) destination).getQueuedRequestCount();
+			}
+			return count;
+		}
+	}
+
 }
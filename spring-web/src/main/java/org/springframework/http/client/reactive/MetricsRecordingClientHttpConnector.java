@@ -0,0 +1,234 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.reactive;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ClientHttpConnector} that decorates another connector, e.g. the
+ * {@link ReactorClientHttpConnector} or the {@link JettyClientHttpConnector},
+ * in order to pass the {@link ClientHttpExchangeMetrics} of each exchange to a
+ * {@link ClientHttpMetricsRecorder}.
+ *
+ * <p>The metrics of an exchange are recorded once, when the response body has
+ * been fully received, or when the exchange has failed or was cancelled.
+ * Measuring an exchange takes no more than a few timestamps and a count of
+ * the readable bytes of each body buffer.
+ *
+ * <p>Decorating a {@link ReactorClientHttpConnector} also enables the tracking
+ * of its connections, which is off by default, so that
+ * {@link #getConnectionPoolMetrics()} is available.
+ *
+ * <p>For use with the {@code WebClient}:
+ * <pre class="code">
+ * ClientHttpConnector connector = new MetricsRecordingClientHttpConnector(
+ *         new ReactorClientHttpConnector(), metrics -&gt; ...);
+ * WebClient client = WebClient.builder().clientConnector(connector).build();
+ * </pre>
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class MetricsRecordingClientHttpConnector implements ClientHttpConnector {
+
+	private static final Log logger = LogFactory.getLog(MetricsRecordingClientHttpConnector.class);
+
+
+	private final ClientHttpConnector delegate;
+
+	private final ClientHttpMetricsRecorder recorder;
+
+
+	/**
+	 * Create a new instance.
+	 * @param delegate the connector to perform exchanges with
+	 * @param recorder the recorder to pass the metrics of each exchange to
+	 */
+	public MetricsRecordingClientHttpConnector(ClientHttpConnector delegate, ClientHttpMetricsRecorder recorder) {
+		Assert.notNull(delegate, "Delegate is required");
+		Assert.notNull(recorder, "ClientHttpMetricsRecorder is required");
+		this.delegate = (delegate instanceof ReactorClientHttpConnector ?
+				((ReactorClientHttpConnector) delegate).withConnectionPoolMetrics() : delegate);
+		this.recorder = recorder;
+	}
+
+
+	/**
+	 * Return the decorated connector. For a {@link ReactorClientHttpConnector},
+	 * this is a connector for the same {@code HttpClient} that keeps track of
+	 * its connections.
+	 */
+	public ClientHttpConnector getDelegate() {
+		return this.delegate;
+	}
+
+	/**
+	 * Return a live view of the connection pool of the decorated connector,
+	 * if it is a {@link ReactorClientHttpConnector} or a
+	 * {@link JettyClientHttpConnector}.
+	 * @return the metrics, or {@code null} for other connectors
+	 */
+	@Nullable
+	public ConnectionPoolMetrics getConnectionPoolMetrics() {
+		if (this.delegate instanceof ReactorClientHttpConnector) {
+			return ((ReactorClientHttpConnector) this.delegate).getConnectionPoolMetrics();
+		}
+		if (this.delegate instanceof JettyClientHttpConnector) {
+			return ((JettyClientHttpConnector) this.delegate).getConnectionPoolMetrics();
+		}
+		return null;
+	}
+
+
+	@Override
+	public Mono<ClientHttpResponse> connect(HttpMethod method, URI uri,
+			Function<? super ClientHttpRequest, Mono<Void>> requestCallback) {
+
+		return Mono.defer(() -> {
+			ExchangeRecording recording = new ExchangeRecording(method, uri);
+			return this.delegate
+					.connect(method, uri, request -> requestCallback.apply(recording.decorate(request)))
+					.map(recording::decorate)
+					.doOnSuccess(response -> {
+						if (response == null) {
+							recording.complete();
+						}
+					})
+					.doOnError(recording::failed)
+					.doOnCancel(recording::responseCancelled);
+		});
+	}
+
+
+	/**
+	 * Measurements of a single exchange in progress.
+	 */
+	private class ExchangeRecording {
+
+		private final HttpMethod method;
+
+		private final URI uri;
+
+		private final long startTime = System.nanoTime();
+
+		private final AtomicBoolean recorded = new AtomicBoolean();
+
+		private volatile long responseTime;
+
+		private volatile int statusCode = -1;
+
+		private volatile long bytesSent;
+
+		private volatile long bytesReceived;
+
+		ExchangeRecording(HttpMethod method, URI uri) {
+			this.method = method;
+			this.uri = uri;
+		}
+
+		ClientHttpRequest decorate(ClientHttpRequest request) {
+			return new ClientHttpRequestDecorator(request) {
+				@Override
+				public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+					return super.writeWith(Flux.from(body).doOnNext(ExchangeRecording.this::sent));
+				}
+				@Override
+				public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+					return super.writeAndFlushWith(Flux.from(body)
+							.map(publisher -> Flux.from(publisher).doOnNext(ExchangeRecording.this::sent)));
+				}
+			};
+		}
+
+		ClientHttpResponse decorate(ClientHttpResponse response) {
+			this.responseTime = System.nanoTime();
+			this.statusCode = response.getRawStatusCode();
+			return new ClientHttpResponseDecorator(response) {
+				@Override
+				public Flux<DataBuffer> getBody() {
+					return super.getBody()
+							.doOnNext(ExchangeRecording.this::received)
+							.doOnComplete(ExchangeRecording.this::complete)
+							.doOnError(ExchangeRecording.this::failed)
+							.doOnCancel(ExchangeRecording.this::cancelled);
+				}
+			};
+		}
+
+		private void sent(DataBuffer buffer) {
+			this.bytesSent += buffer.readableByteCount();
+		}
+
+		private void received(DataBuffer buffer) {
+			this.bytesReceived += buffer.readableByteCount();
+		}
+
+		void complete() {
+			record(null, false);
+		}
+
+		void failed(Throwable ex) {
+			record(ex, false);
+		}
+
+		void cancelled() {
+			record(null, true);
+		}
+
+		void responseCancelled() {
+			// Ignore cancellation after the response was received: the body is still to be read
+			if (this.statusCode == -1) {
+				cancelled();
+			}
+		}
+
+		private void record(@Nullable Throwable error, boolean cancelled) {
+			if (!this.recorded.compareAndSet(false, true)) {
+				return;
+			}
+			long endTime = System.nanoTime();
+			int statusCode = this.statusCode;
+			ClientHttpExchangeMetrics metrics = new ClientHttpExchangeMetrics(this.method, this.uri, statusCode,
+					(statusCode != -1 ? Duration.ofNanos(this.responseTime - this.startTime) : null),
+					Duration.ofNanos(endTime - this.startTime), this.bytesSent, this.bytesReceived,
+					error, cancelled);
+			try {
+				MetricsRecordingClientHttpConnector.this.recorder.record(metrics);
+			}
+			catch (Throwable ex) {
+				if (logger.isWarnEnabled()) {
+					logger.warn("Failed to record " + metrics, ex);
+				}
+			}
+		}
+	}
+
+}
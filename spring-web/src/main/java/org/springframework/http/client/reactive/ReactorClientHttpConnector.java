@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,10 +17,18 @@
 package org.springframework.http.client.reactive;
 
 import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelId;
 import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.ConnectionObserver;
 import reactor.netty.NettyInbound;
 import reactor.netty.NettyOutbound;
 import reactor.netty.http.client.HttpClient;
@@ -30,6 +38,7 @@ import reactor.netty.resources.ConnectionProvider;
 import reactor.netty.resources.LoopResources;
 
 import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 
 /**
@@ -46,6 +55,9 @@ public class ReactorClientHttpConnector implements ClientHttpConnector {
 
 	private final HttpClient httpClient;
 
+	@Nullable
+	private final ReactorConnectionPoolMetrics connectionPoolMetrics;
+
 
 	/**
 	 * Default constructor. Initializes {@link HttpClient} via:
@@ -55,6 +67,7 @@ public class ReactorClientHttpConnector implements ClientHttpConnector {
 	 */
 	public ReactorClientHttpConnector() {
 		this.httpClient = defaultInitializer.apply(HttpClient.create());
+		this.connectionPoolMetrics = null;
 	}
 
 	/**
@@ -75,6 +88,7 @@ public class ReactorClientHttpConnector implements ClientHttpConnector {
 	 */
 	public ReactorClientHttpConnector(ReactorResourceFactory factory, Function<HttpClient, HttpClient> mapper) {
 		this.httpClient = defaultInitializer.andThen(mapper).apply(initHttpClient(factory));
+		this.connectionPoolMetrics = null;
 	}
 
 	private static HttpClient initHttpClient(ReactorResourceFactory resourceFactory) {
@@ -93,6 +107,38 @@ public class ReactorClientHttpConnector implements ClientHttpConnector {
 	public ReactorClientHttpConnector(HttpClient httpClient) {
 		Assert.notNull(httpClient, "HttpClient is required");
 		this.httpClient = httpClient;
+		this.connectionPoolMetrics = null;
+	}
+
+	private ReactorClientHttpConnector(HttpClient httpClient, ReactorConnectionPoolMetrics connectionPoolMetrics) {
+		this.httpClient = httpClient.observe(connectionPoolMetrics);
+		this.connectionPoolMetrics = connectionPoolMetrics;
+	}
+
+
+	/**
+	 * Return a live view of the connections used by this connector, if
+	 * connection pool metrics have been enabled by wrapping it with a
+	 * {@link MetricsRecordingClientHttpConnector}.
+	 * <p>Note that the counts are limited to connections that were acquired
+	 * through this connector, which is not necessarily the case for all
+	 * connections in the pool of a shared {@link ConnectionProvider}.
+	 * @return the metrics, or {@code null} if not enabled
+	 * @since 5.2
+	 * @see MetricsRecordingClientHttpConnector#getConnectionPoolMetrics()
+	 */
+	@Nullable
+	public ConnectionPoolMetrics getConnectionPoolMetrics() {
+		return this.connectionPoolMetrics;
+	}
+
+	/**
+	 * Return a connector for the same {@link HttpClient} that keeps track
+	 * of its connections, or this connector if it does so already.
+	 */
+	ReactorClientHttpConnector withConnectionPoolMetrics() {
+		return (this.connectionPoolMetrics != null ? this :
+				new ReactorClientHttpConnector(this.httpClient, new ReactorConnectionPoolMetrics()));
 	}
 
 
@@ -104,10 +150,29 @@ public class ReactorClientHttpConnector implements ClientHttpConnector {
 			return Mono.error(new IllegalArgumentException("URI is not absolute: " + uri));
 		}
 
+		ReactorConnectionPoolMetrics metrics = this.connectionPoolMetrics;
+		if (metrics == null) {
+			return exchange(method, uri, requestCallback, null);
+		}
+		return Mono.defer(() -> {
+			AtomicBoolean pending = metrics.acquisitionStarted();
+			return exchange(method, uri, requestCallback, () -> metrics.acquisitionEnded(pending))
+					.doFinally(signal -> metrics.acquisitionEnded(pending));
+		});
+	}
+
+	private Mono<ClientHttpResponse> exchange(HttpMethod method, URI uri,
+			Function<? super ClientHttpRequest, Mono<Void>> requestCallback, @Nullable Runnable connectionAcquired) {
+
 		return this.httpClient
 				.request(io.netty.handler.codec.http.HttpMethod.valueOf(method.name()))
 				.uri(uri.toString())
-				.send((request, outbound) -> requestCallback.apply(adaptRequest(method, uri, request, outbound)))
+				.send((request, outbound) -> {
+					if (connectionAcquired != null) {
+						connectionAcquired.run();
+					}
+					return requestCallback.apply(adaptRequest(method, uri, request, outbound));
+				})
 				.responseConnection((res, con) -> Mono.just(adaptResponse(res, con.inbound(), con.outbound().alloc())))
 				.next();
 	}
@@ -124,4 +189,67 @@ public class ReactorClientHttpConnector implements ClientHttpConnector {
 		return new ReactorClientHttpResponse(response, nettyInbound, allocator);
 	}
 
+
+
+	/**
+	 * {@link ConnectionObserver} that keeps track of the connections and of the
+	 * requests waiting for a connection.
+	 */
+	private static class ReactorConnectionPoolMetrics implements ConnectionPoolMetrics, ConnectionObserver {
+
+		private final Set<ChannelId> connections = ConcurrentHashMap.newKeySet();
+
+		private final Set<ChannelId> activeConnections = ConcurrentHashMap.newKeySet();
+
+		private final AtomicInteger pendingAcquisitions = new AtomicInteger();
+
+		@Override
+		public int getActiveConnections() {
+			return this.activeConnections.size();
+		}
+
+		@Override
+		public int getIdleConnections() {
+			return Math.max(0, this.connections.size() - this.activeConnections.size());
+		}
+
+		@Override
+		public int getPendingAcquisitions() {
+			return this.pendingAcquisitions.get();
+		}
+
+		AtomicBoolean acquisitionStarted() {
+			this.pendingAcquisitions.incrementAndGet();
+			return new AtomicBoolean(true);
+		}
+
+		void acquisitionEnded(AtomicBoolean pending) {
+			if (pending.compareAndSet(true, false)) {
+				this.pendingAcquisitions.decrementAndGet();
+			}
+		}
+
+		@Override
+		public void onStateChange(Connection connection, State newState) {
+			// CONNECTED for a new connection, ACQUIRED for a pooled one
+			if (newState == State.CONNECTED) {
+				Channel channel = connection.channel();
+				ChannelId id = channel.id();
+				if (this.connections.add(id)) {
+					channel.closeFuture().addListener(future -> {
+						this.connections.remove(id);
+						this.activeConnections.remove(id);
+					});
+				}
+				this.activeConnections.add(id);
+			}
+			else if (newState == State.ACQUIRED) {
+				this.activeConnections.add(connection.channel().id());
+			}
+			else if (newState == State.RELEASED) {
+				this.activeConnections.remove(connection.channel().id());
+			}
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -143,6 +143,29 @@ public interface CodecConfigurer {
 		 */
 		void jaxb2Encoder(Encoder<?> encoder);
 
+		/**
+		 * Configure a limit on the number of bytes that can be buffered whenever
+		 * the input stream needs to be aggregated. This can be a result of
+		 * decoding to a single {@code DataBuffer},
+		 * {@link java.nio.ByteBuffer ByteBuffer}, {@code byte[]},
+		 * {@link org.springframework.core.io.Resource Resource}, {@code String}, etc.
+		 * It can also occur when splitting the input stream, e.g. delimited text,
+		 * in which case the limit applies to data buffered between delimiters.
+		 * <p>The limit is applied to the decoders and readers created by default
+		 * that buffer input, such as JSON, XML and form data. It is not applied
+		 * to decoders configured explicitly, e.g. through
+		 * {@link #jackson2JsonDecoder}, nor does it change the Protobuf message
+		 * size limit or the in-memory threshold of a multipart reader, which
+		 * are configured on the respective codec. When it is exceeded, a
+		 * {@link org.springframework.core.io.buffer.DataBufferLimitException}
+		 * is raised as soon as the buffered input crosses the limit.
+		 * <p>By default this is not set, in which case individual codec defaults
+		 * apply, which is 256K for all of them.
+		 * @param byteCount the max number of bytes to buffer, or -1 for unlimited
+		 * @since 5.2
+		 */
+		void maxInMemorySize(int byteCount);
+
 		/**
 		 * Whether to log form data at DEBUG level, and headers at TRACE level.
 		 * Both may contain sensitive information.
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,8 @@ package org.springframework.http.codec;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -211,7 +213,8 @@ public class ResourceHttpMessageWriter implements HttpMessageWriter<Resource> {
 			}
 
 			response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
-			List<ResourceRegion> regions = HttpRange.toResourceRegions(ranges, resource);
+			List<ResourceRegion> regions = HttpRange.coalesceResourceRegions(
+					HttpRange.toResourceRegions(ranges, resource));
 			MediaType resourceMediaType = getResourceMediaType(mediaType, resource, hints);
 
 			if (regions.size() == 1){
@@ -231,8 +234,12 @@ public class ResourceHttpMessageWriter implements HttpMessageWriter<Resource> {
 				String boundary = MimeTypeUtils.generateMultipartBoundaryString();
 				MediaType multipartType = MediaType.parseMediaType("multipart/byteranges;boundary=" + boundary);
 				headers.setContentType(multipartType);
-				Map<String, Object> allHints = Hints.merge(hints, ResourceRegionEncoder.BOUNDARY_STRING_HINT, boundary);
-				return encodeAndWriteRegions(Flux.fromIterable(regions), resourceMediaType, response, allHints);
+				return zeroCopyRegions(regions, resourceMediaType, boundary, response, hints)
+						.orElseGet(() -> {
+							Map<String, Object> allHints =
+									Hints.merge(hints, ResourceRegionEncoder.BOUNDARY_STRING_HINT, boundary);
+							return encodeAndWriteRegions(Flux.fromIterable(regions), resourceMediaType, response, allHints);
+						});
 			}
 		});
 	}
@@ -248,6 +255,41 @@ public class ResourceHttpMessageWriter implements HttpMessageWriter<Resource> {
 				});
 	}
 
+	private static Optional<Mono<Void>> zeroCopyRegions(List<ResourceRegion> regions, MediaType mediaType,
+			String boundary, ReactiveHttpOutputMessage message, Map<String, Object> hints) {
+
+		Resource resource = regions.get(0).getResource();
+		long length = lengthOf(resource);
+		if (!(message instanceof ZeroCopyHttpOutputMessage) || !resource.isFile() || length == -1) {
+			return Optional.empty();
+		}
+
+		DataBufferFactory factory = message.bufferFactory();
+		List<DataBuffer> delimiters = new ArrayList<>(regions.size() + 1);
+		long contentLength = 0;
+		for (ResourceRegion region : regions) {
+			long start = region.getPosition();
+			long end = start + region.getCount() - 1;
+			byte[] bytes = getAsciiBytes("\r\n--" + boundary + "\r\n" +
+					"Content-Type: " + mediaType + "\r\n" +
+					"Content-Range: bytes " + start + '-' + end + '/' + length + "\r\n\r\n");
+			delimiters.add(factory.wrap(bytes));
+			contentLength += bytes.length + region.getCount();
+		}
+		byte[] endBoundary = getAsciiBytes("\r\n--" + boundary + "--");
+		delimiters.add(factory.wrap(endBoundary));
+		message.getHeaders().setContentLength(contentLength + endBoundary.length);
+
+		if (logger.isDebugEnabled()) {
+			logger.debug(Hints.getLogPrefix(hints) + "Zero-copy " + regions.size() + " regions of [" + resource + "]");
+		}
+		return Optional.of(((ZeroCopyHttpOutputMessage) message).writeWith(regions, delimiters));
+	}
+
+	private static byte[] getAsciiBytes(String in) {
+		return in.getBytes(StandardCharsets.US_ASCII);
+	}
+
 	private Mono<Void> encodeAndWriteRegions(Publisher<? extends ResourceRegion> publisher,
 			@Nullable MediaType mediaType, ReactiveHttpOutputMessage message, Map<String, Object> hints) {
 
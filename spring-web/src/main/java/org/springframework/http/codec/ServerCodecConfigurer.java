@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -76,6 +76,21 @@ public interface ServerCodecConfigurer extends CodecConfigurer {
 	 */
 	interface ServerDefaultCodecs extends DefaultCodecs {
 
+		/**
+		 * Configure the {@code HttpMessageReader} to use for multipart
+		 * requests, instead of the one based on Synchronoss NIO Multipart,
+		 * which is registered by default if present. For example:
+		 * <pre class="code">
+		 * DefaultPartHttpMessageReader partReader = new DefaultPartHttpMessageReader();
+		 * configurer.defaultCodecs().multipartReader(new MultipartHttpMessageReader(partReader));
+		 * </pre>
+		 * <p>The given reader is registered as is, i.e. the common settings of
+		 * the default codecs such as {@link #maxInMemorySize} are not applied.
+		 * @param reader the reader to use for multipart requests
+		 * @since 5.2
+		 */
+		void multipartReader(HttpMessageReader<?> reader);
+
 		/**
 		 * Configure the {@code Encoder} to use for Server-Sent Events.
 		 * <p>By default if this is not set, and Jackson is available, the
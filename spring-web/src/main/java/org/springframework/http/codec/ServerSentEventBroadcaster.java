@@ -0,0 +1,246 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.codec;
+
+import java.nio.charset.StandardCharsets;
+
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Hints;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.util.Assert;
+
+/**
+ * Broadcasts Server-Sent Events to any number of connected subscribers.
+ *
+ * <p>Each event is encoded only once, including its "data:" framing, by the
+ * configured {@link ServerSentEventHttpMessageWriter}, and the resulting bytes
+ * are shared by all subscribers. Each subscriber wraps the same bytes with the
+ * buffer factory of its own response, so that the memory used per connection
+ * is limited to a bounded queue of references to already encoded events.
+ *
+ * <p>Subscribers that cannot keep up with the rate of events are handled
+ * according to the configured {@link OverflowStrategy}, without affecting
+ * other subscribers.
+ *
+ * <p>To connect a response, use {@link #writeTo(ReactiveHttpOutputMessage)},
+ * e.g. from an annotated controller that takes a {@code ServerHttpResponse}
+ * argument, or as a body inserter in a functional endpoint:
+ * <pre class="code">
+ * ServerResponse.ok().body((response, context) -&gt; broadcaster.writeTo(response));
+ * </pre>
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class ServerSentEventBroadcaster {
+
+	private static final MediaType MEDIA_TYPE = new MediaType("text", "event-stream", StandardCharsets.UTF_8);
+
+	private static final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+
+	private final ServerSentEventHttpMessageWriter writer;
+
+	private final DirectProcessor<byte[]> processor = DirectProcessor.create();
+
+	private final FluxSink<byte[]> sink = this.processor.sink();
+
+	private int bufferSize = 256;
+
+	private OverflowStrategy overflowStrategy = OverflowStrategy.DROP_OLDEST;
+
+
+	/**
+	 * Constructor for a broadcaster that supports only {@code String} data.
+	 */
+	public ServerSentEventBroadcaster() {
+		this(new ServerSentEventHttpMessageWriter());
+	}
+
+	/**
+	 * Constructor with the writer to use to encode events.
+	 */
+	public ServerSentEventBroadcaster(ServerSentEventHttpMessageWriter writer) {
+		Assert.notNull(writer, "ServerSentEventHttpMessageWriter is required");
+		this.writer = writer;
+	}
+
+
+	/**
+	 * Set the maximum number of events to queue for a subscriber that is not
+	 * ready to receive more. When the limit is exceeded, the configured
+	 * {@link #setOverflowStrategy OverflowStrategy} applies.
+	 * <p>By default this is set to 256.
+	 */
+	public void setBufferSize(int bufferSize) {
+		Assert.isTrue(bufferSize > 0, "Buffer size must be greater than 0");
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Return the configured per subscriber buffer size.
+	 */
+	public int getBufferSize() {
+		return this.bufferSize;
+	}
+
+	/**
+	 * Set the strategy to apply to a subscriber that has exceeded its
+	 * {@link #setBufferSize buffer size}.
+	 * <p>By default this is set to {@link OverflowStrategy#DROP_OLDEST}.
+	 */
+	public void setOverflowStrategy(OverflowStrategy overflowStrategy) {
+		Assert.notNull(overflowStrategy, "OverflowStrategy is required");
+		this.overflowStrategy = overflowStrategy;
+	}
+
+	/**
+	 * Return the configured overflow strategy.
+	 */
+	public OverflowStrategy getOverflowStrategy() {
+		return this.overflowStrategy;
+	}
+
+	/**
+	 * Return the number of currently connected subscribers.
+	 */
+	public long getSubscriberCount() {
+		return this.processor.downstreamCount();
+	}
+
+
+	/**
+	 * Encode the given event once and send it to all connected subscribers.
+	 * The event is skipped, without being encoded, if there are no subscribers.
+	 * @param event a {@link ServerSentEvent}, or the data for one
+	 * @return completion signal for when the event has been encoded and handed
+	 * to the subscribers, or an error if encoding failed
+	 */
+	public Mono<Void> send(Object event) {
+		Assert.notNull(event, "Event must not be null");
+		return Mono.defer(() -> this.processor.hasDownstreams() ?
+				encode(event).doOnNext(this.sink::next).then() : Mono.empty());
+	}
+
+	/**
+	 * Complete the response of all connected subscribers. Subscribers that
+	 * connect afterwards are completed immediately.
+	 */
+	public void complete() {
+		this.sink.complete();
+	}
+
+	/**
+	 * Set the "Content-Type" of the given message to "text/event-stream" and
+	 * write broadcast events to it, flushing after each event.
+	 * @param message the message to write to
+	 * @return completion signal for when the broadcaster is completed, or an
+	 * error if the message could not be written to
+	 */
+	public Mono<Void> writeTo(ReactiveHttpOutputMessage message) {
+		DataBufferFactory factory = message.bufferFactory();
+		message.getHeaders().setContentType(MEDIA_TYPE);
+		return message.writeAndFlushWith(events().map(bytes -> Mono.just(factory.wrap(bytes))));
+	}
+
+	/**
+	 * Return the stream of encoded events for a new subscriber, with the
+	 * configured buffer size and overflow strategy applied.
+	 */
+	Flux<byte[]> events() {
+		switch (this.overflowStrategy) {
+			case DROP_LATEST:
+				return this.processor.onBackpressureBuffer(this.bufferSize, BufferOverflowStrategy.DROP_LATEST);
+			case LATEST:
+				return this.processor.onBackpressureLatest();
+			case DISCONNECT:
+				return Flux.defer(() -> {
+					MonoProcessor<Boolean> overflow = MonoProcessor.create();
+					return this.processor
+							.onBackpressureBuffer(this.bufferSize, bytes -> {
+								if (!overflow.isTerminated()) {
+									overflow.onNext(true);
+								}
+							}, BufferOverflowStrategy.DROP_LATEST)
+							.takeUntilOther(overflow);
+				});
+			default:
+				return this.processor.onBackpressureBuffer(this.bufferSize, BufferOverflowStrategy.DROP_OLDEST);
+		}
+	}
+
+	private Mono<byte[]> encode(Object event) {
+		ServerSentEvent<?> sse = (event instanceof ServerSentEvent ?
+				(ServerSentEvent<?>) event : ServerSentEvent.builder(event).build());
+		Object data = sse.data();
+		ResolvableType elementType = ResolvableType.forClassWithGenerics(ServerSentEvent.class,
+				data != null ? ResolvableType.forInstance(data) : ResolvableType.forClass(Object.class));
+
+		Flux<DataBuffer> buffers = this.writer.encode(Mono.just(sse), elementType, MEDIA_TYPE,
+				bufferFactory, Hints.none()).concatMap(publisher -> publisher);
+
+		return DataBufferUtils.join(buffers).map(buffer -> {
+			byte[] bytes = new byte[buffer.readableByteCount()];
+			buffer.read(bytes);
+			DataBufferUtils.release(buffer);
+			return bytes;
+		});
+	}
+
+
+	/**
+	 * Strategies for a subscriber that receives events faster than it can
+	 * write them, and has exceeded the configured buffer size.
+	 */
+	public enum OverflowStrategy {
+
+		/**
+		 * Drop the oldest buffered event to make room for the new one.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Drop the new event, keeping those already buffered.
+		 */
+		DROP_LATEST,
+
+		/**
+		 * Coalesce pending events, keeping only the most recent one, and
+		 * ignoring the buffer size.
+		 */
+		LATEST,
+
+		/**
+		 * Complete the response of the subscriber, which allows an
+		 * {@code EventSource} client to reconnect.
+		 */
+		DISCONNECT
+	}
+
+}
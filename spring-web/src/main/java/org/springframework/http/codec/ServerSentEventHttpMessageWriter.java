@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -110,7 +110,12 @@ public class ServerSentEventHttpMessageWriter implements HttpMessageWriter<Objec
 		return message.writeAndFlushWith(encode(input, elementType, mediaType, bufferFactory, hints));
 	}
 
-	private Flux<Publisher<DataBuffer>> encode(Publisher<?> input, ResolvableType elementType,
+	/**
+	 * Encode each element of the input into a separate publisher of buffers
+	 * that together represent one complete event, including its framing.
+	 * <p>Also used by {@link ServerSentEventBroadcaster} to encode events once.
+	 */
+	Flux<Publisher<DataBuffer>> encode(Publisher<?> input, ResolvableType elementType,
 			MediaType mediaType, DataBufferFactory factory, Map<String, Object> hints) {
 
 		ResolvableType valueType = (ServerSentEvent.class.isAssignableFrom(elementType.toClass()) ?
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -38,6 +39,8 @@ import org.springframework.core.codec.CodecException;
 import org.springframework.core.codec.DecodingException;
 import org.springframework.core.codec.Hints;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.log.LogFormatUtils;
 import org.springframework.http.codec.HttpMessageDecoder;
 import org.springframework.http.server.reactive.ServerHttpRequest;
@@ -63,6 +66,8 @@ public abstract class AbstractJackson2Decoder extends Jackson2CodecSupport imple
 	 */
 	private final JsonFactory jsonFactory;
 
+	private int maxInMemorySize = 256 * 1024;
+
 
 	/**
 	 * Constructor with a Jackson {@link ObjectMapper} to use.
@@ -74,9 +79,31 @@ public abstract class AbstractJackson2Decoder extends Jackson2CodecSupport imple
 	}
 
 
+	/**
+	 * Set the max number of bytes that can be buffered by this decoder. This
+	 * is either the size of the entire input when decoding as a whole, or the
+	 * size of one top-level JSON object within a JSON stream. When the limit
+	 * is exceeded, {@link DataBufferLimitException} is raised.
+	 * <p>By default this is set to 256K.
+	 * @param byteCount the max number of bytes to buffer, or -1 for unlimited
+	 * @since 5.2
+	 */
+	public void setMaxInMemorySize(int byteCount) {
+		this.maxInMemorySize = byteCount;
+	}
+
+	/**
+	 * Return the {@link #setMaxInMemorySize configured} byte count limit.
+	 * @since 5.2
+	 */
+	public int getMaxInMemorySize() {
+		return this.maxInMemorySize;
+	}
+
+
 	@Override
 	public boolean canDecode(ResolvableType elementType, @Nullable MimeType mimeType) {
-		JavaType javaType = getObjectMapper().getTypeFactory().constructType(elementType.getType());
+		JavaType javaType = getJavaType(elementType.getType(), null);
 		// Skip String: CharSequenceDecoder + "*/*" comes after
 		return (!CharSequence.class.isAssignableFrom(elementType.toClass()) &&
 				getObjectMapper().canDeserialize(javaType) && supportsMimeType(mimeType));
@@ -86,54 +113,88 @@ public abstract class AbstractJackson2Decoder extends Jackson2CodecSupport imple
 	public Flux<Object> decode(Publisher<DataBuffer> input, ResolvableType elementType,
 			@Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
 
-		Flux<TokenBuffer> tokens = Jackson2Tokenizer.tokenize(Flux.from(input), this.jsonFactory, true);
-		return decodeInternal(tokens, elementType, mimeType, hints);
+		Flux<TokenBuffer> tokens = Jackson2Tokenizer.tokenize(
+				Flux.from(input), this.jsonFactory, true, getMaxInMemorySize());
+		ObjectReader reader = getObjectReader(elementType, hints);
+
+		return tokens.handle((tokenBuffer, sink) -> {
+			try {
+				Object value = reader.readValue(tokenBuffer.asParser(getObjectMapper()));
+				logValue(value, hints);
+				if (value != null) {
+					sink.next(value);
+				}
+			}
+			catch (IOException ex) {
+				sink.error(processException(ex));
+			}
+		});
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>This implementation aggregates the input, without copying it where
+	 * {@link DataBufferUtils#compose(Publisher, int)} supports that, and
+	 * deserializes the value directly from a parser over that aggregate,
+	 * rather than going through {@link TokenBuffer TokenBuffers}.
+	 */
 	@Override
 	public Mono<Object> decodeToMono(Publisher<DataBuffer> input, ResolvableType elementType,
 			@Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
 
-		Flux<TokenBuffer> tokens = Jackson2Tokenizer.tokenize(Flux.from(input), this.jsonFactory, false);
-		return decodeInternal(tokens, elementType, mimeType, hints).singleOrEmpty();
+		ObjectReader reader = getObjectReader(elementType, hints);
+
+		return DataBufferUtils.compose(input, getMaxInMemorySize()).handle((dataBuffer, sink) -> {
+			try (JsonParser parser = this.jsonFactory.createParser(dataBuffer.asInputStream())) {
+				if (parser.nextToken() != null) {
+					Object value = reader.readValue(parser);
+					if (parser.nextToken() != null) {
+						sink.error(new DecodingException("JSON decoding error: Unexpected content " +
+								"after the end of the value at " + parser.getCurrentLocation()));
+						return;
+					}
+					logValue(value, hints);
+					if (value != null) {
+						sink.next(value);
+					}
+				}
+			}
+			catch (IOException ex) {
+				sink.error(processException(ex));
+			}
+			finally {
+				DataBufferUtils.release(dataBuffer);
+			}
+		});
 	}
 
-	private Flux<Object> decodeInternal(Flux<TokenBuffer> tokens, ResolvableType elementType,
-			@Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
-
-		Assert.notNull(tokens, "'tokens' must not be null");
+	private ObjectReader getObjectReader(ResolvableType elementType, @Nullable Map<String, Object> hints) {
 		Assert.notNull(elementType, "'elementType' must not be null");
-
 		MethodParameter param = getParameter(elementType);
 		Class<?> contextClass = (param != null ? param.getContainingClass() : null);
 		JavaType javaType = getJavaType(elementType.getType(), contextClass);
 		Class<?> jsonView = (hints != null ? (Class<?>) hints.get(Jackson2CodecSupport.JSON_VIEW_HINT) : null);
+		return getReaderWriterCache().getReader(javaType, jsonView);
+	}
 
-		ObjectReader reader = (jsonView != null ?
-				getObjectMapper().readerWithView(jsonView).forType(javaType) :
-				getObjectMapper().readerFor(javaType));
+	private void logValue(@Nullable Object value, @Nullable Map<String, Object> hints) {
+		if (!Hints.isLoggingSuppressed(hints)) {
+			LogFormatUtils.traceDebug(logger, traceOn -> {
+				String formatted = LogFormatUtils.formatValue(value, !traceOn);
+				return Hints.getLogPrefix(hints) + "Decoded [" + formatted + "]";
+			});
+		}
+	}
 
-		return tokens.flatMap(tokenBuffer -> {
-			try {
-				Object value = reader.readValue(tokenBuffer.asParser(getObjectMapper()));
-				if (!Hints.isLoggingSuppressed(hints)) {
-					LogFormatUtils.traceDebug(logger, traceOn -> {
-						String formatted = LogFormatUtils.formatValue(value, !traceOn);
-						return Hints.getLogPrefix(hints) + "Decoded [" + formatted + "]";
-					});
-				}
-				return Mono.justOrEmpty(value);
-			}
-			catch (InvalidDefinitionException ex) {
-				return Mono.error(new CodecException("Type definition error: " + ex.getType(), ex));
-			}
-			catch (JsonProcessingException ex) {
-				return Mono.error(new DecodingException("JSON decoding error: " + ex.getOriginalMessage(), ex));
-			}
-			catch (IOException ex) {
-				return Mono.error(new DecodingException("I/O error while parsing input stream", ex));
-			}
-		});
+	private Throwable processException(IOException ex) {
+		if (ex instanceof InvalidDefinitionException) {
+			return new CodecException("Type definition error: " + ((InvalidDefinitionException) ex).getType(), ex);
+		}
+		if (ex instanceof JsonProcessingException) {
+			String originalMessage = ((JsonProcessingException) ex).getOriginalMessage();
+			return new DecodingException("JSON decoding error: " + originalMessage, ex);
+		}
+		return new DecodingException("I/O error while parsing input stream", ex);
 	}
 
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -160,13 +160,7 @@ public abstract class AbstractJackson2Encoder extends Jackson2CodecSupport imple
 
 		JavaType javaType = getJavaType(elementType.getType(), null);
 		Class<?> jsonView = (hints != null ? (Class<?>) hints.get(Jackson2CodecSupport.JSON_VIEW_HINT) : null);
-		ObjectWriter writer = (jsonView != null ?
-				getObjectMapper().writerWithView(jsonView) : getObjectMapper().writer());
-
-		if (javaType.isContainerType()) {
-			writer = writer.forType(javaType);
-		}
-
+		ObjectWriter writer = getReaderWriterCache().getWriter(javaType, jsonView);
 		writer = customizeWriter(writer, mimeType, elementType, hints);
 
 		DataBuffer buffer = bufferFactory.allocateBuffer();
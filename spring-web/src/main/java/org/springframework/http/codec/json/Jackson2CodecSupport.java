@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,14 +27,13 @@ import java.util.Map;
 import com.fasterxml.jackson.annotation.JsonView;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
 import org.apache.commons.logging.Log;
 
-import org.springframework.core.GenericTypeResolver;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.codec.Hints;
 import org.springframework.http.HttpLogging;
+import org.springframework.http.converter.json.Jackson2ReaderWriterCache;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.util.MimeType;
@@ -71,6 +70,8 @@ public abstract class Jackson2CodecSupport {
 
 	private final List<MimeType> mimeTypes;
 
+	private volatile Jackson2ReaderWriterCache readerWriterCache;
+
 
 	/**
 	 * Constructor with a Jackson {@link ObjectMapper} to use.
@@ -80,6 +81,7 @@ public abstract class Jackson2CodecSupport {
 		this.objectMapper = objectMapper;
 		this.mimeTypes = !ObjectUtils.isEmpty(mimeTypes) ?
 				Collections.unmodifiableList(Arrays.asList(mimeTypes)) : DEFAULT_MIME_TYPES;
+		this.readerWriterCache = new Jackson2ReaderWriterCache(objectMapper);
 	}
 
 
@@ -87,6 +89,29 @@ public abstract class Jackson2CodecSupport {
 		return this.objectMapper;
 	}
 
+	/**
+	 * Specify the maximum number of Jackson types, readers and writers to cache,
+	 * per kind of instance, for reuse across requests.
+	 * <p>Default is {@link Jackson2ReaderWriterCache#DEFAULT_CACHE_LIMIT}. Set this
+	 * to 0 in order to create a new {@code ObjectReader} and {@code ObjectWriter}
+	 * for every request, e.g. when the {@code ObjectMapper} is being reconfigured
+	 * at runtime in ways the cache does not detect.
+	 * @since 5.2
+	 * @see Jackson2ReaderWriterCache
+	 */
+	public void setReaderWriterCacheLimit(int readerWriterCacheLimit) {
+		this.readerWriterCache = new Jackson2ReaderWriterCache(this.objectMapper, readerWriterCacheLimit);
+	}
+
+	/**
+	 * Return the cache of Jackson types, readers and writers derived from the
+	 * {@link #getObjectMapper() ObjectMapper}, e.g. for monitoring purposes.
+	 * @since 5.2
+	 */
+	public Jackson2ReaderWriterCache getReaderWriterCache() {
+		return this.readerWriterCache;
+	}
+
 	/**
 	 * Subclasses should expose this as "decodable" or "encodable" mime types.
 	 */
@@ -100,8 +125,7 @@ public abstract class Jackson2CodecSupport {
 	}
 
 	protected JavaType getJavaType(Type type, @Nullable Class<?> contextClass) {
-		TypeFactory typeFactory = this.objectMapper.getTypeFactory();
-		return typeFactory.constructType(GenericTypeResolver.resolveType(type, contextClass));
+		return this.readerWriterCache.getJavaType(type, contextClass);
 	}
 
 	protected Map<String, Object> getHints(ResolvableType resolvableType) {
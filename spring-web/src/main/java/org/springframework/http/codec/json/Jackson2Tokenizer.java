@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.http.codec.json;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
@@ -31,6 +32,7 @@ import reactor.core.publisher.Flux;
 
 import org.springframework.core.codec.DecodingException;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.util.Assert;
 
@@ -48,6 +50,10 @@ final class Jackson2Tokenizer {
 
 	private final boolean tokenizeArrayElements;
 
+	private final int maxInMemorySize;
+
+	private int byteCount;
+
 	private TokenBuffer tokenBuffer;
 
 	private int objectDepth;
@@ -58,12 +64,15 @@ final class Jackson2Tokenizer {
 	// See https://github.com/FasterXML/jackson-core/issues/478
 	private final ByteArrayFeeder inputFeeder;
 
+	private byte[] inputBuffer = new byte[0];
+
 
-	private Jackson2Tokenizer(JsonParser parser, boolean tokenizeArrayElements) {
+	private Jackson2Tokenizer(JsonParser parser, boolean tokenizeArrayElements, int maxInMemorySize) {
 		Assert.notNull(parser, "'parser' must not be null");
 
 		this.parser = parser;
 		this.tokenizeArrayElements = tokenizeArrayElements;
+		this.maxInMemorySize = maxInMemorySize;
 		this.tokenBuffer = new TokenBuffer(parser);
 		this.inputFeeder = (ByteArrayFeeder) this.parser.getNonBlockingInputFeeder();
 	}
@@ -80,9 +89,29 @@ final class Jackson2Tokenizer {
 	public static Flux<TokenBuffer> tokenize(Flux<DataBuffer> dataBuffers, JsonFactory jsonFactory,
 			boolean tokenizeArrayElements) {
 
+		return tokenize(dataBuffers, jsonFactory, tokenizeArrayElements, -1);
+	}
+
+	/**
+	 * Tokenize the given {@code Flux<DataBuffer>} into {@code Flux<TokenBuffer>},
+	 * raising a {@link DataBufferLimitException} if the input for a single
+	 * token buffer exceeds the given limit.
+	 * @param dataBuffers the source data buffers
+	 * @param jsonFactory the factory to use
+	 * @param tokenizeArrayElements if {@code true} and the "top level" JSON
+	 * object is an array, each element is returned individually, immediately
+	 * after it is received.
+	 * @param maxInMemorySize the maximum number of bytes to buffer for a single
+	 * token buffer, or -1 for unlimited
+	 * @return the result token buffers
+	 * @since 5.2
+	 */
+	public static Flux<TokenBuffer> tokenize(Flux<DataBuffer> dataBuffers, JsonFactory jsonFactory,
+			boolean tokenizeArrayElements, int maxInMemorySize) {
+
 		try {
 			JsonParser parser = jsonFactory.createNonBlockingByteArrayParser();
-			Jackson2Tokenizer tokenizer = new Jackson2Tokenizer(parser, tokenizeArrayElements);
+			Jackson2Tokenizer tokenizer = new Jackson2Tokenizer(parser, tokenizeArrayElements, maxInMemorySize);
 			return dataBuffers.flatMap(tokenizer::tokenize, Flux::error, tokenizer::endOfInput);
 		}
 		catch (IOException ex) {
@@ -91,13 +120,15 @@ final class Jackson2Tokenizer {
 	}
 
 	private Flux<TokenBuffer> tokenize(DataBuffer dataBuffer) {
-		byte[] bytes = new byte[dataBuffer.readableByteCount()];
-		dataBuffer.read(bytes);
-		DataBufferUtils.release(dataBuffer);
-
+		int bufferSize = dataBuffer.readableByteCount();
 		try {
-			this.inputFeeder.feedInput(bytes, 0, bytes.length);
-			return parseTokenBufferFlux();
+			feedInput(dataBuffer);
+			List<TokenBuffer> result = parseTokenBuffers();
+			assertInMemorySize(bufferSize, result);
+			return Flux.fromIterable(result);
+		}
+		catch (DataBufferLimitException ex) {
+			return Flux.error(ex);
 		}
 		catch (JsonProcessingException ex) {
 			return Flux.error(new DecodingException(
@@ -106,12 +137,38 @@ final class Jackson2Tokenizer {
 		catch (IOException ex) {
 			return Flux.error(ex);
 		}
+		finally {
+			DataBufferUtils.release(dataBuffer);
+		}
+	}
+
+	/**
+	 * Feed the readable bytes of the given buffer to the parser. The backing
+	 * array of heap buffers is fed as is, and the buffer is released only
+	 * after the parser has consumed it. Other buffers are copied into an input
+	 * array that is reused, since the parser has consumed all previous input
+	 * by the time the next buffer is fed.
+	 */
+	private void feedInput(DataBuffer dataBuffer) throws IOException {
+		int length = dataBuffer.readableByteCount();
+		ByteBuffer byteBuffer = dataBuffer.asByteBuffer();
+		if (byteBuffer.hasArray()) {
+			int offset = byteBuffer.arrayOffset() + byteBuffer.position();
+			this.inputFeeder.feedInput(byteBuffer.array(), offset, offset + length);
+		}
+		else {
+			if (this.inputBuffer.length < length) {
+				this.inputBuffer = new byte[length];
+			}
+			byteBuffer.get(this.inputBuffer, 0, length);
+			this.inputFeeder.feedInput(this.inputBuffer, 0, length);
+		}
 	}
 
 	private Flux<TokenBuffer> endOfInput() {
 		this.inputFeeder.endOfInput();
 		try {
-			return parseTokenBufferFlux();
+			return Flux.fromIterable(parseTokenBuffers());
 		}
 		catch (JsonProcessingException ex) {
 			return Flux.error(new DecodingException(
@@ -122,7 +179,7 @@ final class Jackson2Tokenizer {
 		}
 	}
 
-	private Flux<TokenBuffer> parseTokenBufferFlux() throws IOException {
+	private List<TokenBuffer> parseTokenBuffers() throws IOException {
 		List<TokenBuffer> result = new ArrayList<>();
 
 		while (true) {
@@ -141,7 +198,35 @@ final class Jackson2Tokenizer {
 				processTokenArray(token, result);
 			}
 		}
-		return Flux.fromIterable(result);
+		return result;
+	}
+
+	/**
+	 * Count the bytes of the given buffer towards the input of the token buffer
+	 * in progress, unless that token buffer was completed with this buffer.
+	 * The count is therefore an approximation, erring on the side of the bytes
+	 * of the buffer that completes a token buffer.
+	 */
+	private void assertInMemorySize(int currentBufferSize, List<TokenBuffer> result) {
+		if (this.maxInMemorySize >= 0) {
+			if (!result.isEmpty()) {
+				this.byteCount = 0;
+			}
+			else if (currentBufferSize > Integer.MAX_VALUE - this.byteCount) {
+				raiseLimitException();
+			}
+			else {
+				this.byteCount += currentBufferSize;
+				if (this.byteCount > this.maxInMemorySize) {
+					raiseLimitException();
+				}
+			}
+		}
+	}
+
+	private void raiseLimitException() {
+		throw new DataBufferLimitException(
+				"Exceeded limit on max bytes per JSON object: " + this.maxInMemorySize);
 	}
 
 	private void updateDepth(JsonToken token) {
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.codec.multipart;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.codec.Hints;
+import org.springframework.core.log.LogFormatUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpInputMessage;
+import org.springframework.http.codec.HttpMessageReader;
+import org.springframework.http.codec.LoggingCodecSupport;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Default {@code HttpMessageReader} for parsing {@code "multipart/form-data"}
+ * requests to a stream of {@link Part Parts}, without third-party dependencies.
+ *
+ * <p>Boundaries are located directly on the {@link org.springframework.core.io.buffer.DataBuffer
+ * DataBuffers} of the request body, and part content consists of slices of
+ * those buffers rather than copies. Content beyond the
+ * {@link #setMaxInMemorySize max in-memory size} of a part is written to a
+ * temporary file through an {@link java.nio.channels.AsynchronousFileChannel},
+ * so that large uploads do not block the calling thread. Temporary files are
+ * not removed automatically, and should be removed through
+ * {@link Part#delete()} once the part is no longer needed.
+ *
+ * <p>This reader can be provided to {@link MultipartHttpMessageReader} in order
+ * to aggregate all parts into a Map, and registered on the server through
+ * {@link org.springframework.http.codec.ServerCodecConfigurer.ServerDefaultCodecs#multipartReader}.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @see MultipartHttpMessageReader
+ */
+public class DefaultPartHttpMessageReader extends LoggingCodecSupport implements HttpMessageReader<Part> {
+
+	private static final String FILE_STORAGE_DIRECTORY_PREFIX = "spring-multipart-";
+
+
+	private int maxInMemorySize = 256 * 1024;
+
+	private int maxHeadersSize = 8 * 1024;
+
+	private long maxDiskUsagePerPart = -1;
+
+	private int maxParts = -1;
+
+	private Scheduler blockingOperationScheduler = Schedulers.elastic();
+
+	private Mono<Path> fileStorageDirectory = Mono.defer(this::createFileStorageDirectory).cache();
+
+
+	/**
+	 * Configure the maximum amount of memory allowed per part. When the limit
+	 * is exceeded, the content of file parts and of non-form-field parts is
+	 * written to a temporary file, while form field parts are rejected.
+	 * <p>By default this is set to 256K.
+	 * @param maxInMemorySize the in-memory limit in bytes
+	 */
+	public void setMaxInMemorySize(int maxInMemorySize) {
+		this.maxInMemorySize = maxInMemorySize;
+	}
+
+	/**
+	 * Return the configured maximum amount of memory allowed per part.
+	 */
+	public int getMaxInMemorySize() {
+		return this.maxInMemorySize;
+	}
+
+	/**
+	 * Configure the maximum amount of memory allowed for the headers of a part.
+	 * <p>By default this is set to 8K.
+	 * @param maxHeadersSize the headers size limit in bytes
+	 */
+	public void setMaxHeadersSize(int maxHeadersSize) {
+		this.maxHeadersSize = maxHeadersSize;
+	}
+
+	/**
+	 * Configure the maximum amount of disk space allowed per part.
+	 * <p>By default this is set to -1, i.e. unlimited.
+	 * @param maxDiskUsagePerPart the disk usage limit in bytes, or -1 for unlimited
+	 */
+	public void setMaxDiskUsagePerPart(long maxDiskUsagePerPart) {
+		this.maxDiskUsagePerPart = maxDiskUsagePerPart;
+	}
+
+	/**
+	 * Specify the maximum number of parts allowed in a given multipart request.
+	 * <p>By default this is set to -1, i.e. unlimited.
+	 * @param maxParts the maximum number of parts, or -1 for unlimited
+	 */
+	public void setMaxParts(int maxParts) {
+		this.maxParts = maxParts;
+	}
+
+	/**
+	 * Set the directory used to store parts larger than the
+	 * {@link #setMaxInMemorySize max in-memory size}.
+	 * <p>By default a new temporary directory is created on first use.
+	 * @param fileStorageDirectory the directory to store temporary files in
+	 * @throws IOException if the directory could not be created
+	 */
+	public void setFileStorageDirectory(Path fileStorageDirectory) throws IOException {
+		Assert.notNull(fileStorageDirectory, "FileStorageDirectory must not be null");
+		if (!Files.exists(fileStorageDirectory)) {
+			Files.createDirectories(fileStorageDirectory);
+		}
+		this.fileStorageDirectory = Mono.just(fileStorageDirectory);
+	}
+
+	/**
+	 * Set the Reactor {@link Scheduler} to be used for the creation and
+	 * deletion of temporary files, which involve blocking calls.
+	 * <p>By default this is {@link Schedulers#elastic()}.
+	 * @param blockingOperationScheduler the scheduler to use
+	 */
+	public void setBlockingOperationScheduler(Scheduler blockingOperationScheduler) {
+		Assert.notNull(blockingOperationScheduler, "Scheduler must not be null");
+		this.blockingOperationScheduler = blockingOperationScheduler;
+	}
+
+	private Mono<Path> createFileStorageDirectory() {
+		return Mono.fromCallable(() -> Files.createTempDirectory(FILE_STORAGE_DIRECTORY_PREFIX))
+				.subscribeOn(this.blockingOperationScheduler);
+	}
+
+
+	@Override
+	public List<MediaType> getReadableMediaTypes() {
+		return Collections.singletonList(MediaType.MULTIPART_FORM_DATA);
+	}
+
+	@Override
+	public boolean canRead(ResolvableType elementType, @Nullable MediaType mediaType) {
+		return Part.class.equals(elementType.toClass()) &&
+				(mediaType == null || MediaType.MULTIPART_FORM_DATA.isCompatibleWith(mediaType));
+	}
+
+
+	@Override
+	public Flux<Part> read(ResolvableType elementType, ReactiveHttpInputMessage message, Map<String, Object> hints) {
+		return Flux.defer(() -> {
+			byte[] boundary = getBoundary(message);
+			if (boundary == null) {
+				return Flux.error(new DecodingException("No multipart boundary found in Content-Type: \"" +
+						message.getHeaders().getContentType() + "\""));
+			}
+			Flux<MultipartParser.Token> tokens =
+					MultipartParser.parse(Flux.from(message.getBody()), boundary, this.maxHeadersSize);
+			return PartGenerator.createParts(tokens, this.maxInMemorySize, this.maxDiskUsagePerPart,
+					this.maxParts, this.fileStorageDirectory, this.blockingOperationScheduler);
+		})
+		.doOnNext(part -> {
+			if (!Hints.isLoggingSuppressed(hints)) {
+				LogFormatUtils.traceDebug(logger, traceOn -> Hints.getLogPrefix(hints) + "Parsed " +
+						(isEnableLoggingRequestDetails() ?
+								LogFormatUtils.formatValue(part, !traceOn) :
+								"parts '" + part.name() + "' (content masked)"));
+			}
+		});
+	}
+
+	@Override
+	public Mono<Part> readMono(ResolvableType elementType, ReactiveHttpInputMessage message, Map<String, Object> hints) {
+		return Mono.error(new UnsupportedOperationException("Cannot read multipart request body into single Part"));
+	}
+
+	@Nullable
+	private static byte[] getBoundary(ReactiveHttpInputMessage message) {
+		MediaType contentType = message.getHeaders().getContentType();
+		if (contentType != null) {
+			String boundary = contentType.getParameter("boundary");
+			if (StringUtils.hasLength(boundary)) {
+				if (boundary.length() > 2 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+					boundary = boundary.substring(1, boundary.length() - 1);
+				}
+				return boundary.getBytes(StandardCharsets.ISO_8859_1);
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.codec.multipart;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+
+/**
+ * Default implementations of {@link Part} and subtypes, as created by
+ * {@link DefaultPartHttpMessageReader}.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+abstract class DefaultParts {
+
+	private static final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+
+	/**
+	 * Create a new {@link FormFieldPart} with the given parameters.
+	 * @param headers the part headers
+	 * @param value the form field value
+	 * @return the created part
+	 */
+	public static FormFieldPart formFieldPart(HttpHeaders headers, String value) {
+		return new DefaultFormFieldPart(headers, value);
+	}
+
+	/**
+	 * Create a new {@link Part} or {@link FilePart} with the given parameters,
+	 * depending on whether the headers declare a filename.
+	 * @param headers the part headers
+	 * @param content the part content
+	 * @return the created part
+	 */
+	public static Part part(HttpHeaders headers, Content content) {
+		String filename = headers.getContentDisposition().getFilename();
+		return (filename != null ? new DefaultFilePart(headers, filename, content) : new DefaultPart(headers, content));
+	}
+
+	/**
+	 * Whether a part with the given headers is a form field, i.e. whether it
+	 * has no filename and no content type other than {@code text/plain}.
+	 */
+	static boolean isFormField(HttpHeaders headers) {
+		MediaType contentType = headers.getContentType();
+		return (headers.getContentDisposition().getFilename() == null &&
+				(contentType == null || MediaType.TEXT_PLAIN.equalsTypeAndSubtype(contentType)));
+	}
+
+	/**
+	 * Return the charset of a part, as declared in its content type,
+	 * or UTF-8 by default.
+	 */
+	static Charset getCharset(HttpHeaders headers) {
+		MediaType contentType = headers.getContentType();
+		Charset charset = (contentType != null ? contentType.getCharset() : null);
+		return (charset != null ? charset : StandardCharsets.UTF_8);
+	}
+
+	private static Mono<Void> writeTo(Flux<DataBuffer> content, Path dest) {
+		return Mono.using(
+				() -> AsynchronousFileChannel.open(dest,
+						StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+				channel -> DataBufferUtils.write(content, channel).map(DataBufferUtils::release).then(),
+				DefaultParts::closeChannel);
+	}
+
+	private static void closeChannel(AsynchronousFileChannel channel) {
+		try {
+			channel.close();
+		}
+		catch (IOException ignored) {
+		}
+	}
+
+
+	/**
+	 * The content of a part, held in memory or in a file.
+	 */
+	interface Content {
+
+		Flux<DataBuffer> content();
+
+		Mono<Void> transferTo(Path dest);
+
+		Mono<Void> delete();
+	}
+
+
+	/**
+	 * Content held in memory. The buffers are handed out as read-only
+	 * slices, so that the content can be consumed more than once.
+	 */
+	static final class MemoryContent implements Content {
+
+		private final List<DataBuffer> buffers;
+
+		MemoryContent(List<DataBuffer> buffers) {
+			this.buffers = buffers;
+		}
+
+		@Override
+		public Flux<DataBuffer> content() {
+			return Flux.fromIterable(this.buffers)
+					.map(buffer -> buffer.slice(buffer.readPosition(), buffer.readableByteCount()));
+		}
+
+		@Override
+		public Mono<Void> transferTo(Path dest) {
+			return writeTo(content(), dest);
+		}
+
+		@Override
+		public Mono<Void> delete() {
+			return Mono.empty();
+		}
+	}
+
+
+	/**
+	 * Content held in a (temporary) file.
+	 */
+	static final class FileContent implements Content {
+
+		private final Path file;
+
+		private final Scheduler blockingOperationScheduler;
+
+		FileContent(Path file, Scheduler blockingOperationScheduler) {
+			this.file = file;
+			this.blockingOperationScheduler = blockingOperationScheduler;
+		}
+
+		@Override
+		public Flux<DataBuffer> content() {
+			return DataBufferUtils.readAsynchronousFileChannel(
+					() -> AsynchronousFileChannel.open(this.file, StandardOpenOption.READ), bufferFactory, 4096);
+		}
+
+		@Override
+		public Mono<Void> transferTo(Path dest) {
+			return writeTo(content(), dest);
+		}
+
+		@Override
+		public Mono<Void> delete() {
+			return Mono.<Void>fromCallable(() -> {
+				Files.deleteIfExists(this.file);
+				return null;
+			}).subscribeOn(this.blockingOperationScheduler);
+		}
+	}
+
+
+	private abstract static class AbstractPart implements Part {
+
+		private final HttpHeaders headers;
+
+		AbstractPart(HttpHeaders headers) {
+			Assert.notNull(headers, "HttpHeaders is required");
+			this.headers = headers;
+		}
+
+		@Override
+		public String name() {
+			String name = this.headers.getContentDisposition().getName();
+			Assert.state(name != null, "No name available");
+			return name;
+		}
+
+		@Override
+		public HttpHeaders headers() {
+			return this.headers;
+		}
+	}
+
+
+	private static class DefaultFormFieldPart extends AbstractPart implements FormFieldPart {
+
+		private final String value;
+
+		DefaultFormFieldPart(HttpHeaders headers, String value) {
+			super(headers);
+			this.value = value;
+		}
+
+		@Override
+		public String value() {
+			return this.value;
+		}
+
+		@Override
+		public Flux<DataBuffer> content() {
+			return Flux.defer(() -> {
+				byte[] bytes = this.value.getBytes(getCharset(headers()));
+				return Flux.just(bufferFactory.wrap(bytes));
+			});
+		}
+
+		@Override
+		public String toString() {
+			return "Part '" + name() + "=" + this.value + "'";
+		}
+	}
+
+
+	private static class DefaultPart extends AbstractPart {
+
+		private final Content content;
+
+		DefaultPart(HttpHeaders headers, Content content) {
+			super(headers);
+			this.content = content;
+		}
+
+		@Override
+		public Flux<DataBuffer> content() {
+			return this.content.content();
+		}
+
+		@Override
+		public Mono<Void> delete() {
+			return this.content.delete();
+		}
+
+		Content getContent() {
+			return this.content;
+		}
+
+		@Override
+		public String toString() {
+			return "Part '" + name() + "', headers=" + headers();
+		}
+	}
+
+
+	private static final class DefaultFilePart extends DefaultPart implements FilePart {
+
+		private final String filename;
+
+		DefaultFilePart(HttpHeaders headers, String filename, Content content) {
+			super(headers, content);
+			this.filename = filename;
+		}
+
+		@Override
+		public String filename() {
+			return this.filename;
+		}
+
+		@Override
+		public Mono<Void> transferTo(Path dest) {
+			return getContent().transferTo(dest);
+		}
+
+		@Override
+		public String toString() {
+			return "Part '" + name() + "', filename='" + this.filename + "'";
+		}
+	}
+
+}
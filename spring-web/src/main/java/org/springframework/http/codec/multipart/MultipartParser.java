@@ -0,0 +1,370 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.codec.multipart;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Parses a stream of {@link DataBuffer DataBuffers} into a stream of
+ * {@link Token Tokens}, each representing either the headers of a part or a
+ * chunk of its body.
+ *
+ * <p>Body tokens are retained slices of the input buffers, so that part
+ * content is not copied while parsing, as long as the buffers support
+ * reference counting for their slices. Boundaries are located with a
+ * {@link DataBufferUtils.Matcher}, which keeps its state across buffers, so a
+ * boundary may be split over any number of input buffers. The last bytes of
+ * the body seen so far are therefore held back, until it is known whether
+ * they are the start of a boundary.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+final class MultipartParser {
+
+	private static final byte CR = '\r';
+
+	private static final byte LF = '\n';
+
+	private static final byte HYPHEN = '-';
+
+	private static final byte[] HEADERS_END = {CR, LF, CR, LF};
+
+	/** Used to let a matcher start with a line break seen. */
+	private static final DataBuffer CRLF = new DefaultDataBufferFactory().wrap(new byte[] {CR, LF});
+
+
+	private final byte[] delimiter;
+
+	private final DataBufferUtils.Matcher delimiterMatcher;
+
+	private final DataBufferUtils.Matcher headersEndMatcher = DataBufferUtils.matcher(HEADERS_END);
+
+	private final Deque<DataBuffer> heldBackBody = new ConcurrentLinkedDeque<>();
+
+	private int heldBackBodyLength;
+
+	private final int maxHeadersSize;
+
+	private final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(256);
+
+	private State state = State.PREAMBLE;
+
+	private final byte[] boundaryLineEnd = new byte[2];
+
+	private int boundaryLineEndCount;
+
+
+	private MultipartParser(byte[] boundary, int maxHeadersSize) {
+		this.delimiter = new byte[boundary.length + 4];
+		this.delimiter[0] = CR;
+		this.delimiter[1] = LF;
+		this.delimiter[2] = HYPHEN;
+		this.delimiter[3] = HYPHEN;
+		System.arraycopy(boundary, 0, this.delimiter, 4, boundary.length);
+		this.delimiterMatcher = DataBufferUtils.matcher(this.delimiter);
+		// The first boundary may appear at the very start, without a preceding CRLF
+		this.delimiterMatcher.match(CRLF);
+		this.maxHeadersSize = maxHeadersSize;
+	}
+
+
+	/**
+	 * Parse the given stream of buffers into a stream of tokens.
+	 * @param buffers the multipart body
+	 * @param boundary the multipart boundary
+	 * @param maxHeadersSize the maximum number of bytes for the headers of a part
+	 * @return the tokens
+	 */
+	public static Flux<Token> parse(Flux<DataBuffer> buffers, byte[] boundary, int maxHeadersSize) {
+		return Flux.defer(() -> {
+			MultipartParser parser = new MultipartParser(boundary, maxHeadersSize);
+			return buffers.concatMapIterable(parser::parseBuffer)
+					.concatWith(Mono.defer(parser::complete))
+					.doFinally(signalType -> parser.releaseHeldBackBody());
+		});
+	}
+
+
+	private List<Token> parseBuffer(DataBuffer buffer) {
+		List<Token> tokens = null;
+		try {
+			int pos = buffer.readPosition();
+			int end = buffer.writePosition();
+			while (pos < end) {
+				switch (this.state) {
+					case PREAMBLE:
+						int preambleEnd = match(this.delimiterMatcher, buffer, pos);
+						pos = (preambleEnd != -1 ? preambleEnd + 1 : end);
+						if (preambleEnd != -1) {
+							this.state = State.BOUNDARY_LINE_END;
+						}
+						break;
+					case BOUNDARY_LINE_END:
+						pos = parseBoundaryLineEnd(buffer, pos, end);
+						break;
+					case HEADERS:
+						int headersEnd = match(this.headersEndMatcher, buffer, pos);
+						int count = (headersEnd != -1 ? headersEnd + 1 : end) - pos;
+						if (this.headerBytes.size() + count > this.maxHeadersSize) {
+							throw new DecodingException("Part headers exceeded the limit of " +
+									this.maxHeadersSize + " bytes");
+						}
+						for (int i = pos; i < pos + count; i++) {
+							this.headerBytes.write(buffer.getByte(i));
+						}
+						pos += count;
+						if (headersEnd != -1) {
+							tokens = addToken(tokens, new HeadersToken(parseHeaders()));
+							this.delimiterMatcher.reset();
+							this.state = State.BODY;
+						}
+						break;
+					case BODY:
+						int bodyEnd = match(this.delimiterMatcher, buffer, pos);
+						int bodyLength = (bodyEnd != -1 ? bodyEnd + 1 - this.delimiter.length : end) - pos;
+						tokens = addBody(tokens, buffer, pos, bodyLength, bodyEnd != -1);
+						pos = (bodyEnd != -1 ? bodyEnd + 1 : end);
+						if (bodyEnd != -1) {
+							this.state = State.BOUNDARY_LINE_END;
+						}
+						break;
+					default:
+						// Epilogue: ignore
+						pos = end;
+				}
+			}
+			return (tokens != null ? tokens : Collections.emptyList());
+		}
+		catch (RuntimeException ex) {
+			if (tokens != null) {
+				tokens.forEach(Token::release);
+			}
+			throw ex;
+		}
+		finally {
+			DataBufferUtils.release(buffer);
+		}
+	}
+
+	private int parseBoundaryLineEnd(DataBuffer buffer, int pos, int end) {
+		while (pos < end && this.boundaryLineEndCount < 2) {
+			byte b = buffer.getByte(pos++);
+			if (this.boundaryLineEndCount == 0 && (b == ' ' || b == '\t')) {
+				// Transport padding
+				continue;
+			}
+			this.boundaryLineEnd[this.boundaryLineEndCount++] = b;
+		}
+		if (this.boundaryLineEndCount == 2) {
+			this.boundaryLineEndCount = 0;
+			if (this.boundaryLineEnd[0] == HYPHEN && this.boundaryLineEnd[1] == HYPHEN) {
+				this.state = State.EPILOGUE;
+			}
+			else if (this.boundaryLineEnd[0] == CR && this.boundaryLineEnd[1] == LF) {
+				this.headerBytes.reset();
+				// The CRLF of the boundary line may be the first half of the headers end
+				this.headersEndMatcher.reset();
+				this.headersEndMatcher.match(CRLF);
+				this.state = State.HEADERS;
+			}
+			else {
+				throw new DecodingException("Invalid multipart boundary line");
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * Find the next match of the given matcher in the given buffer, starting
+	 * at {@code pos}.
+	 */
+	private static int match(DataBufferUtils.Matcher matcher, DataBuffer buffer, int pos) {
+		buffer.readPosition(pos);
+		return matcher.match(buffer);
+	}
+
+	/**
+	 * Add the given number of body bytes, starting at {@code pos}. A negative
+	 * length means that the delimiter started that many bytes before, in body
+	 * bytes held back from previous buffers, which are dropped. Unless the
+	 * delimiter was found, enough bytes are held back again to cover the start
+	 * of a delimiter that may continue in the next buffer.
+	 */
+	private List<Token> addBody(List<Token> tokens, DataBuffer buffer, int pos, int length, boolean delimiterFound) {
+
+		if (length > 0) {
+			this.heldBackBody.add(retainedSlice(buffer, pos, length));
+			this.heldBackBodyLength += length;
+		}
+		else if (length < 0) {
+			dropHeldBackBody(-length);
+		}
+		int toHoldBack = (delimiterFound ? 0 : this.delimiter.length - 1);
+		DataBuffer first;
+		while ((first = this.heldBackBody.pollFirst()) != null) {
+			int count = first.readableByteCount();
+			if (this.heldBackBodyLength - count < toHoldBack) {
+				this.heldBackBody.addFirst(first);
+				break;
+			}
+			this.heldBackBodyLength -= count;
+			tokens = addToken(tokens, new BodyToken(first));
+		}
+		return tokens;
+	}
+
+	/**
+	 * Drop the given number of bytes from the end of the held back body,
+	 * since they turned out to be the start of the delimiter.
+	 */
+	private void dropHeldBackBody(int count) {
+		while (count > 0) {
+			DataBuffer last = this.heldBackBody.pollLast();
+			if (last == null) {
+				return;
+			}
+			int length = last.readableByteCount();
+			this.heldBackBodyLength -= length;
+			if (length > count) {
+				this.heldBackBody.add(retainedSlice(last, last.readPosition(), length - count));
+				this.heldBackBodyLength += length - count;
+			}
+			DataBufferUtils.release(last);
+			count -= length;
+		}
+	}
+
+	private void releaseHeldBackBody() {
+		DataBuffer buffer;
+		while ((buffer = this.heldBackBody.pollFirst()) != null) {
+			DataBufferUtils.release(buffer);
+		}
+	}
+
+	/**
+	 * Return a slice of the given buffer that remains valid after the buffer
+	 * is released. If the slice does not share the reference count of a pooled
+	 * buffer, the bytes are copied instead.
+	 */
+	private static DataBuffer retainedSlice(DataBuffer buffer, int index, int length) {
+		DataBuffer slice = buffer.slice(index, length);
+		if (!(buffer instanceof PooledDataBuffer) || slice instanceof PooledDataBuffer) {
+			return DataBufferUtils.retain(slice);
+		}
+		DataBuffer copy = buffer.factory().allocateBuffer(length);
+		copy.write(slice);
+		return copy;
+	}
+
+	private static List<Token> addToken(List<Token> tokens, Token token) {
+		List<Token> result = (tokens != null ? tokens : new ArrayList<>(4));
+		result.add(token);
+		return result;
+	}
+
+	private HttpHeaders parseHeaders() {
+		String text = new String(this.headerBytes.toByteArray(), StandardCharsets.UTF_8);
+		HttpHeaders headers = new HttpHeaders();
+		for (String line : text.split("\r\n")) {
+			int index = line.indexOf(':');
+			if (index > 0) {
+				headers.add(line.substring(0, index).trim(), line.substring(index + 1).trim());
+			}
+		}
+		return headers;
+	}
+
+	private Mono<Token> complete() {
+		if (this.state != State.EPILOGUE) {
+			return Mono.error(new DecodingException("Could not find end of multipart body"));
+		}
+		return Mono.empty();
+	}
+
+
+	private enum State {
+
+		PREAMBLE, BOUNDARY_LINE_END, HEADERS, BODY, EPILOGUE
+	}
+
+
+	/**
+	 * Output of the parser.
+	 */
+	abstract static class Token {
+
+		void release() {
+		}
+	}
+
+
+	/**
+	 * The headers of a part, starting the part.
+	 */
+	static final class HeadersToken extends Token {
+
+		private final HttpHeaders headers;
+
+		HeadersToken(HttpHeaders headers) {
+			this.headers = headers;
+		}
+
+		public HttpHeaders headers() {
+			return this.headers;
+		}
+	}
+
+
+	/**
+	 * A chunk of the body of the current part.
+	 */
+	static final class BodyToken extends Token {
+
+		private final DataBuffer buffer;
+
+		BodyToken(DataBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		public DataBuffer buffer() {
+			return this.buffer;
+		}
+
+		@Override
+		void release() {
+			DataBufferUtils.release(this.buffer);
+		}
+	}
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.codec.multipart;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.Nullable;
+
+/**
+ * Aggregates the {@link MultipartParser.Token tokens} of each part into a
+ * {@link Part}, keeping part content in memory up to a threshold, and writing
+ * it to a temporary file through an {@link AsynchronousFileChannel} beyond that.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+final class PartGenerator {
+
+	private static final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+
+	private final int maxInMemorySize;
+
+	private final long maxDiskUsagePerPart;
+
+	private final int maxParts;
+
+	private final Mono<Path> fileStorageDirectory;
+
+	private final Scheduler blockingOperationScheduler;
+
+	private int partCount;
+
+	@Nullable
+	private HttpHeaders headers;
+
+	private final List<DataBuffer> buffers = new ArrayList<>();
+
+	private long byteCount;
+
+	@Nullable
+	private Path file;
+
+	@Nullable
+	private AsynchronousFileChannel channel;
+
+
+	private PartGenerator(int maxInMemorySize, long maxDiskUsagePerPart, int maxParts,
+			Mono<Path> fileStorageDirectory, Scheduler blockingOperationScheduler) {
+
+		this.maxInMemorySize = maxInMemorySize;
+		this.maxDiskUsagePerPart = maxDiskUsagePerPart;
+		this.maxParts = maxParts;
+		this.fileStorageDirectory = fileStorageDirectory;
+		this.blockingOperationScheduler = blockingOperationScheduler;
+	}
+
+
+	/**
+	 * Aggregate the given tokens into parts.
+	 * @param tokens the tokens, as produced by {@link MultipartParser}
+	 * @param maxInMemorySize the maximum number of bytes of a part to keep in memory
+	 * @param maxDiskUsagePerPart the maximum number of bytes of a part to write
+	 * to disk, or -1 for no limit
+	 * @param maxParts the maximum number of parts, or -1 for no limit
+	 * @param fileStorageDirectory the directory to create temporary files in
+	 * @param blockingOperationScheduler the scheduler for file creation and deletion
+	 * @return the parts
+	 */
+	public static Flux<Part> createParts(Flux<MultipartParser.Token> tokens, int maxInMemorySize,
+			long maxDiskUsagePerPart, int maxParts, Mono<Path> fileStorageDirectory,
+			Scheduler blockingOperationScheduler) {
+
+		return Flux.defer(() -> {
+			PartGenerator generator = new PartGenerator(maxInMemorySize, maxDiskUsagePerPart, maxParts,
+					fileStorageDirectory, blockingOperationScheduler);
+			return tokens
+					.concatMap(generator::onToken)
+					.concatWith(Mono.defer(() -> Mono.justOrEmpty(generator.completePart())))
+					.doFinally(signalType -> {
+						if (signalType != SignalType.ON_COMPLETE) {
+							generator.discardPart();
+						}
+					});
+		});
+	}
+
+
+	private Publisher<Part> onToken(MultipartParser.Token token) {
+		if (token instanceof MultipartParser.HeadersToken) {
+			Part previous = completePart();
+			this.partCount++;
+			if (this.maxParts != -1 && this.partCount > this.maxParts) {
+				return Mono.justOrEmpty(previous).concatWith(Mono.error(new DecodingException(
+						"Too many parts (" + this.partCount + "/" + this.maxParts + " allowed)")));
+			}
+			this.headers = ((MultipartParser.HeadersToken) token).headers();
+			return Mono.justOrEmpty(previous);
+		}
+		DataBuffer buffer = ((MultipartParser.BodyToken) token).buffer();
+		if (this.headers == null) {
+			DataBufferUtils.release(buffer);
+			return Mono.error(new DecodingException("Part body without headers"));
+		}
+		this.byteCount += buffer.readableByteCount();
+		if (this.channel != null) {
+			return writeBuffers(Collections.singletonList(buffer));
+		}
+		this.buffers.add(buffer);
+		if (this.byteCount <= this.maxInMemorySize) {
+			return Mono.empty();
+		}
+		if (DefaultParts.isFormField(this.headers)) {
+			return Mono.error(new DecodingException("Form field part exceeded the limit of " +
+					this.maxInMemorySize + " bytes"));
+		}
+		List<DataBuffer> inMemory = new ArrayList<>(this.buffers);
+		this.buffers.clear();
+		return createFile().then(Mono.defer(() -> writeBuffers(inMemory)));
+	}
+
+	private Mono<Void> createFile() {
+		return this.fileStorageDirectory
+				.publishOn(this.blockingOperationScheduler)
+				.flatMap(directory -> {
+					try {
+						Path file = Files.createTempFile(directory, null, ".multipart");
+						this.file = file;
+						this.channel = AsynchronousFileChannel.open(file, StandardOpenOption.WRITE);
+						return Mono.<Void>empty();
+					}
+					catch (IOException ex) {
+						return Mono.error(new DecodingException("Could not store part content", ex));
+					}
+				});
+	}
+
+	private Mono<Part> writeBuffers(List<DataBuffer> buffers) {
+		long position = this.byteCount;
+		for (DataBuffer buffer : buffers) {
+			position -= buffer.readableByteCount();
+		}
+		if (this.maxDiskUsagePerPart != -1 && this.byteCount > this.maxDiskUsagePerPart) {
+			buffers.forEach(DataBufferUtils::release);
+			return Mono.error(new DecodingException("Part exceeded the disk usage limit of " +
+					this.maxDiskUsagePerPart + " bytes"));
+		}
+		AsynchronousFileChannel channel = this.channel;
+		if (channel == null) {
+			buffers.forEach(DataBufferUtils::release);
+			return Mono.error(new IllegalStateException("No file channel"));
+		}
+		return DataBufferUtils.write(Flux.fromIterable(buffers), channel, position)
+				.map(DataBufferUtils::release)
+				.then(Mono.<Part>empty());
+	}
+
+	@Nullable
+	private Part completePart() {
+		HttpHeaders headers = this.headers;
+		if (headers == null) {
+			return null;
+		}
+		try {
+			if (this.file != null) {
+				closeChannel();
+				return DefaultParts.part(headers, new DefaultParts.FileContent(this.file,
+						this.blockingOperationScheduler));
+			}
+			else if (DefaultParts.isFormField(headers)) {
+				byte[] bytes = new byte[(int) this.byteCount];
+				int offset = 0;
+				for (DataBuffer buffer : this.buffers) {
+					int count = buffer.readableByteCount();
+					buffer.read(bytes, offset, count);
+					offset += count;
+					DataBufferUtils.release(buffer);
+				}
+				return DefaultParts.formFieldPart(headers, new String(bytes, DefaultParts.getCharset(headers)));
+			}
+			else {
+				return DefaultParts.part(headers, new DefaultParts.MemoryContent(detachBuffers()));
+			}
+		}
+		finally {
+			this.headers = null;
+			this.buffers.clear();
+			this.byteCount = 0;
+			this.file = null;
+		}
+	}
+
+	/**
+	 * Return the in-memory buffers for use beyond the lifecycle of the request.
+	 * Pooled buffers are copied, so that they can be released right away.
+	 */
+	private List<DataBuffer> detachBuffers() {
+		List<DataBuffer> result = new ArrayList<>(this.buffers.size());
+		for (DataBuffer buffer : this.buffers) {
+			if (buffer instanceof PooledDataBuffer) {
+				byte[] bytes = new byte[buffer.readableByteCount()];
+				buffer.read(bytes);
+				DataBufferUtils.release(buffer);
+				result.add(bufferFactory.wrap(bytes));
+			}
+			else {
+				result.add(buffer);
+			}
+		}
+		return result;
+	}
+
+	private void discardPart() {
+		this.buffers.forEach(DataBufferUtils::release);
+		this.buffers.clear();
+		closeChannel();
+		Path file = this.file;
+		if (file != null) {
+			this.file = null;
+			this.blockingOperationScheduler.schedule(() -> {
+				try {
+					Files.deleteIfExists(file);
+				}
+				catch (IOException ignored) {
+				}
+			});
+		}
+	}
+
+	private void closeChannel() {
+		AsynchronousFileChannel channel = this.channel;
+		if (channel != null) {
+			this.channel = null;
+			try {
+				channel.close();
+			}
+			catch (IOException ignored) {
+			}
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,7 @@ import java.util.function.Function;
 import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.ExtensionRegistry;
 import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -75,7 +76,8 @@ public class ProtobufDecoder extends ProtobufCodecSupport implements Decoder<Mes
 	/** The default max size for aggregating messages. */
 	protected static final int DEFAULT_MESSAGE_MAX_SIZE = 64 * 1024;
 
-	private static final ConcurrentMap<Class<?>, Method> methodCache = new ConcurrentReferenceHashMap<>();
+	private static final ConcurrentMap<Class<?>, Parser<? extends Message>> parserCache =
+			new ConcurrentReferenceHashMap<>();
 
 	private final ExtensionRegistry extensionRegistry;
 
@@ -100,10 +102,23 @@ public class ProtobufDecoder extends ProtobufCodecSupport implements Decoder<Mes
 	}
 
 
+	/**
+	 * The max size allowed per message.
+	 * <p>By default this is set to 64K.
+	 * @param maxMessageSize the max size per message in bytes
+	 */
 	public void setMaxMessageSize(int maxMessageSize) {
 		this.maxMessageSize = maxMessageSize;
 	}
 
+	/**
+	 * Return the {@link #setMaxMessageSize configured} message size limit.
+	 * @since 5.2
+	 */
+	public int getMaxMessageSize() {
+		return this.maxMessageSize;
+	}
+
 
 	@Override
 	public boolean canDecode(ResolvableType elementType, @Nullable MimeType mimeType) {
@@ -122,12 +137,9 @@ public class ProtobufDecoder extends ProtobufCodecSupport implements Decoder<Mes
 	public Mono<Message> decodeToMono(Publisher<DataBuffer> inputStream, ResolvableType elementType,
 			@Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
 
-		return DataBufferUtils.join(inputStream).map(dataBuffer -> {
+		return DataBufferUtils.join(inputStream, this.maxMessageSize).map(dataBuffer -> {
 					try {
-						Message.Builder builder = getMessageBuilder(elementType.toClass());
-						ByteBuffer buffer = dataBuffer.asByteBuffer();
-						builder.mergeFrom(CodedInputStream.newInstance(buffer), this.extensionRegistry);
-						return builder.build();
+						return parseMessage(elementType.toClass(), dataBuffer.asByteBuffer());
 					}
 					catch (IOException ex) {
 						throw new DecodingException("I/O error while parsing input stream", ex);
@@ -143,16 +155,26 @@ public class ProtobufDecoder extends ProtobufCodecSupport implements Decoder<Mes
 	}
 
 	/**
-	 * Create a new {@code Message.Builder} instance for the given class.
-	 * <p>This method uses a ConcurrentHashMap for caching method lookups.
+	 * Parse a message of the given class from the given buffer, without
+	 * copying it, with the generated {@link Parser} of the message class.
+	 */
+	private Message parseMessage(Class<?> clazz, ByteBuffer buffer) throws Exception {
+		return getParser(clazz).parseFrom(CodedInputStream.newInstance(buffer), this.extensionRegistry);
+	}
+
+	/**
+	 * Return the {@code Parser} for the given message class.
+	 * <p>This method uses a ConcurrentReferenceHashMap for caching parsers,
+	 * obtained through the default instance of the message class.
 	 */
-	private static Message.Builder getMessageBuilder(Class<?> clazz) throws Exception {
-		Method method = methodCache.get(clazz);
-		if (method == null) {
-			method = clazz.getMethod("newBuilder");
-			methodCache.put(clazz, method);
+	private static Parser<? extends Message> getParser(Class<?> clazz) throws Exception {
+		Parser<? extends Message> parser = parserCache.get(clazz);
+		if (parser == null) {
+			Method method = clazz.getMethod("getDefaultInstance");
+			parser = ((Message) method.invoke(clazz)).getParserForType();
+			parserCache.put(clazz, parser);
 		}
-		return (Message.Builder) method.invoke(clazz);
+		return parser;
 	}
 
 	@Override
@@ -170,6 +192,8 @@ public class ProtobufDecoder extends ProtobufCodecSupport implements Decoder<Mes
 		@Nullable
 		private DataBuffer output;
 
+		private boolean readingMessage;
+
 		private int messageBytesToRead;
 
 		private int offset;
@@ -185,11 +209,8 @@ public class ProtobufDecoder extends ProtobufCodecSupport implements Decoder<Mes
 		public Iterable<? extends Message> apply(DataBuffer input) {
 			try {
 				List<Message> messages = new ArrayList<>();
-				int remainingBytesToRead;
-				int chunkBytesToRead;
-
 				do {
-					if (this.output == null) {
+					if (!this.readingMessage) {
 						if (!readMessageSize(input)) {
 							return messages;
 						}
@@ -199,27 +220,34 @@ public class ProtobufDecoder extends ProtobufCodecSupport implements Decoder<Mes
 											"(" + this.messageBytesToRead + ") exceeds " +
 											"the configured limit (" + this.maxMessageSize + ")");
 						}
-						this.output = input.factory().allocateBuffer(this.messageBytesToRead);
+						this.readingMessage = true;
 					}
 
-					chunkBytesToRead = this.messageBytesToRead >= input.readableByteCount() ?
-							input.readableByteCount() : this.messageBytesToRead;
-					remainingBytesToRead = input.readableByteCount() - chunkBytesToRead;
-
-					byte[] bytesToWrite = new byte[chunkBytesToRead];
-					input.read(bytesToWrite, 0, chunkBytesToRead);
-					this.output.write(bytesToWrite);
+					int readPosition = input.readPosition();
+					int chunkBytesToRead = Math.min(this.messageBytesToRead, input.readableByteCount());
+					if (this.output == null && chunkBytesToRead == this.messageBytesToRead) {
+						// The message is contained in the input: parse it in place
+						ByteBuffer buffer = input.asByteBuffer(readPosition, chunkBytesToRead);
+						messages.add(parseMessage(this.elementType.toClass(), buffer));
+					}
+					else {
+						if (this.output == null) {
+							this.output = input.factory().allocateBuffer(this.messageBytesToRead);
+						}
+						this.output.write(input.slice(readPosition, chunkBytesToRead));
+						if (chunkBytesToRead == this.messageBytesToRead) {
+							messages.add(parseMessage(this.elementType.toClass(), this.output.asByteBuffer()));
+							DataBufferUtils.release(this.output);
+							this.output = null;
+						}
+					}
+					input.readPosition(readPosition + chunkBytesToRead);
 					this.messageBytesToRead -= chunkBytesToRead;
-
 					if (this.messageBytesToRead == 0) {
-						Message.Builder builder = getMessageBuilder(this.elementType.toClass());
-						ByteBuffer buffer = this.output.asByteBuffer();
-						builder.mergeFrom(CodedInputStream.newInstance(buffer), extensionRegistry);
-						messages.add(builder.build());
-						DataBufferUtils.release(this.output);
-						this.output = null;
+						this.readingMessage = false;
 					}
-				} while (remainingBytesToRead > 0);
+				}
+				while (input.readableByteCount() > 0);
 				return messages;
 			}
 			catch (DecodingException ex) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,12 +17,12 @@
 package org.springframework.http.codec.protobuf;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Message;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
@@ -31,6 +31,7 @@ import reactor.core.publisher.Mono;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.HttpMessageEncoder;
 import org.springframework.lang.Nullable;
@@ -78,21 +79,36 @@ public class ProtobufEncoder extends ProtobufCodecSupport implements HttpMessage
 				.map(message -> encodeMessage(message, bufferFactory, !(inputStream instanceof Mono)));
 	}
 
+	/**
+	 * Encode the given message into a buffer of the exact serialized size,
+	 * which is known upfront, so that buffers from a pooling
+	 * {@link DataBufferFactory} are used as is, rather than grown as the
+	 * message is written.
+	 */
 	private DataBuffer encodeMessage(Message message, DataBufferFactory bufferFactory, boolean streaming) {
-		DataBuffer buffer = bufferFactory.allocateBuffer();
-		OutputStream outputStream = buffer.asOutputStream();
+		int messageSize = message.getSerializedSize();
+		int size = (streaming ? CodedOutputStream.computeUInt32SizeNoTag(messageSize) + messageSize : messageSize);
+		DataBuffer buffer = bufferFactory.allocateBuffer(size);
+		boolean release = true;
 		try {
+			CodedOutputStream outputStream = CodedOutputStream.newInstance(buffer.asByteBuffer(0, size));
 			if (streaming) {
-				message.writeDelimitedTo(outputStream);
-			}
-			else {
-				message.writeTo(outputStream);
+				outputStream.writeUInt32NoTag(messageSize);
 			}
+			message.writeTo(outputStream);
+			outputStream.flush();
+			buffer.writePosition(size);
+			release = false;
 			return buffer;
 		}
 		catch (IOException ex) {
 			throw new IllegalStateException("Unexpected I/O error while writing to data buffer", ex);
 		}
+		finally {
+			if (release) {
+				DataBufferUtils.release(buffer);
+			}
+		}
 	}
 
 	@Override
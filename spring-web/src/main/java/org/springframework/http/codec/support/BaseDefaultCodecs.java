@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.springframework.core.codec.AbstractDataBufferDecoder;
 import org.springframework.core.codec.ByteArrayDecoder;
 import org.springframework.core.codec.ByteArrayEncoder;
 import org.springframework.core.codec.ByteBufferDecoder;
@@ -38,6 +39,8 @@ import org.springframework.http.codec.FormHttpMessageReader;
 import org.springframework.http.codec.HttpMessageReader;
 import org.springframework.http.codec.HttpMessageWriter;
 import org.springframework.http.codec.ResourceHttpMessageWriter;
+import org.springframework.http.codec.ServerSentEventHttpMessageReader;
+import org.springframework.http.codec.json.AbstractJackson2Decoder;
 import org.springframework.http.codec.json.Jackson2JsonDecoder;
 import org.springframework.http.codec.json.Jackson2JsonEncoder;
 import org.springframework.http.codec.json.Jackson2SmileDecoder;
@@ -95,6 +98,9 @@ class BaseDefaultCodecs implements CodecConfigurer.DefaultCodecs {
 	@Nullable
 	private Encoder<?> jaxb2Encoder;
 
+	@Nullable
+	private Integer maxInMemorySize;
+
 	private boolean enableLoggingRequestDetails = false;
 
 	private boolean registerDefaults = true;
@@ -130,6 +136,16 @@ class BaseDefaultCodecs implements CodecConfigurer.DefaultCodecs {
 		this.jaxb2Encoder = encoder;
 	}
 
+	@Override
+	public void maxInMemorySize(int byteCount) {
+		this.maxInMemorySize = byteCount;
+	}
+
+	@Nullable
+	protected Integer maxInMemorySize() {
+		return this.maxInMemorySize;
+	}
+
 	@Override
 	public void enableLoggingRequestDetails(boolean enable) {
 		this.enableLoggingRequestDetails = enable;
@@ -155,19 +171,19 @@ class BaseDefaultCodecs implements CodecConfigurer.DefaultCodecs {
 			return Collections.emptyList();
 		}
 		List<HttpMessageReader<?>> readers = new ArrayList<>();
-		readers.add(new DecoderHttpMessageReader<>(new ByteArrayDecoder()));
-		readers.add(new DecoderHttpMessageReader<>(new ByteBufferDecoder()));
-		readers.add(new DecoderHttpMessageReader<>(new DataBufferDecoder()));
-		readers.add(new DecoderHttpMessageReader<>(new ResourceDecoder()));
-		readers.add(new DecoderHttpMessageReader<>(StringDecoder.textPlainOnly()));
+		addCodec(readers, new DecoderHttpMessageReader<>(new ByteArrayDecoder()));
+		addCodec(readers, new DecoderHttpMessageReader<>(new ByteBufferDecoder()));
+		addCodec(readers, new DecoderHttpMessageReader<>(new DataBufferDecoder()));
+		addCodec(readers, new DecoderHttpMessageReader<>(new ResourceDecoder()));
+		addCodec(readers, new DecoderHttpMessageReader<>(StringDecoder.textPlainOnly()));
 		if (protobufPresent) {
 			Decoder<?> decoder = this.protobufDecoder != null ? this.protobufDecoder : new ProtobufDecoder();
-			readers.add(new DecoderHttpMessageReader<>(decoder));
+			addCodec(readers, new DecoderHttpMessageReader<>(decoder));
 		}
 
 		FormHttpMessageReader formReader = new FormHttpMessageReader();
 		formReader.setEnableLoggingRequestDetails(this.enableLoggingRequestDetails);
-		readers.add(formReader);
+		addCodec(readers, formReader);
 
 		extendTypedReaders(readers);
 
@@ -180,6 +196,56 @@ class BaseDefaultCodecs implements CodecConfigurer.DefaultCodecs {
 	protected void extendTypedReaders(List<HttpMessageReader<?>> typedReaders) {
 	}
 
+	/**
+	 * Initialize the given codec, applying the common settings of this
+	 * instance, such as the {@link #maxInMemorySize(int) max in-memory size},
+	 * and add it to the given list.
+	 */
+	protected <T> void addCodec(List<T> codecs, T codec) {
+		initCodec(codec);
+		codecs.add(codec);
+	}
+
+	/**
+	 * Apply the common settings of this instance to the given codec and,
+	 * for a {@link DecoderHttpMessageReader}, to its decoder. Codecs that
+	 * were {@link #isCustomCodec configured by the application} are left as
+	 * they are.
+	 */
+	private void initCodec(@Nullable Object codec) {
+		if (codec instanceof DecoderHttpMessageReader) {
+			codec = ((DecoderHttpMessageReader<?>) codec).getDecoder();
+		}
+		Integer size = this.maxInMemorySize;
+		if (size == null || codec == null || isCustomCodec(codec)) {
+			return;
+		}
+		if (codec instanceof AbstractDataBufferDecoder) {
+			((AbstractDataBufferDecoder<?>) codec).setMaxInMemorySize(size);
+		}
+		if (jackson2Present && codec instanceof AbstractJackson2Decoder) {
+			((AbstractJackson2Decoder) codec).setMaxInMemorySize(size);
+		}
+		if (jaxb2Present && codec instanceof Jaxb2XmlDecoder) {
+			((Jaxb2XmlDecoder) codec).setMaxInMemorySize(size);
+		}
+		if (codec instanceof FormHttpMessageReader) {
+			((FormHttpMessageReader) codec).setMaxInMemorySize(size);
+		}
+		if (codec instanceof ServerSentEventHttpMessageReader) {
+			((ServerSentEventHttpMessageReader) codec).setMaxInMemorySize(size);
+			initCodec(((ServerSentEventHttpMessageReader) codec).getDecoder());
+		}
+	}
+
+	/**
+	 * Whether the given codec was configured by the application rather than
+	 * created by default.
+	 */
+	protected boolean isCustomCodec(Object codec) {
+		return (codec == this.jackson2JsonDecoder || codec == this.protobufDecoder || codec == this.jaxb2Decoder);
+	}
+
 	/**
 	 * Return Object readers (JSON, XML, SSE).
 	 */
@@ -189,14 +255,14 @@ class BaseDefaultCodecs implements CodecConfigurer.DefaultCodecs {
 		}
 		List<HttpMessageReader<?>> readers = new ArrayList<>();
 		if (jackson2Present) {
-			readers.add(new DecoderHttpMessageReader<>(getJackson2JsonDecoder()));
+			addCodec(readers, new DecoderHttpMessageReader<>(getJackson2JsonDecoder()));
 		}
 		if (jackson2SmilePresent) {
-			readers.add(new DecoderHttpMessageReader<>(new Jackson2SmileDecoder()));
+			addCodec(readers, new DecoderHttpMessageReader<>(new Jackson2SmileDecoder()));
 		}
 		if (jaxb2Present) {
 			Decoder<?> decoder = this.jaxb2Decoder != null ? this.jaxb2Decoder : new Jaxb2XmlDecoder();
-			readers.add(new DecoderHttpMessageReader<>(decoder));
+			addCodec(readers, new DecoderHttpMessageReader<>(decoder));
 		}
 		extendObjectReaders(readers);
 		return readers;
@@ -216,7 +282,7 @@ class BaseDefaultCodecs implements CodecConfigurer.DefaultCodecs {
 			return Collections.emptyList();
 		}
 		List<HttpMessageReader<?>> result = new ArrayList<>();
-		result.add(new DecoderHttpMessageReader<>(StringDecoder.allMimeTypes()));
+		addCodec(result, new DecoderHttpMessageReader<>(StringDecoder.allMimeTypes()));
 		return result;
 	}
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -76,7 +76,7 @@ class ClientDefaultCodecsImpl extends BaseDefaultCodecs implements ClientCodecCo
 
 	@Override
 	protected void extendObjectReaders(List<HttpMessageReader<?>> objectReaders) {
-		objectReaders.add(new ServerSentEventHttpMessageReader(getSseDecoder()));
+		addCodec(objectReaders, new ServerSentEventHttpMessageReader(getSseDecoder()));
 	}
 
 	@Nullable
@@ -84,6 +84,11 @@ class ClientDefaultCodecsImpl extends BaseDefaultCodecs implements ClientCodecCo
 		return (this.sseDecoder != null ? this.sseDecoder : jackson2Present ? getJackson2JsonDecoder() : null);
 	}
 
+	@Override
+	protected boolean isCustomCodec(Object codec) {
+		return (codec == this.sseDecoder || super.isCustomCodec(codec));
+	}
+
 	@Override
 	protected void extendTypedWriters(List<HttpMessageWriter<?>> typedWriters) {
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -39,10 +39,18 @@ class ServerDefaultCodecsImpl extends BaseDefaultCodecs implements ServerCodecCo
 					DefaultServerCodecConfigurer.class.getClassLoader());
 
 
+	@Nullable
+	private HttpMessageReader<?> multipartReader;
+
 	@Nullable
 	private Encoder<?> sseEncoder;
 
 
+	@Override
+	public void multipartReader(HttpMessageReader<?> reader) {
+		this.multipartReader = reader;
+	}
+
 	@Override
 	public void serverSentEventEncoder(Encoder<?> encoder) {
 		this.sseEncoder = encoder;
@@ -51,6 +59,10 @@ class ServerDefaultCodecsImpl extends BaseDefaultCodecs implements ServerCodecCo
 
 	@Override
 	protected void extendTypedReaders(List<HttpMessageReader<?>> typedReaders) {
+		if (this.multipartReader != null) {
+			typedReaders.add(this.multipartReader);
+			return;
+		}
 		if (synchronossMultipartPresent) {
 			boolean enable = isEnableLoggingRequestDetails();
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,10 @@ package org.springframework.http.codec.xml;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBElement;
@@ -70,11 +74,15 @@ public class Jaxb2XmlDecoder extends AbstractDecoder<Object> {
 	 */
 	private static final String JAXB_DEFAULT_ANNOTATION_VALUE = "##default";
 
+	private static final int UNMARSHALLER_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
 
 	private final XmlEventDecoder xmlEventDecoder = new XmlEventDecoder();
 
 	private final JaxbContextContainer jaxbContexts = new JaxbContextContainer();
 
+	private final ConcurrentMap<Class<?>, Queue<Unmarshaller>> unmarshallerPools = new ConcurrentHashMap<>(64);
+
 	private Function<Unmarshaller, Unmarshaller> unmarshallerProcessor = Function.identity();
 
 
@@ -90,6 +98,7 @@ public class Jaxb2XmlDecoder extends AbstractDecoder<Object> {
 	 */
 	public void setUnmarshallerProcessor(Function<Unmarshaller, Unmarshaller> processor) {
 		this.unmarshallerProcessor = this.unmarshallerProcessor.andThen(processor);
+		this.unmarshallerPools.clear();
 	}
 
 	/**
@@ -100,6 +109,28 @@ public class Jaxb2XmlDecoder extends AbstractDecoder<Object> {
 		return this.unmarshallerProcessor;
 	}
 
+	/**
+	 * Set the max number of bytes that can be buffered by this decoder.
+	 * This is the size of one top-level XML tree, or of the part of the
+	 * document up to and including the start tag of the root element.
+	 * When the limit is exceeded,
+	 * {@link org.springframework.core.io.buffer.DataBufferLimitException} is raised.
+	 * <p>By default this is set to 256K.
+	 * @param byteCount the max number of bytes to buffer, or -1 for unlimited
+	 * @since 5.2
+	 */
+	public void setMaxInMemorySize(int byteCount) {
+		this.xmlEventDecoder.setMaxInMemorySize(byteCount);
+	}
+
+	/**
+	 * Return the {@link #setMaxInMemorySize configured} byte count limit.
+	 * @since 5.2
+	 */
+	public int getMaxInMemorySize() {
+		return this.xmlEventDecoder.getMaxInMemorySize();
+	}
+
 
 	@Override
 	public boolean canDecode(ResolvableType elementType, @Nullable MimeType mimeType) {
@@ -138,15 +169,18 @@ public class Jaxb2XmlDecoder extends AbstractDecoder<Object> {
 
 	private Object unmarshal(List<XMLEvent> events, Class<?> outputClass) {
 		try {
-			Unmarshaller unmarshaller = initUnmarshaller(outputClass);
+			Unmarshaller unmarshaller = obtainUnmarshaller(outputClass);
 			XMLEventReader eventReader = StaxUtils.createXMLEventReader(events);
+			Object value;
 			if (outputClass.isAnnotationPresent(XmlRootElement.class)) {
-				return unmarshaller.unmarshal(eventReader);
+				value = unmarshaller.unmarshal(eventReader);
 			}
 			else {
 				JAXBElement<?> jaxbElement = unmarshaller.unmarshal(eventReader, outputClass);
-				return jaxbElement.getValue();
+				value = jaxbElement.getValue();
 			}
+			releaseUnmarshaller(outputClass, unmarshaller);
+			return value;
 		}
 		catch (UnmarshalException ex) {
 			throw new DecodingException("Could not unmarshal XML to " + outputClass, ex);
@@ -156,6 +190,22 @@ public class Jaxb2XmlDecoder extends AbstractDecoder<Object> {
 		}
 	}
 
+	/**
+	 * Return a pooled Unmarshaller for the given class, or initialize a new one.
+	 * Unmarshallers are not thread-safe but can be reused, which saves creating
+	 * one for each element of a stream.
+	 */
+	private Unmarshaller obtainUnmarshaller(Class<?> outputClass) throws JAXBException {
+		Queue<Unmarshaller> pool = this.unmarshallerPools.get(outputClass);
+		Unmarshaller unmarshaller = (pool != null ? pool.poll() : null);
+		return (unmarshaller != null ? unmarshaller : initUnmarshaller(outputClass));
+	}
+
+	private void releaseUnmarshaller(Class<?> outputClass, Unmarshaller unmarshaller) {
+		this.unmarshallerPools.computeIfAbsent(outputClass, key -> new ArrayBlockingQueue<>(UNMARSHALLER_POOL_SIZE))
+				.offer(unmarshaller);
+	}
+
 	private Unmarshaller initUnmarshaller(Class<?> outputClass) throws JAXBException {
 		Unmarshaller unmarshaller = this.jaxbContexts.createUnmarshaller(outputClass);
 		return this.unmarshallerProcessor.apply(unmarshaller);
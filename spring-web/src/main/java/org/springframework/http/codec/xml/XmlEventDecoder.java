@@ -16,14 +16,25 @@
 
 package org.springframework.http.codec.xml;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartDocument;
 import javax.xml.stream.events.XMLEvent;
 import javax.xml.stream.util.XMLEventAllocator;
 
@@ -39,11 +50,15 @@ import reactor.core.publisher.Mono;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.codec.AbstractDecoder;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.LimitedDataBufferList;
+import org.springframework.core.io.buffer.PooledDataBuffer;
 import org.springframework.lang.Nullable;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.MimeType;
 import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.util.xml.StaxUtils;
 
 /**
@@ -87,37 +102,58 @@ public class XmlEventDecoder extends AbstractDecoder<XMLEvent> {
 
 	boolean useAalto = aaltoPresent;
 
+	private int maxInMemorySize = 256 * 1024;
+
 
 	public XmlEventDecoder() {
 		super(MimeTypeUtils.APPLICATION_XML, MimeTypeUtils.TEXT_XML);
 	}
 
 
+	/**
+	 * Set the max number of bytes that can be buffered by this decoder. This
+	 * is the size of one top-level XML tree, i.e. of one child element of the
+	 * root element, or of the part of the document up to and including the
+	 * start tag of the root element. Without Aalto, a document in an encoding
+	 * that is not ASCII-compatible, such as UTF-16, is buffered as a whole,
+	 * and this is the size of the document. When the limit is exceeded,
+	 * {@link DataBufferLimitException} is raised.
+	 * <p>By default this is set to 256K.
+	 * @param byteCount the max number of bytes to buffer, or -1 for unlimited
+	 * @since 5.2
+	 */
+	public void setMaxInMemorySize(int byteCount) {
+		this.maxInMemorySize = byteCount;
+	}
+
+	/**
+	 * Return the {@link #setMaxInMemorySize configured} byte count limit.
+	 * @since 5.2
+	 */
+	public int getMaxInMemorySize() {
+		return this.maxInMemorySize;
+	}
+
+
 	@Override
-	@SuppressWarnings({"rawtypes", "unchecked"})  // on JDK 9 where XMLEventReader is Iterator<Object>
 	public Flux<XMLEvent> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType,
 			@Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
 
 		Flux<DataBuffer> flux = Flux.from(inputStream);
 		if (this.useAalto) {
-			AaltoDataBufferToXmlEvent aaltoMapper = new AaltoDataBufferToXmlEvent();
-			return flux.flatMap(aaltoMapper)
-					.doFinally(signalType -> aaltoMapper.endOfInput());
+			return Flux.defer(() -> {
+				AaltoDataBufferToXmlEvent aaltoMapper = new AaltoDataBufferToXmlEvent(this.maxInMemorySize);
+				return flux.flatMap(aaltoMapper)
+						.doFinally(signalType -> aaltoMapper.endOfInput());
+			});
 		}
 		else {
-			Mono<DataBuffer> singleBuffer = DataBufferUtils.join(flux);
-			return singleBuffer.
-					flatMapMany(dataBuffer -> {
-						try {
-							InputStream is = dataBuffer.asInputStream();
-							Iterator eventReader = inputFactory.createXMLEventReader(is);
-							return Flux.fromIterable((Iterable<XMLEvent>) () -> eventReader)
-									.doFinally(t -> DataBufferUtils.release(dataBuffer));
-						}
-						catch (XMLStreamException ex) {
-							return Mono.error(ex);
-						}
-					});
+			return Flux.defer(() -> {
+				StaxDataBufferToXmlEvent staxMapper = new StaxDataBufferToXmlEvent(this.maxInMemorySize);
+				return flux.flatMap(staxMapper)
+						.concatWith(Flux.defer(staxMapper::endOfInput))
+						.doFinally(signalType -> staxMapper.release());
+			});
 		}
 	}
 
@@ -135,12 +171,25 @@ public class XmlEventDecoder extends AbstractDecoder<XMLEvent> {
 
 		private final XMLEventAllocator eventAllocator = EventAllocatorImpl.getDefaultInstance();
 
+		private final int maxInMemorySize;
+
+		private int byteCount;
+
+		private int elementDepth;
+
+
+		public AaltoDataBufferToXmlEvent(int maxInMemorySize) {
+			this.maxInMemorySize = maxInMemorySize;
+		}
+
 
 		@Override
 		public Publisher<? extends XMLEvent> apply(DataBuffer dataBuffer) {
 			try {
+				int bufferSize = dataBuffer.readableByteCount();
 				this.streamReader.getInputFeeder().feedInput(dataBuffer.asByteBuffer());
 				List<XMLEvent> events = new ArrayList<>();
+				boolean topLevelTreeBoundary = false;
 				while (true) {
 					if (this.streamReader.next() == AsyncXMLStreamReader.EVENT_INCOMPLETE) {
 						// no more events with what currently has been fed to the reader
@@ -149,14 +198,16 @@ public class XmlEventDecoder extends AbstractDecoder<XMLEvent> {
 					else {
 						XMLEvent event = this.eventAllocator.allocate(this.streamReader);
 						events.add(event);
+						topLevelTreeBoundary |= updateElementDepth(event);
 						if (event.isEndDocument()) {
 							break;
 						}
 					}
 				}
+				assertInMemorySize(bufferSize, topLevelTreeBoundary);
 				return Flux.fromIterable(events);
 			}
-			catch (XMLStreamException ex) {
+			catch (XMLStreamException | DataBufferLimitException ex) {
 				return Mono.error(ex);
 			}
 			finally {
@@ -164,9 +215,532 @@ public class XmlEventDecoder extends AbstractDecoder<XMLEvent> {
 			}
 		}
 
+		/**
+		 * Update the element depth, returning whether the event starts or
+		 * ends a top-level tree, i.e. a child element of the root element.
+		 */
+		private boolean updateElementDepth(XMLEvent event) {
+			if (event.isStartElement()) {
+				return (++this.elementDepth == 2);
+			}
+			else if (event.isEndElement()) {
+				return (this.elementDepth-- == 2);
+			}
+			return false;
+		}
+
+		private void assertInMemorySize(int bufferSize, boolean topLevelTreeBoundary) {
+			if (this.maxInMemorySize >= 0) {
+				if (topLevelTreeBoundary) {
+					this.byteCount = 0;
+				}
+				else if (bufferSize > Integer.MAX_VALUE - this.byteCount) {
+					raiseLimitException();
+				}
+				else {
+					this.byteCount += bufferSize;
+					if (this.byteCount > this.maxInMemorySize) {
+						raiseLimitException();
+					}
+				}
+			}
+		}
+
+		private void raiseLimitException() {
+			throw new DataBufferLimitException(
+					"Exceeded limit on max bytes per XML top-level node: " + this.maxInMemorySize);
+		}
+
 		public void endOfInput() {
 			this.streamReader.getInputFeeder().endOfInput();
 		}
 	}
 
+
+	/**
+	 * Incremental decoding for when Aalto is not available. The input is
+	 * scanned for the boundaries of top-level trees, i.e. child elements of
+	 * the root element, and each tree is parsed with a regular StAX parser as
+	 * soon as it is complete. The part of the document up to and including
+	 * the start tag of the root element is kept, and parsed along with each
+	 * tree, so that namespace declarations and the encoding are in scope.
+	 * Only the bytes of the current tree are held in memory.
+	 * <p>Scanning for boundaries relies on markup characters being encoded as
+	 * in ASCII. The start of the input is checked for a byte order mark, the
+	 * byte pattern of {@code "<?xml"}, or an {@code encoding} declaration
+	 * indicating otherwise, e.g. UTF-16 or UTF-32, in which case the whole
+	 * document is buffered and parsed at the end of the input instead.
+	 */
+	private static class StaxDataBufferToXmlEvent implements Function<DataBuffer, Publisher<? extends XMLEvent>> {
+
+		private static final int MAX_DECLARATION_LENGTH = 1024;
+
+		private static final String MARKUP_CHARACTERS = "<>/?!-[]=\"'";
+
+		private static final Pattern ENCODING_PATTERN = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+		private final int maxInMemorySize;
+
+		private final LimitedDataBufferList buffers;
+
+		private final List<DataBuffer> head = new ArrayList<>();
+
+		private boolean detectingEncoding = true;
+
+		private boolean bufferDocument;
+
+		@Nullable
+		private Charset documentCharset;
+
+		private State state = State.TEXT;
+
+		private boolean markupSeen;
+
+		private int elementDepth;
+
+		private int quote;
+
+		private int count;
+
+		private int previous;
+
+		@Nullable
+		private byte[] prolog;
+
+		private byte[] rootEndTag = new byte[0];
+
+
+		public StaxDataBufferToXmlEvent(int maxInMemorySize) {
+			this.maxInMemorySize = maxInMemorySize;
+			this.buffers = new LimitedDataBufferList(maxInMemorySize);
+		}
+
+
+		@Override
+		public Publisher<? extends XMLEvent> apply(DataBuffer dataBuffer) {
+			if (this.detectingEncoding) {
+				this.head.add(dataBuffer);
+				Boolean asciiCompatible = checkAsciiCompatible(false);
+				if (asciiCompatible == null) {
+					return Flux.empty();
+				}
+				return process(takeHead(asciiCompatible));
+			}
+			return process(Collections.singletonList(dataBuffer));
+		}
+
+		private Flux<XMLEvent> process(List<DataBuffer> dataBuffers) {
+			try {
+				List<XMLEvent> events = new ArrayList<>();
+				for (DataBuffer dataBuffer : dataBuffers) {
+					if (this.bufferDocument) {
+						addSlice(dataBuffer, dataBuffer.readPosition(), dataBuffer.writePosition());
+					}
+					else {
+						scanAndParse(dataBuffer, events);
+					}
+				}
+				return Flux.fromIterable(events);
+			}
+			catch (XMLStreamException | DataBufferLimitException ex) {
+				return Flux.error(ex);
+			}
+			finally {
+				dataBuffers.forEach(DataBufferUtils::release);
+			}
+		}
+
+		private void scanAndParse(DataBuffer dataBuffer, List<XMLEvent> events) throws XMLStreamException {
+			int start = dataBuffer.readPosition();
+			int end = dataBuffer.writePosition();
+			for (int i = start; i < end && this.state != State.END; i++) {
+				Boundary boundary = scan(dataBuffer.getByte(i));
+				if (boundary != null) {
+					addSlice(dataBuffer, start, i + 1);
+					start = i + 1;
+					if (boundary == Boundary.ROOT_START) {
+						parseProlog(events);
+					}
+					else {
+						parseTree(boundary == Boundary.TREE_END, events);
+					}
+				}
+			}
+			if (start < end && this.state != State.END) {
+				addSlice(dataBuffer, start, end);
+			}
+		}
+
+		private List<DataBuffer> takeHead(boolean asciiCompatible) {
+			this.detectingEncoding = false;
+			this.bufferDocument = !asciiCompatible;
+			List<DataBuffer> head = new ArrayList<>(this.head);
+			this.head.clear();
+			return head;
+		}
+
+		/**
+		 * Check whether the start of the input is in an ASCII-compatible
+		 * encoding, returning {@code null} if more input is needed to tell.
+		 */
+		@Nullable
+		private Boolean checkAsciiCompatible(boolean endOfInput) {
+			byte[] bytes = readHead();
+			int length = bytes.length;
+			if (length < 4 && !endOfInput) {
+				return null;
+			}
+			this.documentCharset = detectUnicodeCharset(bytes);
+			if (this.documentCharset != null) {
+				return false;
+			}
+			if (length >= 4 && bytes[0] == 0x4C && bytes[1] == 0x6F &&
+					bytes[2] == (byte) 0xA7 && bytes[3] == (byte) 0x94) {
+				// "<?xm" in EBCDIC
+				return false;
+			}
+			int offset = (length >= 3 && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB &&
+					bytes[2] == (byte) 0xBF ? 3 : 0);
+			int prefixLength = Math.max(0, Math.min(length - offset, 5));
+			if (!"<?xml".startsWith(new String(bytes, offset, prefixLength, StandardCharsets.US_ASCII))) {
+				return true;
+			}
+			if (prefixLength < 5) {
+				return (endOfInput ? true : null);
+			}
+			for (int i = offset + 5; i < length - 1; i++) {
+				if (bytes[i] == '?' && bytes[i + 1] == '>') {
+					String declaration = new String(bytes, offset, i - offset, StandardCharsets.US_ASCII);
+					Matcher matcher = ENCODING_PATTERN.matcher(declaration);
+					return (!matcher.find() || isAsciiCompatible(matcher.group(1)));
+				}
+			}
+			return ((endOfInput || length >= MAX_DECLARATION_LENGTH) ? true : null);
+		}
+
+		/**
+		 * Detect UTF-16 or UTF-32 from a byte order mark, or from the zero
+		 * bytes that encoding {@code '<'} in either of them results in.
+		 */
+		@Nullable
+		private static Charset detectUnicodeCharset(byte[] bytes) {
+			if (bytes.length < 2) {
+				return (bytes.length == 1 && bytes[0] == 0 ? StandardCharsets.UTF_16BE : null);
+			}
+			boolean utf32 = (bytes.length >= 4 && ((bytes[0] == 0 && bytes[1] == 0) || (bytes[2] == 0 && bytes[3] == 0)));
+			if ((bytes[0] == (byte) 0xFE && bytes[1] == (byte) 0xFF) ||
+					(bytes[0] == (byte) 0xFF && bytes[1] == (byte) 0xFE)) {
+				return (utf32 ? Charset.forName("UTF-32") : StandardCharsets.UTF_16);
+			}
+			if (bytes[0] == 0) {
+				return (utf32 ? Charset.forName("UTF-32BE") : StandardCharsets.UTF_16BE);
+			}
+			if (bytes[1] == 0) {
+				return (utf32 ? Charset.forName("UTF-32LE") : StandardCharsets.UTF_16LE);
+			}
+			return null;
+		}
+
+		private byte[] readHead() {
+			int length = Math.min(MAX_DECLARATION_LENGTH,
+					this.head.stream().mapToInt(DataBuffer::readableByteCount).sum());
+			byte[] bytes = new byte[length];
+			int offset = 0;
+			for (DataBuffer buffer : this.head) {
+				for (int i = buffer.readPosition(); i < buffer.writePosition() && offset < length; i++) {
+					bytes[offset++] = buffer.getByte(i);
+				}
+			}
+			return bytes;
+		}
+
+		private static boolean isAsciiCompatible(String encoding) {
+			try {
+				return Arrays.equals(MARKUP_CHARACTERS.getBytes(StandardCharsets.US_ASCII),
+						MARKUP_CHARACTERS.getBytes(Charset.forName(encoding)));
+			}
+			catch (IllegalArgumentException ex) {
+				// unknown encoding: let the parser report it
+				return true;
+			}
+		}
+
+		/**
+		 * Process the next byte of input, returning the boundary it completes,
+		 * if any.
+		 */
+		@Nullable
+		private Boundary scan(int b) {
+			Boundary boundary = null;
+			switch (this.state) {
+				case TEXT:
+					if (b == '<') {
+						this.markupSeen = true;
+						this.state = State.MARKUP;
+					}
+					break;
+				case MARKUP:
+					this.state = (b == '/' ? State.END_TAG : b == '?' ? State.PROCESSING_INSTRUCTION :
+							b == '!' ? State.DECLARATION_START : State.START_TAG);
+					break;
+				case DECLARATION_START:
+					this.count = 0;
+					this.state = (b == '-' ? State.COMMENT : b == '[' ? State.CDATA : State.DECLARATION);
+					break;
+				case START_TAG:
+					if (!inQuote(b) && b == '>') {
+						this.state = State.TEXT;
+						if (this.previous != '/') {
+							boundary = (++this.elementDepth == 1 ? Boundary.ROOT_START : null);
+						}
+						else if (this.elementDepth <= 1) {
+							boundary = (this.elementDepth == 1 ? Boundary.TREE_END : Boundary.ROOT_END);
+						}
+					}
+					break;
+				case END_TAG:
+					if (b == '>') {
+						this.state = State.TEXT;
+						this.elementDepth--;
+						boundary = (this.elementDepth == 1 ? Boundary.TREE_END :
+								this.elementDepth == 0 ? Boundary.ROOT_END : null);
+					}
+					break;
+				case COMMENT:
+				case CDATA:
+					// comments end with "-->", CDATA sections with "]]>"
+					int terminator = (this.state == State.COMMENT ? '-' : ']');
+					if (b == terminator) {
+						this.count++;
+					}
+					else {
+						if (b == '>' && this.count >= 2) {
+							this.state = State.TEXT;
+						}
+						this.count = 0;
+					}
+					break;
+				case PROCESSING_INSTRUCTION:
+					if (b == '>' && this.previous == '?') {
+						this.state = State.TEXT;
+					}
+					break;
+				case DECLARATION:
+					// DOCTYPE, possibly with an internal subset between brackets
+					if (!inQuote(b)) {
+						if (b == '[') {
+							this.count++;
+						}
+						else if (b == ']') {
+							this.count--;
+						}
+						else if (b == '>' && this.count == 0) {
+							this.state = State.TEXT;
+						}
+					}
+					break;
+				default:
+					break;
+			}
+			if (boundary == Boundary.ROOT_END) {
+				this.state = State.END;
+			}
+			this.previous = b;
+			return boundary;
+		}
+
+		private boolean inQuote(int b) {
+			if (this.quote != 0) {
+				if (b == this.quote) {
+					this.quote = 0;
+				}
+				return true;
+			}
+			else if (b == '"' || b == '\'') {
+				this.quote = b;
+				return true;
+			}
+			return false;
+		}
+
+		private void addSlice(DataBuffer dataBuffer, int start, int end) {
+			DataBuffer slice = retainedSlice(dataBuffer, start, end - start);
+			try {
+				this.buffers.add(slice);
+			}
+			catch (DataBufferLimitException ex) {
+				DataBufferUtils.release(slice);
+				throw new DataBufferLimitException((this.bufferDocument ?
+						"Exceeded limit on max bytes to buffer : " :
+						"Exceeded limit on max bytes per XML top-level node: ") + this.maxInMemorySize);
+			}
+		}
+
+		/**
+		 * Return a slice of the given buffer that remains valid after the buffer
+		 * is released. If the slice does not share the reference count of a pooled
+		 * buffer, the bytes are copied instead.
+		 */
+		private static DataBuffer retainedSlice(DataBuffer buffer, int index, int length) {
+			DataBuffer slice = buffer.slice(index, length);
+			if (!(buffer instanceof PooledDataBuffer) || slice instanceof PooledDataBuffer) {
+				return DataBufferUtils.retain(slice);
+			}
+			DataBuffer copy = buffer.factory().allocateBuffer(length);
+			copy.write(slice);
+			return copy;
+		}
+
+		/**
+		 * Keep the bytes of the document up to and including the start tag of
+		 * the root element, and produce the events for it.
+		 */
+		private void parseProlog(List<XMLEvent> events) throws XMLStreamException {
+			int length = this.buffers.stream().mapToInt(DataBuffer::readableByteCount).sum();
+			byte[] prolog = new byte[length];
+			int offset = 0;
+			for (DataBuffer buffer : this.buffers) {
+				int count = buffer.readableByteCount();
+				buffer.read(prolog, offset, count);
+				offset += count;
+			}
+			this.buffers.releaseAndClear();
+			this.prolog = prolog;
+
+			XMLEventReader eventReader = inputFactory.createXMLEventReader(new ByteArrayInputStream(prolog));
+			try {
+				Charset charset = StandardCharsets.UTF_8;
+				while (eventReader.hasNext()) {
+					XMLEvent event = eventReader.nextEvent();
+					events.add(event);
+					if (event.isStartDocument() && ((StartDocument) event).encodingSet()) {
+						charset = Charset.forName(((StartDocument) event).getCharacterEncodingScheme());
+					}
+					else if (event.isStartElement()) {
+						QName name = event.asStartElement().getName();
+						String prefix = (StringUtils.hasLength(name.getPrefix()) ? name.getPrefix() + ":" : "");
+						this.rootEndTag = ("</" + prefix + name.getLocalPart() + ">").getBytes(charset);
+						break;
+					}
+				}
+			}
+			finally {
+				eventReader.close();
+			}
+		}
+
+		/**
+		 * Parse the buffered bytes along with the prolog, if any, and produce
+		 * the events that follow the start of the root element. If the bytes
+		 * are a top-level tree, the root element is closed artificially.
+		 */
+		private void parseTree(boolean closeRoot, List<XMLEvent> events) throws XMLStreamException {
+			List<InputStream> inputStreams = new ArrayList<>(this.buffers.size() + 2);
+			if (this.prolog != null) {
+				inputStreams.add(new ByteArrayInputStream(this.prolog));
+			}
+			this.buffers.forEach(buffer -> inputStreams.add(buffer.asInputStream()));
+			if (closeRoot) {
+				inputStreams.add(new ByteArrayInputStream(this.rootEndTag));
+			}
+			InputStream inputStream = new SequenceInputStream(Collections.enumeration(inputStreams));
+			XMLEventReader eventReader = inputFactory.createXMLEventReader(inputStream);
+			try {
+				boolean inProlog = (this.prolog != null);
+				int depth = 0;
+				while (eventReader.hasNext()) {
+					XMLEvent event = eventReader.nextEvent();
+					if (event.isStartElement()) {
+						depth++;
+					}
+					else if (event.isEndElement()) {
+						depth--;
+					}
+					if (inProlog) {
+						inProlog = (depth == 0);
+					}
+					else if (closeRoot && depth == 0) {
+						break;
+					}
+					else {
+						events.add(event);
+					}
+				}
+			}
+			finally {
+				eventReader.close();
+				this.buffers.releaseAndClear();
+			}
+		}
+
+		public Publisher<XMLEvent> endOfInput() {
+			if (this.detectingEncoding) {
+				Boolean asciiCompatible = checkAsciiCompatible(true);
+				return process(takeHead(Boolean.TRUE.equals(asciiCompatible)))
+						.concatWith(Flux.defer(this::endOfDocument));
+			}
+			return endOfDocument();
+		}
+
+		private Publisher<XMLEvent> endOfDocument() {
+			if (this.bufferDocument) {
+				return parseDocument();
+			}
+			if (this.state == State.END || !this.markupSeen) {
+				return Flux.empty();
+			}
+			return Mono.error(new XMLStreamException("Unexpected end of XML document"));
+		}
+
+		/**
+		 * Parse the buffered document as a whole, decoding it with the
+		 * detected charset, if any, or else leaving that to the StAX parser.
+		 */
+		private Publisher<XMLEvent> parseDocument() {
+			List<InputStream> inputStreams = new ArrayList<>(this.buffers.size());
+			this.buffers.forEach(buffer -> inputStreams.add(buffer.asInputStream()));
+			InputStream inputStream = new SequenceInputStream(Collections.enumeration(inputStreams));
+			try {
+				XMLEventReader eventReader = (this.documentCharset != null ?
+						inputFactory.createXMLEventReader(new InputStreamReader(inputStream, this.documentCharset)) :
+						inputFactory.createXMLEventReader(inputStream));
+				try {
+					List<XMLEvent> events = new ArrayList<>();
+					while (eventReader.hasNext()) {
+						events.add(eventReader.nextEvent());
+					}
+					return Flux.fromIterable(events);
+				}
+				finally {
+					eventReader.close();
+				}
+			}
+			catch (XMLStreamException ex) {
+				return Mono.error(ex);
+			}
+			finally {
+				this.buffers.releaseAndClear();
+			}
+		}
+
+		public void release() {
+			this.head.forEach(DataBufferUtils::release);
+			this.head.clear();
+			this.buffers.releaseAndClear();
+		}
+
+
+		private enum State {
+
+			TEXT, MARKUP, START_TAG, END_TAG, DECLARATION_START, COMMENT, CDATA, PROCESSING_INSTRUCTION,
+			DECLARATION, END
+		}
+
+
+		private enum Boundary {
+
+			ROOT_START, TREE_END, ROOT_END
+		}
+	}
+
 }
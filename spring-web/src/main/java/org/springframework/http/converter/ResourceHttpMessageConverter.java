@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -126,6 +126,13 @@ public class ResourceHttpMessageConverter extends AbstractHttpMessageConverter<R
 
 	protected void writeContent(Resource resource, HttpOutputMessage outputMessage)
 			throws IOException, HttpMessageNotWritableException {
+
+		if (resource instanceof ByteArrayResource) {
+			// In-memory content: write it in one go rather than through a copy buffer
+			StreamUtils.copy(((ByteArrayResource) resource).getByteArray(), outputMessage.getBody());
+			outputMessage.getBody().flush();
+			return;
+		}
 		try {
 			InputStream in = resource.getInputStream();
 			try {
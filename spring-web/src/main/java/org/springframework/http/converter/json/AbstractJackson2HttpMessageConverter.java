@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,14 +33,13 @@ import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationConfig;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
 import com.fasterxml.jackson.databind.ser.FilterProvider;
-import com.fasterxml.jackson.databind.type.TypeFactory;
 
-import org.springframework.core.GenericTypeResolver;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
@@ -77,6 +76,10 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 
 	protected ObjectMapper objectMapper;
 
+	private int readerWriterCacheLimit = Jackson2ReaderWriterCache.DEFAULT_CACHE_LIMIT;
+
+	private volatile Jackson2ReaderWriterCache readerWriterCache;
+
 	@Nullable
 	private Boolean prettyPrint;
 
@@ -86,6 +89,7 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 
 	protected AbstractJackson2HttpMessageConverter(ObjectMapper objectMapper) {
 		this.objectMapper = objectMapper;
+		this.readerWriterCache = new Jackson2ReaderWriterCache(objectMapper, this.readerWriterCacheLimit);
 		setDefaultCharset(DEFAULT_CHARSET);
 		DefaultPrettyPrinter prettyPrinter = new DefaultPrettyPrinter();
 		prettyPrinter.indentObjectsWith(new DefaultIndenter("  ", "\ndata:"));
@@ -117,6 +121,7 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 	public void setObjectMapper(ObjectMapper objectMapper) {
 		Assert.notNull(objectMapper, "ObjectMapper must not be null");
 		this.objectMapper = objectMapper;
+		this.readerWriterCache = new Jackson2ReaderWriterCache(objectMapper, this.readerWriterCacheLimit);
 		configurePrettyPrint();
 	}
 
@@ -144,9 +149,40 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 	private void configurePrettyPrint() {
 		if (this.prettyPrint != null) {
 			this.objectMapper.configure(SerializationFeature.INDENT_OUTPUT, this.prettyPrint);
+			this.readerWriterCache.clear();
 		}
 	}
 
+	/**
+	 * Specify the maximum number of Jackson types, readers and writers to cache,
+	 * per kind of instance, for reuse across requests.
+	 * <p>Default is {@link Jackson2ReaderWriterCache#DEFAULT_CACHE_LIMIT}. Set this
+	 * to 0 in order to create a new {@code ObjectReader} and {@code ObjectWriter}
+	 * for every request, e.g. when the {@code ObjectMapper} is being reconfigured
+	 * at runtime in ways the cache does not detect.
+	 * @since 5.2
+	 * @see Jackson2ReaderWriterCache
+	 */
+	public void setReaderWriterCacheLimit(int readerWriterCacheLimit) {
+		this.readerWriterCacheLimit = readerWriterCacheLimit;
+		this.readerWriterCache = new Jackson2ReaderWriterCache(this.objectMapper, readerWriterCacheLimit);
+	}
+
+	/**
+	 * Return the cache of Jackson types, readers and writers in use,
+	 * e.g. for monitoring its hit and miss counts.
+	 * @since 5.2
+	 */
+	public Jackson2ReaderWriterCache getReaderWriterCache() {
+		Jackson2ReaderWriterCache cache = this.readerWriterCache;
+		if (cache.getObjectMapper() != this.objectMapper) {
+			// ObjectMapper replaced through the protected field by a subclass
+			cache = new Jackson2ReaderWriterCache(this.objectMapper, this.readerWriterCacheLimit);
+			this.readerWriterCache = cache;
+		}
+		return cache;
+	}
+
 
 	@Override
 	public boolean canRead(Class<?> clazz, @Nullable MediaType mediaType) {
@@ -229,14 +265,12 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 
 	private Object readJavaType(JavaType javaType, HttpInputMessage inputMessage) throws IOException {
 		try {
+			Class<?> deserializationView = null;
 			if (inputMessage instanceof MappingJacksonInputMessage) {
-				Class<?> deserializationView = ((MappingJacksonInputMessage) inputMessage).getDeserializationView();
-				if (deserializationView != null) {
-					return this.objectMapper.readerWithView(deserializationView).forType(javaType).
-							readValue(inputMessage.getBody());
-				}
+				deserializationView = ((MappingJacksonInputMessage) inputMessage).getDeserializationView();
 			}
-			return this.objectMapper.readValue(inputMessage.getBody(), javaType);
+			ObjectReader objectReader = getReaderWriterCache().getReader(javaType, deserializationView);
+			return objectReader.readValue(inputMessage.getBody());
 		}
 		catch (InvalidDefinitionException ex) {
 			throw new HttpMessageConversionException("Type definition error: " + ex.getType(), ex);
@@ -271,14 +305,10 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 				javaType = getJavaType(type, null);
 			}
 
-			ObjectWriter objectWriter = (serializationView != null ?
-					this.objectMapper.writerWithView(serializationView) : this.objectMapper.writer());
+			ObjectWriter objectWriter = getReaderWriterCache().getWriter(javaType, serializationView);
 			if (filters != null) {
 				objectWriter = objectWriter.with(filters);
 			}
-			if (javaType != null && javaType.isContainerType()) {
-				objectWriter = objectWriter.forType(javaType);
-			}
 			SerializationConfig config = objectWriter.getConfig();
 			if (contentType != null && contentType.isCompatibleWith(MediaType.TEXT_EVENT_STREAM) &&
 					config.isEnabled(SerializationFeature.INDENT_OUTPUT)) {
@@ -321,8 +351,7 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 	 * @return the Jackson JavaType
 	 */
 	protected JavaType getJavaType(Type type, @Nullable Class<?> contextClass) {
-		TypeFactory typeFactory = this.objectMapper.getTypeFactory();
-		return typeFactory.constructType(GenericTypeResolver.resolveType(type, contextClass));
+		return getReaderWriterCache().getJavaType(type, contextClass);
 	}
 
 	/**
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.converter.json;
+
+import java.lang.reflect.Type;
+
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationConfig;
+
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentLruCache;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Bounded cache for the Jackson {@link JavaType}, {@link ObjectReader} and
+ * {@link ObjectWriter} instances derived from a given {@link ObjectMapper}.
+ *
+ * <p>Shared by {@link AbstractJackson2HttpMessageConverter} on the Servlet side
+ * and by the Jackson encoders and decoders in
+ * {@link org.springframework.http.codec.json} on the reactive side, in order
+ * to avoid repeated type resolution and reader/writer creation per request.
+ * Entries are keyed by target type and JSON view; media type specific
+ * customizations (e.g. for Server-Sent Events) remain to be applied on top of
+ * the returned instances by the caller.
+ *
+ * <p>Readers and writers capture the configuration of the {@code ObjectMapper}
+ * at creation time. Cached entries are therefore dropped when the mapper's
+ * {@link SerializationConfig} or {@link DeserializationConfig} changes, e.g.
+ * through {@link ObjectMapper#configure}. Other changes, such as registering
+ * a module, are not detected: {@link #clear()} should be invoked after those,
+ * or caching disabled with a cache limit of 0.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class Jackson2ReaderWriterCache {
+
+	/**
+	 * The default maximum number of entries per cached instance type.
+	 */
+	public static final int DEFAULT_CACHE_LIMIT = 256;
+
+
+	private final ObjectMapper objectMapper;
+
+	private final ConcurrentLruCache<CacheKey, JavaType> javaTypeCache;
+
+	private final ConcurrentLruCache<CacheKey, ObjectReader> readerCache;
+
+	private final ConcurrentLruCache<CacheKey, ObjectWriter> writerCache;
+
+	private volatile SerializationConfig serializationConfig;
+
+	private volatile DeserializationConfig deserializationConfig;
+
+
+	/**
+	 * Create a cache for the given {@code ObjectMapper} with the
+	 * {@link #DEFAULT_CACHE_LIMIT default cache limit}.
+	 * @param objectMapper the mapper to derive types, readers and writers from
+	 */
+	public Jackson2ReaderWriterCache(ObjectMapper objectMapper) {
+		this(objectMapper, DEFAULT_CACHE_LIMIT);
+	}
+
+	/**
+	 * Create a cache for the given {@code ObjectMapper}.
+	 * @param objectMapper the mapper to derive types, readers and writers from
+	 * @param cacheLimit the maximum number of entries per cached instance type
+	 * (0 indicates no caching, always creating new instances)
+	 */
+	public Jackson2ReaderWriterCache(ObjectMapper objectMapper, int cacheLimit) {
+		Assert.notNull(objectMapper, "ObjectMapper must not be null");
+		this.objectMapper = objectMapper;
+		this.serializationConfig = objectMapper.getSerializationConfig();
+		this.deserializationConfig = objectMapper.getDeserializationConfig();
+		this.javaTypeCache = new ConcurrentLruCache<>(cacheLimit, key -> objectMapper.getTypeFactory()
+				.constructType(GenericTypeResolver.resolveType((Type) key.type, key.context)));
+		this.readerCache = new ConcurrentLruCache<>(cacheLimit, key -> (key.context != null ?
+				objectMapper.readerWithView(key.context).forType((JavaType) key.type) :
+				objectMapper.readerFor((JavaType) key.type)));
+		this.writerCache = new ConcurrentLruCache<>(cacheLimit, key -> {
+			ObjectWriter writer = (key.context != null ?
+					objectMapper.writerWithView(key.context) : objectMapper.writer());
+			return (key.type != null ? writer.forType((JavaType) key.type) : writer);
+		});
+	}
+
+
+	/**
+	 * Return the {@code ObjectMapper} this cache derives its instances from.
+	 */
+	public ObjectMapper getObjectMapper() {
+		return this.objectMapper;
+	}
+
+	/**
+	 * Return the Jackson {@link JavaType} for the specified type and context class.
+	 * @param type the generic type to return the Jackson JavaType for
+	 * @param contextClass a context class for the target type, for example a class
+	 * in which the target type appears in a method signature (can be {@code null})
+	 * @return the Jackson JavaType
+	 */
+	public JavaType getJavaType(Type type, @Nullable Class<?> contextClass) {
+		if (type instanceof Class && contextClass == null) {
+			// Fast path: Jackson's TypeFactory caches plain classes already
+			return this.objectMapper.getTypeFactory().constructType(type);
+		}
+		checkConfig();
+		return this.javaTypeCache.get(new CacheKey(type, contextClass));
+	}
+
+	/**
+	 * Return an {@link ObjectReader} for the given target type and JSON view.
+	 * @param javaType the type to deserialize to
+	 * @param jsonView the JSON view to apply, or {@code null} if none
+	 * @return the reader, possibly shared with other callers
+	 */
+	public ObjectReader getReader(JavaType javaType, @Nullable Class<?> jsonView) {
+		checkConfig();
+		return this.readerCache.get(new CacheKey(javaType, jsonView));
+	}
+
+	/**
+	 * Return an {@link ObjectWriter} for the given value type and JSON view.
+	 * <p>The writer is bound to the given type only if it is a container
+	 * type, thereby preserving polymorphic serialization for plain values.
+	 * @param javaType the declared type of the value, or {@code null} if unknown
+	 * @param jsonView the JSON view to apply, or {@code null} if none
+	 * @return the writer, possibly shared with other callers
+	 */
+	public ObjectWriter getWriter(@Nullable JavaType javaType, @Nullable Class<?> jsonView) {
+		JavaType writerType = (javaType != null && javaType.isContainerType() ? javaType : null);
+		checkConfig();
+		return this.writerCache.get(new CacheKey(writerType, jsonView));
+	}
+
+	/**
+	 * Drop all cached entries if the {@code ObjectMapper} has been
+	 * reconfigured since they were created.
+	 */
+	private void checkConfig() {
+		SerializationConfig serializationConfig = this.objectMapper.getSerializationConfig();
+		DeserializationConfig deserializationConfig = this.objectMapper.getDeserializationConfig();
+		if (serializationConfig != this.serializationConfig || deserializationConfig != this.deserializationConfig) {
+			this.serializationConfig = serializationConfig;
+			this.deserializationConfig = deserializationConfig;
+			clear();
+		}
+	}
+
+	/**
+	 * Remove all cached entries, e.g. after the {@code ObjectMapper}
+	 * has been reconfigured.
+	 */
+	public void clear() {
+		this.javaTypeCache.clear();
+		this.readerCache.clear();
+		this.writerCache.clear();
+	}
+
+	/**
+	 * Return the total number of cached types, readers and writers.
+	 */
+	public int size() {
+		return this.javaTypeCache.size() + this.readerCache.size() + this.writerCache.size();
+	}
+
+	/**
+	 * Return the total number of lookups served from the cache.
+	 */
+	public long getHitCount() {
+		return this.javaTypeCache.hitCount() + this.readerCache.hitCount() + this.writerCache.hitCount();
+	}
+
+	/**
+	 * Return the total number of lookups that required a new type,
+	 * reader or writer to be created.
+	 */
+	public long getMissCount() {
+		return this.javaTypeCache.missCount() + this.readerCache.missCount() + this.writerCache.missCount();
+	}
+
+	/**
+	 * Return the total number of entries evicted due to the cache limit.
+	 */
+	public long getEvictionCount() {
+		return this.javaTypeCache.evictionCount() + this.readerCache.evictionCount() +
+				this.writerCache.evictionCount();
+	}
+
+	@Override
+	public String toString() {
+		return "Jackson2ReaderWriterCache [types = " + this.javaTypeCache + ", readers = " + this.readerCache +
+				", writers = " + this.writerCache + "]";
+	}
+
+
+	private static final class CacheKey {
+
+		@Nullable
+		private final Object type;
+
+		@Nullable
+		private final Class<?> context;
+
+		CacheKey(@Nullable Object type, @Nullable Class<?> context) {
+			this.type = type;
+			this.context = context;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey otherKey = (CacheKey) other;
+			return (ObjectUtils.nullSafeEquals(this.type, otherKey.type) && this.context == otherKey.context);
+		}
+
+		@Override
+		public int hashCode() {
+			return ObjectUtils.nullSafeHashCode(this.type) * 31 + ObjectUtils.nullSafeHashCode(this.context);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -47,10 +47,20 @@ public abstract class AbstractServerHttpRequest implements ServerHttpRequest {
 
 	private static final Pattern QUERY_PATTERN = Pattern.compile("([^&=]+)(=?)([^&]+)?");
 
+	private static final MultiValueMap<String, String> EMPTY_QUERY_PARAMS =
+			CollectionUtils.unmodifiableMultiValueMap(new LinkedMultiValueMap<>(0));
+
+	private static final MultiValueMap<String, HttpCookie> EMPTY_COOKIES =
+			CollectionUtils.unmodifiableMultiValueMap(new LinkedMultiValueMap<>(0));
+
 
 	private final URI uri;
 
-	private final RequestPath path;
+	@Nullable
+	private final String contextPath;
+
+	@Nullable
+	private RequestPath path;
 
 	private final HttpHeaders headers;
 
@@ -78,7 +88,7 @@ public abstract class AbstractServerHttpRequest implements ServerHttpRequest {
 	 */
 	public AbstractServerHttpRequest(URI uri, @Nullable String contextPath, HttpHeaders headers) {
 		this.uri = uri;
-		this.path = RequestPath.parse(uri, contextPath);
+		this.contextPath = contextPath;
 		this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
 	}
 
@@ -110,6 +120,9 @@ public abstract class AbstractServerHttpRequest implements ServerHttpRequest {
 
 	@Override
 	public RequestPath getPath() {
+		if (this.path == null) {
+			this.path = RequestPath.parse(this.uri, this.contextPath);
+		}
 		return this.path;
 	}
 
@@ -121,7 +134,9 @@ public abstract class AbstractServerHttpRequest implements ServerHttpRequest {
 	@Override
 	public MultiValueMap<String, String> getQueryParams() {
 		if (this.queryParams == null) {
-			this.queryParams = CollectionUtils.unmodifiableMultiValueMap(initQueryParams());
+			MultiValueMap<String, String> queryParams = initQueryParams();
+			this.queryParams = (queryParams.isEmpty() ? EMPTY_QUERY_PARAMS :
+					CollectionUtils.unmodifiableMultiValueMap(queryParams));
 		}
 		return this.queryParams;
 	}
@@ -166,7 +181,8 @@ public abstract class AbstractServerHttpRequest implements ServerHttpRequest {
 	@Override
 	public MultiValueMap<String, HttpCookie> getCookies() {
 		if (this.cookies == null) {
-			this.cookies = CollectionUtils.unmodifiableMultiValueMap(initCookies());
+			MultiValueMap<String, HttpCookie> cookies = initCookies();
+			this.cookies = (cookies.isEmpty() ? EMPTY_COOKIES : CollectionUtils.unmodifiableMultiValueMap(cookies));
 		}
 		return this.cookies;
 	}
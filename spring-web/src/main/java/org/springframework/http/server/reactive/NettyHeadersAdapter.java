@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -106,16 +106,23 @@ class NettyHeadersAdapter implements MultiValueMap<String, String> {
 
 	@Override
 	public boolean containsValue(Object value) {
-		return (value instanceof String &&
-				this.headers.entries().stream()
-						.anyMatch(entry -> value.equals(entry.getValue())));
+		if (value instanceof String) {
+			for (Entry<String, String> entry : this.headers) {
+				if (value.equals(entry.getValue())) {
+					return true;
+				}
+			}
+		}
+		return false;
 	}
 
 	@Override
 	@Nullable
 	public List<String> get(Object key) {
-		if (containsKey(key)) {
-			return this.headers.getAll((String) key);
+		if (key instanceof String) {
+			// Single lookup instead of contains + getAll
+			List<String> values = this.headers.getAll((String) key);
+			return (!values.isEmpty() ? values : null);
 		}
 		return null;
 	}
@@ -170,7 +177,7 @@ class NettyHeadersAdapter implements MultiValueMap<String, String> {
 
 			@Override
 			public int size() {
-				return headers.size();
+				return NettyHeadersAdapter.this.size();
 			}
 		};
 	}
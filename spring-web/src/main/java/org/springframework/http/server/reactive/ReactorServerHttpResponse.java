@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,20 +16,32 @@
 
 package org.springframework.http.server.reactive;
 
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.codec.http.cookie.DefaultCookie;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.NettyPipeline;
 import reactor.netty.http.server.HttpServerResponse;
 
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseCookie;
@@ -121,6 +133,29 @@ class ReactorServerHttpResponse extends AbstractServerHttpResponse implements Ze
 		return doCommit(() -> this.response.sendFile(file, position, count).then());
 	}
 
+	@Override
+	public Mono<Void> writeWith(List<ResourceRegion> regions, List<DataBuffer> delimiters) {
+		ChannelPipeline pipeline = ((Connection) this.response).channel().pipeline();
+		if (pipeline.get(SslHandler.class) != null || pipeline.get(NettyPipeline.CompressionHandler) != null) {
+			// File regions cannot be transferred directly through SSL or compression
+			return ZeroCopyHttpOutputMessage.super.writeWith(regions, delimiters);
+		}
+		Assert.isTrue(delimiters.size() == regions.size() + 1, "Expected one delimiter more than regions");
+		Flux<Object> body = Flux.range(0, regions.size())
+				.concatMap(i -> Flux.just(NettyDataBufferFactory.toByteBuf(delimiters.get(i)), regions.get(i)))
+				.concatWith(Mono.just(NettyDataBufferFactory.toByteBuf(delimiters.get(regions.size()))))
+				.concatMap(part -> part instanceof ResourceRegion ? toFileRegion((ResourceRegion) part) : Mono.just(part))
+				.doOnDiscard(ReferenceCounted.class, ReferenceCountUtil::release);
+		return doCommit(() -> this.response.sendObject(body).then());
+	}
+
+	private static Mono<FileRegion> toFileRegion(ResourceRegion region) {
+		return Mono.fromCallable(() -> {
+			FileChannel channel = FileChannel.open(region.getResource().getFile().toPath(), StandardOpenOption.READ);
+			return new DefaultFileRegion(channel, region.getPosition(), region.getCount());
+		});
+	}
+
 	private Publisher<ByteBuf> toByteBufs(Publisher<? extends DataBuffer> dataBuffers) {
 		return Flux.from(dataBuffers).map(NettyDataBufferFactory::toByteBuf);
 	}
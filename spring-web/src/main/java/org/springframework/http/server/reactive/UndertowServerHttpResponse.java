@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
 
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.Cookie;
@@ -34,6 +35,7 @@ import reactor.core.publisher.Mono;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseCookie;
@@ -136,6 +138,40 @@ class UndertowServerHttpResponse extends AbstractListenerServerHttpResponse impl
 				}));
 	}
 
+	@Override
+	public Mono<Void> writeWith(List<ResourceRegion> regions, List<DataBuffer> delimiters) {
+		Assert.isTrue(delimiters.size() == regions.size() + 1, "Expected one delimiter more than regions");
+		return doCommit(() ->
+				Mono.defer(() -> {
+					StreamSinkChannel destination = this.exchange.getResponseChannel();
+					try {
+						for (int i = 0; i < regions.size(); i++) {
+							writeBlocking(destination, delimiters.get(i));
+							ResourceRegion region = regions.get(i);
+							Path file = region.getResource().getFile().toPath();
+							try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+								Channels.transferBlocking(destination, source, region.getPosition(), region.getCount());
+							}
+						}
+						writeBlocking(destination, delimiters.get(regions.size()));
+						return Mono.empty();
+					}
+					catch (IOException ex) {
+						return Mono.error(ex);
+					}
+					finally {
+						delimiters.forEach(DataBufferUtils::release);
+					}
+				}));
+	}
+
+	private static void writeBlocking(StreamSinkChannel channel, DataBuffer dataBuffer) throws IOException {
+		ByteBuffer buffer = dataBuffer.asByteBuffer();
+		while (buffer.hasRemaining()) {
+			Channels.writeBlocking(channel, buffer);
+		}
+	}
+
 
 	@Override
 	protected Processor<? super Publisher<? extends DataBuffer>, Void> createBodyFlushProcessor() {
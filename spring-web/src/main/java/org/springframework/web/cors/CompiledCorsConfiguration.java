@@ -0,0 +1,308 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.cors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Read-only copy of a {@link CorsConfiguration} prepared for checking many
+ * requests against it. Allowed origins and headers are looked up in hash
+ * sets rather than compared one by one, and the values of the
+ * {@code Access-Control-Allow-Methods}, {@code Access-Control-Expose-Headers},
+ * and {@code Access-Control-Max-Age} response headers are computed once, and
+ * used by {@link DefaultCorsProcessor} and its reactive counterpart.
+ *
+ * <p>Both {@link UrlBasedCorsConfigurationSource} variants, as well as the
+ * handler mappings for {@code @CrossOrigin} methods, {@link #compile compile}
+ * the configurations registered with them. Any attempt to modify an instance
+ * fails with an {@link UnsupportedOperationException}, and the lists returned
+ * from its getters must not be modified either.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public final class CompiledCorsConfiguration extends CorsConfiguration {
+
+	private final boolean allowAnyOrigin;
+
+	private final Set<String> allowedOriginSet;
+
+	@Nullable
+	private final List<HttpMethod> resolvedMethods;
+
+	private final boolean allowAnyHeader;
+
+	private final Set<String> allowedHeaderSet;
+
+	@Nullable
+	private final String allowMethodsValue;
+
+	@Nullable
+	private final String exposeHeadersValue;
+
+	@Nullable
+	private final String maxAgeValue;
+
+
+	/**
+	 * Create an instance with the values of the given configuration.
+	 * Later changes to that configuration are not reflected.
+	 * @param config the configuration to copy
+	 */
+	public CompiledCorsConfiguration(CorsConfiguration config) {
+		super(copy(config));
+
+		List<String> origins = super.getAllowedOrigins();
+		this.allowAnyOrigin = (origins != null && origins.contains(ALL));
+		this.allowedOriginSet = toLowerCaseSet(origins);
+
+		this.resolvedMethods = resolveMethods(super.getAllowedMethods());
+
+		List<String> headers = super.getAllowedHeaders();
+		this.allowAnyHeader = (headers != null && headers.contains(ALL));
+		this.allowedHeaderSet = toLowerCaseSet(headers);
+
+		HttpHeaders values = new HttpHeaders();
+		if (this.resolvedMethods != null) {
+			values.setAccessControlAllowMethods(this.resolvedMethods);
+		}
+		if (!CollectionUtils.isEmpty(super.getExposedHeaders())) {
+			values.setAccessControlExposeHeaders(super.getExposedHeaders());
+		}
+		if (super.getMaxAge() != null) {
+			values.setAccessControlMaxAge(super.getMaxAge());
+		}
+		this.allowMethodsValue = values.getFirst(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS);
+		this.exposeHeadersValue = values.getFirst(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS);
+		this.maxAgeValue = values.getFirst(HttpHeaders.ACCESS_CONTROL_MAX_AGE);
+	}
+
+	/**
+	 * Return a compiled copy of the given configuration, or the configuration
+	 * itself if it is compiled already, or if it is an instance of another
+	 * subclass of {@link CorsConfiguration}, which may override the checks.
+	 * @param config the configuration to compile
+	 * @return the configuration to use for checking requests
+	 */
+	public static CorsConfiguration compile(CorsConfiguration config) {
+		return (config.getClass() == CorsConfiguration.class ? new CompiledCorsConfiguration(config) : config);
+	}
+
+	/**
+	 * Copy the given configuration, detaching it from lists the original may
+	 * still modify, while keeping the shared permit-default lists that
+	 * {@link #combine} recognizes by identity.
+	 */
+	private static CorsConfiguration copy(CorsConfiguration config) {
+		CorsConfiguration copy = new CorsConfiguration(config);
+		if (!isPermitDefault(config.getAllowedOrigins())) {
+			copy.setAllowedOrigins(config.getAllowedOrigins());
+		}
+		if (!isPermitDefault(config.getAllowedMethods())) {
+			copy.setAllowedMethods(config.getAllowedMethods());
+		}
+		if (!isPermitDefault(config.getAllowedHeaders())) {
+			copy.setAllowedHeaders(config.getAllowedHeaders());
+		}
+		copy.setExposedHeaders(config.getExposedHeaders());
+		return copy;
+	}
+
+	private static boolean isPermitDefault(@Nullable List<String> values) {
+		return (values == DEFAULT_PERMIT_ALL || values == DEFAULT_PERMIT_METHODS);
+	}
+
+	private static Set<String> toLowerCaseSet(@Nullable List<String> values) {
+		if (CollectionUtils.isEmpty(values)) {
+			return Collections.emptySet();
+		}
+		Set<String> result = new HashSet<>(values.size() * 2);
+		for (String value : values) {
+			result.add(value.toLowerCase(Locale.ENGLISH));
+		}
+		return result;
+	}
+
+	@Nullable
+	private static List<HttpMethod> resolveMethods(@Nullable List<String> allowedMethods) {
+		if (CollectionUtils.isEmpty(allowedMethods)) {
+			return Collections.unmodifiableList(Arrays.asList(HttpMethod.GET, HttpMethod.HEAD));
+		}
+		List<HttpMethod> result = new ArrayList<>(allowedMethods.size());
+		for (String method : allowedMethods) {
+			if (ALL.equals(method)) {
+				return null;
+			}
+			result.add(HttpMethod.resolve(method));
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+
+	/**
+	 * Return the value for the {@code Access-Control-Allow-Methods} header
+	 * of a pre-flight response that lists the given methods.
+	 * @param allowMethods the methods returned from {@link #checkHttpMethod}
+	 */
+	public String getAllowMethodsValue(List<HttpMethod> allowMethods) {
+		if (allowMethods == this.resolvedMethods && this.allowMethodsValue != null) {
+			return this.allowMethodsValue;
+		}
+		return StringUtils.collectionToCommaDelimitedString(allowMethods);
+	}
+
+	/**
+	 * Return the value for the {@code Access-Control-Expose-Headers} header,
+	 * or {@code null} if no headers are exposed.
+	 */
+	@Nullable
+	public String getExposeHeadersValue() {
+		return this.exposeHeadersValue;
+	}
+
+	/**
+	 * Return the value for the {@code Access-Control-Max-Age} header of a
+	 * pre-flight response, or {@code null} if no max age is configured.
+	 */
+	@Nullable
+	public String getMaxAgeValue() {
+		return this.maxAgeValue;
+	}
+
+
+	@Override
+	@Nullable
+	public String checkOrigin(@Nullable String requestOrigin) {
+		if (!StringUtils.hasText(requestOrigin)) {
+			return null;
+		}
+		if (this.allowAnyOrigin) {
+			return (Boolean.TRUE.equals(getAllowCredentials()) ? requestOrigin : ALL);
+		}
+		return (this.allowedOriginSet.contains(requestOrigin.toLowerCase(Locale.ENGLISH)) ? requestOrigin : null);
+	}
+
+	@Override
+	@Nullable
+	public List<HttpMethod> checkHttpMethod(@Nullable HttpMethod requestMethod) {
+		if (requestMethod == null) {
+			return null;
+		}
+		if (this.resolvedMethods == null) {
+			return Collections.singletonList(requestMethod);
+		}
+		return (this.resolvedMethods.contains(requestMethod) ? this.resolvedMethods : null);
+	}
+
+	@Override
+	@Nullable
+	public List<String> checkHeaders(@Nullable List<String> requestHeaders) {
+		if (requestHeaders == null) {
+			return null;
+		}
+		if (requestHeaders.isEmpty()) {
+			return Collections.emptyList();
+		}
+		if (this.allowedHeaderSet.isEmpty()) {
+			return null;
+		}
+		List<String> result = new ArrayList<>(requestHeaders.size());
+		for (String requestHeader : requestHeaders) {
+			if (StringUtils.hasText(requestHeader)) {
+				requestHeader = requestHeader.trim();
+				if (this.allowAnyHeader || this.allowedHeaderSet.contains(requestHeader.toLowerCase(Locale.ENGLISH))) {
+					result.add(requestHeader);
+				}
+			}
+		}
+		return (result.isEmpty() ? null : result);
+	}
+
+
+	@Override
+	public void setAllowedOrigins(@Nullable List<String> allowedOrigins) {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+	@Override
+	public void addAllowedOrigin(String origin) {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+	@Override
+	public void setAllowedMethods(@Nullable List<String> allowedMethods) {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+	@Override
+	public void addAllowedMethod(HttpMethod method) {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+	@Override
+	public void addAllowedMethod(String method) {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+	@Override
+	public void setAllowedHeaders(@Nullable List<String> allowedHeaders) {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+	@Override
+	public void addAllowedHeader(String allowedHeader) {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+	@Override
+	public void setExposedHeaders(@Nullable List<String> exposedHeaders) {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+	@Override
+	public void addExposedHeader(String exposedHeader) {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+	@Override
+	public void setAllowCredentials(@Nullable Boolean allowCredentials) {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+	@Override
+	public void setMaxAge(@Nullable Long maxAge) {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+	@Override
+	public CorsConfiguration applyPermitDefaultValues() {
+		throw new UnsupportedOperationException("CompiledCorsConfiguration is read-only");
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -55,10 +55,10 @@ public class CorsConfiguration {
 	private static final List<HttpMethod> DEFAULT_METHODS =
 			Collections.unmodifiableList(Arrays.asList(HttpMethod.GET, HttpMethod.HEAD));
 
-	private static final List<String> DEFAULT_PERMIT_ALL =
+	static final List<String> DEFAULT_PERMIT_ALL =
 			Collections.unmodifiableList(Arrays.asList(ALL));
 
-	private static final List<String> DEFAULT_PERMIT_METHODS =
+	static final List<String> DEFAULT_PERMIT_METHODS =
 			Collections.unmodifiableList(Arrays.asList(HttpMethod.GET.name(), HttpMethod.HEAD.name(), HttpMethod.POST.name()));
 
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -56,6 +57,9 @@ public class DefaultCorsProcessor implements CorsProcessor {
 
 	private static final Log logger = LogFactory.getLog(DefaultCorsProcessor.class);
 
+	private static final List<String> VARY_HEADERS = Collections.unmodifiableList(Arrays.asList(HttpHeaders.ORIGIN,
+			HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS));
+
 
 	@Override
 	@SuppressWarnings("resource")
@@ -122,8 +126,7 @@ public class DefaultCorsProcessor implements CorsProcessor {
 		String allowOrigin = checkOrigin(config, requestOrigin);
 		HttpHeaders responseHeaders = response.getHeaders();
 
-		responseHeaders.addAll(HttpHeaders.VARY, Arrays.asList(HttpHeaders.ORIGIN,
-				HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS));
+		responseHeaders.addAll(HttpHeaders.VARY, VARY_HEADERS);
 
 		if (allowOrigin == null) {
 			logger.debug("Reject: '" + requestOrigin + "' origin is not allowed");
@@ -149,15 +152,29 @@ public class DefaultCorsProcessor implements CorsProcessor {
 
 		responseHeaders.setAccessControlAllowOrigin(allowOrigin);
 
+		CompiledCorsConfiguration compiledConfig =
+				(config instanceof CompiledCorsConfiguration ? (CompiledCorsConfiguration) config : null);
+
 		if (preFlightRequest) {
-			responseHeaders.setAccessControlAllowMethods(allowMethods);
+			if (compiledConfig != null) {
+				responseHeaders.set(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS, compiledConfig.getAllowMethodsValue(allowMethods));
+			}
+			else {
+				responseHeaders.setAccessControlAllowMethods(allowMethods);
+			}
 		}
 
 		if (preFlightRequest && !allowHeaders.isEmpty()) {
 			responseHeaders.setAccessControlAllowHeaders(allowHeaders);
 		}
 
-		if (!CollectionUtils.isEmpty(config.getExposedHeaders())) {
+		if (compiledConfig != null) {
+			String exposeHeaders = compiledConfig.getExposeHeadersValue();
+			if (exposeHeaders != null) {
+				responseHeaders.set(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, exposeHeaders);
+			}
+		}
+		else if (!CollectionUtils.isEmpty(config.getExposedHeaders())) {
 			responseHeaders.setAccessControlExposeHeaders(config.getExposedHeaders());
 		}
 
@@ -166,7 +183,12 @@ public class DefaultCorsProcessor implements CorsProcessor {
 		}
 
 		if (preFlightRequest && config.getMaxAge() != null) {
-			responseHeaders.setAccessControlMaxAge(config.getMaxAge());
+			if (compiledConfig != null && compiledConfig.getMaxAgeValue() != null) {
+				responseHeaders.set(HttpHeaders.ACCESS_CONTROL_MAX_AGE, compiledConfig.getMaxAgeValue());
+			}
+			else {
+				responseHeaders.setAccessControlMaxAge(config.getMaxAge());
+			}
 		}
 
 		response.flush();
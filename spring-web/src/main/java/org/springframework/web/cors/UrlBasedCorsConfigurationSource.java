@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -95,7 +95,7 @@ public class UrlBasedCorsConfigurationSource implements CorsConfigurationSource
 	public void setCorsConfigurations(@Nullable Map<String, CorsConfiguration> corsConfigurations) {
 		this.corsConfigurations.clear();
 		if (corsConfigurations != null) {
-			this.corsConfigurations.putAll(corsConfigurations);
+			corsConfigurations.forEach(this::registerCorsConfiguration);
 		}
 	}
 
@@ -108,9 +108,11 @@ public class UrlBasedCorsConfigurationSource implements CorsConfigurationSource
 
 	/**
 	 * Register a {@link CorsConfiguration} for the specified path pattern.
+	 * <p>The configuration is {@link CompiledCorsConfiguration#compile compiled},
+	 * so later changes to it are not reflected.
 	 */
 	public void registerCorsConfiguration(String path, CorsConfiguration config) {
-		this.corsConfigurations.put(path, config);
+		this.corsConfigurations.put(path, CompiledCorsConfiguration.compile(config));
 	}
 
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.web.cors.reactive;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
@@ -30,6 +31,7 @@ import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.lang.Nullable;
 import org.springframework.util.CollectionUtils;
+import org.springframework.web.cors.CompiledCorsConfiguration;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.server.ServerWebExchange;
 
@@ -51,6 +53,9 @@ public class DefaultCorsProcessor implements CorsProcessor {
 
 	private static final Log logger = LogFactory.getLog(DefaultCorsProcessor.class);
 
+	private static final List<String> VARY_HEADERS = Collections.unmodifiableList(Arrays.asList(HttpHeaders.ORIGIN,
+			HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS));
+
 
 	@Override
 	public boolean process(@Nullable CorsConfiguration config, ServerWebExchange exchange) {
@@ -107,8 +112,7 @@ public class DefaultCorsProcessor implements CorsProcessor {
 		ServerHttpResponse response = exchange.getResponse();
 		HttpHeaders responseHeaders = response.getHeaders();
 
-		response.getHeaders().addAll(HttpHeaders.VARY, Arrays.asList(HttpHeaders.ORIGIN,
-				HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS));
+		response.getHeaders().addAll(HttpHeaders.VARY, VARY_HEADERS);
 
 		String requestOrigin = request.getHeaders().getOrigin();
 		String allowOrigin = checkOrigin(config, requestOrigin);
@@ -136,15 +140,29 @@ public class DefaultCorsProcessor implements CorsProcessor {
 
 		responseHeaders.setAccessControlAllowOrigin(allowOrigin);
 
+		CompiledCorsConfiguration compiledConfig =
+				(config instanceof CompiledCorsConfiguration ? (CompiledCorsConfiguration) config : null);
+
 		if (preFlightRequest) {
-			responseHeaders.setAccessControlAllowMethods(allowMethods);
+			if (compiledConfig != null) {
+				responseHeaders.set(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS, compiledConfig.getAllowMethodsValue(allowMethods));
+			}
+			else {
+				responseHeaders.setAccessControlAllowMethods(allowMethods);
+			}
 		}
 
 		if (preFlightRequest && !allowHeaders.isEmpty()) {
 			responseHeaders.setAccessControlAllowHeaders(allowHeaders);
 		}
 
-		if (!CollectionUtils.isEmpty(config.getExposedHeaders())) {
+		if (compiledConfig != null) {
+			String exposeHeaders = compiledConfig.getExposeHeadersValue();
+			if (exposeHeaders != null) {
+				responseHeaders.set(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, exposeHeaders);
+			}
+		}
+		else if (!CollectionUtils.isEmpty(config.getExposedHeaders())) {
 			responseHeaders.setAccessControlExposeHeaders(config.getExposedHeaders());
 		}
 
@@ -153,7 +171,12 @@ public class DefaultCorsProcessor implements CorsProcessor {
 		}
 
 		if (preFlightRequest && config.getMaxAge() != null) {
-			responseHeaders.setAccessControlMaxAge(config.getMaxAge());
+			if (compiledConfig != null && compiledConfig.getMaxAgeValue() != null) {
+				responseHeaders.set(HttpHeaders.ACCESS_CONTROL_MAX_AGE, compiledConfig.getMaxAgeValue());
+			}
+			else {
+				responseHeaders.setAccessControlMaxAge(config.getMaxAge());
+			}
 		}
 
 		return true;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,11 +16,15 @@
 
 package org.springframework.web.cors.reactive;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.http.server.PathContainer;
 import org.springframework.lang.Nullable;
+import org.springframework.web.cors.CompiledCorsConfiguration;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.util.pattern.PathPattern;
@@ -33,6 +37,11 @@ import org.springframework.web.util.pattern.PathPatternParser;
  * <p>Exact path mapping URIs (such as {@code "/admin"}) are supported
  * as well as Ant-style path patterns (such as {@code "/admin/**"}).
  *
+ * <p>Patterns are indexed by their first path segment when it is a literal,
+ * so that a lookup only tries patterns that start with the same segment as
+ * the request path, along with patterns that start with a wildcard or a URI
+ * variable. Patterns are still tried in the order they were registered.
+ *
  * @author Sebastien Deleuze
  * @author Brian Clozel
  * @since 5.0
@@ -43,6 +52,9 @@ public class UrlBasedCorsConfigurationSource implements CorsConfigurationSource
 
 	private final PathPatternParser patternParser;
 
+	@Nullable
+	private volatile PatternIndex patternIndex;
+
 
 	/**
 	 * Construct a new {@code UrlBasedCorsConfigurationSource} instance with default
@@ -68,6 +80,7 @@ public class UrlBasedCorsConfigurationSource implements CorsConfigurationSource
 	 */
 	public void setCorsConfigurations(@Nullable Map<String, CorsConfiguration> corsConfigurations) {
 		this.corsConfigurations.clear();
+		this.patternIndex = null;
 		if (corsConfigurations != null) {
 			corsConfigurations.forEach(this::registerCorsConfiguration);
 		}
@@ -75,20 +88,110 @@ public class UrlBasedCorsConfigurationSource implements CorsConfigurationSource
 
 	/**
 	 * Register a {@link CorsConfiguration} for the specified path pattern.
+	 * <p>The configuration is {@link CompiledCorsConfiguration#compile compiled},
+	 * so later changes to it are not reflected.
 	 */
 	public void registerCorsConfiguration(String path, CorsConfiguration config) {
-		this.corsConfigurations.put(this.patternParser.parse(path), config);
+		this.corsConfigurations.put(this.patternParser.parse(path), CompiledCorsConfiguration.compile(config));
+		this.patternIndex = null;
 	}
 
 	@Override
 	@Nullable
 	public CorsConfiguration getCorsConfiguration(ServerWebExchange exchange) {
 		PathContainer lookupPath = exchange.getRequest().getPath().pathWithinApplication();
-		return this.corsConfigurations.entrySet().stream()
-				.filter(entry -> entry.getKey().matches(lookupPath))
-				.map(Map.Entry::getValue)
-				.findFirst()
-				.orElse(null);
+		PatternIndex index = this.patternIndex;
+		if (index == null) {
+			index = new PatternIndex(this.corsConfigurations, !this.patternParser.isCaseSensitive());
+			this.patternIndex = index;
+		}
+		for (Map.Entry<PathPattern, CorsConfiguration> entry : index.getCandidates(lookupPath)) {
+			if (entry.getKey().matches(lookupPath)) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * Registered patterns grouped by the literal first segment they start
+	 * with, each group also holding the patterns that start with a wildcard,
+	 * all in registration order.
+	 */
+	private static class PatternIndex {
+
+		private final Map<String, List<Map.Entry<PathPattern, CorsConfiguration>>> candidatesBySegment =
+				new HashMap<>();
+
+		private final List<Map.Entry<PathPattern, CorsConfiguration>> defaultCandidates = new ArrayList<>();
+
+		private final boolean ignoreCase;
+
+		PatternIndex(Map<PathPattern, CorsConfiguration> corsConfigurations, boolean ignoreCase) {
+			this.ignoreCase = ignoreCase;
+			List<Map.Entry<PathPattern, CorsConfiguration>> entries = new ArrayList<>(corsConfigurations.entrySet());
+			List<String> firstSegments = new ArrayList<>(entries.size());
+			for (Map.Entry<PathPattern, CorsConfiguration> entry : entries) {
+				String segment = getLiteralFirstSegment(entry.getKey().getPatternString());
+				firstSegments.add(segment);
+				if (segment != null) {
+					this.candidatesBySegment.putIfAbsent(segment, new ArrayList<>());
+				}
+			}
+			for (int i = 0; i < entries.size(); i++) {
+				Map.Entry<PathPattern, CorsConfiguration> entry = entries.get(i);
+				String segment = firstSegments.get(i);
+				if (segment != null) {
+					this.candidatesBySegment.get(segment).add(entry);
+				}
+				else {
+					this.defaultCandidates.add(entry);
+					this.candidatesBySegment.values().forEach(candidates -> candidates.add(entry));
+				}
+			}
+		}
+
+		@Nullable
+		private String getLiteralFirstSegment(String pattern) {
+			if (!pattern.startsWith("/")) {
+				return null;
+			}
+			int end = pattern.indexOf('/', 1);
+			String segment = (end != -1 ? pattern.substring(1, end) : pattern.substring(1));
+			for (int i = 0; i < segment.length(); i++) {
+				char c = segment.charAt(i);
+				if (c == '*' || c == '?' || c == '{') {
+					return null;
+				}
+			}
+			return normalize(segment);
+		}
+
+		List<Map.Entry<PathPattern, CorsConfiguration>> getCandidates(PathContainer path) {
+			if (this.candidatesBySegment.isEmpty()) {
+				return this.defaultCandidates;
+			}
+			List<PathContainer.Element> elements = path.elements();
+			String segment = "";
+			if (elements.size() > 1 && elements.get(0) instanceof PathContainer.Separator &&
+					elements.get(1) instanceof PathContainer.PathSegment) {
+				segment = normalize(((PathContainer.PathSegment) elements.get(1)).valueToMatch());
+			}
+			List<Map.Entry<PathPattern, CorsConfiguration>> candidates = this.candidatesBySegment.get(segment);
+			return (candidates != null ? candidates : this.defaultCandidates);
+		}
+
+		private String normalize(String segment) {
+			if (!this.ignoreCase) {
+				return segment;
+			}
+			char[] chars = segment.toCharArray();
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = Character.toLowerCase(chars[i]);
+			}
+			return new String(chars);
+		}
 	}
 
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Strategy to resolve a version key for the resource targeted by a request,
+ * which {@link ShallowEtagHeaderFilter} uses as the ETag value instead of
+ * a hash over the rendered response content.
+ *
+ * <p>A version key is typically cheap to obtain, e.g. from a revision number,
+ * a last-modified timestamp or a content hash maintained by the application,
+ * and must change whenever the representation of the resource changes.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @see ShallowEtagHeaderFilter#setVersionResolver
+ */
+@FunctionalInterface
+public interface ETagVersionResolver {
+
+	/**
+	 * Resolve the version of the resource targeted by the given request.
+	 * @param request the current request
+	 * @return the version key (an unquoted entity tag, or a quoted one,
+	 * optionally prefixed with {@code W/}), or {@code null} if no version
+	 * is available for the request, in which case the ETag is generated
+	 * from the response content
+	 */
+	@Nullable
+	String resolveVersion(HttpServletRequest request);
+
+}
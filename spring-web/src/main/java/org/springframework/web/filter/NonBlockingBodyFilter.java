@@ -0,0 +1,473 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.FastByteArrayOutputStream;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * {@link javax.servlet.Filter} that performs request and response body I/O
+ * through the Servlet 3.1 non-blocking API, so that slow clients do not hold
+ * on to container threads while the body is being transferred.
+ *
+ * <p>For requests with a body, the filter starts asynchronous processing and
+ * reads the body fully through a {@link ReadListener} before dispatching the
+ * request back into the filter chain, where the handler (e.g. a Spring MVC
+ * controller with an {@code @RequestBody} argument) reads the buffered body.
+ * The response body is buffered while the handler is invoked and is then
+ * written through a {@link WriteListener} once the handler has completed,
+ * including after asynchronous handling through
+ * {@link org.springframework.web.context.request.async.WebAsyncManager}.
+ *
+ * <p>Form and multipart requests are not read ahead, since the Servlet
+ * container parses request parameters and parts from the original input stream.
+ * Responses that are committed by the handler (e.g. through an explicit flush
+ * or streaming) are written as usual.
+ *
+ * <p><b>NOTE:</b> This filter must be mapped for the {@code ASYNC} dispatcher
+ * type and all filters and Servlets in the chain must support asynchronous
+ * processing. Requests without async support are processed with blocking I/O.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class NonBlockingBodyFilter extends OncePerRequestFilter {
+
+	private static final String BODY_ATTRIBUTE = NonBlockingBodyFilter.class.getName() + ".BODY";
+
+	private static final int CHUNK_SIZE = 8192;
+
+
+	private int maxRequestBodySize = 1024 * 1024;
+
+	private long asyncTimeout = -1;
+
+
+	/**
+	 * Set the maximum number of bytes of a request body to read ahead of the
+	 * handler. Larger requests are rejected with status 413.
+	 * <p>By default this is set to 1 MB.
+	 */
+	public void setMaxRequestBodySize(int maxRequestBodySize) {
+		Assert.isTrue(maxRequestBodySize > 0, "Max request body size must be greater than 0");
+		this.maxRequestBodySize = maxRequestBodySize;
+	}
+
+	/**
+	 * Return the configured maximum request body size.
+	 */
+	public int getMaxRequestBodySize() {
+		return this.maxRequestBodySize;
+	}
+
+	/**
+	 * Set the timeout, in milliseconds, for reading the request body and for
+	 * writing the response body respectively.
+	 * <p>By default this is not set, in which case the default timeout of the
+	 * Servlet container applies.
+	 */
+	public void setAsyncTimeout(long asyncTimeout) {
+		this.asyncTimeout = asyncTimeout;
+	}
+
+	/**
+	 * Return the configured async timeout.
+	 */
+	public long getAsyncTimeout() {
+		return this.asyncTimeout;
+	}
+
+
+	/**
+	 * Returns {@code false} so that the filter can process the dispatch
+	 * following the non-blocking read as well as the final dispatch after
+	 * asynchronous handling by the handler.
+	 */
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		return false;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		if (!request.isAsyncSupported()) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		HttpServletRequest requestToUse = request;
+		byte[] body = (byte[]) request.getAttribute(BODY_ATTRIBUTE);
+		if (body != null) {
+			requestToUse = new ReadAheadRequestWrapper(request, body);
+		}
+		else if (isEligibleForReadAhead(request)) {
+			readBody(request, response);
+			return;
+		}
+
+		HttpServletResponse responseToUse = response;
+		if (WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class) == null) {
+			responseToUse = new ContentCachingResponseWrapper(response);
+		}
+
+		filterChain.doFilter(requestToUse, responseToUse);
+
+		if (!request.isAsyncStarted()) {
+			writeBody(request, responseToUse);
+		}
+	}
+
+	/**
+	 * Whether the body of the given request should be read ahead of the handler.
+	 * <p>The default implementation returns {@code true} for requests that
+	 * declare a body through a positive content length or chunked transfer
+	 * encoding, unless they contain form data or multipart content.
+	 * @param request the current request
+	 */
+	protected boolean isEligibleForReadAhead(HttpServletRequest request) {
+		if (request.getContentLengthLong() <= 0 && request.getHeader(HttpHeaders.TRANSFER_ENCODING) == null) {
+			return false;
+		}
+		String contentType = request.getContentType();
+		if (StringUtils.hasLength(contentType)) {
+			try {
+				MediaType mediaType = MediaType.parseMediaType(contentType);
+				return !(MediaType.APPLICATION_FORM_URLENCODED.includes(mediaType) ||
+						MediaType.MULTIPART_FORM_DATA.includes(mediaType));
+			}
+			catch (IllegalArgumentException ex) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void readBody(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if (request.getContentLengthLong() > this.maxRequestBodySize) {
+			response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+			return;
+		}
+		AsyncContext asyncContext = request.startAsync();
+		if (this.asyncTimeout > 0) {
+			asyncContext.setTimeout(this.asyncTimeout);
+		}
+		asyncContext.addListener(new TimeoutHandler(HttpServletResponse.SC_REQUEST_TIMEOUT));
+		ServletInputStream inputStream = request.getInputStream();
+		inputStream.setReadListener(new BodyReadListener(asyncContext, request, response, inputStream));
+	}
+
+	private void writeBody(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		ContentCachingResponseWrapper responseWrapper =
+				WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+		Assert.notNull(responseWrapper, "ContentCachingResponseWrapper not found");
+		HttpServletResponse rawResponse = (HttpServletResponse) responseWrapper.getResponse();
+
+		int contentSize = responseWrapper.getContentSize();
+		if (contentSize == 0 || rawResponse.isCommitted()) {
+			responseWrapper.copyBodyToResponse();
+			return;
+		}
+
+		if (rawResponse.getHeader(HttpHeaders.CONTENT_LENGTH) == null) {
+			rawResponse.setContentLength(contentSize);
+		}
+		AsyncContext asyncContext = request.startAsync(request, rawResponse);
+		if (this.asyncTimeout > 0) {
+			asyncContext.setTimeout(this.asyncTimeout);
+		}
+		asyncContext.addListener(new TimeoutHandler(null));
+		ServletOutputStream outputStream = rawResponse.getOutputStream();
+		outputStream.setWriteListener(new BodyWriteListener(
+				asyncContext, responseWrapper.getContentInputStream(), outputStream));
+	}
+
+
+	/**
+	 * Reads the request body into memory and dispatches once all data has been read.
+	 */
+	private class BodyReadListener implements ReadListener {
+
+		private final AsyncContext asyncContext;
+
+		private final HttpServletRequest request;
+
+		private final HttpServletResponse response;
+
+		private final ServletInputStream inputStream;
+
+		private final FastByteArrayOutputStream content = new FastByteArrayOutputStream();
+
+		private final byte[] chunk = new byte[CHUNK_SIZE];
+
+		public BodyReadListener(AsyncContext asyncContext, HttpServletRequest request,
+				HttpServletResponse response, ServletInputStream inputStream) {
+
+			this.asyncContext = asyncContext;
+			this.request = request;
+			this.response = response;
+			this.inputStream = inputStream;
+		}
+
+		@Override
+		public void onDataAvailable() throws IOException {
+			while (this.inputStream.isReady() && !this.inputStream.isFinished()) {
+				int read = this.inputStream.read(this.chunk);
+				if (read == -1) {
+					return;
+				}
+				if (this.content.size() + read > maxRequestBodySize) {
+					this.response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+					this.asyncContext.complete();
+					return;
+				}
+				this.content.write(this.chunk, 0, read);
+			}
+		}
+
+		@Override
+		public void onAllDataRead() {
+			if (!this.response.isCommitted()) {
+				this.request.setAttribute(BODY_ATTRIBUTE, this.content.toByteArrayUnsafe());
+				this.asyncContext.dispatch();
+			}
+		}
+
+		@Override
+		public void onError(Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to read request body: " + ex);
+			}
+			try {
+				if (!this.response.isCommitted()) {
+					this.response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+				}
+			}
+			catch (IOException ignored) {
+				// Connection most likely gone
+			}
+			this.asyncContext.complete();
+		}
+	}
+
+
+	/**
+	 * Writes the buffered response body whenever the container signals readiness.
+	 */
+	private class BodyWriteListener implements WriteListener {
+
+		private final AsyncContext asyncContext;
+
+		private final InputStream content;
+
+		private final ServletOutputStream outputStream;
+
+		private final byte[] chunk = new byte[CHUNK_SIZE];
+
+		public BodyWriteListener(AsyncContext asyncContext, InputStream content, ServletOutputStream outputStream) {
+			this.asyncContext = asyncContext;
+			this.content = content;
+			this.outputStream = outputStream;
+		}
+
+		@Override
+		public void onWritePossible() throws IOException {
+			while (this.outputStream.isReady()) {
+				int read = this.content.read(this.chunk);
+				if (read == -1) {
+					this.asyncContext.complete();
+					return;
+				}
+				this.outputStream.write(this.chunk, 0, read);
+			}
+		}
+
+		@Override
+		public void onError(Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to write response body: " + ex);
+			}
+			this.asyncContext.complete();
+		}
+	}
+
+
+	/**
+	 * Completes the request on timeout, optionally with an error status.
+	 */
+	private static class TimeoutHandler implements AsyncListener {
+
+		@Nullable
+		private final Integer status;
+
+		public TimeoutHandler(@Nullable Integer status) {
+			this.status = status;
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) throws IOException {
+			HttpServletResponse response = (HttpServletResponse) event.getAsyncContext().getResponse();
+			if (this.status != null && response != null && !response.isCommitted()) {
+				response.sendError(this.status);
+			}
+			event.getAsyncContext().complete();
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+		}
+	}
+
+
+	/**
+	 * Exposes a request body that has been read ahead of the handler.
+	 */
+	private static class ReadAheadRequestWrapper extends HttpServletRequestWrapper {
+
+		private final byte[] body;
+
+		public ReadAheadRequestWrapper(HttpServletRequest request, byte[] body) {
+			super(request);
+			this.body = body;
+		}
+
+		@Override
+		public int getContentLength() {
+			return this.body.length;
+		}
+
+		@Override
+		public long getContentLengthLong() {
+			return this.body.length;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() {
+			return new ReadAheadServletInputStream(this, this.body);
+		}
+
+		@Override
+		public BufferedReader getReader() throws UnsupportedEncodingException {
+			String encoding = getCharacterEncoding();
+			return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(this.body),
+					(encoding != null ? encoding : WebUtils.DEFAULT_CHARACTER_ENCODING)));
+		}
+	}
+
+
+	/**
+	 * Input stream over a request body that has been read ahead, and is
+	 * therefore always ready, also for a {@link ReadListener}.
+	 */
+	private static class ReadAheadServletInputStream extends ServletInputStream {
+
+		private final HttpServletRequest request;
+
+		private final ByteArrayInputStream delegate;
+
+		@Nullable
+		private ReadListener readListener;
+
+		public ReadAheadServletInputStream(HttpServletRequest request, byte[] body) {
+			this.request = request;
+			this.delegate = new ByteArrayInputStream(body);
+		}
+
+		@Override
+		public int read() {
+			return this.delegate.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			return this.delegate.read(b, off, len);
+		}
+
+		@Override
+		public int available() {
+			return this.delegate.available();
+		}
+
+		@Override
+		public boolean isFinished() {
+			return (this.delegate.available() == 0);
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			Assert.notNull(readListener, "ReadListener must not be null");
+			if (!this.request.isAsyncStarted()) {
+				throw new IllegalStateException("Async processing has not been started");
+			}
+			if (this.readListener != null) {
+				throw new IllegalStateException("ReadListener has already been set");
+			}
+			this.readListener = readListener;
+			try {
+				if (!isFinished()) {
+					readListener.onDataAvailable();
+				}
+				if (isFinished()) {
+					readListener.onAllDataRead();
+				}
+			}
+			catch (Throwable ex) {
+				readListener.onError(ex);
+			}
+		}
+	}
+
+}
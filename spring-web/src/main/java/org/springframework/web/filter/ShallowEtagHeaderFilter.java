@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,14 +19,18 @@ package org.springframework.web.filter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 
 import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.util.DigestUtils;
 import org.springframework.web.util.ContentCachingResponseWrapper;
@@ -42,6 +46,13 @@ import org.springframework.web.util.WebUtils;
  * (e.g. a {@link org.springframework.web.servlet.View}) is still rendered.
  * As such, this filter only saves bandwidth, not server performance.
  *
+ * <p>Alternatively, an {@link ETagVersionResolver} may be configured to provide
+ * a version key for the requested resource. When a version is available, the
+ * {@code If-None-Match} header is checked before the rest of the filter chain
+ * is invoked, so a {@code 304 "Not Modified"} response is sent without rendering
+ * the response, and other responses are streamed without being buffered, with
+ * the version ETag added once the response turns out to be eligible for it.
+ *
  * <p><b>NOTE:</b> As of Spring Framework 5.0, this filter uses request/response
  * decorators built on the Servlet 3.1 API.
  *
@@ -63,9 +74,14 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 
 	private static final String STREAMING_ATTRIBUTE = ShallowEtagHeaderFilter.class.getName() + ".STREAMING";
 
+	private static final String VERSION_ETAG_ATTRIBUTE = ShallowEtagHeaderFilter.class.getName() + ".VERSION_ETAG";
+
 
 	private boolean writeWeakETag = false;
 
+	@Nullable
+	private ETagVersionResolver versionResolver;
+
 
 	/**
 	 * Set whether the ETag value written to the response should be weak, as per RFC 7232.
@@ -86,6 +102,34 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 		return this.writeWeakETag;
 	}
 
+	/**
+	 * Configure a strategy to resolve a version key for GET requests, to be
+	 * used as the ETag value instead of a hash of the response content.
+	 * <p>When a version is resolved for a GET or HEAD request, a matching
+	 * {@code If-None-Match} request header results in a {@code 304 "Not Modified"}
+	 * response without invoking the rest of the filter chain. Otherwise the
+	 * response content is written through without being buffered, and the ETag
+	 * header is added before the response is committed, provided the status is
+	 * in the {@code 2xx} series, no ETag has been set, and the Cache-Control
+	 * header does not contain "no-store". Requests for which the resolver
+	 * returns {@code null} are handled as before.
+	 * <p>By default this is not set.
+	 * @param versionResolver the resolver to use
+	 * @since 5.2
+	 */
+	public void setVersionResolver(@Nullable ETagVersionResolver versionResolver) {
+		this.versionResolver = versionResolver;
+	}
+
+	/**
+	 * Return the configured {@link ETagVersionResolver}, if any.
+	 * @since 5.2
+	 */
+	@Nullable
+	public ETagVersionResolver getVersionResolver() {
+		return this.versionResolver;
+	}
+
 
 	/**
 	 * The default value is {@code false} so that the filter may delay the generation
@@ -100,6 +144,33 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
 			throws ServletException, IOException {
 
+		String versionETag = (String) request.getAttribute(VERSION_ETAG_ATTRIBUTE);
+		if (versionETag == null && !isAsyncDispatch(request)) {
+			versionETag = resolveVersionETag(request, response);
+			if (versionETag != null) {
+				request.setAttribute(VERSION_ETAG_ATTRIBUTE, versionETag);
+				String requestETag = request.getHeader(HEADER_IF_NONE_MATCH);
+				if (requestETag != null && ("*".equals(requestETag) || compareETagHeaderValue(requestETag, versionETag))) {
+					response.setHeader(HEADER_ETAG, versionETag);
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					return;
+				}
+			}
+		}
+		if (versionETag != null) {
+			// Version based ETag: nothing buffered
+			VersionETagResponseWrapper responseWrapper =
+					WebUtils.getNativeResponse(response, VersionETagResponseWrapper.class);
+			if (responseWrapper == null) {
+				responseWrapper = new VersionETagResponseWrapper(response, versionETag);
+			}
+			filterChain.doFilter(request, responseWrapper);
+			if (!isAsyncStarted(request)) {
+				responseWrapper.applyETag();
+			}
+			return;
+		}
+
 		HttpServletResponse responseToUse = response;
 		if (!isAsyncDispatch(request) && !(response instanceof ContentCachingResponseWrapper)) {
 			responseToUse = new HttpStreamingAwareContentCachingResponseWrapper(response, request);
@@ -112,6 +183,31 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 		}
 	}
 
+	/**
+	 * Resolve a version based ETag for a GET or HEAD request, if any.
+	 */
+	@Nullable
+	private String resolveVersionETag(HttpServletRequest request, HttpServletResponse response) {
+		String method = request.getMethod();
+		if (this.versionResolver == null || !(HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method)) ||
+				response instanceof ContentCachingResponseWrapper) {
+			return null;
+		}
+		String version = this.versionResolver.resolveVersion(request);
+		return (version != null ? formatVersionETag(version, this.writeWeakETag) : null);
+	}
+
+	private static String formatVersionETag(String version, boolean isWeak) {
+		if (version.startsWith("\"") || version.startsWith("W/\"")) {
+			return version;
+		}
+		StringBuilder builder = new StringBuilder(version.length() + 4);
+		if (isWeak) {
+			builder.append("W/");
+		}
+		return builder.append('"').append(version).append('"').toString();
+	}
+
 	private void updateResponse(HttpServletRequest request, HttpServletResponse response) throws IOException {
 		ContentCachingResponseWrapper responseWrapper =
 				WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
@@ -211,6 +307,143 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 	}
 
 
+	/**
+	 * Adds a version based ETag to the response before it is committed, if the
+	 * status and headers set by then make the response eligible for it.
+	 */
+	private static class VersionETagResponseWrapper extends HttpServletResponseWrapper {
+
+		private final String eTag;
+
+		private boolean eTagApplied;
+
+		@Nullable
+		private ServletOutputStream outputStream;
+
+		@Nullable
+		private PrintWriter writer;
+
+		public VersionETagResponseWrapper(HttpServletResponse response, String eTag) {
+			super(response);
+			this.eTag = eTag;
+		}
+
+		/**
+		 * Add the ETag, unless the response is committed, has a status
+		 * outside the {@code 2xx} series, already has an ETag, or has a
+		 * Cache-Control header with a "no-store" directive.
+		 */
+		public void applyETag() {
+			if (this.eTagApplied) {
+				return;
+			}
+			this.eTagApplied = true;
+			int statusCode = getStatus();
+			if (isCommitted() || statusCode < 200 || statusCode >= 300 || getHeader(HEADER_ETAG) != null) {
+				return;
+			}
+			String cacheControl = getHeader(HEADER_CACHE_CONTROL);
+			if (cacheControl == null || !cacheControl.contains(DIRECTIVE_NO_STORE)) {
+				setHeader(HEADER_ETAG, this.eTag);
+			}
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (this.outputStream == null) {
+				this.outputStream = new ETagServletOutputStream(getResponse().getOutputStream());
+			}
+			return this.outputStream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (this.writer == null) {
+				this.writer = new PrintWriter(new ETagWriter(getResponse().getWriter()));
+			}
+			return this.writer;
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			applyETag();
+			super.flushBuffer();
+		}
+
+
+		private class ETagServletOutputStream extends ServletOutputStream {
+
+			private final ServletOutputStream delegate;
+
+			public ETagServletOutputStream(ServletOutputStream delegate) {
+				this.delegate = delegate;
+			}
+
+			@Override
+			public void write(int b) throws IOException {
+				applyETag();
+				this.delegate.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				applyETag();
+				this.delegate.write(b, off, len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				applyETag();
+				this.delegate.flush();
+			}
+
+			@Override
+			public void close() throws IOException {
+				applyETag();
+				this.delegate.close();
+			}
+
+			@Override
+			public boolean isReady() {
+				return this.delegate.isReady();
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+				this.delegate.setWriteListener(writeListener);
+			}
+		}
+
+
+		private class ETagWriter extends Writer {
+
+			private final Writer delegate;
+
+			public ETagWriter(Writer delegate) {
+				this.delegate = delegate;
+			}
+
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				applyETag();
+				this.delegate.write(cbuf, off, len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				applyETag();
+				this.delegate.flush();
+			}
+
+			@Override
+			public void close() throws IOException {
+				applyETag();
+				this.delegate.close();
+			}
+		}
+	}
+
+
 	private static class HttpStreamingAwareContentCachingResponseWrapper extends ContentCachingResponseWrapper {
 
 		private final HttpServletRequest request;
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter.reactive;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Flux;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.lang.Nullable;
+
+/**
+ * {@link ServerHttpRequest} decorator with a request body that has been read
+ * in full by {@link RequestBodyCachingFilter}, and that can be consumed any
+ * number of times.
+ *
+ * <p>The body is held in memory or, if larger than the configured threshold,
+ * in a temporary file. Each subscription to {@link #getBody()} receives new
+ * data buffers, to be released as usual, independent of other subscriptions.
+ * Once the request is processed, {@link #release()} deletes the temporary
+ * file, if any.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @see RequestBodyCachingFilter
+ */
+public final class CachedBodyServerHttpRequest extends ServerHttpRequestDecorator {
+
+	private static final Log logger = LogFactory.getLog(CachedBodyServerHttpRequest.class);
+
+	private static final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+	private static final int FILE_BUFFER_SIZE = 8192;
+
+
+	@Nullable
+	private final byte[] content;
+
+	@Nullable
+	private final Path file;
+
+	private final long size;
+
+
+	CachedBodyServerHttpRequest(ServerHttpRequest delegate, byte[] content) {
+		super(delegate);
+		this.content = content;
+		this.file = null;
+		this.size = content.length;
+	}
+
+	CachedBodyServerHttpRequest(ServerHttpRequest delegate, Path file, long size) {
+		super(delegate);
+		this.content = null;
+		this.file = file;
+		this.size = size;
+	}
+
+
+	/**
+	 * Return the size of the cached body in bytes.
+	 */
+	public long getCachedBodySize() {
+		return this.size;
+	}
+
+	/**
+	 * Whether the body is held in memory, or otherwise in a temporary file.
+	 */
+	public boolean isCachedInMemory() {
+		return (this.file == null);
+	}
+
+	@Override
+	public Flux<DataBuffer> getBody() {
+		byte[] content = this.content;
+		if (content != null) {
+			return (content.length > 0 ? Flux.defer(() -> Flux.just(bufferFactory.wrap(content))) : Flux.empty());
+		}
+		Path file = this.file;
+		if (file == null) {
+			return Flux.empty();
+		}
+		return DataBufferUtils.readAsynchronousFileChannel(
+				() -> AsynchronousFileChannel.open(file, StandardOpenOption.READ), bufferFactory, FILE_BUFFER_SIZE);
+	}
+
+	/**
+	 * Release the cached body, deleting the temporary file if the body was
+	 * spilled to disk. The body must not be consumed after this.
+	 */
+	public void release() {
+		if (this.file != null) {
+			try {
+				Files.deleteIfExists(this.file);
+			}
+			catch (IOException ex) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Failed to delete cached request body " + this.file, ex);
+				}
+			}
+		}
+	}
+
+}
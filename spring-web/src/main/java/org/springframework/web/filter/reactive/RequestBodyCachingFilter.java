@@ -0,0 +1,533 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter.reactive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Hints;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageReader;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.multipart.Part;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+/**
+ * Reactive {@link WebFilter} that reads the request body in full before
+ * continuing with the filter chain, so that it can be consumed any number of
+ * times, e.g. by an auditing or signature verification filter further down
+ * the chain and then again by the handler. See
+ * {@link CachedBodyServerHttpRequest}.
+ *
+ * <p>Bodies up to {@link #setMaxInMemorySize maxInMemorySize} are held in
+ * memory. Larger bodies are written to a temporary file, which is deleted
+ * when request processing completes. Creating and deleting the file, which
+ * involves blocking calls, happens on a
+ * {@link #setBlockingOperationScheduler separate scheduler}. Bodies larger than
+ * {@link #setMaxBodySize maxBodySize} are rejected with a 413 status.
+ * Data buffers of the original body are released as soon as their content
+ * is copied, and the file, if any, is deleted if reading is cancelled.
+ *
+ * <p>Form and multipart data, as returned from
+ * {@link ServerWebExchange#getFormData()} and
+ * {@link ServerWebExchange#getMultipartData()} further down the chain, are
+ * decoded from the cached body with the {@link #setCodecConfigurer codecs}
+ * configured on the filter.
+ *
+ * <p>The caching can also be used without the filter, e.g. in a
+ * {@code HandlerFilterFunction} of a functional endpoint:
+ * <pre class="code">
+ * (request, next) -&gt; filter.cacheBody(request.exchange().getRequest(), cached -&gt;
+ *         next.handle(ServerRequest.from(request).body(cached.getBody()).build()))
+ * </pre>
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class RequestBodyCachingFilter implements WebFilter {
+
+	private int maxInMemorySize = 256 * 1024;
+
+	private long maxBodySize = -1;
+
+	private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+	private Scheduler blockingOperationScheduler = Schedulers.elastic();
+
+	private ServerCodecConfigurer codecConfigurer = ServerCodecConfigurer.create();
+
+
+	/**
+	 * Configure the maximum size of a body to hold in memory. Larger bodies
+	 * are written to a temporary file.
+	 * <p>By default this is set to 256K.
+	 */
+	public void setMaxInMemorySize(int maxInMemorySize) {
+		Assert.isTrue(maxInMemorySize >= 0, "'maxInMemorySize' must be >= 0");
+		this.maxInMemorySize = maxInMemorySize;
+	}
+
+	/**
+	 * Return the configured maximum in-memory size.
+	 */
+	public int getMaxInMemorySize() {
+		return this.maxInMemorySize;
+	}
+
+	/**
+	 * Configure the maximum size of a body, above which the request is
+	 * rejected with a 413 (payload too large) status.
+	 * <p>By default this is set to -1, meaning there is no limit.
+	 */
+	public void setMaxBodySize(long maxBodySize) {
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * Return the configured maximum body size.
+	 */
+	public long getMaxBodySize() {
+		return this.maxBodySize;
+	}
+
+	/**
+	 * Configure the directory for temporary files with bodies larger than
+	 * the {@link #setMaxInMemorySize maxInMemorySize}.
+	 * <p>By default this is the directory of the "java.io.tmpdir" system property.
+	 */
+	public void setTempDirectory(Path tempDirectory) {
+		Assert.notNull(tempDirectory, "'tempDirectory' must not be null");
+		this.tempDirectory = tempDirectory;
+	}
+
+	/**
+	 * Return the configured directory for temporary files.
+	 */
+	public Path getTempDirectory() {
+		return this.tempDirectory;
+	}
+
+	/**
+	 * Set the Reactor {@link Scheduler} to be used for the creation and
+	 * deletion of temporary files, which involve blocking calls.
+	 * <p>By default this is {@link Schedulers#elastic()}.
+	 */
+	public void setBlockingOperationScheduler(Scheduler blockingOperationScheduler) {
+		Assert.notNull(blockingOperationScheduler, "'blockingOperationScheduler' must not be null");
+		this.blockingOperationScheduler = blockingOperationScheduler;
+	}
+
+	/**
+	 * Return the configured scheduler for blocking operations.
+	 */
+	public Scheduler getBlockingOperationScheduler() {
+		return this.blockingOperationScheduler;
+	}
+
+	/**
+	 * Configure the codecs to decode the cached body with, when form or
+	 * multipart data is requested through {@link ServerWebExchange#getFormData()}
+	 * or {@link ServerWebExchange#getMultipartData()} further down the chain.
+	 * This should match the configurer the {@code WebHttpHandlerBuilder} uses.
+	 * <p>By default this is {@link ServerCodecConfigurer#create()}.
+	 */
+	public void setCodecConfigurer(ServerCodecConfigurer codecConfigurer) {
+		Assert.notNull(codecConfigurer, "'codecConfigurer' must not be null");
+		this.codecConfigurer = codecConfigurer;
+	}
+
+	/**
+	 * Return the configured codecs for form and multipart data.
+	 */
+	public ServerCodecConfigurer getCodecConfigurer() {
+		return this.codecConfigurer;
+	}
+
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		return cacheBody(exchange.getRequest(), request ->
+				chain.filter(new CachedBodyServerWebExchange(exchange, request, this.codecConfigurer)));
+	}
+
+	/**
+	 * Read and cache the body of the given request, apply the given function
+	 * to the resulting request, and release the cached body once the
+	 * {@code Mono} returned from the function completes, fails, or is
+	 * cancelled, before passing on its completion or error signal.
+	 * @param request the request to cache the body of
+	 * @param handler the function to process the request with
+	 * @return the result of the function
+	 */
+	public <T> Mono<T> cacheBody(ServerHttpRequest request,
+			Function<CachedBodyServerHttpRequest, ? extends Mono<T>> handler) {
+
+		return Mono.usingWhen(cacheBody(request), handler, this::release, this::release, this::release);
+	}
+
+	private Mono<Void> release(CachedBodyServerHttpRequest cached) {
+		if (cached.isCachedInMemory()) {
+			return Mono.empty();
+		}
+		return Mono.<Void>fromRunnable(cached::release).subscribeOn(this.blockingOperationScheduler);
+	}
+
+	/**
+	 * Read and cache the body of the given request. The caller is responsible
+	 * for {@link CachedBodyServerHttpRequest#release() releasing} the cached
+	 * body when no longer needed.
+	 * @param request the request to cache the body of
+	 * @return the request with the cached body
+	 */
+	public Mono<CachedBodyServerHttpRequest> cacheBody(ServerHttpRequest request) {
+		return Mono.create(sink -> {
+			BodySubscriber subscriber = new BodySubscriber(request, sink);
+			sink.onCancel(subscriber::abort);
+			request.getBody().subscribe(subscriber);
+		});
+	}
+
+
+	/**
+	 * Exchange with the cached request, which decodes form and multipart data
+	 * from the cached body, since the original body has already been consumed.
+	 */
+	private static class CachedBodyServerWebExchange extends ServerWebExchangeDecorator {
+
+		private static final ResolvableType FORM_DATA_TYPE =
+				ResolvableType.forClassWithGenerics(MultiValueMap.class, String.class, String.class);
+
+		private static final ResolvableType MULTIPART_DATA_TYPE =
+				ResolvableType.forClassWithGenerics(MultiValueMap.class, String.class, Part.class);
+
+		private final CachedBodyServerHttpRequest request;
+
+		private final ServerCodecConfigurer codecConfigurer;
+
+		@Nullable
+		private volatile Mono<MultiValueMap<String, String>> formDataMono;
+
+		@Nullable
+		private volatile Mono<MultiValueMap<String, Part>> multipartDataMono;
+
+		CachedBodyServerWebExchange(ServerWebExchange delegate, CachedBodyServerHttpRequest request,
+				ServerCodecConfigurer codecConfigurer) {
+
+			super(delegate);
+			this.request = request;
+			this.codecConfigurer = codecConfigurer;
+		}
+
+		@Override
+		public ServerHttpRequest getRequest() {
+			return this.request;
+		}
+
+		@Override
+		public Mono<MultiValueMap<String, String>> getFormData() {
+			Mono<MultiValueMap<String, String>> formDataMono = this.formDataMono;
+			if (formDataMono == null) {
+				synchronized (this) {
+					formDataMono = this.formDataMono;
+					if (formDataMono == null) {
+						formDataMono = read(FORM_DATA_TYPE, MediaType.APPLICATION_FORM_URLENCODED);
+						this.formDataMono = formDataMono;
+					}
+				}
+			}
+			return formDataMono;
+		}
+
+		@Override
+		public Mono<MultiValueMap<String, Part>> getMultipartData() {
+			Mono<MultiValueMap<String, Part>> multipartDataMono = this.multipartDataMono;
+			if (multipartDataMono == null) {
+				synchronized (this) {
+					multipartDataMono = this.multipartDataMono;
+					if (multipartDataMono == null) {
+						multipartDataMono = read(MULTIPART_DATA_TYPE, MediaType.MULTIPART_FORM_DATA);
+						this.multipartDataMono = multipartDataMono;
+					}
+				}
+			}
+			return multipartDataMono;
+		}
+
+		@SuppressWarnings("unchecked")
+		private <V> Mono<MultiValueMap<String, V>> read(ResolvableType type, MediaType mediaType) {
+			try {
+				MediaType contentType = this.request.getHeaders().getContentType();
+				if (mediaType.isCompatibleWith(contentType)) {
+					return ((HttpMessageReader<MultiValueMap<String, V>>) this.codecConfigurer.getReaders().stream()
+							.filter(reader -> reader.canRead(type, mediaType))
+							.findFirst()
+							.orElseThrow(() -> new IllegalStateException("No HttpMessageReader for " + mediaType)))
+							.readMono(type, this.request, Hints.from(Hints.LOG_PREFIX_HINT, getLogPrefix()))
+							.switchIfEmpty(Mono.fromSupplier(CachedBodyServerWebExchange::emptyMultiValueMap))
+							.cache();
+				}
+			}
+			catch (InvalidMediaTypeException ex) {
+				// Ignore
+			}
+			return Mono.just(emptyMultiValueMap());
+		}
+
+		private static <V> MultiValueMap<String, V> emptyMultiValueMap() {
+			return CollectionUtils.unmodifiableMultiValueMap(new LinkedMultiValueMap<>(0));
+		}
+	}
+
+
+	/**
+	 * Reads one buffer at a time, copying it to memory or, once over the
+	 * in-memory limit, to a temporary file before requesting the next.
+	 * The file is opened, and closed and deleted on failure or cancellation,
+	 * on the scheduler for blocking operations.
+	 */
+	private class BodySubscriber extends BaseSubscriber<DataBuffer> {
+
+		private final ServerHttpRequest request;
+
+		private final MonoSink<CachedBodyServerHttpRequest> sink;
+
+		private final AtomicBoolean terminated = new AtomicBoolean();
+
+		@Nullable
+		private ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+		private long size;
+
+		@Nullable
+		private volatile Path file;
+
+		@Nullable
+		private volatile AsynchronousFileChannel channel;
+
+		private long position;
+
+		private volatile boolean writing;
+
+		private volatile boolean upstreamComplete;
+
+		BodySubscriber(ServerHttpRequest request, MonoSink<CachedBodyServerHttpRequest> sink) {
+			this.request = request;
+			this.sink = sink;
+		}
+
+		@Override
+		protected void hookOnSubscribe(Subscription subscription) {
+			subscription.request(1);
+		}
+
+		@Override
+		protected void hookOnNext(DataBuffer buffer) {
+			if (this.terminated.get()) {
+				DataBufferUtils.release(buffer);
+				return;
+			}
+			this.size += buffer.readableByteCount();
+			if (maxBodySize >= 0 && this.size > maxBodySize) {
+				DataBufferUtils.release(buffer);
+				cancel();
+				fail(new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+						"Request body exceeds the limit of " + maxBodySize + " bytes"));
+				return;
+			}
+			ByteArrayOutputStream content = this.content;
+			if (content != null && this.size <= maxInMemorySize) {
+				try {
+					byte[] bytes = new byte[buffer.readableByteCount()];
+					buffer.read(bytes);
+					content.write(bytes, 0, bytes.length);
+				}
+				finally {
+					DataBufferUtils.release(buffer);
+				}
+				request(1);
+				return;
+			}
+			this.writing = true;
+			if (content != null) {
+				this.content = null;
+				blockingOperationScheduler.schedule(() -> openFileAndWrite(buffer, content));
+			}
+			else {
+				write(buffer, buffer.asByteBuffer());
+			}
+		}
+
+		private void openFileAndWrite(DataBuffer buffer, ByteArrayOutputStream content) {
+			try {
+				Path file = Files.createTempFile(tempDirectory, "request-body-", ".tmp");
+				this.file = file;
+				this.channel = AsynchronousFileChannel.open(file, StandardOpenOption.WRITE);
+			}
+			catch (IOException ex) {
+				DataBufferUtils.release(buffer);
+				cancel();
+				fail(ex);
+				return;
+			}
+			if (this.terminated.get()) {
+				// Cancelled while opening: clean up the file the cancellation may have missed
+				DataBufferUtils.release(buffer);
+				closeAndDeleteFile();
+				return;
+			}
+			write(buffer, ByteBuffer.wrap(content.toByteArray()), buffer.asByteBuffer());
+		}
+
+		private void write(DataBuffer dataBuffer, ByteBuffer... byteBuffers) {
+			AsynchronousFileChannel channel = this.channel;
+			Assert.state(channel != null, "No file channel");
+			channel.write(byteBuffers[0], this.position, 0, new CompletionHandler<Integer, Integer>() {
+				@Override
+				public void completed(Integer written, Integer index) {
+					position += written;
+					int next = (byteBuffers[index].hasRemaining() ? index : index + 1);
+					if (next < byteBuffers.length) {
+						channel.write(byteBuffers[next], position, next, this);
+					}
+					else {
+						DataBufferUtils.release(dataBuffer);
+						onWriteComplete();
+					}
+				}
+				@Override
+				public void failed(Throwable ex, Integer index) {
+					DataBufferUtils.release(dataBuffer);
+					cancel();
+					fail(ex);
+				}
+			});
+		}
+
+		private void onWriteComplete() {
+			this.writing = false;
+			if (this.upstreamComplete) {
+				complete();
+			}
+			else {
+				request(1);
+			}
+		}
+
+		@Override
+		protected void hookOnComplete() {
+			this.upstreamComplete = true;
+			if (!this.writing) {
+				complete();
+			}
+		}
+
+		@Override
+		protected void hookOnError(Throwable ex) {
+			fail(ex);
+		}
+
+		private void complete() {
+			if (this.terminated.compareAndSet(false, true)) {
+				closeChannel();
+				ByteArrayOutputStream content = this.content;
+				if (content != null) {
+					this.sink.success(new CachedBodyServerHttpRequest(this.request, content.toByteArray()));
+				}
+				else {
+					Assert.state(this.file != null, "No file");
+					this.sink.success(new CachedBodyServerHttpRequest(this.request, this.file, this.size));
+				}
+			}
+		}
+
+		private void fail(Throwable ex) {
+			if (this.terminated.compareAndSet(false, true)) {
+				cleanup();
+				this.sink.error(ex);
+			}
+		}
+
+		void abort() {
+			cancel();
+			if (this.terminated.compareAndSet(false, true)) {
+				cleanup();
+			}
+		}
+
+		private void cleanup() {
+			this.content = null;
+			if (this.file != null || this.writing) {
+				blockingOperationScheduler.schedule(this::closeAndDeleteFile);
+			}
+		}
+
+		private void closeAndDeleteFile() {
+			closeChannel();
+			Path file = this.file;
+			if (file != null) {
+				try {
+					Files.deleteIfExists(file);
+				}
+				catch (IOException ignored) {
+				}
+			}
+		}
+
+		private void closeChannel() {
+			AsynchronousFileChannel channel = this.channel;
+			if (channel != null && channel.isOpen()) {
+				try {
+					channel.close();
+				}
+				catch (IOException ignored) {
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.server.session;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.util.Assert;
+import org.springframework.util.IdGenerator;
+import org.springframework.util.JdkIdGenerator;
+import org.springframework.web.server.WebSession;
+
+/**
+ * In-memory storage for {@link WebSession} instances that scales to large
+ * numbers of sessions, as an alternative to {@link InMemoryWebSessionStore}.
+ *
+ * <p>Instead of scanning all sessions for expired ones, sessions are kept in
+ * the buckets of a timer wheel, one bucket per second of expiration time. As
+ * time advances, only the buckets for the elapsed seconds are processed. A
+ * session that was accessed after it was put in a bucket is moved to the
+ * bucket for its new expiration time at that point, so that the cost of
+ * expiration is constant per session and idle period, regardless of how
+ * many sessions are stored.
+ *
+ * <p>Once the {@link #setMaxSessions maximum number of sessions} is reached,
+ * saving a new session evicts the sessions closest to expiration, i.e. the
+ * least recently used ones for sessions with the same max idle time, rather
+ * than failing. Sessions with a negative max idle time never expire, and are
+ * not evicted either.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class EvictingInMemoryWebSessionStore implements WebSessionStore {
+
+	private static final IdGenerator idGenerator = new JdkIdGenerator();
+
+	/** Duration of a tick of the timer wheel, in milliseconds. */
+	private static final long TICK_DURATION = 1000;
+
+	/** Number of buckets in the timer wheel, covering a little over an hour. */
+	private static final int WHEEL_SIZE = 4096;
+
+
+	private int maxSessions = 100000;
+
+	private Clock clock = Clock.system(ZoneId.of("GMT"));
+
+	private final Map<String, InMemoryWebSession> sessions = new ConcurrentHashMap<>();
+
+	private final List<Queue<InMemoryWebSession>> wheel = new ArrayList<>(WHEEL_SIZE);
+
+	private final ReentrantLock wheelLock = new ReentrantLock();
+
+	private volatile long currentTick;
+
+	private final AtomicLong expiredSessionCount = new AtomicLong();
+
+	private final AtomicLong evictedSessionCount = new AtomicLong();
+
+
+	public EvictingInMemoryWebSessionStore() {
+		for (int i = 0; i < WHEEL_SIZE; i++) {
+			this.wheel.add(new ConcurrentLinkedQueue<>());
+		}
+		this.currentTick = getTick(this.clock.instant());
+	}
+
+
+	/**
+	 * Set the maximum number of sessions that can be stored. Once the limit is
+	 * reached, saving an additional session evicts the sessions that are
+	 * closest to expiration.
+	 * <p>By default set to 100000.
+	 * @param maxSessions the maximum number of sessions
+	 */
+	public void setMaxSessions(int maxSessions) {
+		Assert.isTrue(maxSessions > 0, "Max sessions must be greater than 0");
+		this.maxSessions = maxSessions;
+	}
+
+	/**
+	 * Return the maximum number of sessions that can be stored.
+	 */
+	public int getMaxSessions() {
+		return this.maxSessions;
+	}
+
+	/**
+	 * Configure the {@link Clock} to use to set lastAccessTime on every created
+	 * session and to calculate if it is expired.
+	 * <p>By default this is {@code Clock.system(ZoneId.of("GMT"))}.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "Clock is required");
+		this.clock = clock;
+		this.wheelLock.lock();
+		try {
+			this.currentTick = Math.min(this.currentTick, getTick(clock.instant()));
+		}
+		finally {
+			this.wheelLock.unlock();
+		}
+		removeExpiredSessions();
+	}
+
+	/**
+	 * Return the configured clock for session lastAccessTime calculations.
+	 */
+	public Clock getClock() {
+		return this.clock;
+	}
+
+	/**
+	 * Return the map of sessions with an {@link Collections#unmodifiableMap
+	 * unmodifiable} wrapper. This could be used for management purposes, to
+	 * list active sessions, invalidate expired ones, etc.
+	 */
+	public Map<String, WebSession> getSessions() {
+		return Collections.unmodifiableMap(this.sessions);
+	}
+
+	/**
+	 * Return the number of sessions currently stored.
+	 */
+	public int getSessionCount() {
+		return this.sessions.size();
+	}
+
+	/**
+	 * Return the total number of sessions removed because they expired.
+	 */
+	public long getExpiredSessionCount() {
+		return this.expiredSessionCount.get();
+	}
+
+	/**
+	 * Return the total number of sessions evicted before they expired,
+	 * because the maximum number of sessions was reached.
+	 */
+	public long getEvictedSessionCount() {
+		return this.evictedSessionCount.get();
+	}
+
+
+	@Override
+	public Mono<WebSession> createWebSession() {
+		Instant now = this.clock.instant();
+		advance(now, false);
+		return Mono.fromSupplier(() -> new InMemoryWebSession(now));
+	}
+
+	@Override
+	public Mono<WebSession> retrieveSession(String id) {
+		Instant now = this.clock.instant();
+		advance(now, false);
+		InMemoryWebSession session = this.sessions.get(id);
+		if (session == null) {
+			return Mono.empty();
+		}
+		else if (session.isExpired(now)) {
+			this.sessions.remove(id, session);
+			return Mono.empty();
+		}
+		else {
+			session.updateLastAccessTime(now);
+			return Mono.just(session);
+		}
+	}
+
+	@Override
+	public Mono<Void> removeSession(String id) {
+		this.sessions.remove(id);
+		return Mono.empty();
+	}
+
+	@Override
+	public Mono<WebSession> updateLastAccessTime(WebSession session) {
+		return Mono.fromSupplier(() -> {
+			Assert.isInstanceOf(InMemoryWebSession.class, session);
+			((InMemoryWebSession) session).updateLastAccessTime(this.clock.instant());
+			return session;
+		});
+	}
+
+	/**
+	 * Remove expired sessions. Typically this is done incrementally, as time
+	 * advances, during calls to {@link #createWebSession() create} or
+	 * {@link #retrieveSession retrieve}. This method can be called to force
+	 * the removal of sessions that expired up to the current time.
+	 */
+	public void removeExpiredSessions() {
+		advance(this.clock.instant(), true);
+	}
+
+
+	private static long getTick(Instant time) {
+		return time.toEpochMilli() / TICK_DURATION;
+	}
+
+	private Queue<InMemoryWebSession> getBucket(long tick) {
+		return this.wheel.get((int) (tick & (WHEEL_SIZE - 1)));
+	}
+
+	/**
+	 * Process the buckets for the ticks elapsed up to the given time, or skip
+	 * if another thread is already doing so, unless forced.
+	 */
+	private void advance(Instant now, boolean force) {
+		long tick = getTick(now);
+		if (tick <= this.currentTick) {
+			return;
+		}
+		if (force) {
+			this.wheelLock.lock();
+		}
+		else if (!this.wheelLock.tryLock()) {
+			return;
+		}
+		try {
+			long from = Math.max(this.currentTick + 1, tick - WHEEL_SIZE + 1);
+			for (long t = from; t <= tick; t++) {
+				processBucket(t, now, false);
+			}
+			this.currentTick = Math.max(this.currentTick, tick);
+		}
+		finally {
+			this.wheelLock.unlock();
+		}
+	}
+
+	/**
+	 * Evict the sessions closest to expiration, until the number of sessions
+	 * is within the limit again.
+	 */
+	private void evictIfNecessary(Instant now) {
+		if (this.sessions.size() <= this.maxSessions || !this.wheelLock.tryLock()) {
+			return;
+		}
+		try {
+			advance(now, true);
+			long tick = this.currentTick + 1;
+			for (int i = 0; i < WHEEL_SIZE && this.sessions.size() > this.maxSessions; i++) {
+				processBucket(tick + i, now, true);
+			}
+		}
+		finally {
+			this.wheelLock.unlock();
+		}
+	}
+
+	/**
+	 * Remove the expired sessions from the bucket for the given tick, and move
+	 * the other ones to the bucket for their current expiration time.
+	 * Sessions due for this tick are evicted if requested, while there are
+	 * more sessions than allowed.
+	 */
+	private void processBucket(long tick, Instant now, boolean evict) {
+		Queue<InMemoryWebSession> bucket = getBucket(tick);
+		List<InMemoryWebSession> nextRound = null;
+		InMemoryWebSession session;
+		while ((session = bucket.poll()) != null) {
+			if (this.sessions.get(session.getId()) != session) {
+				session.scheduled.set(false);
+				continue;
+			}
+			if (session.isExpired(now)) {
+				remove(session, this.expiredSessionCount);
+				continue;
+			}
+			long expirationTick = session.getExpirationTick();
+			if (expirationTick == -1) {
+				session.scheduled.set(false);
+				continue;
+			}
+			if (evict && expirationTick <= tick) {
+				remove(session, this.evictedSessionCount);
+				if (this.sessions.size() <= this.maxSessions) {
+					break;
+				}
+				continue;
+			}
+			expirationTick = Math.max(expirationTick, tick + 1);
+			if (getBucket(expirationTick) == bucket) {
+				if (nextRound == null) {
+					nextRound = new ArrayList<>();
+				}
+				nextRound.add(session);
+			}
+			else {
+				getBucket(expirationTick).add(session);
+			}
+		}
+		if (nextRound != null) {
+			bucket.addAll(nextRound);
+		}
+	}
+
+	private void remove(InMemoryWebSession session, AtomicLong counter) {
+		session.scheduled.set(false);
+		if (this.sessions.remove(session.getId(), session)) {
+			counter.incrementAndGet();
+		}
+		session.invalidate();
+	}
+
+	private void schedule(InMemoryWebSession session) {
+		long expirationTick = session.getExpirationTick();
+		if (expirationTick != -1 && session.scheduled.compareAndSet(false, true)) {
+			getBucket(Math.max(expirationTick, this.currentTick + 1)).add(session);
+		}
+	}
+
+
+	private class InMemoryWebSession implements WebSession {
+
+		private final AtomicReference<String> id = new AtomicReference<>(String.valueOf(idGenerator.generateId()));
+
+		private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+		private final Instant creationTime;
+
+		private volatile Instant lastAccessTime;
+
+		private volatile Duration maxIdleTime = Duration.ofMinutes(30);
+
+		private final AtomicReference<State> state = new AtomicReference<>(State.NEW);
+
+		/** Whether the session is in a bucket of the timer wheel. */
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+
+		public InMemoryWebSession(Instant creationTime) {
+			this.creationTime = creationTime;
+			this.lastAccessTime = this.creationTime;
+		}
+
+		@Override
+		public String getId() {
+			return this.id.get();
+		}
+
+		@Override
+		public Map<String, Object> getAttributes() {
+			return this.attributes;
+		}
+
+		@Override
+		public Instant getCreationTime() {
+			return this.creationTime;
+		}
+
+		@Override
+		public Instant getLastAccessTime() {
+			return this.lastAccessTime;
+		}
+
+		@Override
+		public void setMaxIdleTime(Duration maxIdleTime) {
+			this.maxIdleTime = maxIdleTime;
+		}
+
+		@Override
+		public Duration getMaxIdleTime() {
+			return this.maxIdleTime;
+		}
+
+		@Override
+		public void start() {
+			this.state.compareAndSet(State.NEW, State.STARTED);
+		}
+
+		@Override
+		public boolean isStarted() {
+			return this.state.get().equals(State.STARTED) || !getAttributes().isEmpty();
+		}
+
+		@Override
+		public Mono<Void> changeSessionId() {
+			String currentId = this.id.get();
+			EvictingInMemoryWebSessionStore.this.sessions.remove(currentId);
+			String newId = String.valueOf(idGenerator.generateId());
+			this.id.set(newId);
+			EvictingInMemoryWebSessionStore.this.sessions.put(this.getId(), this);
+			return Mono.empty();
+		}
+
+		@Override
+		public Mono<Void> invalidate() {
+			this.state.set(State.EXPIRED);
+			getAttributes().clear();
+			EvictingInMemoryWebSessionStore.this.sessions.remove(this.id.get(), this);
+			return Mono.empty();
+		}
+
+		@Override
+		public Mono<Void> save() {
+
+			// Implicitly started session..
+			if (!getAttributes().isEmpty()) {
+				this.state.compareAndSet(State.NEW, State.STARTED);
+			}
+
+			if (isStarted()) {
+				// Save
+				InMemoryWebSession previous = EvictingInMemoryWebSessionStore.this.sessions.put(this.getId(), this);
+
+				// Unless it was invalidated
+				if (this.state.get().equals(State.EXPIRED)) {
+					EvictingInMemoryWebSessionStore.this.sessions.remove(this.getId(), this);
+					return Mono.error(new IllegalStateException("Session was invalidated"));
+				}
+
+				schedule(this);
+				if (previous == null) {
+					evictIfNecessary(clock.instant());
+				}
+			}
+
+			return Mono.empty();
+		}
+
+		@Override
+		public boolean isExpired() {
+			return isExpired(clock.instant());
+		}
+
+		private boolean isExpired(Instant now) {
+			if (this.state.get().equals(State.EXPIRED)) {
+				return true;
+			}
+			if (checkExpired(now)) {
+				this.state.set(State.EXPIRED);
+				return true;
+			}
+			return false;
+		}
+
+		private boolean checkExpired(Instant currentTime) {
+			return isStarted() && !this.maxIdleTime.isNegative() &&
+					currentTime.minus(this.maxIdleTime).isAfter(this.lastAccessTime);
+		}
+
+		private void updateLastAccessTime(Instant currentTime) {
+			this.lastAccessTime = currentTime;
+		}
+
+		/**
+		 * Return the first tick at which the session is expired, based on its
+		 * current last access time, or -1 if it does not expire.
+		 */
+		private long getExpirationTick() {
+			Duration maxIdleTime = this.maxIdleTime;
+			if (maxIdleTime.isNegative()) {
+				return -1;
+			}
+			return getTick(this.lastAccessTime.plus(maxIdleTime)) + 1;
+		}
+	}
+
+
+	private enum State { NEW, STARTED, EXPIRED }
+
+}
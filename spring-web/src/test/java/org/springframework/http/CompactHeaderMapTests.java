@@ -0,0 +1,202 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.SerializationTestUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CompactHeaderMap}.
+ *
+ * @author agent (agent@local)
+ */
+public class CompactHeaderMapTests {
+
+	private final CompactHeaderMap map = new CompactHeaderMap();
+
+
+	@Test
+	public void caseInsensitiveLookup() {
+		this.map.set("Content-Type", "text/plain");
+		this.map.add("x-custom", "a");
+
+		assertEquals("text/plain", this.map.getFirst("content-type"));
+		assertEquals("text/plain", this.map.getFirst("CONTENT-TYPE"));
+		assertEquals(Collections.singletonList("a"), this.map.get("X-Custom"));
+		assertTrue(this.map.containsKey("X-CUSTOM"));
+		assertFalse(this.map.containsKey("X-Other"));
+		assertNull(this.map.get("X-Other"));
+		assertNull(this.map.getFirst("X-Other"));
+	}
+
+	@Test
+	public void addKeepsOrderAndOriginalCase() {
+		this.map.add("accept", "text/html");
+		this.map.add("Host", "example.org");
+		this.map.add("Accept", "application/json");
+
+		assertEquals(Arrays.asList("accept", "Host"), new ArrayList<>(this.map.keySet()));
+		assertEquals(Arrays.asList("text/html", "application/json"), this.map.get("ACCEPT"));
+		assertEquals(2, this.map.size());
+	}
+
+	@Test
+	public void setAndPutUpdateCase() {
+		this.map.add("accept", "text/html");
+		this.map.set("Accept", "text/plain");
+		assertEquals(Collections.singletonList("Accept"), new ArrayList<>(this.map.keySet()));
+		assertEquals(Collections.singletonList("text/plain"), this.map.get("accept"));
+
+		List<String> previous = this.map.put("ACCEPT", Arrays.asList("a", "b"));
+		assertEquals(Collections.singletonList("text/plain"), previous);
+		assertEquals(Collections.singletonList("ACCEPT"), new ArrayList<>(this.map.keySet()));
+		assertEquals("a", this.map.getFirst("accept"));
+	}
+
+	@Test
+	public void listReturnedByGetIsLive() {
+		this.map.set("Vary", "Origin");
+		this.map.get("vary").add("Accept");
+
+		assertEquals(Arrays.asList("Origin", "Accept"), this.map.get("Vary"));
+	}
+
+	@Test
+	public void removeWithManyCollidingEntries() {
+		for (int i = 0; i < 100; i++) {
+			this.map.add("X-Header-" + i, String.valueOf(i));
+		}
+		for (int i = 0; i < 100; i += 2) {
+			assertEquals(Collections.singletonList(String.valueOf(i)), this.map.remove("x-header-" + i));
+		}
+		assertEquals(50, this.map.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i % 2 != 0, this.map.containsKey("X-HEADER-" + i));
+		}
+		assertNull(this.map.remove("X-Header-0"));
+	}
+
+	@Test
+	public void iteratorRemove() {
+		this.map.add("A", "1");
+		this.map.add("B", "2");
+		this.map.add("C", "3");
+
+		Iterator<Map.Entry<String, List<String>>> iterator = this.map.entrySet().iterator();
+		iterator.next();
+		iterator.next();
+		iterator.remove();
+
+		assertEquals(Arrays.asList("A", "C"), new ArrayList<>(this.map.keySet()));
+		assertFalse(this.map.containsKey("b"));
+		this.map.keySet().remove("a");
+		assertEquals(Collections.singletonList("C"), new ArrayList<>(this.map.keySet()));
+	}
+
+	@Test
+	public void equalsAndHashCode() {
+		MultiValueMap<String, String> other =
+				CollectionUtils.toMultiValueMap(new LinkedCaseInsensitiveMap<>(8, Locale.ENGLISH));
+		other.add("Accept", "text/html");
+		other.add("Accept", "text/plain");
+		other.set("Host", "example.org");
+
+		this.map.add("Accept", "text/html");
+		this.map.add("Accept", "text/plain");
+		this.map.set("Host", "example.org");
+
+		assertEquals(other, this.map);
+		assertEquals(this.map, other);
+		assertEquals(other.hashCode(), this.map.hashCode());
+
+		this.map.set("Host", "example.com");
+		assertNotEquals(other, this.map);
+	}
+
+	@Test
+	public void toSingleValueMap() {
+		this.map.add("Accept", "text/html");
+		this.map.add("Accept", "text/plain");
+		this.map.set("Host", "example.org");
+
+		Map<String, String> expected = new LinkedHashMap<>();
+		expected.put("Accept", "text/html");
+		expected.put("Host", "example.org");
+		assertEquals(expected, this.map.toSingleValueMap());
+	}
+
+	@Test
+	public void clear() {
+		this.map.set("Host", "example.org");
+		this.map.clear();
+
+		assertTrue(this.map.isEmpty());
+		assertNull(this.map.get("Host"));
+		assertFalse(this.map.keySet().iterator().hasNext());
+	}
+
+	@Test
+	public void serializable() throws Exception {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.TEXT_PLAIN);
+		headers.add("X-Custom", "a");
+		headers.add("X-Custom", "b");
+
+		HttpHeaders copy = (HttpHeaders) SerializationTestUtils.serializeAndDeserialize(headers);
+		assertEquals(headers, copy);
+		assertEquals(MediaType.TEXT_PLAIN, copy.getContentType());
+		assertEquals(Arrays.asList("a", "b"), copy.get("x-custom"));
+	}
+
+	@Test
+	public void sameBehaviorAsLinkedCaseInsensitiveMap() {
+		MultiValueMap<String, String> expected =
+				CollectionUtils.toMultiValueMap(new LinkedCaseInsensitiveMap<>(8, Locale.ENGLISH));
+		populate(expected);
+		populate(this.map);
+
+		assertEquals(expected, this.map);
+		assertEquals(expected.toSingleValueMap(), this.map.toSingleValueMap());
+		assertEquals(expected.getFirst("content-type"), this.map.getFirst("content-type"));
+		assertEquals(expected.containsKey("Origin"), this.map.containsKey("Origin"));
+	}
+
+	private void populate(MultiValueMap<String, String> headers) {
+		headers.set(HttpHeaders.HOST, "example.org");
+		headers.set(HttpHeaders.ACCEPT, "application/json");
+		headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+		headers.set(HttpHeaders.CONTENT_LENGTH, "42");
+		headers.add("accept", "text/plain");
+		headers.remove("content-length");
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -192,4 +192,22 @@ public class HttpRangeTests {
 		}
 	}
 
+	@Test
+	public void coalesceResourceRegions() {
+		byte[] bytes = "Spring Framework".getBytes(StandardCharsets.UTF_8);
+		ByteArrayResource resource = new ByteArrayResource(bytes);
+
+		List<HttpRange> ranges = HttpRange.parseRanges("bytes=10-15,0-2,3-5,4-4");
+		List<ResourceRegion> regions = HttpRange.coalesceResourceRegions(HttpRange.toResourceRegions(ranges, resource));
+		assertEquals(2, regions.size());
+		assertEquals(0L, regions.get(0).getPosition());
+		assertEquals(6L, regions.get(0).getCount());
+		assertEquals(10L, regions.get(1).getPosition());
+		assertEquals(6L, regions.get(1).getCount());
+
+		ranges = HttpRange.parseRanges("bytes=7-9,0-2");
+		List<ResourceRegion> original = HttpRange.toResourceRegions(ranges, resource);
+		assertSame(original, HttpRange.coalesceResourceRegions(original));
+	}
+
 }
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StreamUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CachingClientHttpRequestInterceptor}.
+ *
+ * @author agent (agent@local)
+ */
+public class CachingClientHttpRequestInterceptorTests {
+
+	private static final URI URL = URI.create("http://example.com/resource");
+
+	private static final long START = 1546300800000L;
+
+
+	private final HttpCache cache = new HttpCache();
+
+	private final CachingClientHttpRequestInterceptor interceptor = new CachingClientHttpRequestInterceptor(this.cache);
+
+	private final List<HttpHeaders> requests = new ArrayList<>();
+
+	private final List<StubResponse> responses = new ArrayList<>();
+
+	private final ClientHttpRequestExecution execution = (request, body) -> {
+		synchronized (this.requests) {
+			this.requests.add(request.getHeaders());
+			return this.responses.remove(0);
+		}
+	};
+
+
+	@Before
+	public void setUp() {
+		setTime(START);
+	}
+
+
+	@Test
+	public void serveFromCache() throws IOException {
+		this.responses.add(new StubResponse(200, "max-age=60", "body"));
+
+		assertEquals("body", bodyOf(this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution)));
+		setTime(START + TimeUnit.SECONDS.toMillis(10));
+		ClientHttpResponse response = this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution);
+
+		assertEquals(1, this.requests.size());
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals("10", response.getHeaders().getFirst("Age"));
+		assertEquals("body", bodyOf(response));
+	}
+
+	@Test
+	public void revalidateStaleResponse() throws IOException {
+		StubResponse first = new StubResponse(200, "max-age=10", "body");
+		first.headers.setETag("\"v1\"");
+		this.responses.add(first);
+		this.responses.add(new StubResponse(304, "max-age=10", ""));
+
+		this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution).close();
+		setTime(START + TimeUnit.SECONDS.toMillis(20));
+		ClientHttpResponse response = this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution);
+
+		assertEquals(2, this.requests.size());
+		assertEquals("\"v1\"", this.requests.get(1).getIfNoneMatch().get(0));
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals("body", bodyOf(response));
+		assertEquals(HttpCache.Freshness.FRESH,
+				this.cache.getFreshness(this.cache.lookup(URL, new HttpHeaders()), new HttpHeaders()));
+	}
+
+	@Test
+	public void staleWhileRevalidateInBackground() throws IOException {
+		List<Runnable> tasks = new ArrayList<>();
+		this.interceptor.setAsyncExecutor(tasks::add);
+		this.responses.add(new StubResponse(200, "max-age=10, stale-while-revalidate=60", "v1"));
+		this.responses.add(new StubResponse(200, "max-age=10", "v2"));
+
+		this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution).close();
+		setTime(START + TimeUnit.SECONDS.toMillis(20));
+		assertEquals("v1", bodyOf(this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution)));
+		assertEquals("v1", bodyOf(this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution)));
+		assertEquals(1, tasks.size());
+
+		tasks.get(0).run();
+		assertEquals(2, this.requests.size());
+		assertEquals("v2", bodyOf(this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution)));
+	}
+
+	@Test
+	public void notCacheable() throws IOException {
+		this.responses.add(new StubResponse(200, "no-store", "body"));
+		this.responses.add(new StubResponse(200, "no-store", "body"));
+
+		ClientHttpResponse response = this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution);
+		assertTrue(response instanceof StubResponse);
+		this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution);
+		assertEquals(2, this.requests.size());
+	}
+
+	@Test
+	public void passThroughBodyLargerThanMaxEntrySize() throws IOException {
+		this.cache.setMaxEntrySize(4);
+		StubResponse stubResponse = new StubResponse(200, "max-age=60", "large body");
+		this.responses.add(stubResponse);
+		this.responses.add(new StubResponse(200, "max-age=60", "large body"));
+
+		ClientHttpResponse response = this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution);
+		assertEquals("Read beyond max entry size", 5, stubResponse.body.available());
+		assertEquals("large body", bodyOf(response));
+		assertEquals("large body", bodyOf(this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution)));
+		assertEquals(2, this.requests.size());
+	}
+
+	@Test
+	public void invalidateOnUnsafeMethod() throws IOException {
+		this.responses.add(new StubResponse(200, "max-age=60", "body"));
+		this.responses.add(new StubResponse(204, null, ""));
+		this.responses.add(new StubResponse(200, "max-age=60", "body"));
+
+		this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution).close();
+		this.interceptor.intercept(request(HttpMethod.PUT), new byte[0], this.execution).close();
+		this.interceptor.intercept(request(HttpMethod.GET), new byte[0], this.execution).close();
+
+		assertEquals(3, this.requests.size());
+	}
+
+	@Test
+	public void onlyIfCached() throws IOException {
+		HttpRequest request = request(HttpMethod.GET);
+		request.getHeaders().setCacheControl("only-if-cached");
+
+		ClientHttpResponse response = this.interceptor.intercept(request, new byte[0], this.execution);
+		assertEquals(HttpStatus.GATEWAY_TIMEOUT, response.getStatusCode());
+		assertEquals(0, this.requests.size());
+	}
+
+	@Test
+	public void coalesceConcurrentRequests() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ClientHttpRequestExecution slowExecution = (request, body) -> {
+			started.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException ex) {
+				throw new IllegalStateException(ex);
+			}
+			return this.execution.execute(request, body);
+		};
+		this.responses.add(new StubResponse(200, "max-age=60", "body"));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<String> leader = executor.submit(() ->
+					bodyOf(this.interceptor.intercept(request(HttpMethod.GET), new byte[0], slowExecution)));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			Future<String> follower = executor.submit(() ->
+					bodyOf(this.interceptor.intercept(request(HttpMethod.GET), new byte[0], slowExecution)));
+			Thread.sleep(50);
+			release.countDown();
+
+			assertEquals("body", leader.get(5, TimeUnit.SECONDS));
+			assertEquals("body", follower.get(5, TimeUnit.SECONDS));
+			assertEquals(1, this.requests.size());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+
+	private void setTime(long millis) {
+		this.cache.setClock(Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+	}
+
+	private static HttpRequest request(HttpMethod method) {
+		HttpHeaders headers = new HttpHeaders();
+		return new HttpRequest() {
+			@Override
+			public String getMethodValue() {
+				return method.name();
+			}
+			@Override
+			public URI getURI() {
+				return URL;
+			}
+			@Override
+			public HttpHeaders getHeaders() {
+				return headers;
+			}
+		};
+	}
+
+	private static String bodyOf(ClientHttpResponse response) throws IOException {
+		try {
+			return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+		}
+		finally {
+			response.close();
+		}
+	}
+
+
+	private static class StubResponse extends AbstractClientHttpResponse {
+
+		private final int statusCode;
+
+		private final HttpHeaders headers = new HttpHeaders();
+
+		private final ByteArrayInputStream body;
+
+		StubResponse(int statusCode, @Nullable String cacheControl, String body) {
+			this.statusCode = statusCode;
+			this.headers.setCacheControl(cacheControl);
+			this.body = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public int getRawStatusCode() {
+			return this.statusCode;
+		}
+
+		@Override
+		public String getStatusText() {
+			return "";
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return this.body;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
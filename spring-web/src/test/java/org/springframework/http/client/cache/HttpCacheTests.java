@@ -0,0 +1,279 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.cache.HttpCache.Freshness;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link HttpCache}.
+ *
+ * @author agent (agent@local)
+ */
+public class HttpCacheTests {
+
+	private static final URI URL = URI.create("http://example.com/resource");
+
+	private static final long START = 1546300800000L;
+
+
+	private final HttpCache cache = new HttpCache();
+
+	private final HttpHeaders requestHeaders = new HttpHeaders();
+
+
+	@Before
+	public void setUp() {
+		setTime(START);
+	}
+
+
+	@Test
+	public void freshUntilMaxAge() {
+		CachedResponse response = store(headers("max-age=60"));
+		assertSame(response, this.cache.lookup(URL, this.requestHeaders));
+		assertEquals(Freshness.FRESH, this.cache.getFreshness(response, this.requestHeaders));
+
+		setTime(START + TimeUnit.SECONDS.toMillis(30));
+		assertEquals(Freshness.FRESH, this.cache.getFreshness(response, this.requestHeaders));
+		assertEquals("30", this.cache.getResponseHeaders(response).getFirst("Age"));
+
+		setTime(START + TimeUnit.SECONDS.toMillis(60));
+		assertEquals(Freshness.STALE, this.cache.getFreshness(response, this.requestHeaders));
+	}
+
+	@Test
+	public void ageIncludesAgeHeaderAndResponseDelay() {
+		HttpHeaders headers = headers("max-age=60");
+		headers.set("Age", "50");
+		CachedResponse response = this.cache.store(URL, this.requestHeaders, 200, headers, new byte[0],
+				START - TimeUnit.SECONDS.toMillis(5));
+
+		assertEquals("55", this.cache.getResponseHeaders(response).getFirst("Age"));
+		setTime(START + TimeUnit.SECONDS.toMillis(5));
+		assertEquals(Freshness.STALE, this.cache.getFreshness(response, this.requestHeaders));
+	}
+
+	@Test
+	public void freshnessFromExpires() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setDate(START);
+		headers.setExpires(START + TimeUnit.SECONDS.toMillis(10));
+		CachedResponse response = store(headers);
+
+		assertEquals(Freshness.FRESH, this.cache.getFreshness(response, this.requestHeaders));
+		setTime(START + TimeUnit.SECONDS.toMillis(10));
+		assertEquals(Freshness.STALE, this.cache.getFreshness(response, this.requestHeaders));
+	}
+
+	@Test
+	public void heuristicFreshnessFromLastModified() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setDate(START);
+		headers.setLastModified(START - TimeUnit.SECONDS.toMillis(100));
+		CachedResponse response = store(headers);
+
+		setTime(START + TimeUnit.SECONDS.toMillis(9));
+		assertEquals(Freshness.FRESH, this.cache.getFreshness(response, this.requestHeaders));
+		setTime(START + TimeUnit.SECONDS.toMillis(10));
+		assertEquals(Freshness.STALE, this.cache.getFreshness(response, this.requestHeaders));
+	}
+
+	@Test
+	public void staleWhileRevalidate() {
+		CachedResponse response = store(headers("max-age=10, stale-while-revalidate=20"));
+
+		setTime(START + TimeUnit.SECONDS.toMillis(25));
+		assertEquals(Freshness.STALE_WHILE_REVALIDATE, this.cache.getFreshness(response, this.requestHeaders));
+		setTime(START + TimeUnit.SECONDS.toMillis(31));
+		assertEquals(Freshness.STALE, this.cache.getFreshness(response, this.requestHeaders));
+	}
+
+	@Test
+	public void mustRevalidate() {
+		CachedResponse response = store(headers("max-age=10, must-revalidate, stale-while-revalidate=20"));
+		this.requestHeaders.setCacheControl("max-stale");
+
+		setTime(START + TimeUnit.SECONDS.toMillis(15));
+		assertEquals(Freshness.STALE, this.cache.getFreshness(response, this.requestHeaders));
+	}
+
+	@Test
+	public void requestDirectives() {
+		CachedResponse response = store(headers("max-age=60"));
+		setTime(START + TimeUnit.SECONDS.toMillis(30));
+
+		assertEquals(Freshness.STALE, this.cache.getFreshness(response, headers("no-cache")));
+		assertEquals(Freshness.STALE, this.cache.getFreshness(response, headers("max-age=20")));
+		assertEquals(Freshness.STALE, this.cache.getFreshness(response, headers("min-fresh=40")));
+		assertEquals(Freshness.FRESH, this.cache.getFreshness(response, headers("min-fresh=20")));
+
+		HttpHeaders pragma = new HttpHeaders();
+		pragma.setPragma("no-cache");
+		assertEquals(Freshness.STALE, this.cache.getFreshness(response, pragma));
+
+		setTime(START + TimeUnit.SECONDS.toMillis(80));
+		assertEquals(Freshness.FRESH, this.cache.getFreshness(response, headers("max-stale=30")));
+		assertEquals(Freshness.STALE, this.cache.getFreshness(response, headers("max-stale=10")));
+		assertEquals(Freshness.FRESH, this.cache.getFreshness(response, headers("max-stale")));
+	}
+
+	@Test
+	public void notStored() {
+		store(headers("no-store, max-age=60"));
+		assertNull(this.cache.lookup(URL, this.requestHeaders));
+
+		HttpHeaders vary = headers("max-age=60");
+		vary.setVary(Collections.singletonList("*"));
+		store(vary);
+		assertNull(this.cache.lookup(URL, this.requestHeaders));
+
+		store(new HttpHeaders());
+		assertNull(this.cache.lookup(URL, this.requestHeaders));
+
+		this.cache.store(URL, this.requestHeaders, 206, headers("max-age=60"), new byte[0], START);
+		assertNull(this.cache.lookup(URL, this.requestHeaders));
+
+		this.cache.setMaxEntrySize(1);
+		this.cache.store(URL, this.requestHeaders, 200, headers("max-age=60"), new byte[2], START);
+		assertNull(this.cache.lookup(URL, this.requestHeaders));
+	}
+
+	@Test
+	public void authorizedRequest() {
+		CachedResponse response = store(headers("max-age=60"));
+		this.requestHeaders.setBasicAuth("user1", "password");
+		assertNull(this.cache.lookup(URL, this.requestHeaders));
+
+		store(headers("max-age=60"));
+		assertSame(response, this.cache.lookup(URL, new HttpHeaders()));
+
+		response = store(headers("public, max-age=60"));
+		assertSame(response, this.cache.lookup(URL, this.requestHeaders));
+		HttpHeaders other = new HttpHeaders();
+		other.setBasicAuth("user2", "password");
+		assertSame(response, this.cache.lookup(URL, other));
+
+		response = store(headers("max-age=60, s-maxage=60"));
+		assertSame(response, this.cache.lookup(URL, other));
+	}
+
+	@Test
+	public void vary() {
+		HttpHeaders headers = headers("max-age=60");
+		headers.setVary(Collections.singletonList("Accept-Language"));
+		this.requestHeaders.set(HttpHeaders.ACCEPT_LANGUAGE, "en");
+		CachedResponse response = store(headers);
+
+		assertSame(response, this.cache.lookup(URL, this.requestHeaders));
+		HttpHeaders other = new HttpHeaders();
+		other.set(HttpHeaders.ACCEPT_LANGUAGE, "fr");
+		assertNull(this.cache.lookup(URL, other));
+		assertNull(this.cache.lookup(URL, new HttpHeaders()));
+	}
+
+	@Test
+	public void conditionalHeadersAndUpdate() {
+		HttpHeaders headers = headers("max-age=10");
+		headers.setETag("\"v1\"");
+		headers.setLastModified(START - 60000);
+		CachedResponse response = store(headers);
+
+		HttpHeaders conditional = new HttpHeaders();
+		this.cache.addConditionalHeaders(response, conditional);
+		assertEquals("\"v1\"", conditional.getIfNoneMatch().get(0));
+		assertEquals(START - 60000, conditional.getIfModifiedSince());
+
+		setTime(START + TimeUnit.SECONDS.toMillis(20));
+		CachedResponse updated = this.cache.update(URL, this.requestHeaders, response, headers("max-age=30"), START + 20000);
+		assertSame(updated, this.cache.lookup(URL, this.requestHeaders));
+		assertEquals("max-age=30", updated.getHeaders().getCacheControl());
+		assertEquals("\"v1\"", updated.getHeaders().getETag());
+		assertSame(response.getBody(), updated.getBody());
+		assertEquals(Freshness.FRESH, this.cache.getFreshness(updated, this.requestHeaders));
+	}
+
+	@Test
+	public void invalidate() {
+		URI other = URI.create("http://example.com/other");
+		this.cache.store(other, this.requestHeaders, 200, headers("max-age=60"), new byte[0], START);
+		store(headers("max-age=60"));
+
+		this.cache.invalidate(HttpMethod.POST, URL, 500, new HttpHeaders());
+		this.cache.invalidate(HttpMethod.GET, URL, 200, new HttpHeaders());
+		assertNotNull(this.cache.lookup(URL, this.requestHeaders));
+
+		HttpHeaders responseHeaders = new HttpHeaders();
+		responseHeaders.setLocation(URI.create("/other"));
+		this.cache.invalidate(HttpMethod.POST, URL, 201, responseHeaders);
+		assertNull(this.cache.lookup(URL, this.requestHeaders));
+		assertNull(this.cache.lookup(other, this.requestHeaders));
+	}
+
+	@Test
+	public void requests() {
+		assertTrue(this.cache.isCacheableRequest(HttpMethod.GET, this.requestHeaders));
+		assertFalse(this.cache.isCacheableRequest(HttpMethod.POST, this.requestHeaders));
+		HttpHeaders range = new HttpHeaders();
+		range.set(HttpHeaders.RANGE, "bytes=0-10");
+		assertFalse(this.cache.isCacheableRequest(HttpMethod.GET, range));
+		assertTrue(this.cache.isOnlyIfCached(headers("max-stale, only-if-cached")));
+	}
+
+	@Test
+	public void parseCacheControl() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HttpHeaders.CACHE_CONTROL, "Max-Age=\"60\", private=\"Set-Cookie, Authorization\"");
+		headers.add(HttpHeaders.CACHE_CONTROL, "no-transform,,");
+		Map<String, String> directives = HttpCache.parseCacheControl(headers);
+
+		assertEquals(3, directives.size());
+		assertEquals("60", directives.get("max-age"));
+		assertEquals("Set-Cookie, Authorization", directives.get("private"));
+		assertEquals("", directives.get("no-transform"));
+	}
+
+
+	private CachedResponse store(HttpHeaders headers) {
+		return this.cache.store(URL, this.requestHeaders, 200, headers, new byte[] {1, 2, 3}, START);
+	}
+
+	private void setTime(long millis) {
+		this.cache.setClock(Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+	}
+
+	private static HttpHeaders headers(String cacheControl) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl(cacheControl);
+		return headers;
+	}
+
+}
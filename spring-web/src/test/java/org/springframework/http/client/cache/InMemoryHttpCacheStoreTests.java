@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import org.springframework.http.HttpHeaders;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link InMemoryHttpCacheStore}.
+ *
+ * @author agent (agent@local)
+ */
+public class InMemoryHttpCacheStoreTests {
+
+	private final InMemoryHttpCacheStore store = new InMemoryHttpCacheStore(250);
+
+
+	@Test
+	public void sizeAccounting() {
+		this.store.put("a", response(100));
+		this.store.put("b", response(100));
+		assertEquals(200, this.store.getSize());
+		assertEquals(2, this.store.getEntryCount());
+
+		this.store.put("a", response(50));
+		assertEquals(150, this.store.getSize());
+
+		this.store.remove("b");
+		assertEquals(50, this.store.getSize());
+		assertNull(this.store.get("b"));
+	}
+
+	@Test
+	public void evictLeastRecentlyUsed() {
+		this.store.put("a", response(100));
+		this.store.put("b", response(100));
+		assertNotNull(this.store.get("a"));
+
+		this.store.put("c", response(100));
+		assertNotNull(this.store.get("a"));
+		assertNull(this.store.get("b"));
+		assertNotNull(this.store.get("c"));
+		assertEquals(200, this.store.getSize());
+	}
+
+	@Test
+	public void entryLargerThanMaxSize() {
+		this.store.put("a", response(100));
+		this.store.put("a", response(300));
+
+		assertNull(this.store.get("a"));
+		assertEquals(0, this.store.getSize());
+	}
+
+
+	private static CachedResponse response(int size) {
+		return new CachedResponse(200, new HttpHeaders(), new byte[size], Collections.emptyMap(), 0, 0);
+	}
+
+}
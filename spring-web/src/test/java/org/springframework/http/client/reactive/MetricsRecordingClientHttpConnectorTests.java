@@ -0,0 +1,143 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.reactive;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.reactive.test.MockClientHttpRequest;
+import org.springframework.mock.http.client.reactive.test.MockClientHttpResponse;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link MetricsRecordingClientHttpConnector}.
+ *
+ * @author agent (agent@local)
+ */
+public class MetricsRecordingClientHttpConnectorTests {
+
+	private static final URI URL = URI.create("https://example.com/foo");
+
+
+	private final List<ClientHttpExchangeMetrics> recorded = new ArrayList<>();
+
+	private final ClientHttpConnector delegate = (method, uri, requestCallback) -> {
+		MockClientHttpResponse response = new MockClientHttpResponse(HttpStatus.OK);
+		response.setBody("foo bar");
+		return requestCallback.apply(new MockClientHttpRequest(method, uri)).then(Mono.just(response));
+	};
+
+
+	@Test
+	public void recordExchange() {
+		ClientHttpConnector connector = new MetricsRecordingClientHttpConnector(this.delegate, this.recorded::add);
+
+		Mono<Void> result = connector
+				.connect(HttpMethod.POST, URL, request -> request.writeWith(Mono.just(buffer("foo"))))
+				.flatMap(response -> response.getBody().map(DataBufferUtils::release).then());
+		StepVerifier.create(result).verifyComplete();
+
+		assertEquals(1, this.recorded.size());
+		ClientHttpExchangeMetrics metrics = this.recorded.get(0);
+		assertEquals(HttpMethod.POST, metrics.getMethod());
+		assertEquals(URL, metrics.getUri());
+		assertEquals(200, metrics.getStatusCode());
+		assertEquals(3, metrics.getBytesSent());
+		assertEquals(7, metrics.getBytesReceived());
+		assertNotNull(metrics.getTimeToFirstByte());
+		assertTrue(metrics.getDuration().compareTo(metrics.getTimeToFirstByte()) >= 0);
+		assertNull(metrics.getError());
+		assertFalse(metrics.isCancelled());
+	}
+
+	@Test
+	public void recordConnectError() {
+		IOException error = new IOException("Connection refused");
+		ClientHttpConnector connector = new MetricsRecordingClientHttpConnector(
+				(method, uri, requestCallback) -> Mono.error(error), this.recorded::add);
+
+		StepVerifier.create(connector.connect(HttpMethod.GET, URL, ClientHttpRequest::setComplete))
+				.verifyErrorMatches(ex -> ex == error);
+
+		assertEquals(1, this.recorded.size());
+		ClientHttpExchangeMetrics metrics = this.recorded.get(0);
+		assertEquals(-1, metrics.getStatusCode());
+		assertNull(metrics.getTimeToFirstByte());
+		assertSame(error, metrics.getError());
+	}
+
+	@Test
+	public void recordCancelledBody() {
+		ClientHttpConnector connector = new MetricsRecordingClientHttpConnector(this.delegate, this.recorded::add);
+
+		ClientHttpResponse response = connector.connect(HttpMethod.GET, URL, ClientHttpRequest::setComplete).block();
+		assertNotNull(response);
+		assertTrue(this.recorded.isEmpty());
+
+		StepVerifier.create(response.getBody(), 0).thenCancel().verify();
+
+		assertEquals(1, this.recorded.size());
+		ClientHttpExchangeMetrics metrics = this.recorded.get(0);
+		assertEquals(200, metrics.getStatusCode());
+		assertTrue(metrics.isCancelled());
+	}
+
+	@Test
+	public void connectionPoolMetrics() {
+		ReactorClientHttpConnector reactorConnector = new ReactorClientHttpConnector();
+		assertNull(reactorConnector.getConnectionPoolMetrics());
+
+		MetricsRecordingClientHttpConnector connector =
+				new MetricsRecordingClientHttpConnector(reactorConnector, this.recorded::add);
+		assertNotSame(reactorConnector, connector.getDelegate());
+		assertNotNull(connector.getConnectionPoolMetrics());
+		assertNull(reactorConnector.getConnectionPoolMetrics());
+
+		connector = new MetricsRecordingClientHttpConnector(this.delegate, this.recorded::add);
+		assertNull(connector.getConnectionPoolMetrics());
+	}
+
+	@Test
+	public void recorderFailureIsIgnored() {
+		ClientHttpConnector connector = new MetricsRecordingClientHttpConnector(this.delegate, metrics -> {
+			throw new IllegalStateException("Recorder failure");
+		});
+
+		Mono<Long> result = connector.connect(HttpMethod.GET, URL, ClientHttpRequest::setComplete)
+				.flatMap(response -> response.getBody().map(DataBufferUtils::release).count());
+		StepVerifier.create(result).expectNext(1L).verifyComplete();
+	}
+
+
+	private static DataBuffer buffer(String value) {
+		return new DefaultDataBufferFactory().wrap(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
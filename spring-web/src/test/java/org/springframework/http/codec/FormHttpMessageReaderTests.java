@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,7 @@ import reactor.test.StepVerifier;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.io.buffer.AbstractLeakCheckingTestCase;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
@@ -116,6 +117,15 @@ public class FormHttpMessageReaderTests extends AbstractLeakCheckingTestCase {
 				.verify();
 	}
 
+	@Test
+	public void readFormExceedsMaxInMemorySize() {
+		this.reader.setMaxInMemorySize(10);
+		Flux<DataBuffer> body = Flux.just(stringBuffer("name+1=val"), stringBuffer("ue+1&name+2=value+2"));
+		StepVerifier.create(this.reader.readMono(null, request(body), null))
+				.expectError(DataBufferLimitException.class)
+				.verify();
+	}
+
 
 	private MockServerHttpRequest request(String body) {
 		return request(Mono.just(stringBuffer(body)));
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,19 +16,29 @@
 
 package org.springframework.http.codec;
 
+import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
 import org.springframework.mock.http.server.reactive.test.MockServerHttpRequest;
 import org.springframework.mock.http.server.reactive.test.MockServerHttpResponse;
 import org.springframework.util.MimeTypeUtils;
@@ -38,6 +48,7 @@ import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.springframework.http.MediaType.TEXT_PLAIN;
 import static org.springframework.mock.http.server.reactive.test.MockServerHttpRequest.get;
@@ -53,6 +64,9 @@ public class ResourceHttpMessageWriterTests {
 	private static final Map<String, Object> HINTS = Collections.emptyMap();
 
 
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	private final ResourceHttpMessageWriter writer = new ResourceHttpMessageWriter();
 
 	private final MockServerHttpResponse response = new MockServerHttpResponse();
@@ -131,6 +145,67 @@ public class ResourceHttpMessageWriterTests {
 				.verify();
 	}
 
+	@Test
+	public void writeOverlappingRegions() throws Exception {
+
+		testWrite(get("/").range(of(0, 3), of(2, 5), of(7, 15)).build());
+
+		String contentType = this.response.getHeaders().getContentType().toString();
+		String boundary = contentType.substring(30);
+
+		StepVerifier.create(this.response.getBodyAsString())
+				.consumeNextWith(content -> {
+					String[] actualRanges = StringUtils.tokenizeToStringArray(content, "\r\n", false, true);
+					String[] expected = new String[] {
+							"--" + boundary,
+							"Content-Type: text/plain",
+							"Content-Range: bytes 0-5/39",
+							"Spring",
+							"--" + boundary,
+							"Content-Type: text/plain",
+							"Content-Range: bytes 7-15/39",
+							"Framework",
+							"--" + boundary + "--"
+					};
+					assertArrayEquals(expected, actualRanges);
+				})
+				.expectComplete()
+				.verify();
+	}
+
+	@Test
+	public void writeAdjacentRegions() throws Exception {
+
+		testWrite(get("/").range(of(0, 5), of(6, 15)).build());
+
+		assertThat(this.response.getHeaders().getContentType(), is(TEXT_PLAIN));
+		assertThat(this.response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE), is("bytes 0-15/39"));
+
+		StepVerifier.create(this.response.getBodyAsString()).expectNext("Spring Framework").expectComplete().verify();
+	}
+
+	@Test
+	public void writeMultipleRegionsZeroCopy() throws Exception {
+		File file = this.temporaryFolder.newFile();
+		Files.write(file.toPath(), "Spring Framework test resource content.".getBytes(StandardCharsets.UTF_8));
+		ZeroCopyMockServerHttpResponse response = new ZeroCopyMockServerHttpResponse();
+
+		Mono<Void> mono = this.writer.write(Mono.just(new FileSystemResource(file)), null, null, TEXT_PLAIN,
+				get("/").range(of(0, 5), of(17, 20)).build(), response, HINTS);
+		StepVerifier.create(mono).expectComplete().verify();
+
+		String boundary = response.getHeaders().getContentType().toString().substring(30);
+		String expected = "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-5/39\r\n\r\n" +
+				"Spring" +
+				"\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 17-20/39\r\n\r\n" +
+				"test" +
+				"\r\n--" + boundary + "--";
+
+		assertEquals(1, response.regionWriteCount);
+		assertEquals(expected.length(), response.getHeaders().getContentLength());
+		StepVerifier.create(response.getBodyAsString()).expectNext(expected).expectComplete().verify();
+	}
+
 	@Test
 	public void invalidRange() throws Exception {
 
@@ -150,4 +225,22 @@ public class ResourceHttpMessageWriterTests {
 		return HttpRange.createByteRange(first, last);
 	}
 
+
+	private static class ZeroCopyMockServerHttpResponse extends MockServerHttpResponse
+			implements ZeroCopyHttpOutputMessage {
+
+		private int regionWriteCount;
+
+		@Override
+		public Mono<Void> writeWith(Path file, long position, long count) {
+			return Mono.error(new UnsupportedOperationException());
+		}
+
+		@Override
+		public Mono<Void> writeWith(List<ResourceRegion> regions, List<DataBuffer> delimiters) {
+			this.regionWriteCount++;
+			return ZeroCopyHttpOutputMessage.super.writeWith(regions, delimiters);
+		}
+	}
+
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEventBroadcaster.OverflowStrategy;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.mock.http.server.reactive.test.MockServerHttpResponse;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ServerSentEventBroadcaster}.
+ *
+ * @author agent (agent@local)
+ */
+public class ServerSentEventBroadcasterTests {
+
+	private final ServerSentEventBroadcaster broadcaster =
+			new ServerSentEventBroadcaster(new ServerSentEventHttpMessageWriter(new Jackson2JsonEncoder()));
+
+
+	@Test
+	public void writeToMultipleResponses() {
+		MockServerHttpResponse response1 = new MockServerHttpResponse();
+		MockServerHttpResponse response2 = new MockServerHttpResponse();
+		this.broadcaster.writeTo(response1).subscribe();
+		this.broadcaster.writeTo(response2).subscribe();
+		assertEquals(2, this.broadcaster.getSubscriberCount());
+
+		this.broadcaster.send("foo").block(Duration.ofSeconds(5));
+		this.broadcaster.send(ServerSentEvent.builder(new Pojo("foofoo", "barbar")).id("1").build())
+				.block(Duration.ofSeconds(5));
+		this.broadcaster.complete();
+
+		String expected = "data:foo\n\nid:1\ndata:{\"foo\":\"foofoo\",\"bar\":\"barbar\"}\n\n";
+		for (MockServerHttpResponse response : new MockServerHttpResponse[] {response1, response2}) {
+			assertEquals(new MediaType("text", "event-stream", StandardCharsets.UTF_8),
+					response.getHeaders().getContentType());
+			StepVerifier.create(response.getBodyAsString()).expectNext(expected).verifyComplete();
+		}
+	}
+
+	@Test
+	public void eventsAreEncodedOnce() {
+		StepVerifier.create(Flux.zip(this.broadcaster.events(), this.broadcaster.events()))
+				.then(() -> this.broadcaster.send("foo").subscribe())
+				.assertNext(tuple -> assertSame(tuple.getT1(), tuple.getT2()))
+				.then(this.broadcaster::complete)
+				.verifyComplete();
+	}
+
+	@Test
+	public void sendWithoutSubscribers() {
+		StepVerifier.create(this.broadcaster.send("foo")).verifyComplete();
+		assertEquals(0, this.broadcaster.getSubscriberCount());
+	}
+
+	@Test
+	public void dropOldest() {
+		this.broadcaster.setBufferSize(2);
+
+		StepVerifier.create(events(), 0)
+				.then(() -> sendAll("a", "b", "c", "d"))
+				.thenRequest(2)
+				.expectNext("data:c\n\n", "data:d\n\n")
+				.then(this.broadcaster::complete)
+				.verifyComplete();
+	}
+
+	@Test
+	public void dropLatest() {
+		this.broadcaster.setBufferSize(2);
+		this.broadcaster.setOverflowStrategy(OverflowStrategy.DROP_LATEST);
+
+		StepVerifier.create(events(), 0)
+				.then(() -> sendAll("a", "b", "c", "d"))
+				.thenRequest(2)
+				.expectNext("data:a\n\n", "data:b\n\n")
+				.then(this.broadcaster::complete)
+				.verifyComplete();
+	}
+
+	@Test
+	public void latest() {
+		this.broadcaster.setOverflowStrategy(OverflowStrategy.LATEST);
+
+		StepVerifier.create(events(), 0)
+				.then(() -> sendAll("a", "b", "c"))
+				.thenRequest(1)
+				.expectNext("data:c\n\n")
+				.then(this.broadcaster::complete)
+				.verifyComplete();
+	}
+
+	@Test
+	public void disconnect() {
+		this.broadcaster.setBufferSize(2);
+		this.broadcaster.setOverflowStrategy(OverflowStrategy.DISCONNECT);
+
+		StepVerifier.create(events(), 0)
+				.then(() -> sendAll("a", "b", "c"))
+				.verifyComplete();
+
+		assertEquals(0, this.broadcaster.getSubscriberCount());
+	}
+
+
+	private Flux<String> events() {
+		return this.broadcaster.events().map(bytes -> new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	private void sendAll(String... events) {
+		for (String event : events) {
+			this.broadcaster.send(event).block(Duration.ofSeconds(5));
+		}
+	}
+
+}
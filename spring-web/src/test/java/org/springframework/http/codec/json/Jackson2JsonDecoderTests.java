@@ -38,6 +38,8 @@ import org.springframework.core.codec.AbstractDecoderTestCase;
 import org.springframework.core.codec.CodecException;
 import org.springframework.core.codec.DecodingException;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.Pojo;
 import org.springframework.util.MimeType;
@@ -127,6 +129,49 @@ public class Jackson2JsonDecoderTests extends AbstractDecoderTestCase<Jackson2Js
 	}
 
 
+	@Test
+	public void decodeBlankInputToMono() {
+		Mono<Object> result = this.decoder.decodeToMono(stringBuffer("  "), forClass(Pojo.class), null, emptyMap());
+
+		StepVerifier.create(result).verifyComplete();
+	}
+
+	@Test
+	public void decodeToMonoExceedsMaxInMemorySize() {
+		Jackson2JsonDecoder decoder = new Jackson2JsonDecoder();
+		decoder.setMaxInMemorySize(10);
+		Flux<DataBuffer> input = Flux.concat(
+				stringBuffer("{\"bar\":\"b1\","),
+				stringBuffer("\"foo\":\"f1\"}"));
+
+		Mono<Object> result = decoder.decodeToMono(input, forClass(Pojo.class), null, emptyMap());
+
+		StepVerifier.create(result).verifyError(DataBufferLimitException.class);
+	}
+
+	@Test
+	public void decodeToMonoFromComposedInput() {
+		DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+		Flux<DataBuffer> input = Flux.just("{\"bar\":\"b1\",", "\"foo\":", "\"f1\"}")
+				.map(value -> bufferFactory.wrap(value.getBytes(StandardCharsets.UTF_8)));
+
+		Mono<Object> result = this.decoder.decodeToMono(input, forClass(Pojo.class), null, emptyMap());
+
+		StepVerifier.create(result).expectNext(new Pojo("f1", "b1")).verifyComplete();
+	}
+
+	@Test
+	public void decodeToMonoWithTrailingContent() {
+		Mono<Object> result = this.decoder.decodeToMono(
+				stringBuffer("{\"bar\":\"b1\",\"foo\":\"f1\"}{\"bar\":\"b2\",\"foo\":\"f2\"}"),
+				forClass(Pojo.class), null, emptyMap());
+		StepVerifier.create(result).verifyError(DecodingException.class);
+
+		result = this.decoder.decodeToMono(stringBuffer("{\"bar\":\"b1\",\"foo\":\"f1\"} garbage"),
+				forClass(Pojo.class), null, emptyMap());
+		StepVerifier.create(result).verifyError(DecodingException.class);
+	}
+
 	@Test
 	public void decodeEmptyArrayToFlux() {
 		Flux<DataBuffer> input = Flux.from(stringBuffer("[]"));
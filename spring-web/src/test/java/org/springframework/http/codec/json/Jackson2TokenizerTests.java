@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.http.codec.json;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.function.Consumer;
@@ -36,6 +37,8 @@ import reactor.test.StepVerifier;
 import org.springframework.core.codec.DecodingException;
 import org.springframework.core.io.buffer.AbstractLeakCheckingTestCase;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
@@ -192,6 +195,59 @@ public class Jackson2TokenizerTests extends AbstractLeakCheckingTestCase {
 				.verify();
 	}
 
+	@Test
+	public void tokenizeExceedsMaxInMemorySize() {
+		Flux<DataBuffer> source = Flux.just(
+				stringBuffer("[{\"foo\": \"foofoo\", "),
+				stringBuffer("\"bar\": \"barbar\"},"),
+				stringBuffer("{\"foo\": \"foofoofoofoofoo"),
+				stringBuffer("foofoofoofoofoo"));
+
+		Flux<TokenBuffer> tokens = Jackson2Tokenizer.tokenize(source, this.jsonFactory, true, 30);
+
+		StepVerifier.create(tokens)
+				.expectNextCount(1)
+				.expectError(DataBufferLimitException.class)
+				.verify();
+	}
+
+	@Test
+	public void tokenizeWithinMaxInMemorySize() {
+		Flux<DataBuffer> source = Flux.just(
+				stringBuffer("[{\"foo\": \"foofoo\", "),
+				stringBuffer("\"bar\": \"barbar\"},"),
+				stringBuffer("{\"foo\": \"foofoo\", "),
+				stringBuffer("\"bar\": \"barbar\"}]"));
+
+		Flux<TokenBuffer> tokens = Jackson2Tokenizer.tokenize(source, this.jsonFactory, true, 30);
+
+		StepVerifier.create(tokens)
+				.expectNextCount(2)
+				.verifyComplete();
+	}
+
+	@Test
+	public void tokenizeDirectBuffers() {
+		DefaultDataBufferFactory directBufferFactory = new DefaultDataBufferFactory(true);
+		Flux<DataBuffer> source = Flux.just(
+				"[{\"foo\": \"foofoo\"", ", \"bar\"", ": \"barbar\"},{\"a\":1}]")
+				.map(value -> directBufferFactory.wrap(ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8))));
+
+		Flux<TokenBuffer> tokens = Jackson2Tokenizer.tokenize(source, this.jsonFactory, true);
+
+		StepVerifier.create(tokens)
+				.expectNextCount(2)
+				.verifyComplete();
+	}
+
+	@Test
+	public void tokenizeHeapBufferWithOffset() {
+		DataBuffer buffer = stringBuffer("xx[\"foo\",\"bar\"]");
+		buffer.readPosition(2);
+
+		testTokenize(Flux.just(buffer), asList("\"foo\"", "\"bar\""), true);
+	}
+
 	@Test // SPR-16521
 	public void jsonEOFExceptionIsWrappedAsDecodingError() {
 		Flux<DataBuffer> source = Flux.just(stringBuffer("{\"status\": \"noClosingQuote}"));
@@ -204,11 +260,11 @@ public class Jackson2TokenizerTests extends AbstractLeakCheckingTestCase {
 
 
 	private void testTokenize(List<String> source, List<String> expected, boolean tokenizeArrayElements) {
+		testTokenize(Flux.fromIterable(source).map(this::stringBuffer), expected, tokenizeArrayElements);
+	}
 
-		Flux<TokenBuffer> tokenBufferFlux = Jackson2Tokenizer.tokenize(
-				Flux.fromIterable(source).map(this::stringBuffer),
-				this.jsonFactory,
-				tokenizeArrayElements);
+	private void testTokenize(Flux<DataBuffer> source, List<String> expected, boolean tokenizeArrayElements) {
+		Flux<TokenBuffer> tokenBufferFlux = Jackson2Tokenizer.tokenize(source, this.jsonFactory, tokenizeArrayElements);
 
 		Flux<String> result = tokenBufferFlux
 				.map(tokenBuffer -> {
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.codec.multipart;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.client.reactive.test.MockClientHttpRequest;
+import org.springframework.mock.http.server.reactive.test.MockServerHttpRequest;
+import org.springframework.util.MultiValueMap;
+
+import static java.util.Collections.*;
+import static org.junit.Assert.*;
+import static org.springframework.core.ResolvableType.*;
+
+/**
+ * Unit tests for {@link DefaultPartHttpMessageReader}.
+ *
+ * @author agent (agent@local)
+ */
+public class DefaultPartHttpMessageReaderTests {
+
+	private static final String BOUNDARY = "simple-boundary";
+
+	private static final String SIMPLE_BODY = "preamble\r\n" +
+			"--" + BOUNDARY + "\r\n" +
+			"Content-Disposition: form-data; name=\"field\"\r\n" +
+			"\r\n" +
+			"field value\r\n" +
+			"--" + BOUNDARY + "\r\n" +
+			"Content-Disposition: form-data; name=\"file\"; filename=\"file.txt\"\r\n" +
+			"Content-Type: text/plain\r\n" +
+			"\r\n" +
+			"Lorem Ipsum.\r\n\r\n--not the boundary\r\n" +
+			"--" + BOUNDARY + "--\r\n" +
+			"epilogue";
+
+	private static final ResolvableType PART_TYPE = ResolvableType.forClass(Part.class);
+
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final DefaultPartHttpMessageReader reader = new DefaultPartHttpMessageReader();
+
+
+	@Before
+	public void setup() throws IOException {
+		this.reader.setFileStorageDirectory(this.folder.newFolder().toPath());
+	}
+
+
+	@Test
+	public void canRead() {
+		assertTrue(this.reader.canRead(PART_TYPE, MediaType.MULTIPART_FORM_DATA));
+		assertTrue(this.reader.canRead(PART_TYPE, null));
+		assertFalse(this.reader.canRead(PART_TYPE, MediaType.APPLICATION_FORM_URLENCODED));
+		assertFalse(this.reader.canRead(ResolvableType.forClass(String.class), MediaType.MULTIPART_FORM_DATA));
+	}
+
+	@Test
+	public void simpleParts() {
+		List<Part> parts = readParts(request(SIMPLE_BODY, SIMPLE_BODY.length()));
+		assertSimpleParts(parts);
+	}
+
+	@Test
+	public void simplePartsSingleByteBuffers() {
+		List<Part> parts = readParts(request(SIMPLE_BODY, 1));
+		assertSimpleParts(parts);
+	}
+
+	@Test
+	public void simplePartsVariousBufferSizes() {
+		for (int size = 2; size < 32; size++) {
+			List<Part> parts = readParts(request(SIMPLE_BODY, size));
+			assertSimpleParts(parts);
+		}
+	}
+
+	@Test
+	public void emptyPartBody() {
+		String body = "--" + BOUNDARY + "\r\n" +
+				"Content-Disposition: form-data; name=\"empty\"\r\n" +
+				"\r\n" +
+				"\r\n" +
+				"--" + BOUNDARY + "--";
+		List<Part> parts = readParts(request(body, 3));
+		assertEquals(1, parts.size());
+		assertEquals("", ((FormFieldPart) parts.get(0)).value());
+	}
+
+	@Test
+	public void partsFromMultipartWriter() {
+		MultiValueMap<String, Part> parts = new MultipartHttpMessageReader(this.reader)
+				.readMono(forClassWithGenerics(MultiValueMap.class, String.class, Part.class),
+						generateMultipartRequest(), emptyMap())
+				.block(Duration.ofSeconds(5));
+
+		assertNotNull(parts);
+		assertEquals(2, parts.size());
+		FilePart filePart = (FilePart) parts.getFirst("fooPart");
+		assertEquals("foo.txt", filePart.filename());
+		assertEquals("Lorem Ipsum.", content(filePart));
+		assertEquals("bar", ((FormFieldPart) parts.getFirst("barPart")).value());
+	}
+
+	@Test
+	public void largePartWrittenToDisk() throws IOException {
+		this.reader.setMaxInMemorySize(16);
+		List<Part> parts = readParts(request(SIMPLE_BODY, 5));
+		FilePart filePart = (FilePart) parts.get(1);
+		String expected = "Lorem Ipsum.\r\n\r\n--not the boundary";
+		assertEquals(expected, content(filePart));
+		assertEquals(expected, content(filePart));
+
+		Path dest = this.folder.getRoot().toPath().resolve("dest.txt");
+		filePart.transferTo(dest).block(Duration.ofSeconds(5));
+		assertEquals(expected, new String(Files.readAllBytes(dest), StandardCharsets.UTF_8));
+
+		assertEquals(1, storedFileCount());
+		filePart.delete().block(Duration.ofSeconds(5));
+		assertEquals(0, storedFileCount());
+	}
+
+	@Test
+	public void defaultFileStorageDirectoryUsesBlockingScheduler() throws IOException {
+		List<String> operations = new ArrayList<>();
+		DefaultPartHttpMessageReader reader = new DefaultPartHttpMessageReader();
+		reader.setMaxInMemorySize(16);
+		reader.setBlockingOperationScheduler(Schedulers.fromExecutor(task -> {
+			operations.add("blocking");
+			task.run();
+		}));
+		List<Part> parts = reader.read(PART_TYPE, request(SIMPLE_BODY, 5), emptyMap())
+				.collectList()
+				.block(Duration.ofSeconds(5));
+		assertNotNull(parts);
+		assertEquals(2, operations.size());
+		parts.get(1).delete().block(Duration.ofSeconds(5));
+	}
+
+	@Test
+	public void formFieldExceedsMaxInMemorySize() {
+		this.reader.setMaxInMemorySize(5);
+		StepVerifier.create(this.reader.read(PART_TYPE, request(SIMPLE_BODY, 4), emptyMap()))
+				.expectError(DecodingException.class)
+				.verify(Duration.ofSeconds(5));
+	}
+
+	@Test
+	public void maxDiskUsagePerPartExceeded() throws Exception {
+		this.reader.setMaxInMemorySize(16);
+		this.reader.setMaxDiskUsagePerPart(20);
+		StepVerifier.create(this.reader.read(PART_TYPE, request(SIMPLE_BODY, 4), emptyMap()))
+				.consumeNextWith(part -> assertEquals("field", part.name()))
+				.expectError(DecodingException.class)
+				.verify(Duration.ofSeconds(5));
+
+		// Temporary files of discarded parts are deleted asynchronously
+		for (int i = 0; i < 50 && storedFileCount() > 0; i++) {
+			Thread.sleep(20);
+		}
+		assertEquals(0, storedFileCount());
+	}
+
+	@Test
+	public void tooManyParts() {
+		this.reader.setMaxParts(1);
+		StepVerifier.create(this.reader.read(PART_TYPE, request(SIMPLE_BODY, 8), emptyMap()))
+				.consumeNextWith(part -> assertEquals("field", part.name()))
+				.expectError(DecodingException.class)
+				.verify(Duration.ofSeconds(5));
+	}
+
+	@Test
+	public void headersTooLarge() {
+		this.reader.setMaxHeadersSize(20);
+		StepVerifier.create(this.reader.read(PART_TYPE, request(SIMPLE_BODY, 8), emptyMap()))
+				.expectError(DecodingException.class)
+				.verify(Duration.ofSeconds(5));
+	}
+
+	@Test
+	public void noEndBoundary() {
+		String body = SIMPLE_BODY.substring(0, SIMPLE_BODY.indexOf("--" + BOUNDARY + "--"));
+		StepVerifier.create(this.reader.read(PART_TYPE, request(body, 8), emptyMap()))
+				.expectNextCount(1)
+				.expectError(DecodingException.class)
+				.verify(Duration.ofSeconds(5));
+	}
+
+	@Test
+	public void noBoundaryParameter() {
+		ServerHttpRequest request = MockServerHttpRequest.post("/")
+				.contentType(MediaType.MULTIPART_FORM_DATA)
+				.body(Flux.just(new DefaultDataBufferFactory().wrap(SIMPLE_BODY.getBytes(StandardCharsets.UTF_8))));
+		StepVerifier.create(this.reader.read(PART_TYPE, request, emptyMap()))
+				.expectError(DecodingException.class)
+				.verify(Duration.ofSeconds(5));
+	}
+
+	@Test
+	public void readMono() {
+		StepVerifier.create(this.reader.readMono(PART_TYPE, request(SIMPLE_BODY, 8), emptyMap()))
+				.expectError(UnsupportedOperationException.class)
+				.verify(Duration.ofSeconds(5));
+	}
+
+
+	private List<Part> readParts(ServerHttpRequest request) {
+		List<Part> parts = this.reader.read(PART_TYPE, request, emptyMap())
+				.collectList()
+				.block(Duration.ofSeconds(5));
+		assertNotNull(parts);
+		return parts;
+	}
+
+	private static void assertSimpleParts(List<Part> parts) {
+		assertEquals(2, parts.size());
+
+		Part part = parts.get(0);
+		assertTrue(part instanceof FormFieldPart);
+		assertEquals("field", part.name());
+		assertEquals("field value", ((FormFieldPart) part).value());
+
+		part = parts.get(1);
+		assertTrue(part instanceof FilePart);
+		assertEquals("file", part.name());
+		assertEquals("file.txt", ((FilePart) part).filename());
+		assertEquals(MediaType.TEXT_PLAIN, part.headers().getContentType());
+		assertEquals("Lorem Ipsum.\r\n\r\n--not the boundary", content(part));
+	}
+
+	private static String content(Part part) {
+		DataBuffer buffer = DataBufferUtils.join(part.content()).block(Duration.ofSeconds(5));
+		assertNotNull(buffer);
+		byte[] bytes = new byte[buffer.readableByteCount()];
+		buffer.read(bytes);
+		DataBufferUtils.release(buffer);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private long storedFileCount() throws IOException {
+		try (Stream<Path> children = Files.list(this.folder.getRoot().toPath())) {
+			Path directory = children.filter(Files::isDirectory).findFirst().orElseThrow(IllegalStateException::new);
+			try (Stream<Path> stored = Files.list(directory)) {
+				return stored.count();
+			}
+		}
+	}
+
+	private static ServerHttpRequest request(String body, int bufferSize) {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		List<DataBuffer> buffers = new ArrayList<>();
+		DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+		for (int i = 0; i < bytes.length; i += bufferSize) {
+			int length = Math.min(bufferSize, bytes.length - i);
+			DataBuffer buffer = bufferFactory.allocateBuffer(length);
+			buffer.write(bytes, i, length);
+			buffers.add(buffer);
+		}
+		return MockServerHttpRequest.post("/")
+				.contentType(MediaType.parseMediaType("multipart/form-data; boundary=\"" + BOUNDARY + "\""))
+				.body(Flux.fromIterable(buffers));
+	}
+
+	private static ServerHttpRequest generateMultipartRequest() {
+		MultipartBodyBuilder partsBuilder = new MultipartBodyBuilder();
+		partsBuilder.part("fooPart", new ClassPathResource("org/springframework/http/codec/multipart/foo.txt"));
+		partsBuilder.part("barPart", "bar");
+
+		MockClientHttpRequest outputMessage = new MockClientHttpRequest(HttpMethod.POST, "/");
+		new MultipartHttpMessageWriter()
+				.write(Mono.just(partsBuilder.build()), null, MediaType.MULTIPART_FORM_DATA, outputMessage, null)
+				.block(Duration.ofSeconds(5));
+
+		return MockServerHttpRequest.post("/")
+				.contentType(outputMessage.getHeaders().getContentType())
+				.body(outputMessage.getBody());
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -30,6 +30,7 @@ import org.springframework.core.codec.AbstractDecoderTestCase;
 import org.springframework.core.codec.DecodingException;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.MediaType;
 import org.springframework.protobuf.Msg;
 import org.springframework.protobuf.SecondMsg;
@@ -213,6 +214,21 @@ public class ProtobufDecoderTests extends AbstractDecoderTestCase<ProtobufDecode
 				.verifyComplete();
 	}
 
+	@Test
+	public void decodeMergedChunksDirectBuffer() throws IOException {
+		DataBuffer buffer = new DefaultDataBufferFactory(true).allocateBuffer();
+		this.testMsg1.writeDelimitedTo(buffer.asOutputStream());
+		this.testMsg2.writeDelimitedTo(buffer.asOutputStream());
+
+		ResolvableType elementType = forClass(Msg.class);
+		Flux<Message> messages = this.decoder.decode(Mono.just(buffer), elementType, null, emptyMap());
+
+		StepVerifier.create(messages)
+				.expectNext(testMsg1)
+				.expectNext(testMsg2)
+				.verifyComplete();
+	}
+
 	@Test
 	public void exceedMaxSize() {
 		this.decoder.setMaxMessageSize(1);
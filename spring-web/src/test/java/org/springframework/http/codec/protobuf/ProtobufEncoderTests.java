@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.function.Consumer;
 
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Message;
 import org.junit.Test;
 import reactor.core.publisher.Flux;
@@ -97,6 +98,20 @@ public class ProtobufEncoderTests extends AbstractEncoderTestCase<ProtobufEncode
 				.verifyComplete());
 	}
 
+	@Test
+	public void encodeStreamAllocatesSerializedSize() {
+		Flux<Message> input = Flux.just(this.msg1);
+		int messageSize = this.msg1.getSerializedSize();
+
+		testEncode(input, Msg.class, step -> step
+				.consumeNextWith(dataBuffer -> {
+					assertEquals(CodedOutputStream.computeUInt32SizeNoTag(messageSize) + messageSize,
+							dataBuffer.capacity());
+					expect(this.msg1).accept(dataBuffer);
+				})
+				.verifyComplete());
+	}
+
 	protected final Consumer<DataBuffer> expect(Msg msg) {
 		return dataBuffer -> {
 			try {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -109,6 +109,48 @@ public class ClientCodecConfigurerTests {
 		assertStringEncoder(getNextEncoder(writers), false);
 	}
 
+	@Test
+	public void maxInMemorySize() {
+		int size = 99;
+		this.configurer.defaultCodecs().maxInMemorySize(size);
+		List<HttpMessageReader<?>> readers = this.configurer.getReaders();
+		assertEquals(12, readers.size());
+		assertEquals(size, ((ByteArrayDecoder) getNextDecoder(readers)).getMaxInMemorySize());
+		assertEquals(size, ((ByteBufferDecoder) getNextDecoder(readers)).getMaxInMemorySize());
+		assertEquals(size, ((DataBufferDecoder) getNextDecoder(readers)).getMaxInMemorySize());
+		assertEquals(size, ((ResourceDecoder) getNextDecoder(readers)).getMaxInMemorySize());
+		assertEquals(size, ((StringDecoder) getNextDecoder(readers)).getMaxInMemorySize());
+		assertEquals(64 * 1024, ((ProtobufDecoder) getNextDecoder(readers)).getMaxMessageSize());
+		assertEquals(size, ((FormHttpMessageReader) nextReader(readers)).getMaxInMemorySize());
+		assertEquals(size, ((Jackson2JsonDecoder) getNextDecoder(readers)).getMaxInMemorySize());
+		assertEquals(size, ((Jackson2SmileDecoder) getNextDecoder(readers)).getMaxInMemorySize());
+		assertEquals(size, ((Jaxb2XmlDecoder) getNextDecoder(readers)).getMaxInMemorySize());
+
+		ServerSentEventHttpMessageReader reader = (ServerSentEventHttpMessageReader) nextReader(readers);
+		assertEquals(size, reader.getMaxInMemorySize());
+		assertEquals(size, ((Jackson2JsonDecoder) reader.getDecoder()).getMaxInMemorySize());
+
+		assertEquals(size, ((StringDecoder) getNextDecoder(readers)).getMaxInMemorySize());
+	}
+
+	@Test
+	public void maxInMemorySizeWithCustomDecoders() {
+		Jackson2JsonDecoder jacksonDecoder = new Jackson2JsonDecoder();
+		Jackson2JsonDecoder sseDecoder = new Jackson2JsonDecoder();
+		this.configurer.defaultCodecs().jackson2JsonDecoder(jacksonDecoder);
+		this.configurer.defaultCodecs().serverSentEventDecoder(sseDecoder);
+		this.configurer.defaultCodecs().maxInMemorySize(99);
+
+		List<HttpMessageReader<?>> readers = this.configurer.getReaders();
+		ServerSentEventHttpMessageReader sseReader = (ServerSentEventHttpMessageReader) readers.get(10);
+		assertSame(sseDecoder, sseReader.getDecoder());
+		assertEquals(99, sseReader.getMaxInMemorySize());
+		assertEquals(256 * 1024, jacksonDecoder.getMaxInMemorySize());
+		assertEquals(256 * 1024, sseDecoder.getMaxInMemorySize());
+		this.index.set(8);
+		assertEquals(99, ((Jackson2SmileDecoder) getNextDecoder(readers)).getMaxInMemorySize());
+	}
+
 	@Test
 	public void jackson2EncoderOverride() {
 		Jackson2JsonDecoder decoder = new Jackson2JsonDecoder();
@@ -123,6 +165,10 @@ public class ClientCodecConfigurerTests {
 	}
 
 
+	private HttpMessageReader<?> nextReader(List<HttpMessageReader<?>> readers) {
+		return readers.get(this.index.getAndIncrement());
+	}
+
 	private Decoder<?> getNextDecoder(List<HttpMessageReader<?>> readers) {
 		HttpMessageReader<?> reader = readers.get(this.index.getAndIncrement());
 		assertEquals(DecoderHttpMessageReader.class, reader.getClass());
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.http.codec.xml;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.xml.namespace.QName;
 import javax.xml.stream.events.XMLEvent;
 
@@ -193,6 +194,25 @@ public class Jaxb2XmlDecoderTests extends AbstractLeakCheckingTestCase {
 				.verify();
 	}
 
+	@Test
+	public void decodeMultipleXmlRootElementReusesUnmarshaller() throws Exception {
+		AtomicInteger unmarshallerCount = new AtomicInteger();
+		this.decoder.setUnmarshallerProcessor(unmarshaller -> {
+			unmarshallerCount.incrementAndGet();
+			return unmarshaller;
+		});
+		Mono<DataBuffer> source = stringBuffer(POJO_CHILD);
+		Flux<Object> output = this.decoder.decode(source, ResolvableType.forClass(Pojo.class),
+				null, Collections.emptyMap());
+
+		StepVerifier.create(output)
+				.expectNext(new Pojo("foo", "bar"))
+				.expectNext(new Pojo("foofoo", "barbar"))
+				.expectComplete()
+				.verify();
+		assertEquals(1, unmarshallerCount.get());
+	}
+
 	@Test
 	public void decodeMultipleXmlTypeElement() throws Exception {
 		Mono<DataBuffer> source = stringBuffer(POJO_CHILD);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,9 @@
 package org.springframework.http.codec.xml;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.XMLEvent;
 
 import org.junit.Test;
@@ -27,6 +29,7 @@ import reactor.test.StepVerifier;
 
 import org.springframework.core.io.buffer.AbstractLeakCheckingTestCase;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 
 import static org.junit.Assert.*;
 
@@ -113,10 +116,158 @@ public class XmlEventDecoderTests extends AbstractLeakCheckingTestCase {
 				this.decoder.decode(source, null, null, Collections.emptyMap());
 
 		StepVerifier.create(events)
+				.consumeNextWith(e -> assertTrue(e.isStartDocument()))
+				.consumeNextWith(e -> assertStartElement(e, "pojo"))
 				.expectError(RuntimeException.class)
 				.verify();
 	}
 
+	@Test
+	public void toXMLEventsNonAaltoSplitBuffers() {
+		this.decoder.useAalto = false;
+		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+				"<!-- <comment> -->" +
+				"<p:pojo xmlns:p=\"urn:test\">" +
+				"<p:foo attr=\"/>\">foofoo</p:foo>" +
+				"<?pi <pi>?><bar/>" +
+				"<baz><![CDATA[</baz>]]></baz>" +
+				"</p:pojo>";
+		Flux<DataBuffer> source = Flux.range(0, xml.length())
+				.concatMap(i -> stringBuffer(xml.substring(i, i + 1)));
+
+		Flux<XMLEvent> events = this.decoder.decode(source, null, null, Collections.emptyMap());
+
+		StepVerifier.create(events.filter(e -> !e.isProcessingInstruction() && !e.isCharacters()))
+				.consumeNextWith(e -> assertTrue(e.isStartDocument()))
+				.consumeNextWith(e -> assertEquals(XMLEvent.COMMENT, e.getEventType()))
+				.consumeNextWith(e -> {
+					assertStartElement(e, "pojo");
+					assertEquals("urn:test", e.asStartElement().getName().getNamespaceURI());
+				})
+				.consumeNextWith(e -> {
+					assertStartElement(e, "foo");
+					assertEquals("urn:test", e.asStartElement().getName().getNamespaceURI());
+				})
+				.consumeNextWith(e -> assertEndElement(e, "foo"))
+				.consumeNextWith(e -> assertStartElement(e, "bar"))
+				.consumeNextWith(e -> assertEndElement(e, "bar"))
+				.consumeNextWith(e -> assertStartElement(e, "baz"))
+				.consumeNextWith(e -> assertEndElement(e, "baz"))
+				.consumeNextWith(e -> assertEndElement(e, "pojo"))
+				.consumeNextWith(e -> assertTrue(e.isEndDocument()))
+				.expectComplete()
+				.verify();
+	}
+
+	@Test
+	public void toXMLEventsNonAaltoUtf16() {
+		this.decoder.useAalto = false;
+		byte[] bytes = XML.replace("UTF-8", "UTF-16").getBytes(StandardCharsets.UTF_16);
+		Flux<DataBuffer> source = Flux.range(0, (bytes.length + 2) / 3)
+				.concatMap(i -> bytesBuffer(Arrays.copyOfRange(bytes, i * 3, Math.min(bytes.length, i * 3 + 3))));
+
+		Flux<XMLEvent> events = this.decoder.decode(source, null, null, Collections.emptyMap());
+
+		StepVerifier.create(events)
+				.consumeNextWith(e -> assertTrue(e.isStartDocument()))
+				.consumeNextWith(e -> assertStartElement(e, "pojo"))
+				.consumeNextWith(e -> assertStartElement(e, "foo"))
+				.consumeNextWith(e -> assertCharacters(e, "foofoo"))
+				.consumeNextWith(e -> assertEndElement(e, "foo"))
+				.consumeNextWith(e -> assertStartElement(e, "bar"))
+				.consumeNextWith(e -> assertCharacters(e, "barbar"))
+				.consumeNextWith(e -> assertEndElement(e, "bar"))
+				.consumeNextWith(e -> assertEndElement(e, "pojo"))
+				.consumeNextWith(e -> assertTrue(e.isEndDocument()))
+				.expectComplete()
+				.verify();
+	}
+
+	@Test
+	public void toXMLEventsNonAaltoEmptyRoot() {
+		this.decoder.useAalto = false;
+
+		Flux<XMLEvent> events = this.decoder.decode(stringBuffer("<pojo/>"), null, null, Collections.emptyMap());
+
+		StepVerifier.create(events)
+				.consumeNextWith(e -> assertTrue(e.isStartDocument()))
+				.consumeNextWith(e -> assertStartElement(e, "pojo"))
+				.consumeNextWith(e -> assertEndElement(e, "pojo"))
+				.consumeNextWith(e -> assertTrue(e.isEndDocument()))
+				.expectComplete()
+				.verify();
+	}
+
+	@Test
+	public void decodeIncompleteNonAalto() {
+		this.decoder.useAalto = false;
+
+		Flux<XMLEvent> events = this.decoder.decode(stringBuffer("<pojo><foo>"), null, null, Collections.emptyMap());
+
+		StepVerifier.create(events)
+				.consumeNextWith(e -> assertTrue(e.isStartDocument()))
+				.consumeNextWith(e -> assertStartElement(e, "pojo"))
+				.expectError(XMLStreamException.class)
+				.verify();
+	}
+
+	@Test
+	public void decodeExceedsMaxInMemorySizeAalto() {
+		this.decoder.setMaxInMemorySize(20);
+		Flux<DataBuffer> source = Flux.concat(
+				stringBuffer("<pojo><foo>foofoo</foo>"),
+				stringBuffer("<bar>barbar"),
+				stringBuffer("barbarbarbar"),
+				stringBuffer("barbarbarbar"),
+				stringBuffer("</bar></pojo>"));
+
+		Flux<XMLEvent> events = this.decoder.decode(source, null, null, Collections.emptyMap());
+
+		StepVerifier.create(events)
+				.consumeNextWith(e -> assertTrue(e.isStartDocument()))
+				.consumeNextWith(e -> assertStartElement(e, "pojo"))
+				.consumeNextWith(e -> assertStartElement(e, "foo"))
+				.consumeNextWith(e -> assertCharacters(e, "foofoo"))
+				.consumeNextWith(e -> assertEndElement(e, "foo"))
+				.thenConsumeWhile(e -> !e.isEndElement())
+				.expectError(DataBufferLimitException.class)
+				.verify();
+	}
+
+	@Test
+	public void decodeExceedsMaxInMemorySizeNonAalto() {
+		this.decoder.useAalto = false;
+		this.decoder.setMaxInMemorySize(20);
+
+		Flux<XMLEvent> events = this.decoder.decode(stringBuffer(XML), null, null, Collections.emptyMap());
+
+		StepVerifier.create(events)
+				.expectError(DataBufferLimitException.class)
+				.verify();
+	}
+
+	@Test
+	public void decodeTopLevelTreeExceedsMaxInMemorySizeNonAalto() {
+		this.decoder.useAalto = false;
+		this.decoder.setMaxInMemorySize(20);
+		Flux<DataBuffer> source = Flux.concat(
+				stringBuffer("<pojo><foo>foofoo</foo>"),
+				stringBuffer("<bar>barbar"),
+				stringBuffer("barbarbarbar"),
+				stringBuffer("</bar></pojo>"));
+
+		Flux<XMLEvent> events = this.decoder.decode(source, null, null, Collections.emptyMap());
+
+		StepVerifier.create(events)
+				.consumeNextWith(e -> assertTrue(e.isStartDocument()))
+				.consumeNextWith(e -> assertStartElement(e, "pojo"))
+				.consumeNextWith(e -> assertStartElement(e, "foo"))
+				.consumeNextWith(e -> assertCharacters(e, "foofoo"))
+				.consumeNextWith(e -> assertEndElement(e, "foo"))
+				.expectError(DataBufferLimitException.class)
+				.verify();
+	}
+
 	private static void assertStartElement(XMLEvent event, String expectedLocalName) {
 		assertTrue(event.isStartElement());
 		assertEquals(expectedLocalName, event.asStartElement().getName().getLocalPart());
@@ -133,8 +284,11 @@ public class XmlEventDecoderTests extends AbstractLeakCheckingTestCase {
 	}
 
 	private Mono<DataBuffer> stringBuffer(String value) {
+		return bytesBuffer(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private Mono<DataBuffer> bytesBuffer(byte[] bytes) {
 		return Mono.defer(() -> {
-			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
 			DataBuffer buffer = this.bufferFactory.allocateBuffer(bytes.length);
 			buffer.write(bytes);
 			return Mono.just(buffer);
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.converter.json;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.MockHttpInputMessage;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Jackson2ReaderWriterCache}.
+ *
+ * @author agent (agent@local)
+ */
+public class Jackson2ReaderWriterCacheTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final Jackson2ReaderWriterCache cache = new Jackson2ReaderWriterCache(this.objectMapper);
+
+
+	@Test
+	public void javaTypeIsCached() {
+		Type type = new ParameterizedTypeReference<List<MyBean>>() {}.getType();
+		JavaType javaType = this.cache.getJavaType(type, null);
+
+		assertEquals(List.class, javaType.getRawClass());
+		assertEquals(MyBean.class, javaType.getContentType().getRawClass());
+		assertSame(javaType, this.cache.getJavaType(type, null));
+		assertEquals(1, this.cache.getHitCount());
+	}
+
+	@Test
+	public void readerIsCachedPerView() {
+		JavaType javaType = this.cache.getJavaType(MyBean.class, null);
+		ObjectReader reader = this.cache.getReader(javaType, null);
+		ObjectReader viewReader = this.cache.getReader(javaType, MyJacksonView1.class);
+
+		assertSame(reader, this.cache.getReader(javaType, null));
+		assertSame(viewReader, this.cache.getReader(javaType, MyJacksonView1.class));
+		assertNotSame(reader, viewReader);
+		assertEquals(MyJacksonView1.class, viewReader.getConfig().getActiveView());
+	}
+
+	@Test
+	public void writerIsBoundToContainerTypesOnly() {
+		JavaType beanType = this.cache.getJavaType(MyBean.class, null);
+		JavaType listType = this.cache.getJavaType(new ParameterizedTypeReference<List<MyBean>>() {}.getType(), null);
+
+		ObjectWriter writer = this.cache.getWriter(null, null);
+		assertSame(writer, this.cache.getWriter(beanType, null));
+		assertNotSame(writer, this.cache.getWriter(listType, null));
+		assertSame(this.cache.getWriter(listType, null), this.cache.getWriter(listType, null));
+	}
+
+	@Test
+	public void cacheLimit() {
+		Jackson2ReaderWriterCache cache = new Jackson2ReaderWriterCache(this.objectMapper, 1);
+		cache.getReader(cache.getJavaType(MyBean.class, null), null);
+		cache.getReader(cache.getJavaType(String.class, null), null);
+
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void clear() {
+		ObjectReader reader = this.cache.getReader(this.cache.getJavaType(MyBean.class, null), null);
+		this.cache.clear();
+
+		assertEquals(0, this.cache.size());
+		assertNotSame(reader, this.cache.getReader(this.cache.getJavaType(MyBean.class, null), null));
+	}
+
+	@Test
+	public void converterUsesCache() throws IOException {
+		MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter(this.objectMapper);
+		for (int i = 0; i < 2; i++) {
+			MockHttpInputMessage inputMessage = new MockHttpInputMessage("{\"string\":\"foo\"}".getBytes(StandardCharsets.UTF_8));
+			inputMessage.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+			MyBean bean = (MyBean) converter.read(MyBean.class, null, inputMessage);
+			assertEquals("foo", bean.getString());
+		}
+		assertEquals(1, converter.getReaderWriterCache().getMissCount());
+		assertEquals(1, converter.getReaderWriterCache().getHitCount());
+
+		converter.setPrettyPrint(true);
+		assertEquals(0, converter.getReaderWriterCache().size());
+	}
+
+	@Test
+	public void reconfiguredObjectMapper() {
+		JavaType javaType = this.cache.getJavaType(MyBean.class, null);
+		ObjectReader reader = this.cache.getReader(javaType, null);
+		assertTrue(reader.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+
+		this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		reader = this.cache.getReader(javaType, null);
+		assertFalse(reader.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+		assertSame(reader, this.cache.getReader(javaType, null));
+	}
+
+	@Test
+	public void codecCacheLimit() {
+		Jackson2JsonDecoder decoder = new Jackson2JsonDecoder(this.objectMapper);
+		decoder.setReaderWriterCacheLimit(0);
+		byte[] body = "{\"string\":\"foo\"}".getBytes(StandardCharsets.UTF_8);
+
+		for (int i = 0; i < 2; i++) {
+			Mono<DataBuffer> input = Mono.fromSupplier(() -> new DefaultDataBufferFactory().wrap(body));
+			MyBean bean = (MyBean) decoder.decodeToMono(input, ResolvableType.forClass(MyBean.class), null, null).block();
+			assertEquals("foo", bean.getString());
+		}
+		assertEquals(0, decoder.getReaderWriterCache().size());
+		assertEquals(0, decoder.getReaderWriterCache().getHitCount());
+	}
+
+
+	public interface MyJacksonView1 {}
+
+
+	public static class MyBean {
+
+		private String string;
+
+		public String getString() {
+			return this.string;
+		}
+
+		public void setString(String string) {
+			this.string = string;
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,12 +18,18 @@ package org.springframework.http.server.reactive;
 
 import java.io.File;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 import reactor.core.publisher.Mono;
 
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.util.StreamUtils;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
@@ -66,6 +72,27 @@ public class ZeroCopyIntegrationTests extends AbstractHttpHandlerIntegrationTest
 		assertEquals(MediaType.IMAGE_PNG, response.getHeaders().getContentType());
 	}
 
+	@Test
+	public void zeroCopyRegions() throws Exception {
+		assumeTrue(server instanceof ReactorHttpServer || server instanceof UndertowHttpServer);
+
+		URI url = new URI("http://localhost:" + port + "/regions");
+		RequestEntity<?> request = RequestEntity.get(url).build();
+		ResponseEntity<byte[]> response = new RestTemplate().exchange(request, byte[].class);
+
+		Resource logo = new ClassPathResource("spring.png", ZeroCopyIntegrationTests.class);
+		byte[] bytes = StreamUtils.copyToByteArray(logo.getInputStream());
+
+		assertTrue(response.hasBody());
+		byte[] body = response.getBody();
+		assertEquals(36, body.length);
+		assertEquals("<a>", new String(body, 0, 3, StandardCharsets.US_ASCII));
+		assertArrayEquals(Arrays.copyOfRange(bytes, 0, 10), Arrays.copyOfRange(body, 3, 13));
+		assertEquals("<b>", new String(body, 13, 3, StandardCharsets.US_ASCII));
+		assertArrayEquals(Arrays.copyOfRange(bytes, 100, 117), Arrays.copyOfRange(body, 16, 33));
+		assertEquals("<c>", new String(body, 33, 3, StandardCharsets.US_ASCII));
+	}
+
 
 	private static class ZeroCopyHandler implements HttpHandler {
 
@@ -74,6 +101,15 @@ public class ZeroCopyIntegrationTests extends AbstractHttpHandlerIntegrationTest
 			try {
 				ZeroCopyHttpOutputMessage zeroCopyResponse = (ZeroCopyHttpOutputMessage) response;
 				Resource logo = new ClassPathResource("spring.png", ZeroCopyIntegrationTests.class);
+				if (request.getURI().getPath().equals("/regions")) {
+					List<ResourceRegion> regions = Arrays.asList(
+							new ResourceRegion(logo, 0, 10), new ResourceRegion(logo, 100, 17));
+					List<DataBuffer> delimiters = Arrays.asList(delimiter(response, "<a>"),
+							delimiter(response, "<b>"), delimiter(response, "<c>"));
+					zeroCopyResponse.getHeaders().setContentType(MediaType.APPLICATION_OCTET_STREAM);
+					zeroCopyResponse.getHeaders().setContentLength(36);
+					return zeroCopyResponse.writeWith(regions, delimiters);
+				}
 				File logoFile = logo.getFile();
 				zeroCopyResponse.getHeaders().setContentType(MediaType.IMAGE_PNG);
 				zeroCopyResponse.getHeaders().setContentLength(logoFile.length());
@@ -83,6 +119,10 @@ public class ZeroCopyIntegrationTests extends AbstractHttpHandlerIntegrationTest
 				return Mono.error(ex);
 			}
 		}
+
+		private DataBuffer delimiter(ServerHttpResponse response, String value) {
+			return response.bufferFactory().wrap(value.getBytes(StandardCharsets.US_ASCII));
+		}
 	}
 
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.cors;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import org.springframework.http.HttpMethod;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CompiledCorsConfiguration}.
+ *
+ * @author agent (agent@local)
+ */
+public class CompiledCorsConfigurationTests {
+
+	@Test
+	public void checkOrigin() {
+		CorsConfiguration config = new CorsConfiguration();
+		config.addAllowedOrigin("http://Domain1.com");
+		config.addAllowedOrigin("http://domain2.com");
+		CompiledCorsConfiguration compiled = new CompiledCorsConfiguration(config);
+
+		assertEquals("http://domain1.com", compiled.checkOrigin("http://domain1.com"));
+		assertEquals("http://DOMAIN2.com", compiled.checkOrigin("http://DOMAIN2.com"));
+		assertNull(compiled.checkOrigin("http://domain3.com"));
+		assertNull(compiled.checkOrigin(""));
+		assertNull(new CompiledCorsConfiguration(new CorsConfiguration()).checkOrigin("http://domain1.com"));
+	}
+
+	@Test
+	public void checkOriginWithAsteriskWildCard() {
+		CorsConfiguration config = new CorsConfiguration();
+		config.addAllowedOrigin("*");
+		assertEquals("*", new CompiledCorsConfiguration(config).checkOrigin("http://domain1.com"));
+
+		config.setAllowCredentials(true);
+		assertEquals("http://domain1.com", new CompiledCorsConfiguration(config).checkOrigin("http://domain1.com"));
+	}
+
+	@Test
+	public void checkHttpMethod() {
+		CompiledCorsConfiguration compiled = new CompiledCorsConfiguration(new CorsConfiguration());
+		assertEquals(Arrays.asList(HttpMethod.GET, HttpMethod.HEAD), compiled.checkHttpMethod(HttpMethod.GET));
+		assertNull(compiled.checkHttpMethod(HttpMethod.POST));
+		assertEquals("GET,HEAD", compiled.getAllowMethodsValue(compiled.checkHttpMethod(HttpMethod.HEAD)));
+
+		CorsConfiguration config = new CorsConfiguration();
+		config.addAllowedMethod("*");
+		compiled = new CompiledCorsConfiguration(config);
+		assertEquals(Collections.singletonList(HttpMethod.DELETE), compiled.checkHttpMethod(HttpMethod.DELETE));
+		assertEquals("DELETE", compiled.getAllowMethodsValue(compiled.checkHttpMethod(HttpMethod.DELETE)));
+	}
+
+	@Test
+	public void checkHeaders() {
+		CorsConfiguration config = new CorsConfiguration();
+		config.addAllowedHeader("Header1");
+		config.addAllowedHeader("header2");
+		CompiledCorsConfiguration compiled = new CompiledCorsConfiguration(config);
+
+		assertEquals(Arrays.asList("header1", "Header2"),
+				compiled.checkHeaders(Arrays.asList("header1", " Header2 ", "header3")));
+		assertNull(compiled.checkHeaders(Collections.singletonList("header3")));
+		assertEquals(Collections.emptyList(), compiled.checkHeaders(Collections.emptyList()));
+
+		config.addAllowedHeader("*");
+		compiled = new CompiledCorsConfiguration(config);
+		assertEquals(Collections.singletonList("header3"), compiled.checkHeaders(Collections.singletonList("header3")));
+	}
+
+	@Test
+	public void headerValues() {
+		CorsConfiguration config = new CorsConfiguration();
+		CompiledCorsConfiguration compiled = new CompiledCorsConfiguration(config);
+		assertNull(compiled.getExposeHeadersValue());
+		assertNull(compiled.getMaxAgeValue());
+
+		config.addExposedHeader("header1");
+		config.addExposedHeader("header2");
+		config.setMaxAge(123L);
+		compiled = new CompiledCorsConfiguration(config);
+		assertEquals("header1, header2", compiled.getExposeHeadersValue());
+		assertEquals("123", compiled.getMaxAgeValue());
+	}
+
+	@Test
+	public void detachedFromOriginal() {
+		CorsConfiguration config = new CorsConfiguration();
+		config.addAllowedOrigin("http://domain1.com");
+		CompiledCorsConfiguration compiled = new CompiledCorsConfiguration(config);
+
+		config.addAllowedOrigin("http://domain2.com");
+		assertEquals(Collections.singletonList("http://domain1.com"), compiled.getAllowedOrigins());
+		assertNull(compiled.checkOrigin("http://domain2.com"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void readOnly() {
+		new CompiledCorsConfiguration(new CorsConfiguration()).addAllowedOrigin("http://domain1.com");
+	}
+
+	@Test
+	public void combineWithDefaultPermitValues() {
+		CorsConfiguration defaults = new CompiledCorsConfiguration(new CorsConfiguration().applyPermitDefaultValues());
+		CorsConfiguration other = new CorsConfiguration();
+		other.addAllowedOrigin("http://domain.com");
+		other.addAllowedMethod(HttpMethod.PUT);
+
+		CorsConfiguration combined = defaults.combine(other);
+		assertEquals(Collections.singletonList("http://domain.com"), combined.getAllowedOrigins());
+		assertEquals(Collections.singletonList("PUT"), combined.getAllowedMethods());
+		assertEquals(Collections.singletonList("*"), combined.getAllowedHeaders());
+
+		combined = other.combine(defaults);
+		assertEquals(Collections.singletonList("http://domain.com"), combined.getAllowedOrigins());
+		assertEquals(Collections.singletonList("PUT"), combined.getAllowedMethods());
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -267,6 +267,31 @@ public class DefaultCorsProcessorTests {
 		assertEquals(HttpServletResponse.SC_OK, this.response.getStatus());
 	}
 
+	@Test
+	public void preflightRequestWithCompiledConfig() throws Exception {
+		this.request.setMethod(HttpMethod.OPTIONS.name());
+		this.request.addHeader(HttpHeaders.ORIGIN, "http://DOMAIN2.com");
+		this.request.addHeader(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, "PUT");
+		this.request.addHeader(HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS, "Header1");
+		this.conf.addAllowedOrigin("http://domain2.com");
+		this.conf.addAllowedMethod("GET");
+		this.conf.addAllowedMethod("PUT");
+		this.conf.addAllowedHeader("header1");
+		this.conf.addExposedHeader("header3");
+		this.conf.addExposedHeader("header4");
+		this.conf.setMaxAge(123L);
+
+		this.processor.processRequest(new CompiledCorsConfiguration(this.conf), this.request, this.response);
+		assertEquals("http://DOMAIN2.com", this.response.getHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN));
+		assertEquals("GET,PUT", this.response.getHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS));
+		assertEquals("Header1", this.response.getHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_HEADERS));
+		assertEquals("header3, header4", this.response.getHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS));
+		assertEquals("123", this.response.getHeader(HttpHeaders.ACCESS_CONTROL_MAX_AGE));
+		assertThat(this.response.getHeaders(HttpHeaders.VARY), contains(HttpHeaders.ORIGIN,
+				HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS));
+		assertEquals(HttpServletResponse.SC_OK, this.response.getStatus());
+	}
+
 	@Test
 	public void preflightRequestCredentials() throws Exception {
 		this.request.setMethod(HttpMethod.OPTIONS.name());
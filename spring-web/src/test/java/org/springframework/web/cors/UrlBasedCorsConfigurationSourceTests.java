@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -38,7 +38,7 @@ public class UrlBasedCorsConfigurationSourceTests {
 
 	@Test
 	public void registerAndMatch() {
-		CorsConfiguration config = new CorsConfiguration();
+		CorsConfiguration config = new CompiledCorsConfiguration(new CorsConfiguration());
 		this.configSource.registerCorsConfiguration("/bar/**", config);
 
 		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/foo/test.html");
@@ -48,6 +48,20 @@ public class UrlBasedCorsConfigurationSourceTests {
 		assertEquals(config, this.configSource.getCorsConfiguration(request));
 	}
 
+	@Test
+	public void registerCompilesConfiguration() {
+		CorsConfiguration config = new CorsConfiguration();
+		config.addAllowedOrigin("https://domain.com");
+		this.configSource.registerCorsConfiguration("/foo/**", config);
+		config.addAllowedOrigin("https://other.com");
+
+		CorsConfiguration result = this.configSource.getCorsConfiguration(
+				new MockHttpServletRequest(HttpMethod.GET.name(), "/foo/test.html"));
+		assertTrue(result instanceof CompiledCorsConfiguration);
+		assertEquals("https://domain.com", result.checkOrigin("https://domain.com"));
+		assertNull(result.checkOrigin("https://other.com"));
+	}
+
 	@Test(expected = UnsupportedOperationException.class)
 	public void unmodifiableConfigurationsMap() {
 		this.configSource.getCorsConfigurations().put("/**", new CorsConfiguration());
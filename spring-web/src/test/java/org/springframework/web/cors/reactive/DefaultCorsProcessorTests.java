@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,6 +25,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.mock.http.server.reactive.test.MockServerHttpRequest;
 import org.springframework.mock.web.test.server.MockServerWebExchange;
+import org.springframework.web.cors.CompiledCorsConfiguration;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.server.ServerWebExchange;
 
@@ -272,6 +273,32 @@ public class DefaultCorsProcessorTests {
 		assertNull(response.getStatusCode());
 	}
 
+	@Test
+	public void preflightRequestWithCompiledConfig() throws Exception {
+		ServerWebExchange exchange = MockServerWebExchange.from(preFlightRequest()
+				.header(ACCESS_CONTROL_REQUEST_METHOD, "PUT")
+				.header(ACCESS_CONTROL_REQUEST_HEADERS, "Header1"));
+
+		this.conf.addAllowedOrigin("http://DOMAIN2.com");
+		this.conf.addAllowedMethod("GET");
+		this.conf.addAllowedMethod("PUT");
+		this.conf.addAllowedHeader("header1");
+		this.conf.addExposedHeader("header3");
+		this.conf.addExposedHeader("header4");
+		this.conf.setMaxAge(123L);
+
+		this.processor.process(new CompiledCorsConfiguration(this.conf), exchange);
+
+		HttpHeaders headers = exchange.getResponse().getHeaders();
+		assertEquals("http://domain2.com", headers.getFirst(ACCESS_CONTROL_ALLOW_ORIGIN));
+		assertEquals("GET,PUT", headers.getFirst(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS));
+		assertEquals("Header1", headers.getFirst(ACCESS_CONTROL_ALLOW_HEADERS));
+		assertEquals("header3, header4", headers.getFirst(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS));
+		assertEquals("123", headers.getFirst(HttpHeaders.ACCESS_CONTROL_MAX_AGE));
+		assertThat(headers.get(VARY), contains(ORIGIN, ACCESS_CONTROL_REQUEST_METHOD, ACCESS_CONTROL_REQUEST_HEADERS));
+		assertNull(exchange.getResponse().getStatusCode());
+	}
+
 	@Test
 	public void preflightRequestCredentials() throws Exception {
 		ServerWebExchange exchange = MockServerWebExchange.from(preFlightRequest()
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,10 +20,14 @@ import org.junit.Test;
 
 import org.springframework.mock.http.server.reactive.test.MockServerHttpRequest;
 import org.springframework.mock.web.test.server.MockServerWebExchange;
+import org.springframework.web.cors.CompiledCorsConfiguration;
 import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit tests for {@link UrlBasedCorsConfigurationSource}.
@@ -45,7 +49,7 @@ public class UrlBasedCorsConfigurationSourceTests {
 
 	@Test
 	public void registerAndMatch() {
-		CorsConfiguration config = new CorsConfiguration();
+		CorsConfiguration config = compiledConfig();
 		this.configSource.registerCorsConfiguration("/bar/**", config);
 
 		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/foo/test.html"));
@@ -55,4 +59,88 @@ public class UrlBasedCorsConfigurationSourceTests {
 		assertEquals(config, this.configSource.getCorsConfiguration(exchange));
 	}
 
+	@Test
+	public void registerCompilesConfiguration() {
+		CorsConfiguration config = new CorsConfiguration();
+		config.addAllowedOrigin("https://domain.com");
+		this.configSource.registerCorsConfiguration("/foo/**", config);
+		config.addAllowedOrigin("https://other.com");
+
+		CorsConfiguration result = getCorsConfiguration("/foo/test.html");
+		assertTrue(result instanceof CompiledCorsConfiguration);
+		assertEquals("https://domain.com", result.checkOrigin("https://domain.com"));
+		assertNull(result.checkOrigin("https://other.com"));
+
+		CorsConfiguration customConfig = new CorsConfiguration() {};
+		this.configSource.registerCorsConfiguration("/bar/**", customConfig);
+		assertSame(customConfig, getCorsConfiguration("/bar/test.html"));
+	}
+
+	@Test
+	public void registrationOrder() {
+		CorsConfiguration wildcardConfig = compiledConfig();
+		CorsConfiguration fooConfig = compiledConfig();
+		CorsConfiguration barConfig = compiledConfig();
+		CorsConfiguration variableConfig = compiledConfig();
+		this.configSource.registerCorsConfiguration("/foo/admin/**", fooConfig);
+		this.configSource.registerCorsConfiguration("/*/admin/**", wildcardConfig);
+		this.configSource.registerCorsConfiguration("/foo/**", fooConfig);
+		this.configSource.registerCorsConfiguration("/bar", barConfig);
+		this.configSource.registerCorsConfiguration("/{name}/**", variableConfig);
+
+		assertSame(fooConfig, getCorsConfiguration("/foo/admin/test.html"));
+		assertSame(wildcardConfig, getCorsConfiguration("/bar/admin/test.html"));
+		assertSame(fooConfig, getCorsConfiguration("/foo/test.html"));
+		assertSame(barConfig, getCorsConfiguration("/bar"));
+		assertSame(variableConfig, getCorsConfiguration("/bar/test.html"));
+		assertSame(variableConfig, getCorsConfiguration("/baz"));
+		assertNull(getCorsConfiguration("/"));
+	}
+
+	@Test
+	public void registerAfterLookup() {
+		CorsConfiguration config = compiledConfig();
+		this.configSource.registerCorsConfiguration("/foo/**", config);
+		assertNull(getCorsConfiguration("/bar/test.html"));
+
+		this.configSource.registerCorsConfiguration("/bar/**", config);
+		assertSame(config, getCorsConfiguration("/bar/test.html"));
+	}
+
+	@Test
+	public void matchEncodedPath() {
+		CorsConfiguration config = compiledConfig();
+		this.configSource.registerCorsConfiguration("/foo bar/**", config);
+
+		// URL template is encoded to "/foo%20bar/test.html"
+		assertSame(config, getCorsConfiguration("/foo bar/test.html"));
+		assertNull(getCorsConfiguration("/foo/test.html"));
+	}
+
+	@Test
+	public void matchCaseInsensitive() {
+		PathPatternParser parser = new PathPatternParser();
+		parser.setCaseSensitive(false);
+		UrlBasedCorsConfigurationSource configSource = new UrlBasedCorsConfigurationSource(parser);
+		CorsConfiguration config = compiledConfig();
+		configSource.registerCorsConfiguration("/Foo/**", config);
+
+		assertSame(config, getCorsConfiguration(configSource, "/fOO/test.html"));
+		assertSame(config, getCorsConfiguration(configSource, "/FOO"));
+		assertNull(getCorsConfiguration(configSource, "/bar/test.html"));
+	}
+
+
+	private static CorsConfiguration compiledConfig() {
+		return new CompiledCorsConfiguration(new CorsConfiguration());
+	}
+
+	private CorsConfiguration getCorsConfiguration(String path) {
+		return getCorsConfiguration(this.configSource, path);
+	}
+
+	private static CorsConfiguration getCorsConfiguration(UrlBasedCorsConfigurationSource source, String path) {
+		return source.getCorsConfiguration(MockServerWebExchange.from(MockServerHttpRequest.get(path)));
+	}
+
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+import org.springframework.mock.web.test.DelegatingServletInputStream;
+import org.springframework.mock.web.test.DelegatingServletOutputStream;
+import org.springframework.mock.web.test.MockAsyncContext;
+import org.springframework.mock.web.test.MockHttpServletRequest;
+import org.springframework.mock.web.test.MockHttpServletResponse;
+import org.springframework.util.FastByteArrayOutputStream;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StreamUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link NonBlockingBodyFilter}.
+ *
+ * @author agent (agent@local)
+ */
+public class NonBlockingBodyFilterTests {
+
+	private static final byte[] REQUEST_BODY = "{\"foo\":\"bar\"}".getBytes(StandardCharsets.UTF_8);
+
+	private static final byte[] RESPONSE_BODY = "Hello World".getBytes(StandardCharsets.UTF_8);
+
+
+	private final NonBlockingBodyFilter filter = new NonBlockingBodyFilter();
+
+	private final AtomicInteger chainInvocations = new AtomicInteger();
+
+	private final FilterChain filterChain = (request, response) -> {
+		this.chainInvocations.incrementAndGet();
+		byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+		((HttpServletResponse) response).setStatus(HttpServletResponse.SC_OK);
+		FileCopyUtils.copy(body.length > 0 ? body : RESPONSE_BODY, response.getOutputStream());
+	};
+
+
+	@Test
+	public void readAheadThenWriteAsync() throws Exception {
+		NonBlockingRequest request = new NonBlockingRequest("POST", REQUEST_BODY);
+		request.setContentType("application/json");
+		MockHttpServletResponse response = new NonBlockingResponse();
+
+		this.filter.doFilter(request, response, this.filterChain);
+
+		assertEquals(0, this.chainInvocations.get());
+		assertTrue(request.isAsyncStarted());
+		assertNotNull(((MockAsyncContext) request.getAsyncContext()).getDispatchedPath());
+
+		// Container dispatch after the body has been read
+		request.setAsyncStarted(false);
+		this.filter.doFilter(request, response, this.filterChain);
+
+		assertEquals(1, this.chainInvocations.get());
+		assertFalse(request.isAsyncStarted());
+		assertEquals(REQUEST_BODY.length, response.getContentLength());
+		assertArrayEquals(REQUEST_BODY, response.getContentAsByteArray());
+	}
+
+	@Test
+	public void readListenerOnReadAheadBody() throws Exception {
+		NonBlockingRequest request = new NonBlockingRequest("POST", REQUEST_BODY);
+		request.setContentType("application/json");
+		MockHttpServletResponse response = new NonBlockingResponse();
+		this.filter.doFilter(request, response, this.filterChain);
+		request.setAsyncStarted(false);
+
+		FastByteArrayOutputStream content = new FastByteArrayOutputStream();
+		AtomicInteger allDataRead = new AtomicInteger();
+		this.filter.doFilter(request, response, (req, res) -> {
+			ServletInputStream inputStream = req.getInputStream();
+			try {
+				inputStream.setReadListener(new BodyCollector(inputStream, content, allDataRead));
+				fail("Expected IllegalStateException without async processing");
+			}
+			catch (IllegalStateException ex) {
+				// expected
+			}
+			req.startAsync();
+			inputStream.setReadListener(new BodyCollector(inputStream, content, allDataRead));
+		});
+
+		assertArrayEquals(REQUEST_BODY, content.toByteArray());
+		assertEquals(1, allDataRead.get());
+	}
+
+	@Test
+	public void writeAsyncWithoutRequestBody() throws Exception {
+		NonBlockingRequest request = new NonBlockingRequest("GET", new byte[0]);
+		MockHttpServletResponse response = new NonBlockingResponse();
+
+		this.filter.doFilter(request, response, this.filterChain);
+
+		assertEquals(1, this.chainInvocations.get());
+		assertFalse(request.isAsyncStarted());
+		assertArrayEquals(RESPONSE_BODY, response.getContentAsByteArray());
+	}
+
+	@Test
+	public void formContentIsNotReadAhead() throws Exception {
+		NonBlockingRequest request = new NonBlockingRequest("POST", "foo=bar".getBytes(StandardCharsets.UTF_8));
+		request.setContentType("application/x-www-form-urlencoded");
+		MockHttpServletResponse response = new NonBlockingResponse();
+
+		this.filter.doFilter(request, response, this.filterChain);
+
+		assertEquals(1, this.chainInvocations.get());
+		assertEquals("foo=bar", response.getContentAsString());
+	}
+
+	@Test
+	public void requestBodyTooLarge() throws Exception {
+		this.filter.setMaxRequestBodySize(4);
+		NonBlockingRequest request = new NonBlockingRequest("POST", REQUEST_BODY);
+		request.setContentType("application/json");
+		MockHttpServletResponse response = new NonBlockingResponse();
+
+		this.filter.doFilter(request, response, this.filterChain);
+
+		assertEquals(0, this.chainInvocations.get());
+		assertEquals(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, response.getStatus());
+	}
+
+	@Test
+	public void asyncNotSupported() throws Exception {
+		NonBlockingRequest request = new NonBlockingRequest("POST", REQUEST_BODY);
+		request.setAsyncSupported(false);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.filter.doFilter(request, response, this.filterChain);
+
+		assertEquals(1, this.chainInvocations.get());
+		assertArrayEquals(REQUEST_BODY, response.getContentAsByteArray());
+	}
+
+
+	private static class NonBlockingRequest extends MockHttpServletRequest {
+
+		public NonBlockingRequest(String method, byte[] body) {
+			super(method, "/");
+			setContent(body);
+			setAsyncSupported(true);
+		}
+
+		@Override
+		public ServletInputStream getInputStream() {
+			return new DelegatingServletInputStream(new ByteArrayInputStream(getContentAsByteArray())) {
+				@Override
+				public void setReadListener(ReadListener readListener) {
+					try {
+						readListener.onDataAvailable();
+						readListener.onAllDataRead();
+					}
+					catch (IOException ex) {
+						readListener.onError(ex);
+					}
+				}
+			};
+		}
+	}
+
+
+	private static class NonBlockingResponse extends MockHttpServletResponse {
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			return new DelegatingServletOutputStream(super.getOutputStream()) {
+				@Override
+				public void setWriteListener(WriteListener writeListener) {
+					try {
+						writeListener.onWritePossible();
+					}
+					catch (IOException ex) {
+						writeListener.onError(ex);
+					}
+				}
+			};
+		}
+	}
+
+
+	private static class BodyCollector implements ReadListener {
+
+		private final ServletInputStream inputStream;
+
+		private final FastByteArrayOutputStream content;
+
+		private final AtomicInteger allDataRead;
+
+		BodyCollector(ServletInputStream inputStream, FastByteArrayOutputStream content, AtomicInteger allDataRead) {
+			this.inputStream = inputStream;
+			this.content = content;
+			this.allDataRead = allDataRead;
+		}
+
+		@Override
+		public void onDataAvailable() throws IOException {
+			while (this.inputStream.isReady() && !this.inputStream.isFinished()) {
+				this.content.write(this.inputStream.read());
+			}
+		}
+
+		@Override
+		public void onAllDataRead() {
+			this.allDataRead.incrementAndGet();
+		}
+
+		@Override
+		public void onError(Throwable ex) {
+			throw new AssertionError(ex);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,6 +25,7 @@ import org.springframework.mock.web.test.MockHttpServletRequest;
 import org.springframework.mock.web.test.MockHttpServletResponse;
 import org.springframework.util.FileCopyUtils;
 import org.springframework.util.StreamUtils;
+import org.springframework.web.util.ContentCachingResponseWrapper;
 
 import static org.junit.Assert.*;
 
@@ -262,4 +263,109 @@ public class ShallowEtagHeaderFilterTests {
 		assertArrayEquals("Invalid content", responseBody, response.getContentAsByteArray());
 	}
 
+	@Test
+	public void filterVersionNoMatch() throws Exception {
+		this.filter.setVersionResolver(request -> "v42");
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hotels");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		final byte[] responseBody = "Hello World".getBytes("UTF-8");
+		FilterChain filterChain = (filterRequest, filterResponse) -> {
+			assertFalse("Response should not be buffered", filterResponse instanceof ContentCachingResponseWrapper);
+			filterResponse.getOutputStream().write(responseBody);
+			filterResponse.flushBuffer();
+			assertEquals("ETag not set on commit", "\"v42\"", response.getHeader("ETag"));
+		};
+		filter.doFilter(request, response, filterChain);
+
+		assertEquals("Invalid status", 200, response.getStatus());
+		assertEquals("Invalid ETag header", "\"v42\"", response.getHeader("ETag"));
+		assertArrayEquals("Invalid content", responseBody, response.getContentAsByteArray());
+	}
+
+	@Test
+	public void filterVersionMatch() throws Exception {
+		this.filter.setWriteWeakETag(true);
+		this.filter.setVersionResolver(request -> "v42");
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hotels");
+		request.addHeader("If-None-Match", "\"v42\"");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		FilterChain filterChain = (filterRequest, filterResponse) -> fail("Filter chain should not be invoked");
+		filter.doFilter(request, response, filterChain);
+
+		assertEquals("Invalid status", 304, response.getStatus());
+		assertEquals("Invalid ETag header", "W/\"v42\"", response.getHeader("ETag"));
+		assertEquals("Invalid content", 0, response.getContentAsByteArray().length);
+	}
+
+	@Test
+	public void filterVersionHead() throws Exception {
+		this.filter.setVersionResolver(request -> "v42");
+		final MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/hotels");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		FilterChain filterChain = (filterRequest, filterResponse) -> filterResponse.setContentLength(11);
+		filter.doFilter(request, response, filterChain);
+
+		assertEquals("Invalid status", 200, response.getStatus());
+		assertEquals("Invalid ETag header", "\"v42\"", response.getHeader("ETag"));
+	}
+
+	@Test
+	public void filterVersionNotAppliedToErrorOrTaggedResponse() throws Exception {
+		this.filter.setVersionResolver(request -> "v42");
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hotels");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		FilterChain filterChain = (filterRequest, filterResponse) -> {
+			((HttpServletResponse) filterResponse).setStatus(HttpServletResponse.SC_NOT_FOUND);
+			filterResponse.getWriter().write("Not Found");
+			filterResponse.flushBuffer();
+		};
+		filter.doFilter(request, response, filterChain);
+
+		assertEquals("Invalid status", 404, response.getStatus());
+		assertNull("Invalid ETag header", response.getHeader("ETag"));
+		assertEquals("Invalid content", "Not Found", response.getContentAsString());
+
+		request = new MockHttpServletRequest("GET", "/hotels");
+		response = new MockHttpServletResponse();
+		filterChain = (filterRequest, filterResponse) ->
+				((HttpServletResponse) filterResponse).setHeader("ETag", "\"other\"");
+		filter.doFilter(request, response, filterChain);
+
+		assertEquals("Invalid ETag header", "\"other\"", response.getHeader("ETag"));
+	}
+
+	@Test
+	public void filterVersionNotResolved() throws Exception {
+		this.filter.setVersionResolver(request -> null);
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hotels");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		final byte[] responseBody = "Hello World".getBytes("UTF-8");
+		FilterChain filterChain = (filterRequest, filterResponse) ->
+				FileCopyUtils.copy(responseBody, filterResponse.getOutputStream());
+		filter.doFilter(request, response, filterChain);
+
+		assertEquals("Invalid ETag header", "\"0b10a8db164e0754105b7a99be72e3fe5\"", response.getHeader("ETag"));
+		assertArrayEquals("Invalid content", responseBody, response.getContentAsByteArray());
+	}
+
+	@Test
+	public void filterVersionIgnoredForPost() throws Exception {
+		this.filter.setVersionResolver(request -> "v42");
+		final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/hotels");
+		request.addHeader("If-None-Match", "\"v42\"");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		FilterChain filterChain = (filterRequest, filterResponse) ->
+				((HttpServletResponse) filterResponse).setStatus(HttpServletResponse.SC_CREATED);
+		filter.doFilter(request, response, filterChain);
+
+		assertEquals("Invalid status", 201, response.getStatus());
+		assertNull("Invalid ETag header", response.getHeader("ETag"));
+	}
+
 }
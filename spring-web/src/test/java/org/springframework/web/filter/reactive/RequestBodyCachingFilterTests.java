@@ -0,0 +1,240 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter.reactive;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FormFieldPart;
+import org.springframework.http.codec.multipart.Part;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.test.MockServerHttpRequest;
+import org.springframework.mock.web.test.server.MockServerWebExchange;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RequestBodyCachingFilter}.
+ *
+ * @author agent (agent@local)
+ */
+public class RequestBodyCachingFilterTests {
+
+	@Rule
+	public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+
+	private final List<NettyDataBuffer> allocated = new ArrayList<>();
+
+	private final RequestBodyCachingFilter filter = new RequestBodyCachingFilter();
+
+	private final AtomicInteger blockingOperations = new AtomicInteger();
+
+
+	@Before
+	public void setUp() {
+		this.filter.setTempDirectory(this.tempFolder.getRoot().toPath());
+		this.filter.setBlockingOperationScheduler(Schedulers.fromExecutor(task -> {
+			this.blockingOperations.incrementAndGet();
+			task.run();
+		}));
+	}
+
+
+	@Test
+	public void cacheInMemory() {
+		List<String> bodies = new ArrayList<>();
+		this.filter.filter(exchange("foo", "bar", "baz"), exchange -> {
+			CachedBodyServerHttpRequest request = (CachedBodyServerHttpRequest) exchange.getRequest();
+			assertTrue(request.isCachedInMemory());
+			assertEquals(9, request.getCachedBodySize());
+			return bodyOf(request).doOnNext(bodies::add).then(bodyOf(request).doOnNext(bodies::add)).then();
+		}).block(Duration.ofSeconds(5));
+
+		assertEquals(2, bodies.size());
+		assertEquals("foobarbaz", bodies.get(0));
+		assertEquals("foobarbaz", bodies.get(1));
+		assertEquals(0, this.blockingOperations.get());
+		assertReleased();
+	}
+
+	@Test
+	public void spillToDisk() {
+		this.filter.setMaxInMemorySize(4);
+		List<String> bodies = new ArrayList<>();
+		this.filter.filter(exchange("foo", "bar", "baz"), exchange -> {
+			CachedBodyServerHttpRequest request = (CachedBodyServerHttpRequest) exchange.getRequest();
+			assertFalse(request.isCachedInMemory());
+			assertEquals(9, request.getCachedBodySize());
+			assertEquals(1, tempFiles().length);
+			return bodyOf(request).doOnNext(bodies::add).then(bodyOf(request).doOnNext(bodies::add)).then();
+		}).block(Duration.ofSeconds(5));
+
+		assertEquals(2, bodies.size());
+		assertEquals("foobarbaz", bodies.get(0));
+		assertEquals("foobarbaz", bodies.get(1));
+		assertEquals(0, tempFiles().length);
+		assertEquals("Open and delete should use the blocking scheduler", 2, this.blockingOperations.get());
+		assertReleased();
+	}
+
+	@Test
+	public void formData() {
+		List<MultiValueMap<String, String>> formData = new ArrayList<>();
+		ServerWebExchange exchange = exchange(MediaType.APPLICATION_FORM_URLENCODED, "foo=bar", "&baz=qux");
+		this.filter.filter(exchange, filtered -> filtered.getFormData().doOnNext(formData::add).then(
+				bodyOf(filtered.getRequest()).doOnNext(body -> assertEquals("foo=bar&baz=qux", body)).then()))
+				.block(Duration.ofSeconds(5));
+
+		assertEquals(1, formData.size());
+		assertEquals("bar", formData.get(0).getFirst("foo"));
+		assertEquals("qux", formData.get(0).getFirst("baz"));
+		assertReleased();
+	}
+
+	@Test
+	public void multipartData() {
+		this.filter.setMaxInMemorySize(4);
+		List<MultiValueMap<String, Part>> multipartData = new ArrayList<>();
+		MediaType contentType = MediaType.parseMediaType("multipart/form-data;boundary=boundary");
+		ServerWebExchange exchange = exchange(contentType,
+				"--boundary\r\nContent-Disposition: form-data; name=\"foo\"\r\n\r\nbar\r\n",
+				"--boundary\r\nContent-Disposition: form-data; name=\"baz\"\r\n\r\nqux\r\n--boundary--\r\n");
+		this.filter.filter(exchange, filtered -> filtered.getMultipartData().doOnNext(multipartData::add).then())
+				.block(Duration.ofSeconds(5));
+
+		assertEquals(1, multipartData.size());
+		assertEquals("bar", ((FormFieldPart) multipartData.get(0).getFirst("foo")).value());
+		assertEquals("qux", ((FormFieldPart) multipartData.get(0).getFirst("baz")).value());
+		assertEquals(0, tempFiles().length);
+		assertReleased();
+	}
+
+	@Test
+	public void emptyBody() {
+		ServerHttpRequest request = MockServerHttpRequest.get("/").build();
+
+		StepVerifier.create(this.filter.cacheBody(request).flatMap(RequestBodyCachingFilterTests::bodyOf))
+				.expectNext("")
+				.verifyComplete();
+	}
+
+	@Test
+	public void maxBodySizeExceeded() {
+		this.filter.setMaxInMemorySize(4);
+		this.filter.setMaxBodySize(5);
+
+		StepVerifier.create(this.filter.filter(exchange("foo", "bar", "baz"), exchange -> Mono.empty()))
+				.consumeErrorWith(ex -> {
+					assertTrue(ex instanceof ResponseStatusException);
+					assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ((ResponseStatusException) ex).getStatus());
+				})
+				.verify(Duration.ofSeconds(5));
+
+		assertEquals(0, tempFiles().length);
+		assertReleased();
+	}
+
+	@Test
+	public void cancelWhileReading() {
+		this.filter.setMaxInMemorySize(4);
+		UnicastProcessor<DataBuffer> body = UnicastProcessor.create();
+		ServerHttpRequest request = MockServerHttpRequest.post("/").body(body);
+
+		StepVerifier.create(this.filter.cacheBody(request))
+				.then(() -> body.onNext(buffer("foo")))
+				.then(() -> body.onNext(buffer("bar")))
+				.thenAwait(Duration.ofMillis(100))
+				.then(() -> assertEquals(1, tempFiles().length))
+				.thenCancel()
+				.verify(Duration.ofSeconds(5));
+
+		assertEquals(0, tempFiles().length);
+		assertReleased();
+	}
+
+
+	private ServerWebExchange exchange(String... chunks) {
+		Flux<DataBuffer> body = Flux.fromArray(chunks).map(this::buffer);
+		return MockServerWebExchange.from(MockServerHttpRequest.post("/").body(body));
+	}
+
+	private ServerWebExchange exchange(MediaType contentType, String... chunks) {
+		// The original body can be read only once, as with a server request
+		UnicastProcessor<DataBuffer> body = UnicastProcessor.create();
+		for (String chunk : chunks) {
+			body.onNext(buffer(chunk));
+		}
+		body.onComplete();
+		return MockServerWebExchange.from(MockServerHttpRequest.post("/").contentType(contentType).body(body));
+	}
+
+	private DataBuffer buffer(String value) {
+		NettyDataBuffer buffer = this.bufferFactory.wrap(Unpooled.copiedBuffer(value, StandardCharsets.UTF_8));
+		this.allocated.add(buffer);
+		return buffer;
+	}
+
+	private File[] tempFiles() {
+		File[] files = this.tempFolder.getRoot().listFiles();
+		assertNotNull(files);
+		return files;
+	}
+
+	private void assertReleased() {
+		for (NettyDataBuffer buffer : this.allocated) {
+			assertEquals(0, buffer.getNativeBuffer().refCnt());
+		}
+	}
+
+	private static Mono<String> bodyOf(ServerHttpRequest request) {
+		return DataBufferUtils.join(request.getBody())
+				.map(buffer -> {
+					String value = StandardCharsets.UTF_8.decode(buffer.asByteBuffer()).toString();
+					DataBufferUtils.release(buffer);
+					return value;
+				})
+				.defaultIfEmpty("");
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,14 +16,25 @@
 
 package org.springframework.web.server.adapter;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
 import org.junit.Test;
+import reactor.core.publisher.Mono;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerCodecConfigurer;
 import org.springframework.mock.http.server.reactive.test.MockServerHttpRequest;
 import org.springframework.mock.http.server.reactive.test.MockServerHttpResponse;
+import org.springframework.tests.Assume;
+import org.springframework.tests.TestGroup;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StopWatch;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.i18n.AcceptHeaderLocaleContextResolver;
+import org.springframework.web.server.i18n.LocaleContextResolver;
 import org.springframework.web.server.session.DefaultWebSessionManager;
+import org.springframework.web.server.session.WebSessionManager;
 
 import static org.junit.Assert.*;
 
@@ -35,6 +46,13 @@ import static org.junit.Assert.*;
  */
 public class DefaultServerWebExchangeTests {
 
+	private final WebSessionManager sessionManager = new DefaultWebSessionManager();
+
+	private final ServerCodecConfigurer codecConfigurer = ServerCodecConfigurer.create();
+
+	private final LocaleContextResolver localeContextResolver = new AcceptHeaderLocaleContextResolver();
+
+
 	@Test
 	public void transformUrlDefault() {
 		ServerWebExchange exchange = createExchange();
@@ -56,6 +74,74 @@ public class DefaultServerWebExchangeTests {
 		assertEquals("/foo;p=abc?q=123", exchange.transformUrl("/foo"));
 	}
 
+	@Test
+	public void formDataIsInitializedOnce() {
+		MockServerHttpRequest request = MockServerHttpRequest.post("http://example.com")
+				.contentType(MediaType.APPLICATION_FORM_URLENCODED)
+				.body("name=value");
+		ServerWebExchange exchange = createExchange(request);
+
+		Mono<MultiValueMap<String, String>> formData = exchange.getFormData();
+		assertSame(formData, exchange.getFormData());
+		assertEquals("value", formData.block().getFirst("name"));
+		assertSame(exchange.getSession(), exchange.getSession());
+		assertSame(exchange.getMultipartData(), exchange.getMultipartData());
+	}
+
+	@Test
+	public void pathIsParsedOnDemand() {
+		MockServerHttpRequest request = MockServerHttpRequest.get("http://example.com/app/foo?q=1")
+				.contextPath("/app").build();
+		ServerWebExchange exchange = createExchange(request);
+
+		assertEquals("/app", exchange.getRequest().getPath().contextPath().value());
+		assertEquals("/foo", exchange.getRequest().getPath().pathWithinApplication().value());
+		assertSame(exchange.getRequest().getPath(), exchange.getRequest().getPath());
+		assertTrue(exchange.getRequest().getCookies().isEmpty());
+	}
+
+	@Test
+	public void createExchangePerformance() {
+		Assume.group(TestGroup.PERFORMANCE);
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		boolean measureAllocation = (threadBean instanceof com.sun.management.ThreadMXBean);
+		MockServerHttpRequest request = MockServerHttpRequest.get("http://example.com/foo").build();
+		MockServerHttpResponse response = new MockServerHttpResponse();
+		int count = 100000;
+
+		for (int i = 0; i < count; i++) {
+			createAndUseExchange(request, response);
+		}
+
+		long allocatedBytes = getAllocatedBytes(threadBean, measureAllocation);
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+		for (int i = 0; i < count; i++) {
+			createAndUseExchange(request, response);
+		}
+		stopWatch.stop();
+		allocatedBytes = getAllocatedBytes(threadBean, measureAllocation) - allocatedBytes;
+
+		assertTrue("Creating exchanges took " + stopWatch.getTotalTimeMillis() + " ms",
+				stopWatch.getTotalTimeMillis() < 5000);
+		if (measureAllocation) {
+			long bytesPerExchange = allocatedBytes / count;
+			assertTrue("Allocated " + bytesPerExchange + " bytes per exchange", bytesPerExchange < 1024);
+		}
+	}
+
+
+	private void createAndUseExchange(MockServerHttpRequest request, MockServerHttpResponse response) {
+		ServerWebExchange exchange = new DefaultServerWebExchange(request, response,
+				this.sessionManager, this.codecConfigurer, this.localeContextResolver);
+		exchange.getAttributes().put("name", "value");
+		assertNotNull(exchange.getRequest().getHeaders());
+	}
+
+	private static long getAllocatedBytes(ThreadMXBean threadBean, boolean measureAllocation) {
+		return (measureAllocation ? ((com.sun.management.ThreadMXBean) threadBean)
+				.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0);
+	}
 
 	private DefaultServerWebExchange createExchange() {
 		MockServerHttpRequest request = MockServerHttpRequest.get("http://example.com").build();
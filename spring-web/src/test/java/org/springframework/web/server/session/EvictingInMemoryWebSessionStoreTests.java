@@ -0,0 +1,175 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.server.session;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.web.server.WebSession;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link EvictingInMemoryWebSessionStore}.
+ *
+ * @author agent (agent@local)
+ */
+public class EvictingInMemoryWebSessionStoreTests {
+
+	private final EvictingInMemoryWebSessionStore store = new EvictingInMemoryWebSessionStore();
+
+
+	@Test
+	public void startsSessionImplicitly() {
+		WebSession session = this.store.createWebSession().block();
+		assertNotNull(session);
+		session.getAttributes().put("foo", "bar");
+		assertTrue(session.isStarted());
+
+		session.save().block();
+		assertSame(session, this.store.retrieveSession(session.getId()).block());
+		assertEquals(1, this.store.getSessionCount());
+	}
+
+	@Test
+	public void retrieveExpiredSession() {
+		WebSession session = insertSession();
+		String id = session.getId();
+		assertSame(session, this.store.retrieveSession(id).block());
+
+		// Fast-forward 31 minutes
+		this.store.setClock(Clock.offset(this.store.getClock(), Duration.ofMinutes(31)));
+		assertNull(this.store.retrieveSession(id).block());
+		assertEquals(0, this.store.getSessionCount());
+		assertEquals(1, this.store.getExpiredSessionCount());
+	}
+
+	@Test
+	public void lastAccessTimeIsUpdatedOnRetrieve() {
+		WebSession session = insertSession();
+		Instant time1 = session.getLastAccessTime();
+
+		// Fast-forward a few seconds
+		this.store.setClock(Clock.offset(this.store.getClock(), Duration.ofSeconds(5)));
+
+		WebSession retrieved = this.store.retrieveSession(session.getId()).block();
+		assertSame(session, retrieved);
+		assertTrue(time1.isBefore(retrieved.getLastAccessTime()));
+	}
+
+	@Test
+	public void accessedSessionIsRescheduled() {
+		WebSession session = insertSession();
+		Clock start = this.store.getClock();
+
+		this.store.setClock(Clock.offset(start, Duration.ofMinutes(20)));
+		assertSame(session, this.store.retrieveSession(session.getId()).block());
+
+		this.store.setClock(Clock.offset(start, Duration.ofMinutes(40)));
+		assertEquals(1, this.store.getSessionCount());
+		assertSame(session, this.store.retrieveSession(session.getId()).block());
+
+		this.store.setClock(Clock.offset(start, Duration.ofMinutes(71)));
+		assertEquals(0, this.store.getSessionCount());
+	}
+
+	@Test
+	public void sessionInvalidatedBeforeSave() {
+		WebSession session1 = insertSession();
+		String id = session1.getId();
+
+		WebSession session2 = this.store.retrieveSession(id).block();
+		WebSession session3 = this.store.retrieveSession(id).block();
+		assertNotNull(session3);
+		session3.invalidate().block();
+
+		session2.save().block();
+		assertNull(this.store.retrieveSession(id).block());
+	}
+
+	@Test
+	public void incrementalExpiration() {
+		IntStream.range(0, 100).forEach(i -> insertSession());
+		assertEquals(100, this.store.getSessionCount());
+
+		// Force a new clock (31 min later), don't use setter which would clean expired sessions
+		DirectFieldAccessor accessor = new DirectFieldAccessor(this.store);
+		accessor.setPropertyValue("clock", Clock.offset(this.store.getClock(), Duration.ofMinutes(31)));
+		assertEquals(100, this.store.getSessionCount());
+
+		// Create 1 more which processes the elapsed ticks
+		insertSession();
+		assertEquals(1, this.store.getSessionCount());
+		assertEquals(100, this.store.getExpiredSessionCount());
+	}
+
+	@Test
+	public void evictLeastRecentlyUsedWhenMaxSessionsReached() {
+		this.store.setMaxSessions(2);
+		Clock start = this.store.getClock();
+		WebSession session1 = insertSession();
+		this.store.setClock(Clock.offset(start, Duration.ofSeconds(10)));
+		WebSession session2 = insertSession();
+		this.store.setClock(Clock.offset(start, Duration.ofSeconds(20)));
+		this.store.retrieveSession(session1.getId()).block();
+
+		this.store.setClock(Clock.offset(start, Duration.ofSeconds(30)));
+		WebSession session3 = insertSession();
+
+		assertEquals(2, this.store.getSessionCount());
+		assertEquals(1, this.store.getEvictedSessionCount());
+		assertNotNull(this.store.retrieveSession(session1.getId()).block());
+		assertNull(this.store.retrieveSession(session2.getId()).block());
+		assertNotNull(this.store.retrieveSession(session3.getId()).block());
+	}
+
+	@Test
+	public void manySessions() {
+		this.store.setMaxSessions(1000);
+		IntStream.range(0, 5000).forEach(i -> insertSession());
+
+		assertEquals(1000, this.store.getSessionCount());
+		assertEquals(4000, this.store.getEvictedSessionCount());
+	}
+
+	@Test
+	public void sessionWithoutExpiration() {
+		WebSession session = this.store.createWebSession().block();
+		assertNotNull(session);
+		session.setMaxIdleTime(Duration.ofSeconds(-1));
+		session.start();
+		session.save().block();
+
+		this.store.setClock(Clock.offset(this.store.getClock(), Duration.ofDays(1)));
+		assertSame(session, this.store.retrieveSession(session.getId()).block());
+	}
+
+
+	private WebSession insertSession() {
+		WebSession session = this.store.createWebSession().block();
+		assertNotNull(session);
+		session.start();
+		session.save().block();
+		return session;
+	}
+
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.MonoSink;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.cache.CachedResponse;
+import org.springframework.http.client.cache.HttpCache;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.function.BodyExtractors;
+
+/**
+ * {@link ExchangeFilterFunction} that serves responses from an
+ * {@link HttpCache}, and stores cacheable responses in it.
+ *
+ * <p>Stale responses are revalidated with a conditional request, and updated
+ * on "304 Not Modified". Responses that may be used while they are revalidated
+ * ("stale-while-revalidate") are returned right away, and revalidated in the
+ * background. Concurrent identical {@code GET} requests that miss the cache
+ * are coalesced into a single exchange, the result of which is shared.
+ *
+ * <p>The bodies of cacheable responses are buffered before the response is
+ * returned, so that they can be replayed from the cache. Reading stops once
+ * a body exceeds the {@link HttpCache#setMaxEntrySize max entry size}, in
+ * which case the response is passed through without being cached.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @see org.springframework.http.client.cache.CachingClientHttpRequestInterceptor
+ */
+public class CachingExchangeFilterFunction implements ExchangeFilterFunction {
+
+	private static final Log logger = LogFactory.getLog(CachingExchangeFilterFunction.class);
+
+	private static final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+
+	private final HttpCache cache;
+
+	private final Map<String, MonoProcessor<CachedResponse>> inFlightExchanges = new ConcurrentHashMap<>();
+
+	private final ExchangeStrategies strategies;
+
+
+	/**
+	 * Create a new instance with a default {@link HttpCache}.
+	 */
+	public CachingExchangeFilterFunction() {
+		this(new HttpCache());
+	}
+
+	/**
+	 * Create a new instance with the given cache.
+	 * @param cache the cache to use
+	 */
+	public CachingExchangeFilterFunction(HttpCache cache) {
+		this(cache, ExchangeStrategies.withDefaults());
+	}
+
+	/**
+	 * Create a new instance with the given cache and strategies.
+	 * @param cache the cache to use
+	 * @param strategies the strategies for reading responses served from the
+	 * cache, which should be those of the {@code WebClient} using the filter
+	 */
+	public CachingExchangeFilterFunction(HttpCache cache, ExchangeStrategies strategies) {
+		Assert.notNull(cache, "HttpCache must not be null");
+		Assert.notNull(strategies, "ExchangeStrategies must not be null");
+		this.cache = cache;
+		this.strategies = strategies;
+	}
+
+
+	/**
+	 * Return the cache used by this filter.
+	 */
+	public HttpCache getCache() {
+		return this.cache;
+	}
+
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		HttpMethod method = request.method();
+		if (!this.cache.isCacheableRequest(method, request.headers())) {
+			return next.exchange(request).doOnNext(response -> this.cache.invalidate(method, request.url(),
+					response.rawStatusCode(), response.headers().asHttpHeaders()));
+		}
+		return Mono.defer(() -> {
+			CachedResponse cached = this.cache.lookup(request.url(), request.headers());
+			if (cached != null) {
+				HttpCache.Freshness freshness = this.cache.getFreshness(cached, request.headers());
+				if (freshness == HttpCache.Freshness.FRESH) {
+					return Mono.just(createResponse(cached, this.strategies));
+				}
+				if (freshness == HttpCache.Freshness.STALE_WHILE_REVALIDATE) {
+					revalidateInBackground(request, next, cached);
+					return Mono.just(createResponse(cached, this.strategies));
+				}
+			}
+			if (this.cache.isOnlyIfCached(request.headers())) {
+				return Mono.just(ClientResponse.create(HttpStatus.GATEWAY_TIMEOUT, this.strategies).build());
+			}
+			String key = getKey(request);
+			MonoProcessor<CachedResponse> processor = MonoProcessor.create();
+			MonoProcessor<CachedResponse> existing = this.inFlightExchanges.putIfAbsent(key, processor);
+			if (existing != null) {
+				return existing.map(response -> createResponse(response, this.strategies))
+						.switchIfEmpty(Mono.defer(() -> exchange(request, next, cached, null)));
+			}
+			return exchange(request, next, cached, processor)
+					.doFinally(signalType -> complete(key, processor));
+		});
+	}
+
+	private void revalidateInBackground(ClientRequest request, ExchangeFunction next, CachedResponse cached) {
+		String key = getKey(request);
+		MonoProcessor<CachedResponse> processor = MonoProcessor.create();
+		if (this.inFlightExchanges.putIfAbsent(key, processor) != null) {
+			return;
+		}
+		exchange(request, next, cached, processor)
+				.flatMap(response -> response.bodyToMono(Void.class))
+				.doFinally(signalType -> complete(key, processor))
+				.subscribe(null, ex -> {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Failed to revalidate cached response for " + request.url(), ex);
+					}
+				});
+	}
+
+	private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next,
+			@Nullable CachedResponse cached, @Nullable MonoProcessor<CachedResponse> processor) {
+
+		ClientRequest requestToUse = (cached != null ? ClientRequest.from(request)
+				.headers(headers -> this.cache.addConditionalHeaders(cached, headers))
+				.build() : request);
+		long requestTime = this.cache.currentTimeMillis();
+		return next.exchange(requestToUse).flatMap(response -> {
+			int statusCode = response.rawStatusCode();
+			HttpHeaders responseHeaders = response.headers().asHttpHeaders();
+			if (cached != null && statusCode == HttpStatus.NOT_MODIFIED.value()) {
+				return response.bodyToMono(Void.class)
+						.then(Mono.fromSupplier(() -> this.cache.update(
+								request.url(), request.headers(), cached, responseHeaders, requestTime)))
+						.map(updated -> publish(updated, processor, response.strategies()));
+			}
+			if (HttpStatus.resolve(statusCode) == null || !this.cache.isBufferable(responseHeaders) ||
+					!this.cache.isStorable(request.headers(), statusCode, responseHeaders)) {
+				return Mono.just(response);
+			}
+			return readBody(response.body(BodyExtractors.toDataBuffers()), this.cache.getMaxEntrySize())
+					.map(body -> {
+						if (body.content == null) {
+							return ClientResponse.from(response).body(body.passThrough).build();
+						}
+						return publish(this.cache.store(request.url(), request.headers(),
+								statusCode, responseHeaders, body.content, requestTime), processor, response.strategies());
+					});
+		});
+	}
+
+	/**
+	 * Read the given body up to the given size. If the body turns out to be
+	 * larger, e.g. since its content length was not known, stop reading and
+	 * return a body for passing the response through instead, which replays
+	 * the buffers read so far followed by the rest of the body.
+	 */
+	private static Mono<ResponseBody> readBody(Flux<DataBuffer> body, int maxSize) {
+		return Mono.create(sink -> {
+			BodyReader reader = new BodyReader(maxSize, sink);
+			sink.onCancel(reader::abort);
+			body.subscribe(reader);
+		});
+	}
+
+	private ClientResponse publish(CachedResponse cached, @Nullable MonoProcessor<CachedResponse> processor,
+			ExchangeStrategies strategies) {
+
+		if (processor != null) {
+			processor.onNext(cached);
+		}
+		return createResponse(cached, strategies);
+	}
+
+	private void complete(String key, MonoProcessor<CachedResponse> processor) {
+		this.inFlightExchanges.remove(key, processor);
+		if (!processor.isTerminated()) {
+			processor.onComplete();
+		}
+	}
+
+	private ClientResponse createResponse(CachedResponse cached, ExchangeStrategies strategies) {
+		HttpHeaders headers = this.cache.getResponseHeaders(cached);
+		byte[] body = cached.getBody();
+		return ClientResponse.create(HttpStatus.valueOf(cached.getStatusCode()), strategies)
+				.headers(httpHeaders -> httpHeaders.putAll(headers))
+				.body(Flux.defer(() -> body.length > 0 ?
+						Flux.<DataBuffer>just(bufferFactory.wrap(body)) : Flux.empty()))
+				.build();
+	}
+
+	private static String getKey(ClientRequest request) {
+		return request.url() + " " + request.headers();
+	}
+
+
+	/**
+	 * The content of a response body read in full, or a body to pass through.
+	 */
+	private static final class ResponseBody {
+
+		@Nullable
+		final byte[] content;
+
+		final Flux<DataBuffer> passThrough;
+
+		ResponseBody(@Nullable byte[] content, Flux<DataBuffer> passThrough) {
+			this.content = content;
+			this.passThrough = passThrough;
+		}
+	}
+
+
+	/**
+	 * Reads one buffer at a time until the body is complete, or exceeds the
+	 * maximum size, after which further buffers are requested on demand of
+	 * the pass-through body.
+	 */
+	private static final class BodyReader extends BaseSubscriber<DataBuffer> {
+
+		private final int maxSize;
+
+		private final MonoSink<ResponseBody> sink;
+
+		private final List<DataBuffer> buffers = new ArrayList<>();
+
+		private int size;
+
+		private boolean exceeded;
+
+		@Nullable
+		private volatile FluxSink<DataBuffer> remainder;
+
+		private volatile boolean done;
+
+		@Nullable
+		private volatile Throwable error;
+
+		BodyReader(int maxSize, MonoSink<ResponseBody> sink) {
+			this.maxSize = maxSize;
+			this.sink = sink;
+		}
+
+		@Override
+		protected void hookOnSubscribe(Subscription subscription) {
+			subscription.request(1);
+		}
+
+		@Override
+		protected void hookOnNext(DataBuffer buffer) {
+			if (this.exceeded) {
+				FluxSink<DataBuffer> remainder = this.remainder;
+				if (remainder != null && !remainder.isCancelled()) {
+					remainder.next(buffer);
+				}
+				else {
+					DataBufferUtils.release(buffer);
+				}
+				return;
+			}
+			List<DataBuffer> read;
+			synchronized (this.buffers) {
+				if (isDisposed()) {
+					DataBufferUtils.release(buffer);
+					return;
+				}
+				this.buffers.add(buffer);
+				this.size += buffer.readableByteCount();
+				if (this.size <= this.maxSize) {
+					read = null;
+				}
+				else {
+					read = new ArrayList<>(this.buffers);
+					this.buffers.clear();
+				}
+			}
+			if (read == null) {
+				request(1);
+				return;
+			}
+			this.exceeded = true;
+			Flux<DataBuffer> rest = Flux.create(remainder -> {
+				this.remainder = remainder;
+				remainder.onRequest(this::request);
+				remainder.onCancel(this::cancel);
+				if (this.done) {
+					Throwable ex = this.error;
+					if (ex != null) {
+						remainder.error(ex);
+					}
+					else {
+						remainder.complete();
+					}
+				}
+			});
+			this.sink.success(new ResponseBody(null, Flux.fromIterable(read).concatWith(rest)));
+		}
+
+		@Override
+		protected void hookOnComplete() {
+			if (this.exceeded) {
+				this.done = true;
+				FluxSink<DataBuffer> remainder = this.remainder;
+				if (remainder != null) {
+					remainder.complete();
+				}
+				return;
+			}
+			byte[] content;
+			synchronized (this.buffers) {
+				content = new byte[this.size];
+				int offset = 0;
+				for (DataBuffer buffer : this.buffers) {
+					int length = buffer.readableByteCount();
+					buffer.read(content, offset, length);
+					offset += length;
+					DataBufferUtils.release(buffer);
+				}
+				this.buffers.clear();
+			}
+			this.sink.success(new ResponseBody(content, Flux.empty()));
+		}
+
+		@Override
+		protected void hookOnError(Throwable ex) {
+			if (this.exceeded) {
+				this.error = ex;
+				this.done = true;
+				FluxSink<DataBuffer> remainder = this.remainder;
+				if (remainder != null) {
+					remainder.error(ex);
+				}
+				return;
+			}
+			releaseBuffers();
+			this.sink.error(ex);
+		}
+
+		void abort() {
+			cancel();
+			releaseBuffers();
+		}
+
+		private void releaseBuffers() {
+			synchronized (this.buffers) {
+				this.buffers.forEach(DataBufferUtils::release);
+				this.buffers.clear();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+/**
+ * Exception published by a {@link ConcurrencyLimitingExchangeFilterFunction}
+ * for a request that was rejected without being sent, because the concurrency
+ * limit for its host was reached and no more requests could be queued.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class ConcurrencyLimitExceededException extends WebClientException {
+
+	private static final long serialVersionUID = -1466513934578424311L;
+
+	private final int limit;
+
+
+	/**
+	 * Create a new instance of {@code ConcurrencyLimitExceededException}.
+	 * @param host the host the request was for
+	 * @param limit the concurrency limit at the time of rejection
+	 */
+	public ConcurrencyLimitExceededException(String host, int limit) {
+		super("Concurrency limit of " + limit + " requests to " + host + " exceeded");
+		this.limit = limit;
+	}
+
+
+	/**
+	 * Return the concurrency limit at the time of rejection.
+	 */
+	public int getLimit() {
+		return this.limit;
+	}
+
+}
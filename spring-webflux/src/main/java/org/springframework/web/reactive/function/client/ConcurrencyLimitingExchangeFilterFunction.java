@@ -0,0 +1,321 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ExchangeFilterFunction} that limits the number of concurrent exchanges
+ * per host, adapting the limit to the round-trip times observed for the host.
+ *
+ * <p>The limit is adjusted after every exchange, in the style of TCP Vegas:
+ * the number of requests queued at the server is estimated from the ratio of
+ * the minimum round-trip time to the current one. The limit is increased by
+ * one while that estimate is low, and decreased by one when it is high. On an
+ * error, or a "503 Service Unavailable" or "429 Too Many Requests" response,
+ * the limit is decreased multiplicatively instead, as with AIMD.
+ *
+ * <p>Requests in excess of the limit are queued until an exchange completes,
+ * and rejected with a {@link ConcurrencyLimitExceededException} once the queue
+ * is full. An exchange counts against the limit until its response status and
+ * headers are received, so the limit applies to the latency of the server
+ * rather than to the time it takes to consume response bodies.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class ConcurrencyLimitingExchangeFilterFunction implements ExchangeFilterFunction {
+
+	/** Below this estimate of queued requests, the limit is increased. */
+	private static final int ALPHA = 3;
+
+	/** Above this estimate of queued requests, the limit is decreased. */
+	private static final int BETA = 6;
+
+	private static final double BACKOFF_RATIO = 0.9;
+
+	/** Number of samples after which the minimum round-trip time is measured anew. */
+	private static final int PROBE_INTERVAL = 1000;
+
+
+	private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+	private int initialLimit = 20;
+
+	private int maxLimit = 200;
+
+	private int maxQueueSize = 100;
+
+
+	/**
+	 * Set the concurrency limit to start with for a host.
+	 * <p>By default this is set to 20.
+	 */
+	public void setInitialLimit(int initialLimit) {
+		Assert.isTrue(initialLimit > 0, "Initial limit must be greater than 0");
+		this.initialLimit = initialLimit;
+	}
+
+	/**
+	 * Set the upper bound for the concurrency limit of a host.
+	 * <p>By default this is set to 200.
+	 */
+	public void setMaxLimit(int maxLimit) {
+		Assert.isTrue(maxLimit > 0, "Max limit must be greater than 0");
+		this.maxLimit = maxLimit;
+	}
+
+	/**
+	 * Set the maximum number of requests per host to queue when the limit is
+	 * reached, before rejecting further requests. Set this to 0 in order to
+	 * reject requests immediately.
+	 * <p>By default this is set to 100.
+	 */
+	public void setMaxQueueSize(int maxQueueSize) {
+		Assert.isTrue(maxQueueSize >= 0, "Max queue size must not be negative");
+		this.maxQueueSize = maxQueueSize;
+	}
+
+	/**
+	 * Return the current concurrency limit for the host of the given URI.
+	 */
+	public int getLimit(URI uri) {
+		Limiter limiter = this.limiters.get(getHost(uri));
+		return (limiter != null ? limiter.getLimit() : Math.min(this.initialLimit, this.maxLimit));
+	}
+
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		Limiter limiter = this.limiters.computeIfAbsent(getHost(request.url()), Limiter::new);
+		Mono<ClientResponse> exchange = Mono.defer(() -> next.exchange(request));
+		return Mono.create(sink -> limiter.submit(new LimitedExchange(sink, exchange, limiter)));
+	}
+
+	private static String getHost(URI uri) {
+		return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+	}
+
+
+	/**
+	 * Concurrency limit, exchanges in progress, and queued exchanges for a host.
+	 */
+	private class Limiter {
+
+		private final String host;
+
+		private final Deque<LimitedExchange> queue = new ArrayDeque<>();
+
+		private double limit;
+
+		private int inProgress;
+
+		private long minRtt = Long.MAX_VALUE;
+
+		private int samples;
+
+		Limiter(String host) {
+			this.host = host;
+			this.limit = Math.min(ConcurrencyLimitingExchangeFilterFunction.this.initialLimit, ConcurrencyLimitingExchangeFilterFunction.this.maxLimit);
+		}
+
+		synchronized int getLimit() {
+			return (int) this.limit;
+		}
+
+		void submit(LimitedExchange exchange) {
+			int rejectedLimit = -1;
+			synchronized (this) {
+				if (this.inProgress < (int) this.limit) {
+					this.inProgress++;
+				}
+				else if (this.queue.size() < ConcurrencyLimitingExchangeFilterFunction.this.maxQueueSize) {
+					this.queue.add(exchange);
+					return;
+				}
+				else {
+					rejectedLimit = (int) this.limit;
+				}
+			}
+			if (rejectedLimit != -1) {
+				exchange.reject(new ConcurrencyLimitExceededException(this.host, rejectedLimit));
+			}
+			else {
+				exchange.start();
+			}
+		}
+
+		synchronized boolean remove(LimitedExchange exchange) {
+			return this.queue.remove(exchange);
+		}
+
+		/**
+		 * Release the slot of an exchange, adjusting the limit, and start
+		 * queued exchanges for which there is room now.
+		 * @param rtt the round-trip time in nanoseconds, or -1 if unknown
+		 * @param dropped whether the exchange failed or was refused by the server
+		 */
+		void release(long rtt, boolean dropped) {
+			List<LimitedExchange> exchanges = null;
+			synchronized (this) {
+				if (dropped) {
+					this.limit = Math.max(1, this.limit * BACKOFF_RATIO);
+				}
+				else if (rtt > 0) {
+					update(rtt);
+				}
+				this.inProgress--;
+				while (this.inProgress < (int) this.limit && !this.queue.isEmpty()) {
+					this.inProgress++;
+					if (exchanges == null) {
+						exchanges = new ArrayList<>(1);
+					}
+					exchanges.add(this.queue.poll());
+				}
+			}
+			if (exchanges != null) {
+				exchanges.forEach(LimitedExchange::start);
+			}
+		}
+
+		private void update(long rtt) {
+			if (++this.samples % PROBE_INTERVAL == 0) {
+				this.minRtt = rtt;
+			}
+			else {
+				this.minRtt = Math.min(this.minRtt, rtt);
+			}
+			double queued = this.limit * (1 - (double) this.minRtt / rtt);
+			if (queued < ALPHA) {
+				// Only increase a limit that is actually being used
+				if (this.inProgress * 2 >= this.limit) {
+					this.limit = Math.min(ConcurrencyLimitingExchangeFilterFunction.this.maxLimit, this.limit + 1);
+				}
+			}
+			else if (queued > BETA) {
+				this.limit = Math.max(1, this.limit - 1);
+			}
+		}
+	}
+
+
+	/**
+	 * An exchange that is queued, or in progress.
+	 */
+	private static class LimitedExchange {
+
+		private final MonoSink<ClientResponse> sink;
+
+		private final Mono<ClientResponse> exchange;
+
+		private final Limiter limiter;
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private volatile boolean cancelled;
+
+		@Nullable
+		private volatile Disposable subscription;
+
+		private long startTime;
+
+		private boolean received;
+
+		LimitedExchange(MonoSink<ClientResponse> sink, Mono<ClientResponse> exchange, Limiter limiter) {
+			this.sink = sink;
+			this.exchange = exchange;
+			this.limiter = limiter;
+			sink.onCancel(this::cancel);
+		}
+
+		void start() {
+			if (this.cancelled) {
+				release(-1, false);
+				return;
+			}
+			this.startTime = System.nanoTime();
+			Disposable subscription = this.exchange.subscribe(this::onResponse, this::onError, this::onComplete);
+			this.subscription = subscription;
+			if (this.cancelled) {
+				subscription.dispose();
+				release(-1, false);
+			}
+		}
+
+		void reject(Throwable ex) {
+			this.released.set(true);
+			this.sink.error(ex);
+		}
+
+		private void onResponse(ClientResponse response) {
+			this.received = true;
+			int status = response.rawStatusCode();
+			boolean dropped = (status == HttpStatus.SERVICE_UNAVAILABLE.value() ||
+					status == HttpStatus.TOO_MANY_REQUESTS.value());
+			release(System.nanoTime() - this.startTime, dropped);
+			this.sink.success(response);
+		}
+
+		private void onError(Throwable ex) {
+			release(-1, true);
+			this.sink.error(ex);
+		}
+
+		private void onComplete() {
+			if (!this.received) {
+				release(-1, false);
+				this.sink.success();
+			}
+		}
+
+		private void cancel() {
+			this.cancelled = true;
+			if (this.limiter.remove(this)) {
+				// Still queued: no slot to release
+				this.released.set(true);
+				return;
+			}
+			Disposable subscription = this.subscription;
+			if (subscription != null) {
+				subscription.dispose();
+				release(-1, false);
+			}
+		}
+
+		private void release(long rtt, boolean dropped) {
+			if (this.released.compareAndSet(false, true)) {
+				this.limiter.release(rtt, dropped);
+			}
+		}
+	}
+
+}
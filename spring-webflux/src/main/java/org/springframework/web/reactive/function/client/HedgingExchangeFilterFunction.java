@@ -0,0 +1,294 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ExchangeFilterFunction} that sends a duplicate, "hedged" request when
+ * no response has been received within a given percentile of the latencies
+ * observed for the same host, and uses whichever response arrives first.
+ *
+ * <p>The other exchange is then cancelled. A response that arrives anyway, in
+ * a race with the first one, is released without reading its body. If either
+ * exchange fails while the other one is still in progress, the error is
+ * ignored in favor of the other exchange.
+ *
+ * <p>Latencies are measured until the response status and headers are
+ * received, in a sliding window of recent exchanges per host. Hedging starts
+ * once enough exchanges have been observed for a host. With the default 95th
+ * percentile, roughly one in twenty requests is sent twice.
+ *
+ * <p>Only requests with an idempotent method without body, by default
+ * {@code GET}, {@code HEAD} and {@code OPTIONS}, are hedged.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class HedgingExchangeFilterFunction implements ExchangeFilterFunction {
+
+	private static final int WINDOW_SIZE = 256;
+
+	private static final int UPDATE_INTERVAL = 32;
+
+
+	private final double percentile;
+
+	private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+	private Duration minDelay = Duration.ofMillis(10);
+
+	private Set<HttpMethod> hedgedMethods = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+
+	private Scheduler scheduler = Schedulers.parallel();
+
+
+	/**
+	 * Create a new instance that hedges requests after the 95th percentile
+	 * of observed latencies.
+	 */
+	public HedgingExchangeFilterFunction() {
+		this(0.95);
+	}
+
+	/**
+	 * Create a new instance that hedges requests after the given percentile
+	 * of observed latencies.
+	 * @param percentile the percentile, between 0 and 1 (exclusive)
+	 */
+	public HedgingExchangeFilterFunction(double percentile) {
+		Assert.isTrue(percentile > 0 && percentile < 1, "Percentile must be between 0 and 1");
+		this.percentile = percentile;
+	}
+
+
+	/**
+	 * Set the minimum time to wait before sending a hedged request, which
+	 * avoids doubling the load on hosts with latencies close to zero.
+	 * <p>By default this is set to 10 milliseconds.
+	 */
+	public void setMinDelay(Duration minDelay) {
+		Assert.notNull(minDelay, "Duration must not be null");
+		this.minDelay = minDelay;
+	}
+
+	/**
+	 * Set the HTTP methods of requests that may be hedged. These must be
+	 * idempotent, since a request may be received twice by the server.
+	 * <p>By default this is set to {@code GET}, {@code HEAD} and {@code OPTIONS}.
+	 */
+	public void setHedgedMethods(Set<HttpMethod> hedgedMethods) {
+		Assert.notNull(hedgedMethods, "HTTP methods must not be null");
+		this.hedgedMethods = (hedgedMethods.isEmpty() ?
+				EnumSet.noneOf(HttpMethod.class) : EnumSet.copyOf(hedgedMethods));
+	}
+
+	/**
+	 * Set the scheduler to delay hedged requests on.
+	 * <p>By default this is set to {@link Schedulers#parallel()}.
+	 */
+	public void setScheduler(Scheduler scheduler) {
+		Assert.notNull(scheduler, "Scheduler must not be null");
+		this.scheduler = scheduler;
+	}
+
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		if (!this.hedgedMethods.contains(request.method())) {
+			return next.exchange(request);
+		}
+		LatencyWindow window = this.windows.computeIfAbsent(getHost(request.url()), host -> new LatencyWindow());
+		Mono<ClientResponse> exchange = Mono.defer(() -> {
+			long startTime = System.nanoTime();
+			return next.exchange(request).doOnNext(response -> window.record(System.nanoTime() - startTime));
+		});
+		long threshold = window.getThreshold();
+		if (threshold == -1) {
+			return exchange;
+		}
+		long delay = Math.max(threshold, this.minDelay.toNanos());
+		return Mono.create(sink -> new HedgedExchange(sink, exchange).start(delay, this.scheduler));
+	}
+
+	private static String getHost(URI uri) {
+		return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+	}
+
+	private static void release(ClientResponse response) {
+		response.bodyToMono(Void.class).subscribe();
+	}
+
+
+	/**
+	 * Sliding window of recent latencies of a host, from which the threshold
+	 * is recomputed periodically rather than for every request.
+	 */
+	private class LatencyWindow {
+
+		private final long[] samples = new long[WINDOW_SIZE];
+
+		private int count;
+
+		private volatile long threshold = -1;
+
+		void record(long latency) {
+			long[] sorted = null;
+			synchronized (this.samples) {
+				this.samples[this.count % WINDOW_SIZE] = latency;
+				this.count++;
+				if (this.count % UPDATE_INTERVAL == 0) {
+					sorted = Arrays.copyOf(this.samples, Math.min(this.count, WINDOW_SIZE));
+				}
+			}
+			if (sorted != null) {
+				Arrays.sort(sorted);
+				this.threshold = sorted[(int) (HedgingExchangeFilterFunction.this.percentile * (sorted.length - 1))];
+			}
+		}
+
+		/**
+		 * Return the latency threshold in nanoseconds, or -1 if not enough
+		 * latencies have been recorded yet.
+		 */
+		long getThreshold() {
+			return this.threshold;
+		}
+	}
+
+
+	/**
+	 * A primary exchange, and the hedged exchange started after a delay.
+	 */
+	private static class HedgedExchange {
+
+		private final MonoSink<ClientResponse> sink;
+
+		private final Mono<ClientResponse> exchange;
+
+		private final Disposable.Composite disposables = Disposables.composite();
+
+		private int inProgress;
+
+		private boolean done;
+
+		HedgedExchange(MonoSink<ClientResponse> sink, Mono<ClientResponse> exchange) {
+			this.sink = sink;
+			this.exchange = exchange;
+		}
+
+		void start(long delay, Scheduler scheduler) {
+			// Cancels the other exchange on completion, or both on cancellation
+			this.sink.onDispose(this.disposables);
+			subscribe();
+			this.disposables.add(scheduler.schedule(this::subscribe, delay, TimeUnit.NANOSECONDS));
+		}
+
+		private void subscribe() {
+			synchronized (this) {
+				if (this.done) {
+					return;
+				}
+				this.inProgress++;
+			}
+			Attempt attempt = new Attempt();
+			this.disposables.add(attempt);
+			this.exchange.subscribe(attempt);
+		}
+
+		void handleResponse(Attempt attempt, ClientResponse response) {
+			synchronized (this) {
+				if (this.done) {
+					release(response);
+					return;
+				}
+				this.done = true;
+			}
+			this.disposables.remove(attempt);
+			this.sink.success(response);
+		}
+
+		void handleError(Throwable ex) {
+			synchronized (this) {
+				if (this.done || --this.inProgress > 0) {
+					return;
+				}
+				this.done = true;
+			}
+			this.sink.error(ex);
+		}
+
+		void handleEmpty() {
+			synchronized (this) {
+				if (this.done || --this.inProgress > 0) {
+					return;
+				}
+				this.done = true;
+			}
+			this.sink.success();
+		}
+
+
+		private class Attempt extends BaseSubscriber<ClientResponse> {
+
+			private boolean received;
+
+			@Override
+			protected void hookOnSubscribe(Subscription subscription) {
+				subscription.request(1);
+			}
+
+			@Override
+			protected void hookOnNext(ClientResponse response) {
+				this.received = true;
+				handleResponse(this, response);
+			}
+
+			@Override
+			protected void hookOnError(Throwable ex) {
+				handleError(ex);
+			}
+
+			@Override
+			protected void hookOnComplete() {
+				if (!this.received) {
+					handleEmpty();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link RouterFunction} that routes to a list of router functions in order,
+ * like a chain of {@link RouterFunction#and(RouterFunction) composed} functions,
+ * but only invokes those that can possibly match the request.
+ *
+ * <p>For that purpose, the router functions are indexed by the HTTP methods
+ * and the literal path prefix that their request predicates require, as far
+ * as those can be determined through the {@link RequestPredicates.Visitor}.
+ * Router functions for which no such requirement can be determined are always
+ * invoked. As a result, a request is matched against the full predicates of
+ * the narrowed down candidates only, in their original order.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @param <T> the type of response returned by the handler functions
+ * @see RouterFunctions#optimize(RouterFunction)
+ */
+final class IndexedRouterFunction<T extends ServerResponse> implements RouterFunction<T> {
+
+	private static final int[] NO_ROUTES = new int[0];
+
+
+	private final List<RouterFunction<?>> routerFunctions;
+
+	private final Map<HttpMethod, Node> methodRoots = new EnumMap<>(HttpMethod.class);
+
+	private final Node otherMethodRoot = new Node();
+
+
+	IndexedRouterFunction(List<RouterFunction<?>> routerFunctions) {
+		this.routerFunctions = new ArrayList<>(routerFunctions);
+		for (HttpMethod method : HttpMethod.values()) {
+			this.methodRoots.put(method, new Node());
+		}
+		for (int i = 0; i < this.routerFunctions.size(); i++) {
+			RouteConstraintVisitor visitor = new RouteConstraintVisitor();
+			this.routerFunctions.get(i).accept(visitor);
+			Constraint constraint = visitor.getConstraint();
+			List<String> prefix = (constraint.pathPrefix != null ? constraint.pathPrefix : Collections.emptyList());
+			if (constraint.methods == null) {
+				this.otherMethodRoot.add(prefix, i);
+			}
+			for (HttpMethod method : HttpMethod.values()) {
+				if (constraint.methods == null || constraint.methods.contains(method)) {
+					this.methodRoots.get(method).add(prefix, i);
+				}
+			}
+		}
+	}
+
+
+	@Override
+	public Mono<HandlerFunction<T>> route(ServerRequest request) {
+		HttpMethod method = request.method();
+		Node root = (method != null ? this.methodRoots.get(method) : this.otherMethodRoot);
+		return route(request, root.getCandidates(request.pathContainer()), 0);
+	}
+
+	private Mono<HandlerFunction<T>> route(ServerRequest request, int[] candidates, int index) {
+		if (index == candidates.length) {
+			return Mono.empty();
+		}
+		return this.routerFunctions.get(candidates[index]).route(request)
+				.map(RouterFunctions::<T>cast)
+				.switchIfEmpty(Mono.defer(() -> route(request, candidates, index + 1)));
+	}
+
+	@Override
+	public void accept(RouterFunctions.Visitor visitor) {
+		this.routerFunctions.forEach(routerFunction -> routerFunction.accept(visitor));
+	}
+
+	@Override
+	public String toString() {
+		ToStringVisitor visitor = new ToStringVisitor();
+		accept(visitor);
+		return visitor.toString();
+	}
+
+
+	/**
+	 * Node in a tree of literal path segments, holding the indexes of the
+	 * router functions whose literal path prefix ends at this node.
+	 */
+	private static class Node {
+
+		private final Map<String, Node> children = new HashMap<>();
+
+		private int[] routes = NO_ROUTES;
+
+		void add(List<String> prefix, int route) {
+			Node node = this;
+			for (String segment : prefix) {
+				node = node.children.computeIfAbsent(segment.toLowerCase(Locale.ROOT), key -> new Node());
+			}
+			node.routes = Arrays.copyOf(node.routes, node.routes.length + 1);
+			node.routes[node.routes.length - 1] = route;
+		}
+
+		int[] getCandidates(PathContainer path) {
+			int[] result = this.routes;
+			boolean copied = false;
+			Node node = this;
+			for (PathContainer.Element element : path.elements()) {
+				if (!(element instanceof PathContainer.PathSegment)) {
+					continue;
+				}
+				String segment = ((PathContainer.PathSegment) element).valueToMatch();
+				node = node.children.get(segment.toLowerCase(Locale.ROOT));
+				if (node == null) {
+					break;
+				}
+				if (node.routes.length > 0) {
+					int length = result.length;
+					result = Arrays.copyOf(result, length + node.routes.length);
+					System.arraycopy(node.routes, 0, result, length, node.routes.length);
+					copied = true;
+				}
+			}
+			if (copied) {
+				Arrays.sort(result);
+			}
+			return result;
+		}
+	}
+
+
+	/**
+	 * Requirements that a request must meet to possibly match a route.
+	 */
+	private static class Constraint {
+
+		static final Constraint ANY = new Constraint(null, null);
+
+		private static final String NON_LITERAL_CHARS = "{}*?%;\\";
+
+		/** Required methods, or {@code null} if any method. */
+		@Nullable
+		final Set<HttpMethod> methods;
+
+		/** Required literal path segments, or {@code null} if no path predicate. */
+		@Nullable
+		final List<String> pathPrefix;
+
+		Constraint(@Nullable Set<HttpMethod> methods, @Nullable List<String> pathPrefix) {
+			this.methods = methods;
+			this.pathPrefix = pathPrefix;
+		}
+
+		Constraint and(Constraint other) {
+			Set<HttpMethod> methods = this.methods;
+			if (methods == null) {
+				methods = other.methods;
+			}
+			else if (other.methods != null) {
+				methods = EnumSet.noneOf(HttpMethod.class);
+				methods.addAll(this.methods);
+				methods.retainAll(other.methods);
+			}
+			// A nested AND predicate matches the right-hand path after the left-hand one,
+			// so only the first path prefix is known to apply to the full path
+			List<String> pathPrefix = (this.pathPrefix != null ? this.pathPrefix : other.pathPrefix);
+			return new Constraint(methods, pathPrefix);
+		}
+
+		Constraint or(Constraint other) {
+			Set<HttpMethod> methods = null;
+			if (this.methods != null && other.methods != null) {
+				methods = EnumSet.noneOf(HttpMethod.class);
+				methods.addAll(this.methods);
+				methods.addAll(other.methods);
+			}
+			List<String> pathPrefix = null;
+			if (this.pathPrefix != null && other.pathPrefix != null) {
+				int length = 0;
+				while (length < this.pathPrefix.size() && length < other.pathPrefix.size() &&
+						this.pathPrefix.get(length).equalsIgnoreCase(other.pathPrefix.get(length))) {
+					length++;
+				}
+				pathPrefix = this.pathPrefix.subList(0, length);
+			}
+			return new Constraint(methods, pathPrefix);
+		}
+
+		static Constraint forPattern(String pattern) {
+			List<String> prefix = new ArrayList<>();
+			for (String segment : StringUtils.delimitedListToStringArray(pattern, "/")) {
+				if (prefix.isEmpty() && segment.isEmpty()) {
+					continue;
+				}
+				if (!isLiteral(segment)) {
+					break;
+				}
+				prefix.add(segment);
+			}
+			return new Constraint(null, prefix);
+		}
+
+		private static boolean isLiteral(String segment) {
+			if (segment.isEmpty()) {
+				return false;
+			}
+			for (int i = 0; i < segment.length(); i++) {
+				if (NON_LITERAL_CHARS.indexOf(segment.charAt(i)) != -1) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+
+	/**
+	 * Visitor that determines the {@link Constraint} of a single router function.
+	 */
+	private static class RouteConstraintVisitor implements RouterFunctions.Visitor, RequestPredicates.Visitor {
+
+		private static final Constraint NEGATE_MARKER = new Constraint(null, null);
+
+		private final Deque<Constraint> stack = new ArrayDeque<>();
+
+		private boolean invalid;
+
+		@Nullable
+		private Constraint constraint;
+
+		private int nestingDepth;
+
+		Constraint getConstraint() {
+			return (this.constraint != null ? this.constraint : Constraint.ANY);
+		}
+
+		private void addRoute(@Nullable RequestPredicate predicate) {
+			if (this.nestingDepth > 0) {
+				return;
+			}
+			Constraint route = Constraint.ANY;
+			if (predicate != null) {
+				this.stack.clear();
+				this.invalid = false;
+				predicate.accept(this);
+				if (!this.invalid && this.stack.size() == 1) {
+					route = this.stack.pop();
+				}
+			}
+			this.constraint = (this.constraint != null ? this.constraint.or(route) : route);
+		}
+
+		private void combine(boolean and) {
+			if (this.stack.size() < 2) {
+				this.invalid = true;
+				return;
+			}
+			Constraint right = this.stack.pop();
+			Constraint left = this.stack.pop();
+			this.stack.push(and ? left.and(right) : left.or(right));
+		}
+
+		// RouterFunctions.Visitor
+
+		@Override
+		public void startNested(RequestPredicate predicate) {
+			addRoute(predicate);
+			this.nestingDepth++;
+		}
+
+		@Override
+		public void endNested(RequestPredicate predicate) {
+			this.nestingDepth--;
+		}
+
+		@Override
+		public void route(RequestPredicate predicate, HandlerFunction<?> handlerFunction) {
+			addRoute(predicate);
+		}
+
+		@Override
+		public void resources(Function<ServerRequest, Mono<Resource>> lookupFunction) {
+			addRoute(null);
+		}
+
+		@Override
+		public void unknown(RouterFunction<?> routerFunction) {
+			addRoute(null);
+		}
+
+		// RequestPredicates.Visitor
+
+		@Override
+		public void method(Set<HttpMethod> methods) {
+			this.stack.push(new Constraint(methods, null));
+		}
+
+		@Override
+		public void path(String pattern) {
+			this.stack.push(Constraint.forPattern(pattern));
+		}
+
+		@Override
+		public void pathExtension(String extension) {
+			this.stack.push(Constraint.ANY);
+		}
+
+		@Override
+		public void header(String name, String value) {
+			this.stack.push(Constraint.ANY);
+		}
+
+		@Override
+		public void queryParam(String name, String value) {
+			this.stack.push(Constraint.ANY);
+		}
+
+		@Override
+		public void startAnd() {
+		}
+
+		@Override
+		public void and() {
+		}
+
+		@Override
+		public void endAnd() {
+			combine(true);
+		}
+
+		@Override
+		public void startOr() {
+		}
+
+		@Override
+		public void or() {
+		}
+
+		@Override
+		public void endOr() {
+			combine(false);
+		}
+
+		@Override
+		public void startNegate() {
+			this.stack.push(NEGATE_MARKER);
+		}
+
+		@Override
+		public void endNegate() {
+			// Discard whatever the negated predicate requires
+			while (!this.stack.isEmpty() && this.stack.peek() != NEGATE_MARKER) {
+				this.stack.pop();
+			}
+			if (this.stack.isEmpty()) {
+				this.invalid = true;
+				return;
+			}
+			this.stack.pop();
+			this.stack.push(Constraint.ANY);
+		}
+
+		@Override
+		public void unknown(RequestPredicate predicate) {
+			this.stack.push(Constraint.ANY);
+		}
+	}
+
+}
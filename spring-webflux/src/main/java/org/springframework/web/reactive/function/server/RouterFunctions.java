@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.springframework.web.reactive.function.server;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
@@ -139,6 +140,69 @@ public abstract class RouterFunctions {
 		return new DefaultNestedRouterFunction<>(predicate, routerFunction);
 	}
 
+	/**
+	 * Return a router function that routes requests like the given one, but
+	 * that is optimized for router functions composed of many routes.
+	 * <p>Routes composed via {@link RouterFunction#and(RouterFunction)} and
+	 * similar methods are normally tried one after the other. The returned
+	 * router function instead indexes them by the HTTP methods and the literal
+	 * path prefix that their predicates require, and only tests the remaining
+	 * candidates, in their original order. Nested and filtered router functions
+	 * are optimized in the same way.
+	 * <p>Note that predicates are then no longer evaluated for routes that
+	 * cannot match, which is only noticeable for predicates with side effects.
+	 * @param routerFunction the router function to optimize
+	 * @param <T> the type of response returned by the handler functions
+	 * @return the optimized router function
+	 * @since 5.2
+	 */
+	public static <T extends ServerResponse> RouterFunction<T> optimize(RouterFunction<T> routerFunction) {
+		Assert.notNull(routerFunction, "RouterFunction must not be null");
+		if (routerFunction instanceof IndexedRouterFunction) {
+			return routerFunction;
+		}
+		List<RouterFunction<?>> routerFunctions = new ArrayList<>();
+		flatten(routerFunction, routerFunctions);
+		if (routerFunctions.size() == 1) {
+			return cast(routerFunctions.get(0));
+		}
+		return new IndexedRouterFunction<>(routerFunctions);
+	}
+
+	private static void flatten(RouterFunction<?> routerFunction, List<RouterFunction<?>> result) {
+		if (routerFunction instanceof SameComposedRouterFunction) {
+			SameComposedRouterFunction<?> composed = (SameComposedRouterFunction<?>) routerFunction;
+			flatten(composed.first, result);
+			flatten(composed.second, result);
+		}
+		else if (routerFunction instanceof DifferentComposedRouterFunction) {
+			DifferentComposedRouterFunction composed = (DifferentComposedRouterFunction) routerFunction;
+			flatten(composed.first, result);
+			flatten(composed.second, result);
+		}
+		else if (routerFunction instanceof DefaultNestedRouterFunction) {
+			DefaultNestedRouterFunction<?> nested = (DefaultNestedRouterFunction<?>) routerFunction;
+			result.add(new DefaultNestedRouterFunction<>(nested.predicate, optimize(nested.routerFunction)));
+		}
+		else if (routerFunction instanceof FilteredRouterFunction) {
+			result.add(optimizeFiltered((FilteredRouterFunction<?, ?>) routerFunction));
+		}
+		else {
+			result.add(routerFunction);
+		}
+	}
+
+	private static <T extends ServerResponse, S extends ServerResponse> RouterFunction<S> optimizeFiltered(
+			FilteredRouterFunction<T, S> filtered) {
+
+		return new FilteredRouterFunction<>(optimize(filtered.routerFunction), filtered.filterFunction);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends ServerResponse> RouterFunction<T> cast(RouterFunction<?> routerFunction) {
+		return (RouterFunction<T>) routerFunction;
+	}
+
 	/**
 	 * Route requests that match the given pattern to resources relative to the given root location.
 	 * For instance
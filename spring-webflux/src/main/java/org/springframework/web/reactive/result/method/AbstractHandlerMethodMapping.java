@@ -41,6 +41,7 @@ import org.springframework.http.server.RequestPath;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
+import org.springframework.web.cors.CompiledCorsConfiguration;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsUtils;
 import org.springframework.web.method.HandlerMethod;
@@ -485,7 +486,7 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 
 				CorsConfiguration corsConfig = initCorsConfiguration(handler, method, mapping);
 				if (corsConfig != null) {
-					this.corsLookup.put(handlerMethod, corsConfig);
+					this.corsLookup.put(handlerMethod, CompiledCorsConfiguration.compile(corsConfig));
 				}
 
 				this.registry.put(mapping, new MappingRegistration<>(mapping, handlerMethod));
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.result.method;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Executes handler methods that perform blocking I/O, such as JDBC calls,
+ * on a dedicated, bounded pool of threads, so that they do not block the
+ * threads of the server's event loop.
+ *
+ * <p>By default, the pool has 10 threads per CPU core and a queue of up to
+ * 100,000 waiting invocations. Threads are daemon threads, created on
+ * demand, and released after a minute of inactivity. Alternatively, any
+ * {@link Executor} can be used, e.g. a Spring {@code ThreadPoolTaskExecutor}.
+ * Invocations rejected by the executor, e.g. because its queue is full,
+ * fail with a 503 (service unavailable) status.
+ *
+ * <p>Counts of active, queued, completed, and rejected invocations are
+ * exposed for monitoring.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @see InvocableHandlerMethod#setBlockingExecutor
+ */
+public class BlockingHandlerMethodExecutor {
+
+	/**
+	 * Default number of threads: 10 per CPU core.
+	 */
+	public static final int DEFAULT_POOL_SIZE = 10 * Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Default maximum number of queued invocations: 100,000.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 100000;
+
+
+	private final Executor executor;
+
+	private final boolean shutdownExecutor;
+
+	private final AtomicInteger queuedCount = new AtomicInteger();
+
+	private final AtomicInteger activeCount = new AtomicInteger();
+
+	private final AtomicLong completedCount = new AtomicLong();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+
+	/**
+	 * Create an instance with the default pool size and queue capacity.
+	 */
+	public BlockingHandlerMethodExecutor() {
+		this(DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Create an instance with the given pool size and queue capacity.
+	 * @param poolSize the maximum number of threads
+	 * @param queueCapacity the maximum number of invocations waiting for a thread
+	 */
+	public BlockingHandlerMethodExecutor(int poolSize, int queueCapacity) {
+		this(createThreadPool(poolSize, queueCapacity), true);
+	}
+
+	/**
+	 * Create an instance that delegates to the given executor.
+	 * @param executor the executor to invoke blocking handler methods with
+	 */
+	public BlockingHandlerMethodExecutor(Executor executor) {
+		this(executor, false);
+	}
+
+	private BlockingHandlerMethodExecutor(Executor executor, boolean shutdownExecutor) {
+		Assert.notNull(executor, "Executor must not be null");
+		this.executor = executor;
+		this.shutdownExecutor = shutdownExecutor;
+	}
+
+	private static ThreadPoolExecutor createThreadPool(int poolSize, int queueCapacity) {
+		Assert.isTrue(poolSize > 0, "'poolSize' must be > 0");
+		Assert.isTrue(queueCapacity >= 0, "'queueCapacity' must be >= 0");
+		AtomicInteger threadCount = new AtomicInteger();
+		BlockingQueue<Runnable> queue = (queueCapacity > 0 ?
+				new LinkedBlockingQueue<>(queueCapacity) : new SynchronousQueue<>());
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, queue,
+				runnable -> {
+					Thread thread = new Thread(runnable, "blocking-handler-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+
+	/**
+	 * Return the underlying executor.
+	 */
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * Return the number of invocations waiting for a thread.
+	 */
+	public int getQueuedCount() {
+		return this.queuedCount.get();
+	}
+
+	/**
+	 * Return the number of invocations in progress.
+	 */
+	public int getActiveCount() {
+		return this.activeCount.get();
+	}
+
+	/**
+	 * Return the number of invocations completed so far.
+	 */
+	public long getCompletedCount() {
+		return this.completedCount.get();
+	}
+
+	/**
+	 * Return the number of invocations rejected by the executor so far.
+	 */
+	public long getRejectedCount() {
+		return this.rejectedCount.get();
+	}
+
+
+	/**
+	 * Shut down the thread pool created by this instance, letting invocations
+	 * in progress and queued invocations complete. Further invocations fail
+	 * with a 503 status. An executor passed in to the constructor is not shut
+	 * down, since its lifecycle is managed elsewhere.
+	 */
+	public void shutdown() {
+		if (this.shutdownExecutor) {
+			((ExecutorService) this.executor).shutdown();
+		}
+	}
+
+
+	/**
+	 * Invoke the given supplier on a thread of the executor, and subscribe
+	 * to the {@code Mono} it returns on that thread as well.
+	 * @param supplier the supplier for the {@code Mono}, e.g. invoking a
+	 * blocking handler method
+	 * @return the result, which fails with a 503 status if the executor
+	 * rejects the invocation
+	 */
+	public <T> Mono<T> execute(Supplier<? extends Mono<? extends T>> supplier) {
+		return Mono.create(sink -> {
+			Disposable.Swap subscription = Disposables.swap();
+			sink.onDispose(subscription);
+			try {
+				executeTask(() -> {
+					if (!subscription.isDisposed()) {
+						subscription.update(Mono.<T>defer(supplier)
+								.subscriberContext(sink.currentContext())
+								.subscribe(sink::success, sink::error, sink::success));
+					}
+				});
+			}
+			catch (RejectedExecutionException ex) {
+				sink.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+						"Too many concurrent blocking handler method invocations", ex));
+			}
+		});
+	}
+
+	private void executeTask(Runnable task) {
+		this.queuedCount.incrementAndGet();
+		try {
+			this.executor.execute(() -> {
+				this.queuedCount.decrementAndGet();
+				this.activeCount.incrementAndGet();
+				try {
+					task.run();
+				}
+				finally {
+					this.activeCount.decrementAndGet();
+					this.completedCount.incrementAndGet();
+				}
+			});
+		}
+		catch (RejectedExecutionException ex) {
+			this.queuedCount.decrementAndGet();
+			this.rejectedCount.incrementAndGet();
+			throw ex;
+		}
+	}
+
+}
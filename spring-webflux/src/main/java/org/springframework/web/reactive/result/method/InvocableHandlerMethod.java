@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -31,6 +31,7 @@ import org.springframework.core.MethodParameter;
 import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.core.ReactiveAdapter;
 import org.springframework.core.ReactiveAdapterRegistry;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.lang.Nullable;
@@ -63,6 +64,12 @@ public class InvocableHandlerMethod extends HandlerMethod {
 
 	private ReactiveAdapterRegistry reactiveAdapterRegistry = ReactiveAdapterRegistry.getSharedInstance();
 
+	@Nullable
+	private SingleFlightGroup singleFlightGroup;
+
+	@Nullable
+	private BlockingHandlerMethodExecutor blockingExecutor;
+
 	/**
 	 * Create an instance from a {@code HandlerMethod}.
 	 */
@@ -121,6 +128,33 @@ public class InvocableHandlerMethod extends HandlerMethod {
 		this.reactiveAdapterRegistry = registry;
 	}
 
+	/**
+	 * Configure a group to coalesce concurrent invocations through, if the
+	 * method has a single-value async return type such as {@code Mono}.
+	 * Invocations for GET and HEAD requests with the same
+	 * {@link SingleFlightGroup#getKey key} then share the result of a single
+	 * invocation of the method. Other requests are never coalesced, since
+	 * their body is not part of the key.
+	 * <p>By default this is not set.
+	 * @param singleFlightGroup the group to use
+	 * @since 5.2
+	 */
+	public void setSingleFlightGroup(@Nullable SingleFlightGroup singleFlightGroup) {
+		this.singleFlightGroup = singleFlightGroup;
+	}
+
+	/**
+	 * Configure an executor to invoke the method with, if it performs
+	 * blocking I/O and must not be invoked on the thread that resolved its
+	 * arguments, which is usually a thread of the server's event loop.
+	 * <p>By default this is not set.
+	 * @param blockingExecutor the executor to use
+	 * @since 5.2
+	 */
+	public void setBlockingExecutor(@Nullable BlockingHandlerMethodExecutor blockingExecutor) {
+		this.blockingExecutor = blockingExecutor;
+	}
+
 
 	/**
 	 * Invoke the method for the given exchange.
@@ -133,39 +167,78 @@ public class InvocableHandlerMethod extends HandlerMethod {
 			ServerWebExchange exchange, BindingContext bindingContext, Object... providedArgs) {
 
 		return getMethodArgumentValues(exchange, bindingContext, providedArgs).flatMap(args -> {
-			Object value;
+			BlockingHandlerMethodExecutor executor = this.blockingExecutor;
+			return (executor != null ?
+					executor.execute(() -> invokeForResult(exchange, bindingContext, args)) :
+					invokeForResult(exchange, bindingContext, args));
+		});
+	}
+
+	private Mono<HandlerResult> invokeForResult(
+			ServerWebExchange exchange, BindingContext bindingContext, Object[] args) {
+
+		MethodParameter returnType = getReturnType();
+		ReactiveAdapter adapter = this.reactiveAdapterRegistry.getAdapter(returnType.getParameterType());
+		boolean asyncVoid = isAsyncVoidReturnType(returnType, adapter);
+
+		Object value;
+		SingleFlightGroup group = this.singleFlightGroup;
+		if (group != null && adapter != null && !adapter.isMultiValue() && !asyncVoid &&
+				isSafeMethod(exchange.getRequest().getMethod())) {
+			value = adapter.fromPublisher(group.execute(group.getKey(exchange), () -> {
+				try {
+					Object result = doInvoke(args);
+					return (result != null ? Mono.from(adapter.toPublisher(result)) : Mono.empty());
+				}
+				catch (Throwable ex) {
+					return Mono.error(ex);
+				}
+			}));
+		}
+		else {
 			try {
-				ReflectionUtils.makeAccessible(getBridgedMethod());
-				value = getBridgedMethod().invoke(getBean(), args);
-			}
-			catch (IllegalArgumentException ex) {
-				assertTargetBean(getBridgedMethod(), getBean(), args);
-				String text = (ex.getMessage() != null ? ex.getMessage() : "Illegal argument");
-				return Mono.error(new IllegalStateException(formatInvokeError(text, args), ex));
-			}
-			catch (InvocationTargetException ex) {
-				return Mono.error(ex.getTargetException());
+				value = doInvoke(args);
 			}
 			catch (Throwable ex) {
-				// Unlikely to ever get here, but it must be handled...
-				return Mono.error(new IllegalStateException(formatInvokeError("Invocation failure", args), ex));
+				return Mono.error(ex);
 			}
+		}
 
-			HttpStatus status = getResponseStatus();
-			if (status != null) {
-				exchange.getResponse().setStatusCode(status);
-			}
+		HttpStatus status = getResponseStatus();
+		if (status != null) {
+			exchange.getResponse().setStatusCode(status);
+		}
 
-			MethodParameter returnType = getReturnType();
-			ReactiveAdapter adapter = this.reactiveAdapterRegistry.getAdapter(returnType.getParameterType());
-			boolean asyncVoid = isAsyncVoidReturnType(returnType, adapter);
-			if ((value == null || asyncVoid) && isResponseHandled(args, exchange)) {
-				return (asyncVoid ? Mono.from(adapter.toPublisher(value)) : Mono.empty());
-			}
+		if ((value == null || asyncVoid) && isResponseHandled(args, exchange)) {
+			return (asyncVoid ? Mono.from(adapter.toPublisher(value)) : Mono.empty());
+		}
 
-			HandlerResult result = new HandlerResult(this, value, returnType, bindingContext);
-			return Mono.just(result);
-		});
+		HandlerResult result = new HandlerResult(this, value, returnType, bindingContext);
+		return Mono.just(result);
+	}
+
+	private static boolean isSafeMethod(@Nullable HttpMethod method) {
+		return (HttpMethod.GET == method || HttpMethod.HEAD == method);
+	}
+
+	@Nullable
+	private Object doInvoke(Object[] args) throws Throwable {
+		try {
+			ReflectionUtils.makeAccessible(getBridgedMethod());
+			return getBridgedMethod().invoke(getBean(), args);
+		}
+		catch (IllegalArgumentException ex) {
+			assertTargetBean(getBridgedMethod(), getBean(), args);
+			String text = (ex.getMessage() != null ? ex.getMessage() : "Illegal argument");
+			throw new IllegalStateException(formatInvokeError(text, args), ex);
+		}
+		catch (InvocationTargetException ex) {
+			throw ex.getTargetException();
+		}
+		catch (Throwable ex) {
+			// Unlikely to ever get here, but it must be handled...
+			throw new IllegalStateException(formatInvokeError("Invocation failure", args), ex);
+		}
 	}
 
 	private Mono<Object[]> getMethodArgumentValues(
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.result.method;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Coalesces concurrent executions of the same operation into a single
+ * in-flight execution, the result of which is shared with all callers
+ * ("single flight").
+ *
+ * <p>Executions are identified by a key. While an execution for a key is in
+ * progress, further executions for the same key subscribe to its result
+ * instead of starting a new one. Once it completes, the key is released, and
+ * the next execution starts afresh. The shared execution is cancelled only
+ * when all callers have cancelled.
+ *
+ * <p>This is used by {@link InvocableHandlerMethod} for handler methods
+ * annotated with
+ * {@link org.springframework.web.reactive.result.method.annotation.SingleFlight @SingleFlight},
+ * with a key {@link #getKey derived from the request}. It can also be used
+ * directly, e.g. from a {@code HandlerFunction}, to coalesce calls to an
+ * expensive backend:
+ * <pre class="code">
+ * group.execute(group.getKey(request.exchange()), () -&gt; repository.findReport(id))
+ * </pre>
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class SingleFlightGroup {
+
+	private final Map<Object, Mono<?>> inFlight = new ConcurrentHashMap<>();
+
+	private List<String> keyHeaders = Collections.emptyList();
+
+	@Nullable
+	private Duration timeout;
+
+
+	/**
+	 * Configure the names of request headers to include in the
+	 * {@link #getKey key} of a request, in addition to its method and URI.
+	 * <p>By default no headers are included.
+	 */
+	public void setKeyHeaders(String... headerNames) {
+		Assert.notNull(headerNames, "Header names must not be null");
+		this.keyHeaders = Arrays.asList(headerNames);
+	}
+
+	/**
+	 * Return the configured key headers.
+	 */
+	public List<String> getKeyHeaders() {
+		return this.keyHeaders;
+	}
+
+	/**
+	 * Configure the maximum time that a shared execution may take, after
+	 * which all callers waiting for it receive a
+	 * {@link java.util.concurrent.TimeoutException TimeoutException}.
+	 * <p>By default this is not set.
+	 */
+	public void setTimeout(@Nullable Duration timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Return the configured timeout, if any.
+	 */
+	@Nullable
+	public Duration getTimeout() {
+		return this.timeout;
+	}
+
+
+	/**
+	 * Return a key that identifies requests for the same resource, based on
+	 * the HTTP method, the URI, and the configured {@link #setKeyHeaders
+	 * key headers} of the request.
+	 * <p>Note that a request key does not include the request body, and is
+	 * therefore suitable only for GET and HEAD requests. Nor does it include
+	 * the principal. Requests should be coalesced only for resources that are
+	 * the same for all users, or else the authorization header should be
+	 * added to the key headers.
+	 * @param exchange the current exchange
+	 */
+	public Object getKey(ServerWebExchange exchange) {
+		ServerHttpRequest request = exchange.getRequest();
+		List<Object> key = new ArrayList<>(this.keyHeaders.size() + 2);
+		key.add(request.getMethodValue());
+		key.add(request.getURI());
+		for (String headerName : this.keyHeaders) {
+			key.add(request.getHeaders().get(headerName));
+		}
+		return key;
+	}
+
+	/**
+	 * Execute the given operation, or join the execution for the same key
+	 * that is already in progress.
+	 * @param key the key that identifies the operation
+	 * @param operation the operation, which is invoked on subscription if
+	 * no execution for the key is in progress
+	 * @return the shared result
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Mono<T> execute(Object key, Supplier<? extends Mono<? extends T>> operation) {
+		Assert.notNull(key, "Key must not be null");
+		Assert.notNull(operation, "Operation must not be null");
+		return Mono.defer(() -> {
+			Mono<?> existing = this.inFlight.get(key);
+			if (existing != null) {
+				return (Mono<T>) existing;
+			}
+			Mono<T> source = Mono.defer(operation);
+			if (this.timeout != null) {
+				source = source.timeout(this.timeout);
+			}
+			Mono<?>[] shared = new Mono<?>[1];
+			shared[0] = source.doFinally(signalType -> this.inFlight.remove(key, shared[0]))
+					.flux()
+					.replay(1)
+					.refCount()
+					.singleOrEmpty();
+			existing = this.inFlight.putIfAbsent(key, shared[0]);
+			return (Mono<T>) (existing != null ? existing : shared[0]);
+		});
+	}
+
+	/**
+	 * Return the number of executions currently in progress.
+	 */
+	public int getInFlightCount() {
+		return this.inFlight.size();
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.result.method.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for {@code @RequestMapping} methods that perform blocking I/O,
+ * such as JDBC calls, and must therefore not be invoked on a thread of the
+ * server's event loop. Annotated methods are invoked through the
+ * {@link RequestMappingHandlerAdapter#setBlockingExecutor blocking executor}
+ * of the {@link RequestMappingHandlerAdapter} instead.
+ *
+ * <p>May also be declared at the type level, in which case it applies to
+ * all {@code @RequestMapping} methods of the controller.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @see RequestMappingHandlerAdapter#setBlockingMethodPredicate
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Blocking {
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.web.reactive.result.method.annotation;
 
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -24,6 +25,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
@@ -46,8 +49,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.method.ControllerAdviceBean;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.method.annotation.ExceptionHandlerMethodResolver;
+import org.springframework.web.reactive.result.method.BlockingHandlerMethodExecutor;
 import org.springframework.web.reactive.result.method.HandlerMethodArgumentResolver;
 import org.springframework.web.reactive.result.method.InvocableHandlerMethod;
+import org.springframework.web.reactive.result.method.SingleFlightGroup;
 import org.springframework.web.reactive.result.method.SyncHandlerMethodArgumentResolver;
 import org.springframework.web.reactive.result.method.SyncInvocableHandlerMethod;
 
@@ -61,6 +66,8 @@ import org.springframework.web.reactive.result.method.SyncInvocableHandlerMethod
  * <li>{@code @ModelAttribute}
  * <li>{@code @RequestMapping}
  * <li>{@code @ExceptionHandler}
+ * <li>{@code @SingleFlight}
+ * <li>{@code @Blocking}
  * </ul>
  *
  * @author Rossen Stoyanchev
@@ -82,6 +89,11 @@ class ControllerMethodResolver {
 					AnnotatedElementUtils.hasAnnotation(method, ModelAttribute.class));
 
 
+	/**
+	 * Marker for {@code @RequestMapping} methods without {@code @SingleFlight}.
+	 */
+	private static final SingleFlightGroup NO_SINGLE_FLIGHT = new SingleFlightGroup();
+
 	private static Log logger = LogFactory.getLog(ControllerMethodResolver.class);
 
 	private final List<SyncHandlerMethodArgumentResolver> initBinderResolvers;
@@ -111,6 +123,16 @@ class ControllerMethodResolver {
 
 	private final Map<Class<?>, SessionAttributesHandler> sessionAttributesHandlerCache = new ConcurrentHashMap<>(64);
 
+	private final Map<Method, SingleFlightGroup> singleFlightGroupCache = new ConcurrentHashMap<>(64);
+
+	private final Map<HandlerMethod, Boolean> blockingMethodCache = new ConcurrentHashMap<>(64);
+
+	@Nullable
+	private Supplier<BlockingHandlerMethodExecutor> blockingExecutorSupplier;
+
+	@Nullable
+	private Predicate<HandlerMethod> blockingMethodPredicate;
+
 
 	ControllerMethodResolver(ArgumentResolverConfigurer customResolvers, ReactiveAdapterRegistry reactiveRegistry,
 			ConfigurableApplicationContext context, List<HttpMessageReader<?>> readers) {
@@ -261,9 +283,50 @@ class ControllerMethodResolver {
 		InvocableHandlerMethod invocable = new InvocableHandlerMethod(handlerMethod);
 		invocable.setArgumentResolvers(this.requestMappingResolvers);
 		invocable.setReactiveAdapterRegistry(this.reactiveAdapterRegistry);
+		SingleFlightGroup singleFlightGroup = this.singleFlightGroupCache.computeIfAbsent(
+				handlerMethod.getMethod(), this::createSingleFlightGroup);
+		if (singleFlightGroup != NO_SINGLE_FLIGHT) {
+			invocable.setSingleFlightGroup(singleFlightGroup);
+		}
+		if (this.blockingExecutorSupplier != null &&
+				this.blockingMethodCache.computeIfAbsent(handlerMethod, this::isBlockingMethod)) {
+			invocable.setBlockingExecutor(this.blockingExecutorSupplier.get());
+		}
 		return invocable;
 	}
 
+	/**
+	 * Configure the executor for {@code @RequestMapping} methods that are
+	 * annotated with {@code @Blocking} or match the given predicate. The
+	 * supplier is called only once such a method is found, so that the
+	 * executor can be created on demand.
+	 */
+	void setBlockingExecution(@Nullable Supplier<BlockingHandlerMethodExecutor> executorSupplier,
+			@Nullable Predicate<HandlerMethod> predicate) {
+
+		this.blockingExecutorSupplier = executorSupplier;
+		this.blockingMethodPredicate = predicate;
+	}
+
+	private SingleFlightGroup createSingleFlightGroup(Method method) {
+		SingleFlight ann = AnnotatedElementUtils.findMergedAnnotation(method, SingleFlight.class);
+		if (ann == null) {
+			return NO_SINGLE_FLIGHT;
+		}
+		SingleFlightGroup group = new SingleFlightGroup();
+		group.setKeyHeaders(ann.headers());
+		if (ann.timeout() > 0) {
+			group.setTimeout(Duration.ofMillis(ann.timeout()));
+		}
+		return group;
+	}
+
+	private boolean isBlockingMethod(HandlerMethod handlerMethod) {
+		return (handlerMethod.hasMethodAnnotation(Blocking.class) ||
+				AnnotatedElementUtils.hasAnnotation(handlerMethod.getBeanType(), Blocking.class) ||
+				(this.blockingMethodPredicate != null && this.blockingMethodPredicate.test(handlerMethod)));
+	}
+
 	/**
 	 * Find {@code @InitBinder} methods in {@code @ControllerAdvice} components
 	 * or in the controller of the given {@code @RequestMapping} method.
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,11 +19,13 @@ package org.springframework.web.reactive.result.method.annotation;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Mono;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
@@ -40,6 +42,7 @@ import org.springframework.web.reactive.BindingContext;
 import org.springframework.web.reactive.HandlerAdapter;
 import org.springframework.web.reactive.HandlerMapping;
 import org.springframework.web.reactive.HandlerResult;
+import org.springframework.web.reactive.result.method.BlockingHandlerMethodExecutor;
 import org.springframework.web.reactive.result.method.InvocableHandlerMethod;
 import org.springframework.web.server.ServerWebExchange;
 
@@ -51,7 +54,8 @@ import org.springframework.web.server.ServerWebExchange;
  * @author Rossen Stoyanchev
  * @since 5.0
  */
-public class RequestMappingHandlerAdapter implements HandlerAdapter, ApplicationContextAware, InitializingBean {
+public class RequestMappingHandlerAdapter
+		implements HandlerAdapter, ApplicationContextAware, InitializingBean, DisposableBean {
 
 	private static final Log logger = LogFactory.getLog(RequestMappingHandlerAdapter.class);
 
@@ -67,6 +71,15 @@ public class RequestMappingHandlerAdapter implements HandlerAdapter, Application
 	@Nullable
 	private ReactiveAdapterRegistry reactiveAdapterRegistry;
 
+	@Nullable
+	private BlockingHandlerMethodExecutor blockingExecutor;
+
+	@Nullable
+	private volatile BlockingHandlerMethodExecutor defaultBlockingExecutor;
+
+	@Nullable
+	private Predicate<HandlerMethod> blockingMethodPredicate;
+
 	@Nullable
 	private ConfigurableApplicationContext applicationContext;
 
@@ -141,6 +154,50 @@ public class RequestMappingHandlerAdapter implements HandlerAdapter, Application
 		return this.reactiveAdapterRegistry;
 	}
 
+	/**
+	 * Configure the executor for controller methods that perform blocking
+	 * I/O, as indicated by {@link Blocking @Blocking} or the
+	 * {@link #setBlockingMethodPredicate blockingMethodPredicate}.
+	 * <p>By default this is a {@link BlockingHandlerMethodExecutor} with
+	 * default settings, created when the first blocking method is invoked,
+	 * and shut down when this adapter is destroyed.
+	 * @since 5.2
+	 */
+	public void setBlockingExecutor(@Nullable BlockingHandlerMethodExecutor blockingExecutor) {
+		this.blockingExecutor = blockingExecutor;
+	}
+
+	/**
+	 * Return the configured executor for blocking controller methods, or
+	 * the default one, if it has been created.
+	 * @since 5.2
+	 */
+	@Nullable
+	public BlockingHandlerMethodExecutor getBlockingExecutor() {
+		return (this.blockingExecutor != null ? this.blockingExecutor : this.defaultBlockingExecutor);
+	}
+
+	/**
+	 * Configure a predicate for controller methods that perform blocking I/O
+	 * and must be invoked through the {@link #setBlockingExecutor
+	 * blockingExecutor}, in addition to methods annotated with
+	 * {@link Blocking @Blocking}, e.g. to match all controllers of a package.
+	 * <p>By default this is not set.
+	 * @since 5.2
+	 */
+	public void setBlockingMethodPredicate(@Nullable Predicate<HandlerMethod> predicate) {
+		this.blockingMethodPredicate = predicate;
+	}
+
+	/**
+	 * Return the configured predicate for blocking controller methods.
+	 * @since 5.2
+	 */
+	@Nullable
+	public Predicate<HandlerMethod> getBlockingMethodPredicate() {
+		return this.blockingMethodPredicate;
+	}
+
 	/**
 	 * A {@link ConfigurableApplicationContext} is expected for resolving
 	 * expressions in method argument default values as well as for
@@ -171,10 +228,40 @@ public class RequestMappingHandlerAdapter implements HandlerAdapter, Application
 
 		this.methodResolver = new ControllerMethodResolver(this.argumentResolverConfigurer,
 				this.reactiveAdapterRegistry, this.applicationContext, this.messageReaders);
+		this.methodResolver.setBlockingExecution(this::obtainBlockingExecutor, this.blockingMethodPredicate);
 
 		this.modelInitializer = new ModelInitializer(this.methodResolver, this.reactiveAdapterRegistry);
 	}
 
+	private BlockingHandlerMethodExecutor obtainBlockingExecutor() {
+		if (this.blockingExecutor != null) {
+			return this.blockingExecutor;
+		}
+		BlockingHandlerMethodExecutor executor = this.defaultBlockingExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = this.defaultBlockingExecutor;
+				if (executor == null) {
+					executor = new BlockingHandlerMethodExecutor();
+					this.defaultBlockingExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Shut down the default executor for blocking controller methods, if
+	 * it has been created. A configured executor is left as it is.
+	 */
+	@Override
+	public void destroy() {
+		BlockingHandlerMethodExecutor executor = this.defaultBlockingExecutor;
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
 
 	@Override
 	public boolean supports(Object handler) {
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.result.method.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for {@code @RequestMapping} methods with a single-value async
+ * return type, such as {@code Mono}, to coalesce concurrent invocations for
+ * identical requests into a single invocation, the result of which is shared.
+ *
+ * <p>Only GET and HEAD requests are coalesced. Requests are identical if they
+ * have the same HTTP method, URI, and values for the {@link #headers} listed
+ * in the annotation. While an invocation is in
+ * progress, the method is not invoked for identical requests, which receive
+ * the result of the invocation in progress instead.
+ *
+ * <p>Since the principal is not part of the request key, this should be used
+ * only for resources that are the same for all users, or else the
+ * "Authorization" header should be listed in {@link #headers}.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ * @see org.springframework.web.reactive.result.method.SingleFlightGroup
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SingleFlight {
+
+	/**
+	 * The names of request headers that identify identical requests, in
+	 * addition to the HTTP method and URI.
+	 */
+	String[] headers() default {};
+
+	/**
+	 * The maximum time in milliseconds that a shared invocation may take,
+	 * after which all requests waiting for it fail with a timeout.
+	 * <p>By default there is no timeout.
+	 */
+	long timeout() default -1;
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.StepVerifier;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.cache.HttpCache;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CachingExchangeFilterFunction}.
+ *
+ * @author agent (agent@local)
+ */
+public class CachingExchangeFilterFunctionTests {
+
+	private static final URI DEFAULT_URL = URI.create("http://example.com");
+
+	private static final long START = 1546300800000L;
+
+
+	private final HttpCache cache = new HttpCache();
+
+	private final CachingExchangeFilterFunction filter = new CachingExchangeFilterFunction(this.cache);
+
+	private final ClientRequest request = ClientRequest.create(HttpMethod.GET, DEFAULT_URL).build();
+
+	private final List<ClientRequest> requests = new ArrayList<>();
+
+	private final List<Mono<ClientResponse>> responses = new ArrayList<>();
+
+	private final ExchangeFunction exchange = request -> {
+		this.requests.add(request);
+		return this.responses.remove(0);
+	};
+
+
+	@Before
+	public void setUp() {
+		setTime(START);
+	}
+
+
+	@Test
+	public void serveFromCache() {
+		this.responses.add(Mono.just(response(HttpStatus.OK, "max-age=60", "body")));
+
+		assertEquals("body", bodyOf(this.filter.filter(this.request, this.exchange)));
+		setTime(START + TimeUnit.SECONDS.toMillis(10));
+		ClientResponse response = this.filter.filter(this.request, this.exchange).block();
+
+		assertEquals(1, this.requests.size());
+		assertEquals(HttpStatus.OK, response.statusCode());
+		assertEquals("10", response.headers().asHttpHeaders().getFirst("Age"));
+		assertEquals("body", response.bodyToMono(String.class).block());
+	}
+
+	@Test
+	public void revalidateStaleResponse() {
+		this.responses.add(Mono.just(ClientResponse.create(HttpStatus.OK)
+				.header("Cache-Control", "max-age=10").header("ETag", "\"v1\"").body("body").build()));
+		this.responses.add(Mono.just(response(HttpStatus.NOT_MODIFIED, "max-age=10", "")));
+
+		bodyOf(this.filter.filter(this.request, this.exchange));
+		setTime(START + TimeUnit.SECONDS.toMillis(20));
+		ClientResponse response = this.filter.filter(this.request, this.exchange).block();
+
+		assertEquals(2, this.requests.size());
+		assertEquals("\"v1\"", this.requests.get(1).headers().getIfNoneMatch().get(0));
+		assertEquals(HttpStatus.OK, response.statusCode());
+		assertEquals("body", response.bodyToMono(String.class).block());
+	}
+
+	@Test
+	public void staleWhileRevalidate() {
+		MonoProcessor<ClientResponse> revalidation = MonoProcessor.create();
+		this.responses.add(Mono.just(response(HttpStatus.OK, "max-age=10, stale-while-revalidate=60", "v1")));
+		this.responses.add(revalidation);
+
+		bodyOf(this.filter.filter(this.request, this.exchange));
+		setTime(START + TimeUnit.SECONDS.toMillis(20));
+		assertEquals("v1", bodyOf(this.filter.filter(this.request, this.exchange)));
+		assertEquals("v1", bodyOf(this.filter.filter(this.request, this.exchange)));
+		assertEquals(2, this.requests.size());
+
+		revalidation.onNext(response(HttpStatus.OK, "max-age=10", "v2"));
+		assertEquals("v2", bodyOf(this.filter.filter(this.request, this.exchange)));
+		assertEquals(2, this.requests.size());
+	}
+
+	@Test
+	public void coalesceConcurrentExchanges() {
+		MonoProcessor<ClientResponse> processor = MonoProcessor.create();
+		this.responses.add(processor);
+
+		MonoProcessor<ClientResponse> first = this.filter.filter(this.request, this.exchange).toProcessor();
+		MonoProcessor<ClientResponse> second = this.filter.filter(this.request, this.exchange).toProcessor();
+		assertEquals(1, this.requests.size());
+
+		processor.onNext(response(HttpStatus.OK, "max-age=60", "body"));
+		assertEquals("body", first.block().bodyToMono(String.class).block());
+		assertEquals("body", second.block().bodyToMono(String.class).block());
+	}
+
+	@Test
+	public void notCacheable() {
+		this.responses.add(Mono.just(response(HttpStatus.OK, "no-store", "body")));
+		this.responses.add(Mono.just(response(HttpStatus.OK, "no-store", "body")));
+
+		assertEquals("body", bodyOf(this.filter.filter(this.request, this.exchange)));
+		assertEquals("body", bodyOf(this.filter.filter(this.request, this.exchange)));
+		assertEquals(2, this.requests.size());
+	}
+
+	@Test
+	public void passThroughBodyLargerThanMaxEntrySize() {
+		this.cache.setMaxEntrySize(4);
+		DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+		AtomicInteger buffersRead = new AtomicInteger();
+		Flux<DataBuffer> body = Flux.just("foo", "bar", "baz")
+				.map(value -> bufferFactory.wrap(value.getBytes(StandardCharsets.UTF_8)))
+				.doOnNext(buffer -> buffersRead.incrementAndGet());
+		this.responses.add(Mono.just(ClientResponse.create(HttpStatus.OK)
+				.header("Cache-Control", "max-age=60").body(body).build()));
+		this.responses.add(Mono.just(response(HttpStatus.OK, "max-age=60", "foobarbaz")));
+
+		ClientResponse response = this.filter.filter(this.request, this.exchange).block();
+		assertEquals("Read beyond max entry size", 2, buffersRead.get());
+		assertEquals("foobarbaz", response.bodyToMono(String.class).block());
+		assertEquals("foobarbaz", bodyOf(this.filter.filter(this.request, this.exchange)));
+		assertEquals(2, this.requests.size());
+	}
+
+	@Test
+	public void invalidateOnUnsafeMethod() {
+		this.responses.add(Mono.just(response(HttpStatus.OK, "max-age=60", "body")));
+		this.responses.add(Mono.just(ClientResponse.create(HttpStatus.NO_CONTENT).build()));
+		this.responses.add(Mono.just(response(HttpStatus.OK, "max-age=60", "body")));
+
+		bodyOf(this.filter.filter(this.request, this.exchange));
+		ClientRequest delete = ClientRequest.create(HttpMethod.DELETE, DEFAULT_URL).build();
+		StepVerifier.create(this.filter.filter(delete, this.exchange)).expectNextCount(1).verifyComplete();
+		bodyOf(this.filter.filter(this.request, this.exchange));
+
+		assertEquals(3, this.requests.size());
+	}
+
+	@Test
+	public void exchangeStrategies() {
+		ExchangeStrategies strategies = ExchangeStrategies.builder().build();
+		ExchangeStrategies otherStrategies = ExchangeStrategies.builder().build();
+		CachingExchangeFilterFunction filter = new CachingExchangeFilterFunction(this.cache, strategies);
+		this.responses.add(Mono.just(ClientResponse.create(HttpStatus.OK, otherStrategies)
+				.header("Cache-Control", "max-age=60").body("body").build()));
+
+		ClientResponse response = filter.filter(this.request, this.exchange).block();
+		assertSame(otherStrategies, response.strategies());
+		assertEquals("body", response.bodyToMono(String.class).block());
+
+		response = filter.filter(this.request, this.exchange).block();
+		assertSame(strategies, response.strategies());
+		assertEquals("body", response.bodyToMono(String.class).block());
+		assertEquals(1, this.requests.size());
+	}
+
+	@Test
+	public void onlyIfCached() {
+		ClientRequest request = ClientRequest.create(HttpMethod.GET, DEFAULT_URL)
+				.header("Cache-Control", "only-if-cached").build();
+
+		StepVerifier.create(this.filter.filter(request, this.exchange))
+				.consumeNextWith(response -> assertEquals(HttpStatus.GATEWAY_TIMEOUT, response.statusCode()))
+				.verifyComplete();
+		assertEquals(0, this.requests.size());
+	}
+
+
+	private void setTime(long millis) {
+		this.cache.setClock(Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+	}
+
+	private static ClientResponse response(HttpStatus status, String cacheControl, String body) {
+		return ClientResponse.create(status).header("Cache-Control", cacheControl).body(body).build();
+	}
+
+	private static String bodyOf(Mono<ClientResponse> response) {
+		return response.flatMap(r -> r.bodyToMono(String.class)).defaultIfEmpty("").block();
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.StepVerifier;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ConcurrencyLimitingExchangeFilterFunction}.
+ *
+ * @author agent (agent@local)
+ */
+public class ConcurrencyLimitingExchangeFilterFunctionTests {
+
+	private static final URI DEFAULT_URL = URI.create("http://example.com");
+
+
+	private final ConcurrencyLimitingExchangeFilterFunction filter = new ConcurrencyLimitingExchangeFilterFunction();
+
+	private final ClientRequest request = ClientRequest.create(HttpMethod.GET, DEFAULT_URL).build();
+
+	private final List<MonoProcessor<ClientResponse>> exchanges = new ArrayList<>();
+
+	private final ExchangeFunction exchange = request -> {
+		MonoProcessor<ClientResponse> processor = MonoProcessor.create();
+		this.exchanges.add(processor);
+		return processor;
+	};
+
+
+	@Test
+	public void queueWhenLimitReached() {
+		this.filter.setInitialLimit(1);
+
+		MonoProcessor<ClientResponse> first = this.filter.filter(this.request, this.exchange).toProcessor();
+		MonoProcessor<ClientResponse> second = this.filter.filter(this.request, this.exchange).toProcessor();
+		assertEquals(1, this.exchanges.size());
+
+		this.exchanges.get(0).onNext(response(HttpStatus.OK));
+		assertTrue(first.isSuccess());
+		assertEquals(2, this.exchanges.size());
+		assertFalse(second.isTerminated());
+
+		this.exchanges.get(1).onNext(response(HttpStatus.OK));
+		assertTrue(second.isSuccess());
+	}
+
+	@Test
+	public void rejectWhenQueueFull() {
+		this.filter.setInitialLimit(1);
+		this.filter.setMaxQueueSize(0);
+
+		this.filter.filter(this.request, this.exchange).subscribe();
+
+		StepVerifier.create(this.filter.filter(this.request, this.exchange))
+				.expectError(ConcurrencyLimitExceededException.class)
+				.verify();
+		assertEquals(1, this.exchanges.size());
+	}
+
+	@Test
+	public void cancelQueuedExchange() {
+		this.filter.setInitialLimit(1);
+
+		this.filter.filter(this.request, this.exchange).subscribe();
+		Disposable queued = this.filter.filter(this.request, this.exchange).subscribe();
+		queued.dispose();
+
+		this.exchanges.get(0).onNext(response(HttpStatus.OK));
+		assertEquals(1, this.exchanges.size());
+	}
+
+	@Test
+	public void cancelExchangeInProgress() {
+		this.filter.setInitialLimit(1);
+
+		Disposable inProgress = this.filter.filter(this.request, this.exchange).subscribe();
+		MonoProcessor<ClientResponse> queued = this.filter.filter(this.request, this.exchange).toProcessor();
+		inProgress.dispose();
+
+		assertEquals(2, this.exchanges.size());
+		this.exchanges.get(1).onNext(response(HttpStatus.OK));
+		assertTrue(queued.isSuccess());
+	}
+
+	@Test
+	public void decreaseLimitOnError() {
+		this.filter.setInitialLimit(10);
+
+		StepVerifier.create(this.filter.filter(this.request, r -> Mono.error(new IOException())))
+				.expectError(IOException.class)
+				.verify();
+		assertEquals(9, this.filter.getLimit(DEFAULT_URL));
+
+		StepVerifier.create(this.filter.filter(this.request, r -> Mono.just(response(HttpStatus.SERVICE_UNAVAILABLE))))
+				.expectNextCount(1)
+				.verifyComplete();
+		assertEquals(8, this.filter.getLimit(DEFAULT_URL));
+	}
+
+	@Test
+	public void increaseLimitWhenUsed() {
+		this.filter.setInitialLimit(2);
+
+		this.filter.filter(this.request, this.exchange).subscribe();
+		this.filter.filter(this.request, this.exchange).subscribe();
+		this.exchanges.get(0).onNext(response(HttpStatus.OK));
+
+		assertEquals(3, this.filter.getLimit(DEFAULT_URL));
+	}
+
+	@Test
+	public void limitIsPerHost() {
+		this.filter.setInitialLimit(1);
+		this.filter.setMaxQueueSize(0);
+
+		this.filter.filter(this.request, this.exchange).subscribe();
+		ClientRequest other = ClientRequest.create(HttpMethod.GET, URI.create("http://example.org")).build();
+		this.filter.filter(other, this.exchange).subscribe();
+
+		assertEquals(2, this.exchanges.size());
+	}
+
+
+	private static ClientResponse response(HttpStatus status) {
+		return ClientResponse.create(status).build();
+	}
+
+}
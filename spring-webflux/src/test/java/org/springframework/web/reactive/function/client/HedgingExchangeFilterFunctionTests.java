@@ -0,0 +1,156 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link HedgingExchangeFilterFunction}.
+ *
+ * @author agent (agent@local)
+ */
+public class HedgingExchangeFilterFunctionTests {
+
+	private static final URI DEFAULT_URL = URI.create("http://example.com");
+
+
+	private final HedgingExchangeFilterFunction filter = new HedgingExchangeFilterFunction();
+
+	private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+	private final ClientRequest request = ClientRequest.create(HttpMethod.GET, DEFAULT_URL).build();
+
+	private final ClientResponse response = ClientResponse.create(HttpStatus.OK).build();
+
+	private final ClientResponse hedgedResponse = ClientResponse.create(HttpStatus.OK).build();
+
+	private final List<Mono<ClientResponse>> exchanges = new ArrayList<>();
+
+	private final ExchangeFunction exchange = request -> this.exchanges.remove(0);
+
+
+	@Before
+	public void setup() {
+		this.filter.setScheduler(this.scheduler);
+	}
+
+
+	@Test
+	public void noHedgingWithoutLatencies() {
+		this.exchanges.add(Mono.delay(Duration.ofSeconds(1), this.scheduler).thenReturn(this.response));
+
+		StepVerifier.withVirtualTime(() -> this.filter.filter(this.request, this.exchange), () -> this.scheduler, 1)
+				.thenAwait(Duration.ofSeconds(1))
+				.expectNext(this.response)
+				.verifyComplete();
+	}
+
+	@Test
+	public void hedgeSlowExchange() {
+		warmUp();
+		AtomicBoolean cancelled = new AtomicBoolean();
+		this.exchanges.add(Mono.<ClientResponse>never().doOnCancel(() -> cancelled.set(true)));
+		this.exchanges.add(Mono.just(this.hedgedResponse));
+
+		StepVerifier.withVirtualTime(() -> this.filter.filter(this.request, this.exchange), () -> this.scheduler, 1)
+				.expectSubscription()
+				.expectNoEvent(Duration.ofMillis(9))
+				.thenAwait(Duration.ofMillis(1))
+				.expectNext(this.hedgedResponse)
+				.verifyComplete();
+
+		assertTrue(cancelled.get());
+		assertTrue(this.exchanges.isEmpty());
+	}
+
+	@Test
+	public void primaryExchangeWins() {
+		warmUp();
+		AtomicBoolean cancelled = new AtomicBoolean();
+		this.exchanges.add(Mono.delay(Duration.ofMillis(15), this.scheduler).thenReturn(this.response));
+		this.exchanges.add(Mono.<ClientResponse>never().doOnCancel(() -> cancelled.set(true)));
+
+		StepVerifier.withVirtualTime(() -> this.filter.filter(this.request, this.exchange), () -> this.scheduler, 1)
+				.thenAwait(Duration.ofMillis(15))
+				.expectNext(this.response)
+				.verifyComplete();
+
+		assertTrue(cancelled.get());
+	}
+
+	@Test
+	public void errorIgnoredWhileOtherExchangeInProgress() {
+		warmUp();
+		this.exchanges.add(Mono.delay(Duration.ofMillis(20), this.scheduler).then(Mono.error(new IOException())));
+		this.exchanges.add(Mono.delay(Duration.ofMillis(30), this.scheduler).thenReturn(this.hedgedResponse));
+
+		StepVerifier.withVirtualTime(() -> this.filter.filter(this.request, this.exchange), () -> this.scheduler, 1)
+				.thenAwait(Duration.ofMillis(40))
+				.expectNext(this.hedgedResponse)
+				.verifyComplete();
+	}
+
+	@Test
+	public void errorBeforeHedging() {
+		warmUp();
+		this.exchanges.add(Mono.error(new IOException()));
+
+		StepVerifier.withVirtualTime(() -> this.filter.filter(this.request, this.exchange), () -> this.scheduler, 1)
+				.expectError(IOException.class)
+				.verify();
+
+		this.scheduler.advanceTimeBy(Duration.ofSeconds(1));
+		assertTrue(this.exchanges.isEmpty());
+	}
+
+	@Test
+	public void noHedgingForPost() {
+		warmUp();
+		ClientRequest post = ClientRequest.create(HttpMethod.POST, DEFAULT_URL).build();
+		this.exchanges.add(Mono.delay(Duration.ofSeconds(1), this.scheduler).thenReturn(this.response));
+
+		StepVerifier.withVirtualTime(() -> this.filter.filter(post, this.exchange), () -> this.scheduler, 1)
+				.thenAwait(Duration.ofSeconds(1))
+				.expectNext(this.response)
+				.verifyComplete();
+	}
+
+
+	private void warmUp() {
+		for (int i = 0; i < 32; i++) {
+			this.exchanges.add(Mono.just(this.response));
+			this.filter.filter(this.request, this.exchange).block();
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,6 +23,7 @@ import java.nio.file.Files;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 import java.util.zip.CRC32;
 
@@ -52,7 +53,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ClientHttpExchangeMetrics;
+import org.springframework.http.client.reactive.ConnectionPoolMetrics;
 import org.springframework.http.client.reactive.JettyClientHttpConnector;
+import org.springframework.http.client.reactive.MetricsRecordingClientHttpConnector;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.codec.Pojo;
 
@@ -734,6 +738,45 @@ public class WebClientIntegrationTests {
 		}).verifyComplete();
 	}
 
+	@Test
+	public void shouldRecordMetrics() {
+		prepareResponse(response -> response.setHeader("Content-Type", "text/plain")
+				.setBody("Hello Spring!"));
+
+		List<ClientHttpExchangeMetrics> recorded = new CopyOnWriteArrayList<>();
+		MetricsRecordingClientHttpConnector connector =
+				new MetricsRecordingClientHttpConnector(this.connector, recorded::add);
+		WebClient client = WebClient.builder()
+				.clientConnector(connector)
+				.baseUrl(this.server.url("/").toString())
+				.build();
+
+		Mono<String> result = client.post()
+				.uri("/greeting")
+				.syncBody("Spring")
+				.retrieve()
+				.bodyToMono(String.class);
+
+		StepVerifier.create(result)
+				.expectNext("Hello Spring!")
+				.expectComplete().verify(Duration.ofSeconds(3));
+
+		assertEquals(1, recorded.size());
+		ClientHttpExchangeMetrics metrics = recorded.get(0);
+		assertEquals(HttpMethod.POST, metrics.getMethod());
+		assertEquals("/greeting", metrics.getUri().getPath());
+		assertEquals(200, metrics.getStatusCode());
+		assertEquals(6, metrics.getBytesSent());
+		assertEquals(13, metrics.getBytesReceived());
+		assertNotNull(metrics.getTimeToFirstByte());
+		assertNull(metrics.getError());
+
+		ConnectionPoolMetrics poolMetrics = connector.getConnectionPoolMetrics();
+		assertNotNull(poolMetrics);
+		assertEquals(0, poolMetrics.getPendingAcquisitions());
+		assertTrue(poolMetrics.getActiveConnections() + poolMetrics.getIdleConnections() > 0);
+	}
+
 	@Test  // SPR-15782
 	public void shouldFailWithRelativeUrls() {
 		String uri = "/api/v4/groups/1";
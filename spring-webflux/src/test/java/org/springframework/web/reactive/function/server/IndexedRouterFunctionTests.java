@@ -0,0 +1,180 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.server;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.server.reactive.test.MockServerHttpRequest;
+import org.springframework.mock.web.test.server.MockServerWebExchange;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import static org.junit.Assert.*;
+import static org.springframework.web.reactive.function.server.RequestPredicates.*;
+import static org.springframework.web.reactive.function.server.RouterFunctions.*;
+
+/**
+ * Unit tests for {@link IndexedRouterFunction}, created via
+ * {@link RouterFunctions#optimize(RouterFunction)}.
+ *
+ * @author agent (agent@local)
+ */
+public class IndexedRouterFunctionTests {
+
+	private final HandlerFunction<ServerResponse> foo = request -> ServerResponse.ok().build();
+
+	private final HandlerFunction<ServerResponse> bar = request -> ServerResponse.ok().build();
+
+	private final HandlerFunction<ServerResponse> baz = request -> ServerResponse.ok().build();
+
+
+	@Test
+	public void routeByMethodAndPath() {
+		RouterFunction<ServerResponse> routerFunction = optimize(
+				route(GET("/foo"), this.foo)
+						.andRoute(POST("/foo"), this.bar)
+						.andRoute(GET("/bar/{id}"), this.baz));
+
+		assertTrue(routerFunction instanceof IndexedRouterFunction);
+		assertSame(this.foo, match(routerFunction, HttpMethod.GET, "/foo"));
+		assertSame(this.bar, match(routerFunction, HttpMethod.POST, "/foo"));
+		assertSame(this.baz, match(routerFunction, HttpMethod.GET, "/bar/42"));
+		assertNull(match(routerFunction, HttpMethod.PUT, "/foo"));
+		assertNull(match(routerFunction, HttpMethod.GET, "/baz"));
+	}
+
+	@Test
+	public void routeInOriginalOrder() {
+		RouterFunction<ServerResponse> routerFunction = optimize(
+				route(path("/**"), this.foo)
+						.andRoute(GET("/bar"), this.bar));
+
+		assertSame(this.foo, match(routerFunction, HttpMethod.GET, "/bar"));
+
+		routerFunction = optimize(
+				route(GET("/foo/bar"), this.bar)
+						.andRoute(path("/foo/{name}"), this.foo)
+						.andRoute(method(HttpMethod.GET), this.baz));
+
+		assertSame(this.bar, match(routerFunction, HttpMethod.GET, "/foo/bar"));
+		assertSame(this.foo, match(routerFunction, HttpMethod.GET, "/foo/baz"));
+		assertSame(this.baz, match(routerFunction, HttpMethod.GET, "/baz"));
+	}
+
+	@Test
+	public void routeExposesPathVariables() {
+		RouterFunction<ServerResponse> routerFunction = optimize(
+				route(GET("/foo"), this.foo)
+						.andRoute(GET("/bar/{id}"), this.bar));
+
+		ServerRequest request = request(HttpMethod.GET, "/bar/42");
+		assertSame(this.bar, routerFunction.route(request).block());
+		assertEquals("42", request.pathVariable("id"));
+	}
+
+	@Test
+	public void routeOnlyTestsCandidates() {
+		AtomicInteger count = new AtomicInteger();
+		RequestPredicate counting = request -> count.incrementAndGet() > 0;
+		RouterFunction<ServerResponse> routerFunction = optimize(
+				route(GET("/foo").and(counting), this.foo)
+						.andRoute(POST("/bar").and(counting), this.bar)
+						.andRoute(GET("/bar").and(counting), this.baz));
+
+		assertSame(this.baz, match(routerFunction, HttpMethod.GET, "/bar"));
+		assertEquals(1, count.get());
+	}
+
+	@Test
+	public void routeWithUnknownPredicates() {
+		RouterFunction<ServerResponse> routerFunction = optimize(
+				route(path("/foo").and(method(HttpMethod.GET).negate()), this.foo)
+						.andRoute(path("/bar").or(path("/baz")), this.bar)
+						.andRoute(request -> true, this.baz));
+
+		assertSame(this.foo, match(routerFunction, HttpMethod.POST, "/foo"));
+		assertSame(this.bar, match(routerFunction, HttpMethod.GET, "/baz"));
+		assertSame(this.baz, match(routerFunction, HttpMethod.GET, "/foo"));
+	}
+
+	@Test
+	public void routeNested() {
+		RouterFunction<ServerResponse> routerFunction = optimize(
+				route(GET("/foo"), this.foo)
+						.and(nest(path("/bar"),
+								route(GET("/{id}"), this.bar)
+										.andRoute(POST(""), this.baz))));
+
+		ServerRequest request = request(HttpMethod.GET, "/bar/42");
+		assertSame(this.bar, routerFunction.route(request).block());
+		Map<String, String> variables = request.pathVariables();
+		assertEquals("42", variables.get("id"));
+		assertSame(this.baz, match(routerFunction, HttpMethod.POST, "/bar"));
+		assertNull(match(routerFunction, HttpMethod.POST, "/foo"));
+	}
+
+	@Test
+	public void routeFiltered() {
+		RouterFunction<ServerResponse> routerFunction = optimize(
+				route(GET("/foo"), this.foo)
+						.andRoute(GET("/bar"), this.bar)
+						.filter((request, next) -> next.handle(request)));
+
+		HandlerFunction<ServerResponse> result = match(routerFunction, HttpMethod.GET, "/bar");
+		assertNotNull(result);
+		assertNotSame(this.bar, result);
+		assertNull(match(routerFunction, HttpMethod.GET, "/baz"));
+	}
+
+	@Test
+	public void routeCaseInsensitive() {
+		PathPatternParser parser = new PathPatternParser();
+		parser.setCaseSensitive(false);
+		RouterFunction<ServerResponse> routerFunction = optimize(
+				route(method(HttpMethod.GET).and(pathPredicates(parser).apply("/Foo")), this.foo)
+						.andRoute(GET("/bar"), this.bar));
+
+		assertSame(this.foo, match(routerFunction, HttpMethod.GET, "/FOO"));
+	}
+
+	@Test
+	public void toStringListsAllRoutes() {
+		RouterFunction<ServerResponse> routerFunction = route(GET("/foo"), this.foo)
+				.andRoute(POST("/bar"), this.bar);
+
+		assertEquals(routerFunction.toString(), optimize(routerFunction).toString());
+	}
+
+
+	private static ServerRequest request(HttpMethod method, String path) {
+		MockServerHttpRequest request = MockServerHttpRequest.method(method, "https://example.com" + path).build();
+		return ServerRequest.create(MockServerWebExchange.from(request),
+				HandlerStrategies.withDefaults().messageReaders());
+	}
+
+	private static HandlerFunction<ServerResponse> match(
+			RouterFunction<ServerResponse> routerFunction, HttpMethod method, String path) {
+
+		Mono<HandlerFunction<ServerResponse>> result = routerFunction.route(request(method, path));
+		return result.block();
+	}
+
+}
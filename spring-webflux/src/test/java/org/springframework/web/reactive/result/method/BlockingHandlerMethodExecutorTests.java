@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.result.method;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.StepVerifier;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link BlockingHandlerMethodExecutor}.
+ *
+ * @author agent (agent@local)
+ */
+public class BlockingHandlerMethodExecutorTests {
+
+	@Test
+	public void execute() {
+		BlockingHandlerMethodExecutor executor = new BlockingHandlerMethodExecutor(2, 10);
+
+		StepVerifier.create(executor.execute(() -> Mono.just(Thread.currentThread().getName())))
+				.expectNext("blocking-handler-1")
+				.verifyComplete();
+	}
+
+	@Test
+	public void rejectWhenQueueFull() throws Exception {
+		BlockingHandlerMethodExecutor executor = new BlockingHandlerMethodExecutor(1, 1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		MonoProcessor<String> active = executor.execute(() -> {
+			started.countDown();
+			await(release);
+			return Mono.just("active");
+		}).toProcessor();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		MonoProcessor<String> queued = executor.execute(() -> Mono.just("queued")).toProcessor();
+
+		assertEquals(1, executor.getActiveCount());
+		assertEquals(1, executor.getQueuedCount());
+		StepVerifier.create(executor.execute(() -> Mono.just("rejected")))
+				.consumeErrorWith(ex -> {
+					assertTrue(ex instanceof ResponseStatusException);
+					assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseStatusException) ex).getStatus());
+				})
+				.verify(Duration.ofSeconds(5));
+		assertEquals(1, executor.getRejectedCount());
+
+		release.countDown();
+		assertEquals("active", active.block(Duration.ofSeconds(5)));
+		assertEquals("queued", queued.block(Duration.ofSeconds(5)));
+	}
+
+	@Test
+	public void shutdown() {
+		BlockingHandlerMethodExecutor executor = new BlockingHandlerMethodExecutor(1, 10);
+		executor.shutdown();
+
+		StepVerifier.create(executor.execute(() -> Mono.just("value")))
+				.consumeErrorWith(ex -> {
+					assertTrue(ex instanceof ResponseStatusException);
+					assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseStatusException) ex).getStatus());
+				})
+				.verify(Duration.ofSeconds(5));
+
+		BlockingHandlerMethodExecutor custom = new BlockingHandlerMethodExecutor(Runnable::run);
+		custom.shutdown();
+		StepVerifier.create(custom.execute(() -> Mono.just("value"))).expectNext("value").verifyComplete();
+	}
+
+	@Test
+	public void executeWithCustomExecutor() {
+		BlockingHandlerMethodExecutor executor = new BlockingHandlerMethodExecutor(Runnable::run);
+
+		StepVerifier.create(executor.execute(() -> Mono.just("value")))
+				.expectNext("value")
+				.verifyComplete();
+
+		assertEquals(1, executor.getCompletedCount());
+		assertEquals(0, executor.getActiveCount());
+		assertEquals(0, executor.getQueuedCount());
+	}
+
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,7 @@ import java.util.List;
 import org.junit.Test;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
 import reactor.test.StepVerifier;
 
 import org.springframework.core.io.buffer.DataBuffer;
@@ -230,6 +231,78 @@ public class InvocableHandlerMethodTests {
 	}
 
 
+	@Test
+	public void singleFlight() {
+		SingleFlightGroup group = new SingleFlightGroup();
+		TestController controller = new TestController();
+		Method method = ResolvableMethod.on(TestController.class).mockCall(TestController::shared).method();
+
+		MonoProcessor<?> first = ((Mono<?>) invokeForResult(controller, method, group).getReturnValue()).toProcessor();
+		MonoProcessor<?> second = ((Mono<?>) invokeForResult(controller, method, group).getReturnValue()).toProcessor();
+		assertEquals(1, controller.sharedInvocations);
+		assertEquals(1, group.getInFlightCount());
+
+		controller.sharedResult.onNext("shared");
+		assertEquals("shared", first.block(Duration.ZERO));
+		assertEquals("shared", second.block(Duration.ZERO));
+		assertEquals(0, group.getInFlightCount());
+	}
+
+	@Test
+	public void singleFlightSyncReturnValue() {
+		SingleFlightGroup group = new SingleFlightGroup();
+		Method method = ResolvableMethod.on(TestController.class).mockCall(TestController::noArgs).method();
+
+		assertEquals("success", invokeForResult(new TestController(), method, group).getReturnValue());
+		assertEquals(0, group.getInFlightCount());
+	}
+
+	@Test
+	public void singleFlightNotAppliedToPost() {
+		SingleFlightGroup group = new SingleFlightGroup();
+		TestController controller = new TestController();
+		Method method = ResolvableMethod.on(TestController.class).mockCall(o -> o.sharedWithBody(null)).method();
+		InvocableHandlerMethod invocable = new InvocableHandlerMethod(controller, method);
+		invocable.setSingleFlightGroup(group);
+
+		MonoProcessor<?> first = invokeWithBody(invocable, "foo");
+		MonoProcessor<?> second = invokeWithBody(invocable, "bar");
+		assertEquals(2, controller.sharedInvocations);
+		assertEquals(0, group.getInFlightCount());
+
+		controller.sharedResult.onNext("shared");
+		assertEquals("shared:foo", first.block(Duration.ZERO));
+		assertEquals("shared:bar", second.block(Duration.ZERO));
+	}
+
+	@Test
+	public void blockingExecutor() {
+		BlockingHandlerMethodExecutor executor = new BlockingHandlerMethodExecutor(1, 10);
+		Method method = ResolvableMethod.on(TestController.class).mockCall(TestController::threadName).method();
+		InvocableHandlerMethod invocable = new InvocableHandlerMethod(new TestController(), method);
+		invocable.setBlockingExecutor(executor);
+		HandlerResult result = invocable.invoke(this.exchange, new BindingContext()).block(Duration.ofSeconds(5));
+
+		assertNotNull(result);
+		assertEquals("blocking-handler-1", result.getReturnValue());
+	}
+
+
+	@Nullable
+	private HandlerResult invokeForResult(Object handler, Method method, SingleFlightGroup group) {
+		InvocableHandlerMethod invocable = new InvocableHandlerMethod(handler, method);
+		invocable.setArgumentResolvers(this.resolvers);
+		invocable.setSingleFlightGroup(group);
+		return invocable.invoke(this.exchange, new BindingContext()).block(Duration.ofSeconds(5));
+	}
+
+	private MonoProcessor<?> invokeWithBody(InvocableHandlerMethod invocable, String body) {
+		MockServerWebExchange exchange = MockServerWebExchange.from(post("http://localhost:8080/path").body(body));
+		HandlerResult result = invocable.invoke(exchange, new BindingContext(), body).block(Duration.ofSeconds(5));
+		assertNotNull(result);
+		return ((Mono<?>) result.getReturnValue()).toProcessor();
+	}
+
 	@Nullable
 	private HandlerResult invokeForResult(Object handler, Method method, Object... providedArgs) {
 		return invoke(handler, method, providedArgs).block(Duration.ofSeconds(5));
@@ -263,6 +336,10 @@ public class InvocableHandlerMethodTests {
 	@SuppressWarnings({"unused", "UnusedReturnValue", "SameParameterValue"})
 	static class TestController {
 
+		final MonoProcessor<String> sharedResult = MonoProcessor.create();
+
+		int sharedInvocations;
+
 		String singleArg(String q) {
 			return "success:" + q;
 		}
@@ -271,6 +348,16 @@ public class InvocableHandlerMethodTests {
 			return "success";
 		}
 
+		Mono<String> shared() {
+			this.sharedInvocations++;
+			return this.sharedResult;
+		}
+
+		Mono<String> sharedWithBody(String body) {
+			this.sharedInvocations++;
+			return this.sharedResult.map(value -> value + ":" + body);
+		}
+
 		void exceptionMethod() {
 			throw new IllegalStateException("boo");
 		}
@@ -298,6 +385,10 @@ public class InvocableHandlerMethodTests {
 					.thenEmpty(Mono.defer(() -> exchange.getResponse().writeWith(getBody("body"))));
 		}
 
+		String threadName() {
+			return Thread.currentThread().getName();
+		}
+
 		@Nullable
 		String notModified(ServerWebExchange exchange) {
 			if (exchange.checkNotModified(Instant.ofEpochMilli(1000 * 1000))) {
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.result.method;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.StepVerifier;
+
+import org.springframework.mock.web.test.server.MockServerWebExchange;
+
+import static org.junit.Assert.*;
+import static org.springframework.mock.http.server.reactive.test.MockServerHttpRequest.*;
+
+/**
+ * Unit tests for {@link SingleFlightGroup}.
+ *
+ * @author agent (agent@local)
+ */
+public class SingleFlightGroupTests {
+
+	private final SingleFlightGroup group = new SingleFlightGroup();
+
+	private final AtomicInteger executions = new AtomicInteger();
+
+	private final MonoProcessor<String> result = MonoProcessor.create();
+
+
+	@Test
+	public void shareInFlightExecution() {
+		MonoProcessor<String> first = execute("key").toProcessor();
+		MonoProcessor<String> second = execute("key").toProcessor();
+		assertEquals(1, this.executions.get());
+
+		this.result.onNext("value");
+		assertEquals("value", first.block(Duration.ZERO));
+		assertEquals("value", second.block(Duration.ZERO));
+		assertEquals(0, this.group.getInFlightCount());
+	}
+
+	@Test
+	public void executeAgainAfterCompletion() {
+		StepVerifier.create(this.group.execute("key", () -> Mono.just(this.executions.incrementAndGet())))
+				.expectNext(1)
+				.verifyComplete();
+		StepVerifier.create(this.group.execute("key", () -> Mono.just(this.executions.incrementAndGet())))
+				.expectNext(2)
+				.verifyComplete();
+	}
+
+	@Test
+	public void differentKeys() {
+		execute("key1").subscribe();
+		execute("key2").subscribe();
+
+		assertEquals(2, this.executions.get());
+		assertEquals(2, this.group.getInFlightCount());
+	}
+
+	@Test
+	public void shareError() {
+		MonoProcessor<String> first = execute("key").toProcessor();
+		MonoProcessor<String> second = execute("key").toProcessor();
+
+		this.result.onError(new IllegalStateException());
+		assertTrue(first.getError() instanceof IllegalStateException);
+		assertTrue(second.getError() instanceof IllegalStateException);
+		assertEquals(0, this.group.getInFlightCount());
+	}
+
+	@Test
+	public void cancelWhenAllCallersCancel() {
+		AtomicBoolean cancelled = new AtomicBoolean();
+		Mono<String> operation = this.result.doOnCancel(() -> cancelled.set(true));
+		Disposable first = this.group.execute("key", () -> operation).subscribe();
+		MonoProcessor<String> second = this.group.<String>execute("key", () -> operation).toProcessor();
+
+		first.dispose();
+		assertFalse(cancelled.get());
+
+		second.cancel();
+		assertTrue(cancelled.get());
+		assertEquals(0, this.group.getInFlightCount());
+	}
+
+	@Test
+	public void timeout() {
+		this.group.setTimeout(Duration.ofSeconds(5));
+
+		StepVerifier.withVirtualTime(() -> execute("key"))
+				.expectSubscription()
+				.thenAwait(Duration.ofSeconds(5))
+				.expectError(TimeoutException.class)
+				.verify();
+		assertEquals(0, this.group.getInFlightCount());
+	}
+
+	@Test
+	public void requestKey() {
+		this.group.setKeyHeaders("Accept");
+
+		Object key = this.group.getKey(MockServerWebExchange.from(get("/path?q=1").header("Accept", "text/plain")));
+		assertEquals(key, this.group.getKey(MockServerWebExchange.from(get("/path?q=1").header("Accept", "text/plain"))));
+		assertNotEquals(key, this.group.getKey(MockServerWebExchange.from(get("/path?q=2").header("Accept", "text/plain"))));
+		assertNotEquals(key, this.group.getKey(MockServerWebExchange.from(get("/path?q=1").header("Accept", "text/html"))));
+		assertNotEquals(key, this.group.getKey(MockServerWebExchange.from(head("/path?q=1").header("Accept", "text/plain"))));
+	}
+
+
+	private Mono<String> execute(String key) {
+		return this.group.execute(key, () -> {
+			this.executions.incrementAndGet();
+			return this.result;
+		});
+	}
+
+}
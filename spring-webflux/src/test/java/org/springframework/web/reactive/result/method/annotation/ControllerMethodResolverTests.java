@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,8 +17,11 @@
 package org.springframework.web.reactive.result.method.annotation;
 
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -31,6 +34,8 @@ import org.springframework.core.codec.ByteArrayDecoder;
 import org.springframework.core.codec.ByteBufferDecoder;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.test.MockServerHttpRequest;
+import org.springframework.mock.web.test.server.MockServerWebExchange;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -40,6 +45,8 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.method.ResolvableMethod;
 import org.springframework.web.reactive.BindingContext;
+import org.springframework.web.reactive.HandlerResult;
+import org.springframework.web.reactive.result.method.BlockingHandlerMethodExecutor;
 import org.springframework.web.reactive.result.method.HandlerMethodArgumentResolver;
 import org.springframework.web.reactive.result.method.InvocableHandlerMethod;
 import org.springframework.web.reactive.result.method.SyncHandlerMethodArgumentResolver;
@@ -229,6 +236,33 @@ public class ControllerMethodResolverTests {
 		assertEquals(TestControllerAdvice.class, invocable.getBeanType());
 	}
 
+	@Test
+	public void blockingMethods() {
+		BlockingHandlerMethodExecutor executor = new BlockingHandlerMethodExecutor(1, 10);
+		AtomicInteger executorRequests = new AtomicInteger();
+		Supplier<BlockingHandlerMethodExecutor> executorSupplier = () -> {
+			executorRequests.incrementAndGet();
+			return executor;
+		};
+		this.methodResolver.setBlockingExecution(executorSupplier,
+				handlerMethod -> handlerMethod.getMethod().getName().equals("matchedByPredicate"));
+
+		assertEquals(Thread.currentThread().getName(), invokeForThreadName(TestController::nonBlocking));
+		assertEquals("Executor should be obtained on demand", 0, executorRequests.get());
+		assertEquals("blocking-handler-1", invokeForThreadName(TestController::blocking));
+		assertEquals("blocking-handler-1", invokeForThreadName(TestController::matchedByPredicate));
+	}
+
+
+	private Object invokeForThreadName(Function<TestController, String> methodCall) {
+		Method method = ResolvableMethod.on(TestController.class).mockCall(methodCall::apply).method();
+		HandlerMethod handlerMethod = new HandlerMethod(new TestController(), method);
+		InvocableHandlerMethod invocable = this.methodResolver.getRequestMappingMethod(handlerMethod);
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+		HandlerResult result = invocable.invoke(exchange, new BindingContext()).block(Duration.ofSeconds(5));
+		assertNotNull(result);
+		return result.getReturnValue();
+	}
 
 	private static HandlerMethodArgumentResolver next(
 			List<? extends HandlerMethodArgumentResolver> resolvers, AtomicInteger index) {
@@ -252,6 +286,22 @@ public class ControllerMethodResolverTests {
 		@ExceptionHandler
 		void handleException(ResponseStatusException ex) {}
 
+		@Blocking
+		@GetMapping
+		String blocking() {
+			return Thread.currentThread().getName();
+		}
+
+		@GetMapping
+		String matchedByPredicate() {
+			return Thread.currentThread().getName();
+		}
+
+		@GetMapping
+		String nonBlocking() {
+			return Thread.currentThread().getName();
+		}
+
 	}
 
 
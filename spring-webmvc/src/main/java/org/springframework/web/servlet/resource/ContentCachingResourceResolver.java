@@ -0,0 +1,415 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.resource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.FastByteArrayOutputStream;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Resolver that delegates to the chain, and if a resource is found, serves its
+ * content from an in-memory cache bounded by the total number of cached bytes,
+ * evicting the least recently used resources first.
+ *
+ * <p>Compressible resources (see {@link #setCompressibleMediaTypes}) are gzip
+ * encoded once when loaded into the cache, so that requests accepting the
+ * {@literal "gzip"} coding are served from the compressed variant without
+ * requiring a pre-compressed file to be present next to the resource.
+ *
+ * <p>Cached resources are exposed as {@link ByteArrayResource ByteArrayResources},
+ * which {@link org.springframework.http.converter.ResourceHttpMessageConverter}
+ * writes to the response without an intermediate stream copy. Resources larger
+ * than the {@link #setMaxResourceSize max resource size} are passed through,
+ * e.g. for {@link ResourceHttpRequestHandler#setUseSendfile sendfile} support.
+ *
+ * <p>Cached content is not refreshed when the underlying resource changes.
+ * This resolver is used in place of an {@link EncodedResourceResolver}, and
+ * must be ordered ahead of a {@link VersionResourceResolver} with a
+ * content-based version strategy to ensure the version calculation is not
+ * impacted by the encoding.
+ *
+ * @author agent (agent@local)
+ * @since 5.2
+ */
+public class ContentCachingResourceResolver extends AbstractResourceResolver {
+
+	/**
+	 * The default maximum number of bytes held in the cache: 10 MB.
+	 */
+	public static final long DEFAULT_MAX_CACHE_SIZE = 10 * 1024 * 1024;
+
+	/**
+	 * The default maximum size of an individual resource to cache: 1 MB.
+	 */
+	public static final long DEFAULT_MAX_RESOURCE_SIZE = 1024 * 1024;
+
+	/**
+	 * The default media types to compress.
+	 */
+	public static final List<MediaType> DEFAULT_COMPRESSIBLE_MEDIA_TYPES = Collections.unmodifiableList(Arrays.asList(
+			MediaType.parseMediaType("text/*"), MediaType.parseMediaType("application/javascript"),
+			MediaType.APPLICATION_JSON, MediaType.parseMediaType("application/*+json"),
+			MediaType.APPLICATION_XML, MediaType.parseMediaType("application/*+xml"),
+			MediaType.parseMediaType("image/svg+xml")));
+
+	private static final String GZIP_CODING = "gzip";
+
+	/** Smaller resources are not worth the compression and the extra header. */
+	private static final int MIN_COMPRESS_SIZE = 256;
+
+
+	private long maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+
+	private long maxResourceSize = DEFAULT_MAX_RESOURCE_SIZE;
+
+	private final List<MediaType> compressibleMediaTypes = new ArrayList<>(DEFAULT_COMPRESSIBLE_MEDIA_TYPES);
+
+	private final Map<Resource, CachedContent> cache = new LinkedHashMap<>(64, 0.75f, true);
+
+	/** Total number of bytes in the cache, guarded by the cache monitor. */
+	private long cacheSize;
+
+
+	/**
+	 * Set the maximum total number of bytes to hold in the cache, counting both
+	 * the original and the compressed content of each resource.
+	 * <p>By default this is set to {@link #DEFAULT_MAX_CACHE_SIZE}.
+	 */
+	public void setMaxCacheSize(long maxCacheSize) {
+		Assert.isTrue(maxCacheSize >= 0, "Max cache size must not be negative");
+		this.maxCacheSize = maxCacheSize;
+	}
+
+	/**
+	 * Return the configured maximum total number of bytes to hold in the cache.
+	 */
+	public long getMaxCacheSize() {
+		return this.maxCacheSize;
+	}
+
+	/**
+	 * Set the maximum content length of an individual resource to cache.
+	 * Larger resources are returned as resolved by the chain.
+	 * <p>By default this is set to {@link #DEFAULT_MAX_RESOURCE_SIZE}.
+	 */
+	public void setMaxResourceSize(long maxResourceSize) {
+		Assert.isTrue(maxResourceSize >= 0, "Max resource size must not be negative");
+		this.maxResourceSize = maxResourceSize;
+	}
+
+	/**
+	 * Return the configured maximum content length of an individual resource to cache.
+	 */
+	public long getMaxResourceSize() {
+		return this.maxResourceSize;
+	}
+
+	/**
+	 * Configure the media types, possibly with wildcards, of resources to
+	 * keep a gzip encoded variant for.
+	 * <p>By default this is set to {@link #DEFAULT_COMPRESSIBLE_MEDIA_TYPES}.
+	 * @param mediaTypes the media types to compress (may be empty)
+	 */
+	public void setCompressibleMediaTypes(List<MediaType> mediaTypes) {
+		this.compressibleMediaTypes.clear();
+		this.compressibleMediaTypes.addAll(mediaTypes);
+	}
+
+	/**
+	 * Return a read-only list with the media types to compress.
+	 */
+	public List<MediaType> getCompressibleMediaTypes() {
+		return Collections.unmodifiableList(this.compressibleMediaTypes);
+	}
+
+	/**
+	 * Return the total number of bytes currently held in the cache.
+	 */
+	public long getCacheSize() {
+		synchronized (this.cache) {
+			return this.cacheSize;
+		}
+	}
+
+	/**
+	 * Remove all resources from the cache.
+	 */
+	public void clearCache() {
+		synchronized (this.cache) {
+			this.cache.clear();
+			this.cacheSize = 0;
+		}
+	}
+
+
+	@Override
+	protected Resource resolveResourceInternal(@Nullable HttpServletRequest request, String requestPath,
+			List<? extends Resource> locations, ResourceResolverChain chain) {
+
+		Resource resource = chain.resolveResource(request, requestPath, locations);
+		if (resource == null || resource instanceof HttpResource || request == null) {
+			return resource;
+		}
+
+		CachedContent content = getCachedContent(resource);
+		if (content == null) {
+			return resource;
+		}
+
+		boolean gzip = (content.gzipped != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING)));
+		return new CachedResource(resource, content, gzip);
+	}
+
+	/**
+	 * Whether the given {@code Accept-Encoding} header value accepts gzip,
+	 * either explicitly or through {@code "*"}, with a non-zero quality value.
+	 */
+	private static boolean acceptsGzip(@Nullable String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		Boolean wildcard = null;
+		for (String value : StringUtils.tokenizeToStringArray(acceptEncoding, ",")) {
+			String[] parts = StringUtils.tokenizeToStringArray(value, ";");
+			if (parts.length == 0) {
+				continue;
+			}
+			String coding = parts[0].toLowerCase(Locale.ENGLISH);
+			if (GZIP_CODING.equals(coding) || "x-gzip".equals(coding)) {
+				return !isZeroQuality(parts);
+			}
+			if ("*".equals(coding)) {
+				wildcard = !isZeroQuality(parts);
+			}
+		}
+		return Boolean.TRUE.equals(wildcard);
+	}
+
+	private static boolean isZeroQuality(String[] parts) {
+		for (int i = 1; i < parts.length; i++) {
+			String parameter = parts[i];
+			if (parameter.length() > 2 && (parameter.charAt(0) == 'q' || parameter.charAt(0) == 'Q')) {
+				String value = parameter.substring(1).trim();
+				if (value.startsWith("=")) {
+					try {
+						return (Double.parseDouble(value.substring(1).trim()) == 0);
+					}
+					catch (NumberFormatException ex) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	protected String resolveUrlPathInternal(String resourceUrlPath,
+			List<? extends Resource> locations, ResourceResolverChain chain) {
+
+		return chain.resolveUrlPath(resourceUrlPath, locations);
+	}
+
+	@Nullable
+	private CachedContent getCachedContent(Resource resource) {
+		synchronized (this.cache) {
+			CachedContent content = this.cache.get(resource);
+			if (content != null) {
+				return content;
+			}
+		}
+		try {
+			long length = resource.contentLength();
+			if (length > this.maxResourceSize || length > this.maxCacheSize) {
+				return null;
+			}
+			CachedContent content = loadContent(resource);
+			synchronized (this.cache) {
+				CachedContent existing = this.cache.putIfAbsent(resource, content);
+				if (existing != null) {
+					return existing;
+				}
+				this.cacheSize += content.size();
+				evictIfNecessary();
+			}
+			return content;
+		}
+		catch (IOException ex) {
+			if (logger.isTraceEnabled()) {
+				logger.trace("Failed to cache content of " + resource, ex);
+			}
+			return null;
+		}
+	}
+
+	private CachedContent loadContent(Resource resource) throws IOException {
+		long lastModified = resource.lastModified();
+		byte[] bytes = FileCopyUtils.copyToByteArray(resource.getInputStream());
+		byte[] gzipped = null;
+		if (bytes.length >= MIN_COMPRESS_SIZE && isCompressible(resource)) {
+			FastByteArrayOutputStream out = new FastByteArrayOutputStream(bytes.length / 2);
+			try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+				gzipOut.write(bytes);
+			}
+			if (out.size() < bytes.length) {
+				gzipped = out.toByteArrayUnsafe();
+			}
+		}
+		return new CachedContent(bytes, gzipped, lastModified);
+	}
+
+	private boolean isCompressible(Resource resource) {
+		MediaType mediaType = MediaTypeFactory.getMediaType(resource).orElse(null);
+		if (mediaType != null) {
+			for (MediaType compressible : this.compressibleMediaTypes) {
+				if (compressible.includes(mediaType)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private void evictIfNecessary() {
+		Iterator<CachedContent> iterator = this.cache.values().iterator();
+		while (this.cacheSize > this.maxCacheSize && iterator.hasNext()) {
+			this.cacheSize -= iterator.next().size();
+			iterator.remove();
+		}
+	}
+
+
+	private static final class CachedContent {
+
+		final byte[] content;
+
+		@Nullable
+		final byte[] gzipped;
+
+		final long lastModified;
+
+		CachedContent(byte[] content, @Nullable byte[] gzipped, long lastModified) {
+			this.content = content;
+			this.gzipped = gzipped;
+			this.lastModified = lastModified;
+		}
+
+		long size() {
+			return this.content.length + (this.gzipped != null ? this.gzipped.length : 0);
+		}
+	}
+
+
+	/**
+	 * A cached {@link HttpResource}, holding either the original or the
+	 * gzip encoded content of a resource.
+	 */
+	static final class CachedResource extends ByteArrayResource implements HttpResource {
+
+		private final Resource original;
+
+		private final CachedContent content;
+
+		private final boolean encoded;
+
+		CachedResource(Resource original, CachedContent content, boolean encoded) {
+			super(encoded && content.gzipped != null ? content.gzipped : content.content);
+			this.original = original;
+			this.content = content;
+			this.encoded = encoded;
+		}
+
+		/**
+		 * Whether this resource holds gzip encoded content.
+		 */
+		public boolean isEncoded() {
+			return this.encoded;
+		}
+
+		@Override
+		public long lastModified() {
+			return this.content.lastModified;
+		}
+
+		@Override
+		public Resource createRelative(String relativePath) throws IOException {
+			return this.original.createRelative(relativePath);
+		}
+
+		@Override
+		@Nullable
+		public String getFilename() {
+			return this.original.getFilename();
+		}
+
+		@Override
+		public String getDescription() {
+			return "Cached " + (this.encoded ? "gzip encoded " : "") + this.original.getDescription();
+		}
+
+		@Override
+		public HttpHeaders getResponseHeaders() {
+			HttpHeaders headers = new HttpHeaders();
+			if (this.encoded) {
+				headers.add(HttpHeaders.CONTENT_ENCODING, GZIP_CODING);
+			}
+			if (this.content.gzipped != null) {
+				headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			}
+			return headers;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof CachedResource)) {
+				return false;
+			}
+			CachedResource otherResource = (CachedResource) other;
+			return (this.original.equals(otherResource.original) && this.content == otherResource.content &&
+					this.encoded == otherResource.encoded);
+		}
+
+		@Override
+		public int hashCode() {
+			return ObjectUtils.nullSafeHashCode(this.original) * 31 + (this.encoded ? 1 : 0);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import javax.servlet.ServletException;
+import javax.servlet.ServletResponseWrapper;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -102,6 +103,17 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 
 	private static final String URL_RESOURCE_CHARSET_PREFIX = "[charset=";
 
+	private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+
+	private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+
+	private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+
+	private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+	/** Smaller files are written directly, as with Tomcat's own default servlet. */
+	private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
 
 	private final List<String> locationValues = new ArrayList<>(4);
 
@@ -140,6 +152,8 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 	@Nullable
 	private StringValueResolver embeddedValueResolver;
 
+	private boolean useSendfile = false;
+
 
 	public ResourceHttpRequestHandler() {
 		super(HttpMethod.GET.name(), HttpMethod.HEAD.name());
@@ -311,6 +325,33 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 		return this.urlPathHelper;
 	}
 
+	/**
+	 * Whether to let the Servlet container write file system resources through
+	 * its sendfile support, i.e. without copying the file content through the
+	 * JVM, if the container indicates sendfile support for the current request.
+	 * <p>This is currently supported with Tomcat, when the connector is
+	 * configured to use sendfile. It only applies to full (non-range) responses
+	 * for resources that are {@link Resource#isFile() files} of at least 48 KB.
+	 * Smaller resources, as well as resources served from an in-memory cache
+	 * such as {@link ContentCachingResourceResolver}, are written directly,
+	 * and so are responses wrapped by a filter, e.g. by
+	 * {@link org.springframework.web.filter.ShallowEtagHeaderFilter}, which
+	 * needs to see the content.
+	 * <p>By default this is set to {@code false}.
+	 * @since 5.2
+	 */
+	public void setUseSendfile(boolean useSendfile) {
+		this.useSendfile = useSendfile;
+	}
+
+	/**
+	 * Whether the container's sendfile support is used when available.
+	 * @since 5.2
+	 */
+	public boolean isUseSendfile() {
+		return this.useSendfile;
+	}
+
 	@Override
 	public void setEmbeddedValueResolver(StringValueResolver resolver) {
 		this.embeddedValueResolver = resolver;
@@ -485,6 +526,13 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 		if (request.getHeader(HttpHeaders.RANGE) == null) {
 			Assert.state(this.resourceHttpMessageConverter != null, "Not initialized");
 			setHeaders(response, resource, mediaType);
+			if (useSendfile(request, response, resource)) {
+				// The container writes the file once this handler returns
+				request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, resource.getFile().getCanonicalPath());
+				request.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+				request.setAttribute(SENDFILE_END_ATTRIBUTE, resource.contentLength());
+				return;
+			}
 			this.resourceHttpMessageConverter.write(resource, mediaType, outputMessage);
 		}
 		else {
@@ -668,6 +716,15 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 				this.contentNegotiationStrategy.getMediaTypeForResource(resource) : null);
 	}
 
+	private boolean useSendfile(HttpServletRequest request, HttpServletResponse response, Resource resource)
+			throws IOException {
+
+		// A wrapped response, e.g. from ShallowEtagHeaderFilter, expects to see the body
+		return (this.useSendfile && !(response instanceof ServletResponseWrapper) && resource.isFile() &&
+				Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE)) &&
+				resource.contentLength() >= SENDFILE_MIN_SIZE);
+	}
+
 	/**
 	 * Set headers on the given servlet response.
 	 * Called for GET requests as well as HEAD requests.
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.test.MockHttpServletRequest;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StringUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ContentCachingResourceResolver}.
+ *
+ * @author agent (agent@local)
+ */
+public class ContentCachingResourceResolverTests {
+
+	private static final String CSS_CONTENT = StringUtils.collectionToDelimitedString(
+			Collections.nCopies(100, "h1 { color:red; }"), "\n");
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final ContentCachingResourceResolver cachingResolver = new ContentCachingResourceResolver();
+
+	private ResourceResolverChain chain;
+
+	private List<Resource> locations;
+
+
+	@Before
+	public void setup() throws IOException {
+		File root = this.folder.getRoot();
+		FileCopyUtils.copy(CSS_CONTENT.getBytes(StandardCharsets.UTF_8), new File(root, "main.css"));
+		FileCopyUtils.copy(CSS_CONTENT.getBytes(StandardCharsets.UTF_8), new File(root, "other.css"));
+		FileCopyUtils.copy(new byte[1024], new File(root, "image.png"));
+
+		List<ResourceResolver> resolvers = new ArrayList<>();
+		resolvers.add(this.cachingResolver);
+		resolvers.add(new PathResourceResolver());
+		this.chain = new DefaultResourceResolverChain(resolvers);
+		this.locations = Collections.singletonList(new FileSystemResource(root.getAbsolutePath() + "/"));
+	}
+
+
+	@Test
+	public void resolveFromCache() throws IOException {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		Resource resource = this.chain.resolveResource(request, "main.css", this.locations);
+
+		assertTrue(resource instanceof ByteArrayResource);
+		assertEquals("main.css", resource.getFilename());
+		assertEquals(CSS_CONTENT, new String(FileCopyUtils.copyToByteArray(resource.getInputStream()),
+				StandardCharsets.UTF_8));
+		assertEquals(new File(this.folder.getRoot(), "main.css").lastModified(), resource.lastModified());
+		HttpHeaders headers = ((HttpResource) resource).getResponseHeaders();
+		assertNull(headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals("Accept-Encoding", headers.getFirst(HttpHeaders.VARY));
+
+		long cacheSize = this.cachingResolver.getCacheSize();
+		assertTrue(cacheSize > CSS_CONTENT.length());
+		assertEquals(resource, this.chain.resolveResource(request, "main.css", this.locations));
+		assertEquals(cacheSize, this.cachingResolver.getCacheSize());
+	}
+
+	@Test
+	public void resolveGzipped() throws IOException {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "gzip, deflate");
+		Resource resource = this.chain.resolveResource(request, "main.css", this.locations);
+
+		assertEquals("main.css", resource.getFilename());
+		assertTrue(resource.contentLength() < CSS_CONTENT.length());
+		HttpHeaders headers = ((HttpResource) resource).getResponseHeaders();
+		assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals("Accept-Encoding", headers.getFirst(HttpHeaders.VARY));
+
+		byte[] content = ((ByteArrayResource) resource).getByteArray();
+		byte[] decoded = FileCopyUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(content)));
+		assertEquals(CSS_CONTENT, new String(decoded, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void resolveGzippedAcceptEncoding() {
+		assertTrue(isGzipped("deflate, GZIP;q=0.5"));
+		assertTrue(isGzipped("br, *"));
+		assertFalse(isGzipped("gzip;q=0"));
+		assertFalse(isGzipped("gzip; q=0.0, deflate"));
+		assertFalse(isGzipped("*, gzip;q=0"));
+		assertFalse(isGzipped("*;q=0"));
+		assertFalse(isGzipped("x-gzipped, nogzip"));
+	}
+
+	@Test
+	public void resolveNotCompressible() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "gzip");
+		Resource resource = this.chain.resolveResource(request, "image.png", this.locations);
+
+		assertTrue(resource instanceof ByteArrayResource);
+		assertTrue(((HttpResource) resource).getResponseHeaders().isEmpty());
+		assertEquals(1024, this.cachingResolver.getCacheSize());
+	}
+
+	@Test
+	public void resolveLargeResourceNotCached() {
+		this.cachingResolver.setMaxResourceSize(100);
+		Resource resource = this.chain.resolveResource(new MockHttpServletRequest(), "main.css", this.locations);
+
+		assertTrue(resource instanceof FileSystemResource);
+		assertEquals(0, this.cachingResolver.getCacheSize());
+	}
+
+	@Test
+	public void evictLeastRecentlyUsed() {
+		this.cachingResolver.setCompressibleMediaTypes(Collections.emptyList());
+		this.cachingResolver.setMaxCacheSize(CSS_CONTENT.length() * 2 + 1023);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+
+		this.chain.resolveResource(request, "main.css", this.locations);
+		this.chain.resolveResource(request, "image.png", this.locations);
+		assertEquals(CSS_CONTENT.length() + 1024, this.cachingResolver.getCacheSize());
+
+		this.chain.resolveResource(request, "main.css", this.locations);
+		this.chain.resolveResource(request, "other.css", this.locations);
+		assertEquals(CSS_CONTENT.length() * 2, this.cachingResolver.getCacheSize());
+
+		this.cachingResolver.clearCache();
+		assertEquals(0, this.cachingResolver.getCacheSize());
+	}
+
+	@Test
+	public void resolveNotFound() {
+		assertNull(this.chain.resolveResource(new MockHttpServletRequest(), "missing.css", this.locations));
+	}
+
+
+	private boolean isGzipped(String acceptEncoding) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", acceptEncoding);
+		Resource resource = this.chain.resolveResource(request, "main.css", this.locations);
+		return "gzip".equals(((HttpResource) resource).getResponseHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+	}
+
+}
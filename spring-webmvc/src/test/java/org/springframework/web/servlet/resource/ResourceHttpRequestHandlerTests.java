@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,18 +16,23 @@
 
 package org.springframework.web.servlet.resource;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.hamcrest.Matchers;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpMethod;
@@ -36,10 +41,13 @@ import org.springframework.http.MediaType;
 import org.springframework.mock.web.test.MockHttpServletRequest;
 import org.springframework.mock.web.test.MockHttpServletResponse;
 import org.springframework.mock.web.test.MockServletContext;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileCopyUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.accept.ContentNegotiationManagerFactoryBean;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
 import org.springframework.web.servlet.HandlerMapping;
 
 import static org.junit.Assert.*;
@@ -55,6 +63,9 @@ import static org.mockito.Mockito.*;
  */
 public class ResourceHttpRequestHandlerTests {
 
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
 	private ResourceHttpRequestHandler handler;
 
 	private MockHttpServletRequest request;
@@ -660,6 +671,59 @@ public class ResourceHttpRequestHandlerTests {
 	}
 
 
+	@Test
+	public void getResourceWithSendfile() throws Exception {
+		File file = new File(this.folder.getRoot(), "large.txt");
+		FileCopyUtils.copy(new byte[64 * 1024], file);
+		this.handler.setLocations(Collections.singletonList(
+				new FileSystemResource(this.folder.getRoot().getAbsolutePath() + "/")));
+		this.handler.setUseSendfile(true);
+		this.handler.afterPropertiesSet();
+		this.request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+		this.request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, "large.txt");
+
+		this.handler.handleRequest(this.request, this.response);
+
+		assertEquals(64 * 1024, this.response.getContentLength());
+		assertEquals(0, this.response.getContentAsByteArray().length);
+		assertEquals(file.getCanonicalPath(), this.request.getAttribute("org.apache.tomcat.sendfile.filename"));
+		assertEquals(0L, this.request.getAttribute("org.apache.tomcat.sendfile.start"));
+		assertEquals(64 * 1024L, this.request.getAttribute("org.apache.tomcat.sendfile.end"));
+	}
+
+	@Test
+	public void getResourceWithSendfileBehindShallowEtagHeaderFilter() throws Exception {
+		File file = new File(this.folder.getRoot(), "large.txt");
+		FileCopyUtils.copy(new byte[64 * 1024], file);
+		this.handler.setLocations(Collections.singletonList(
+				new FileSystemResource(this.folder.getRoot().getAbsolutePath() + "/")));
+		this.handler.setUseSendfile(true);
+		this.handler.afterPropertiesSet();
+		this.request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+		this.request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, "large.txt");
+
+		new ShallowEtagHeaderFilter().doFilter(this.request, this.response, (request, response) ->
+				this.handler.handleRequest((HttpServletRequest) request, (HttpServletResponse) response));
+
+		assertNull(this.request.getAttribute("org.apache.tomcat.sendfile.filename"));
+		assertEquals(64 * 1024, this.response.getContentLength());
+		assertEquals(64 * 1024, this.response.getContentAsByteArray().length);
+		String etag = "\"0" + DigestUtils.md5DigestAsHex(new byte[64 * 1024]) + "\"";
+		assertEquals(etag, this.response.getHeader("ETag"));
+	}
+
+	@Test
+	public void getResourceWithSendfileNotSupported() throws Exception {
+		this.handler.setUseSendfile(true);
+		this.request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, "foo.css");
+
+		this.handler.handleRequest(this.request, this.response);
+
+		assertNull(this.request.getAttribute("org.apache.tomcat.sendfile.filename"));
+		assertEquals("h1 { color:red; }", this.response.getContentAsString());
+	}
+
+
 	private long resourceLastModified(String resourceName) throws IOException {
 		return new ClassPathResource(resourceName, getClass()).getFile().lastModified();
 	}